@@ -0,0 +1,88 @@
+package mil.nga.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import mil.nga.util.CorpusGenerator;
+
+/**
+ * Synthetic PDF corpus shared by the benchmarks.  The corpus is generated
+ * by <code>CorpusGenerator</code> from its default seed so every run (and
+ * every engine change being compared) sees the same content, and it is
+ * written once to a well-known directory and reused by later runs so that
+ * the input files themselves stay fixed.  The directory defaults to
+ * <code>${java.io.tmpdir}/pdfmerge-benchmark-corpus</code> and can be
+ * overridden with the <code>benchmark.corpus.dir</code> system property.
+ * Delete the directory to force the corpus to be regenerated.
+ *
+ * @author L. Craig Carpenter
+ */
+public final class BenchmarkCorpus {
+
+    /**
+     * System property used to override the corpus location.
+     */
+    public static final String CORPUS_DIR_PROPERTY = "benchmark.corpus.dir";
+
+    /**
+     * Incremented whenever the generated content changes so that stale
+     * corpora are not reused.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Hidden constructor, the class only contains static methods.
+     */
+    private BenchmarkCorpus() { }
+
+    /**
+     * Obtain a set of input files, generating them if they do not already
+     * exist.
+     *
+     * @param fileCount Number of input files.
+     * @param pageCount Number of pages in each input file.
+     * @return Full paths to the input files.
+     * @throws IOException Thrown if the corpus could not be generated.
+     */
+    public static synchronized List<String> getFiles(
+            int fileCount,
+            int pageCount) throws IOException {
+
+        Path dir = getBaseDirectory().resolve(
+                "v" + VERSION + "_" + fileCount + "x" + pageCount);
+        Files.createDirectories(dir);
+
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setPageCount(pageCount);
+
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < fileCount; i++) {
+            File file = dir.resolve("input_" + i + ".pdf").toFile();
+            if (!file.isFile()) {
+                generator.generate(file, i);
+            }
+            files.add(file.getAbsolutePath());
+        }
+        return files;
+    }
+
+    /**
+     * Determine the directory holding the generated corpora.
+     *
+     * @return The corpus directory.
+     */
+    private static Path getBaseDirectory() {
+        String dir = System.getProperty(CORPUS_DIR_PROPERTY);
+        if ((dir == null) || (dir.trim().isEmpty())) {
+            return Paths.get(
+                    System.getProperty("java.io.tmpdir"),
+                    "pdfmerge-benchmark-corpus");
+        }
+        return Paths.get(dir.trim());
+    }
+}
@@ -0,0 +1,40 @@
+package mil.nga.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point used by the <code>benchmark</code> profile.  Accepts the
+ * standard JMH command line (e.g. a benchmark name pattern,
+ * <code>-p fileCount=5</code>, <code>-rf json</code>) and always attaches
+ * the GC profiler so that the allocation rate is reported next to the
+ * throughput and latency of every benchmark.
+ *
+ * @author L. Craig Carpenter
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Hidden constructor, the class only contains static methods.
+     */
+    private BenchmarkRunner() { }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args Standard JMH command line arguments.
+     */
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
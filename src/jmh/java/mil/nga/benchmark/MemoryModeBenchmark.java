@@ -0,0 +1,129 @@
+package mil.nga.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mil.nga.MemoryPolicy;
+import mil.nga.PDFFactory;
+import mil.nga.exceptions.PDFException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+
+/**
+ * Compares the PDFBox <code>MemoryUsageSetting</code> modes selected by
+ * each <code>MemoryPolicy</code> for the same merge.  Run with the GC
+ * profiler (the default when using <code>BenchmarkRunner</code>) to see
+ * the allocation rate of each mode alongside its latency.
+ *
+ * @author L. Craig Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MemoryModeBenchmark {
+
+    /**
+     * Memory policy (see <code>MEMORY_POLICY_PROPERTY</code>).
+     */
+    @Param({
+        MemoryPolicy.POLICY_MAIN,
+        MemoryPolicy.POLICY_MIXED,
+        MemoryPolicy.POLICY_TEMP})
+    public String memoryPolicy;
+
+    /**
+     * Number of input files per merge.
+     */
+    @Param({"20"})
+    public int fileCount;
+
+    /**
+     * Number of pages in each input file.
+     */
+    @Param({"50"})
+    public int pageCount;
+
+    /**
+     * Staging directory used for the merged output files.
+     */
+    private Path stagingDir;
+
+    /**
+     * Full paths to the input files.
+     */
+    private List<String> inputFiles;
+
+    /**
+     * Factory under test.
+     */
+    private PDFFactory factory;
+
+    /**
+     * Obtain the input files and configure the factory.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        inputFiles = BenchmarkCorpus.getFiles(fileCount, pageCount);
+        stagingDir = Files.createTempDirectory("pdfmerge_staging");
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                stagingDir.toString());
+        props.setProperty(
+                PDFMergeI.MEMORY_POLICY_PROPERTY,
+                memoryPolicy);
+        factory = new PDFFactory(props);
+    }
+
+    /**
+     * Remove the merged output generated during the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void cleanStaging() throws IOException {
+        File[] children = stagingDir.toFile().listFiles();
+        if (children != null) {
+            for (File child : children) {
+                FileUtils.delete(child);
+            }
+        }
+    }
+
+    /**
+     * Remove the staging directory.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.delete(stagingDir.toFile());
+    }
+
+    /**
+     * Merge the input files, bypassing the merged output cache.
+     */
+    @Benchmark
+    public URI merge() throws PDFException {
+        return factory.merge(inputFiles, "merged.pdf", null);
+    }
+}
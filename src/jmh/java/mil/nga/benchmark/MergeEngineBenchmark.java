@@ -0,0 +1,156 @@
+package mil.nga.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mil.nga.PDFFactory;
+import mil.nga.exceptions.PDFException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+
+/**
+ * Compares the original two-pass merge (validate each input with a full
+ * parse, then re-open and parse it again inside
+ * <code>PDFMergerUtility.mergeDocuments</code>) against the single-parse
+ * merge implemented by <code>PDFFactory</code>, over a range of input
+ * file counts and page counts.  The merged output cache is bypassed so
+ * that every invocation performs a full merge.
+ *
+ * @author L. Craig Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeEngineBenchmark {
+
+    /**
+     * Number of input files per merge.
+     */
+    @Param({"5", "20", "50"})
+    public int fileCount;
+
+    /**
+     * Number of pages in each input file.
+     */
+    @Param({"1", "50"})
+    public int pageCount;
+
+    /**
+     * Staging directory used for the merged output files.
+     */
+    private Path stagingDir;
+
+    /**
+     * Full paths to the generated input files.
+     */
+    private List<String> inputFiles;
+
+    /**
+     * Factory under test.
+     */
+    private PDFFactory factory;
+
+    /**
+     * Obtain the input files.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        inputFiles = BenchmarkCorpus.getFiles(fileCount, pageCount);
+        stagingDir = Files.createTempDirectory("pdfmerge_staging");
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                stagingDir.toString());
+        factory = new PDFFactory(props);
+    }
+
+    /**
+     * Remove the merged output generated during the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void cleanStaging() throws IOException {
+        File[] children = stagingDir.toFile().listFiles();
+        if (children != null) {
+            for (File child : children) {
+                FileUtils.delete(child);
+            }
+        }
+    }
+
+    /**
+     * Remove the staging directory.  The corpus is retained for later 
+     * runs.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.delete(stagingDir.toFile());
+    }
+
+    /**
+     * The merge algorithm prior to the single-parse change.
+     */
+    @Benchmark
+    public File twoPassMerge() throws IOException {
+
+        PDFMergerUtility  pmut    = new PDFMergerUtility();
+        List<InputStream> streams = new ArrayList<InputStream>();
+        File              output  = new File(
+                Files.createTempDirectory(stagingDir, "nga").toFile(),
+                "merged.pdf");
+
+        try (OutputStream os = Files.newOutputStream(output.toPath())) {
+            for (String file : inputFiles) {
+                Path p = new File(file).toPath();
+                try (InputStream is = Files.newInputStream(p);
+                        PDDocument pdf = PDDocument.load(is)) { }
+                streams.add(Files.newInputStream(p));
+            }
+            pmut.addSources(streams);
+            pmut.setDestinationStream(os);
+            pmut.mergeDocuments(MemoryUsageSetting.setupMainMemoryOnly());
+        }
+        finally {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+        }
+        return output;
+    }
+
+    /**
+     * The current merge algorithm.
+     */
+    @Benchmark
+    public URI singleParseMerge() throws PDFException {
+        return factory.merge(inputFiles, "merged.pdf", null);
+    }
+}
@@ -0,0 +1,163 @@
+package mil.nga.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import mil.nga.MergeRequest;
+import mil.nga.MergeRequestSerializer;
+
+/**
+ * Compares the <code>MergeRequestSerializer</code> with the approach it
+ * replaced, which constructed a new <code>ObjectMapper</code> for every
+ * call (the <code>legacy*</code> benchmarks).  The streaming benchmark
+ * writes to an <code>OutputStream</code> that discards its input so that
+ * only the serialization cost is measured.  Run with <code>-t</code> to
+ * measure contention between request threads.
+ *
+ * @author L. Craig Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializerBenchmark {
+
+    /**
+     * The date format used by the legacy implementation (shared by all
+     * threads, as it was).
+     */
+    private static final DateFormat LEGACY_DATE_FORMAT =
+            new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+
+    static {
+        LEGACY_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    /**
+     * Number of input files in the request.
+     */
+    @Param({"1", "20", "200"})
+    public int fileCount;
+
+    /**
+     * The request to serialize.
+     */
+    private MergeRequest request;
+
+    /**
+     * The serialized request.
+     */
+    private String json;
+
+    /**
+     * Serializer under test.
+     */
+    private MergeRequestSerializer serializer;
+
+    /**
+     * Build the request.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = MergeRequestSerializer.getInstance();
+        request    = new MergeRequest();
+        request.setFilename("benchmark.pdf");
+        for (int i = 0; i < fileCount; i++) {
+            request.add("/mnt/public/data/benchmark/input_" + i + ".pdf");
+        }
+        json = serializer.serialize(request);
+    }
+
+    /**
+     * Serialize using a new mapper (legacy implementation).
+     */
+    @Benchmark
+    public String legacySerialize() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setDateFormat(LEGACY_DATE_FORMAT);
+        return mapper.writeValueAsString(request);
+    }
+
+    /**
+     * Pretty-print using a new mapper (legacy implementation).
+     */
+    @Benchmark
+    public String legacySerializePretty() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setDateFormat(LEGACY_DATE_FORMAT);
+        return mapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(request);
+    }
+
+    /**
+     * Deserialize using a new mapper (legacy approach).
+     */
+    @Benchmark
+    public MergeRequest legacyDeserialize() throws IOException {
+        return new ObjectMapper().readValue(json, MergeRequest.class);
+    }
+
+    /**
+     * Serialize to a String using the shared writer.
+     */
+    @Benchmark
+    public String serialize() {
+        return serializer.serialize(request);
+    }
+
+    /**
+     * Pretty-print to a String using the shared writer.
+     */
+    @Benchmark
+    public String serializePretty() {
+        return serializer.serializePretty(request);
+    }
+
+    /**
+     * Serialize directly to an output stream using the shared writer.
+     */
+    @Benchmark
+    public void serializeToStream(final Blackhole blackhole)
+            throws IOException {
+        serializer.serialize(request, new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+
+    /**
+     * Deserialize using the shared reader.
+     */
+    @Benchmark
+    public MergeRequest deserialize() {
+        return serializer.deserialize(json);
+    }
+}
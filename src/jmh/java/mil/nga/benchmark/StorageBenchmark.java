@@ -0,0 +1,164 @@
+package mil.nga.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mil.nga.PDFFactory;
+import mil.nga.exceptions.PDFException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.util.FileUtils;
+
+/**
+ * Measures the single-parse merge with the input files and staging area
+ * held by different storage backends.  The <code>mem</code> backend
+ * removes disk I/O entirely, so the difference between the two
+ * configurations is the cost of the storage rather than the merge.
+ *
+ * @author L. Craig Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+    /**
+     * Root of the in-memory corpus and staging area.
+     */
+    private static final String MEMORY_ROOT = "mem:///benchmark";
+
+    /**
+     * Storage backend holding the inputs and output.
+     */
+    @Param({"file", "mem"})
+    public String storage;
+
+    /**
+     * Number of input files per merge.
+     */
+    @Param({"5", "20"})
+    public int fileCount;
+
+    /**
+     * Number of pages in each input file.
+     */
+    @Param({"1", "50"})
+    public int pageCount;
+
+    /**
+     * Staging area used for the merged output files.
+     */
+    private URI stagingArea;
+
+    /**
+     * The input files.
+     */
+    private List<String> inputFiles;
+
+    /**
+     * Factory under test.
+     */
+    private PDFFactory factory;
+
+    /**
+     * Obtain the input files, copying them into memory if required.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<String> corpus = BenchmarkCorpus.getFiles(fileCount, pageCount);
+        if (MemoryStorageBackend.SCHEME.equals(storage)) {
+            MemoryStorageBackend memory = (MemoryStorageBackend)
+                    StorageFactory.get(URI.create(MEMORY_ROOT));
+            inputFiles  = new ArrayList<String>();
+            for (String file : corpus) {
+                File source = new File(file);
+                URI  target = URI.create(
+                        MEMORY_ROOT + "/corpus/" + source.getName());
+                memory.put(target, Files.readAllBytes(source.toPath()));
+                inputFiles.add(target.toString());
+            }
+            stagingArea = URI.create(MEMORY_ROOT + "/staging");
+            memory.createDirectories(stagingArea);
+        }
+        else {
+            inputFiles  = corpus;
+            stagingArea = Files.createTempDirectory("pdfmerge_staging")
+                            .toUri();
+        }
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                stagingArea.toString());
+        factory = new PDFFactory(props);
+    }
+
+    /**
+     * Remove the merged output generated during the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void cleanStaging() throws IOException {
+        StorageBackend backend = StorageFactory.get(stagingArea);
+        for (URI child : backend.list(stagingArea)) {
+            delete(backend, child);
+        }
+    }
+
+    /**
+     * Remove the staging area and in-memory corpus.  The on-disk corpus is
+     * retained for later runs.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (MemoryStorageBackend.SCHEME.equals(storage)) {
+            ((MemoryStorageBackend)StorageFactory.get(stagingArea)).clear();
+        }
+        else {
+            FileUtils.delete(new File(stagingArea));
+        }
+    }
+
+    /**
+     * Recursively delete a staging directory.
+     */
+    private void delete(StorageBackend backend, URI uri) throws IOException {
+        if (backend.getMetadata(uri).isDirectory()) {
+            for (URI child : backend.list(uri)) {
+                delete(backend, child);
+            }
+        }
+        backend.delete(uri);
+    }
+
+    /**
+     * Merge the input files into the staging area.
+     */
+    @Benchmark
+    public URI merge() throws PDFException {
+        return factory.merge(inputFiles, "merged.pdf", null);
+    }
+}
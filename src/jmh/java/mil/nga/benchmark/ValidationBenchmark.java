@@ -0,0 +1,107 @@
+package mil.nga.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mil.nga.PDFFactory;
+import mil.nga.PDFMetadataCache;
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * Measures <code>PDFFactory.isValidPDF</code> for a single input file in
+ * each validation mode, both with the metadata cache cleared before every
+ * call (the cost of validating a file seen for the first time) and with
+ * the cache populated.
+ *
+ * @author L. Craig Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidationBenchmark {
+
+    /**
+     * Validation mode (see <code>VALIDATION_MODE_PROPERTY</code>).
+     */
+    @Param({
+        PDFMergeI.VALIDATION_MODE_STRICT,
+        PDFMergeI.VALIDATION_MODE_STRUCTURAL})
+    public String validationMode;
+
+    /**
+     * Number of pages in the input file.
+     */
+    @Param({"1", "50"})
+    public int pageCount;
+
+    /**
+     * Whether the metadata cache may satisfy the call.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    /**
+     * The input file.
+     */
+    private URI inputFile;
+
+    /**
+     * Factory under test.
+     */
+    private PDFFactory factory;
+
+    /**
+     * Obtain the input file and configure the factory.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<String> files = BenchmarkCorpus.getFiles(1, pageCount);
+        inputFile = new File(files.get(0)).toURI();
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.VALIDATION_MODE_PROPERTY,
+                validationMode);
+        factory = new PDFFactory(props);
+        PDFMetadataCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Clear the metadata cache ahead of each call when measuring uncached
+     * validation.  The clear is cheap relative to even a structural check
+     * so per-invocation setup does not distort the result.
+     */
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        if (!cached) {
+            PDFMetadataCache.getInstance().invalidateAll();
+        }
+    }
+
+    /**
+     * Validate the input file.
+     */
+    @Benchmark
+    public boolean isValidPDF() {
+        return factory.isValidPDF(inputFile);
+    }
+}
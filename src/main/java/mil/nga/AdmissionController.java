@@ -0,0 +1,367 @@
+package mil.nga;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageFactory;
+import mil.nga.storage.StorageMetadata;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
+import mil.nga.util.URIUtils;
+
+/**
+ * Limits the amount of merge work in progress within the JVM.  The cost
+ * of each request is estimated from the total size of its input files
+ * and a request is only admitted if its cost fits within the global
+ * in-flight budget.  A request that does not fit waits for a short,
+ * configurable period for capacity to become available and is then
+ * rejected, allowing the caller to return HTML 429 (too many requests).
+ * A request whose cost exceeds the entire budget is charged the full
+ * budget, so it can still run, but only on its own.
+ *
+ * @author L. Craig Carpenter
+ */
+public class AdmissionController
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            AdmissionController.class);
+
+    /**
+     * Minimum cost charged to a request, covering the fixed overhead of
+     * a merge.
+     */
+    private static final long MINIMUM_COST = 1024L * 1024L;
+
+    /**
+     * The global in-flight budget in bytes.
+     */
+    private final long budget;
+
+    /**
+     * How long (ms) a request waits for capacity before being rejected.
+     */
+    private final long maxWait;
+
+    /**
+     * Value (seconds) of the Retry-After header returned to rejected
+     * clients.
+     */
+    private final int retryAfter;
+
+    /**
+     * Estimated cost of the requests currently admitted.
+     */
+    private long inFlightBytes = 0;
+
+    /**
+     * Number of requests currently admitted.
+     */
+    private int inFlightRequests = 0;
+
+    /**
+     * Number of requests waiting for capacity.
+     */
+    private int waitingRequests = 0;
+
+    /**
+     * Total number of requests admitted.
+     */
+    private long admitted = 0;
+
+    /**
+     * Total number of requests rejected.
+     */
+    private long rejected = 0;
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private AdmissionController() {
+        super(PROPERTY_FILE_NAME);
+
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        long budgetMB = PropertyUtils.getLong(
+                props,
+                ADMISSION_BUDGET_PROPERTY,
+                0L);
+        if (budgetMB > 0) {
+            budget = budgetMB * 1024L * 1024L;
+        }
+        else {
+            budget = Runtime.getRuntime().maxMemory() / 2;
+        }
+        maxWait = Math.max(0, PropertyUtils.getLong(
+                props,
+                ADMISSION_WAIT_PROPERTY,
+                DEFAULT_ADMISSION_WAIT_MS));
+        retryAfter = Math.max(1, PropertyUtils.getInt(
+                props,
+                ADMISSION_RETRY_AFTER_PROPERTY,
+                DEFAULT_ADMISSION_RETRY_AFTER));
+
+        LOGGER.info("Admission control initialized with an in-flight "
+                + "budget of [ "
+                + FileUtils.humanReadableByteCount(budget, false)
+                + " ] and a maximum wait of [ "
+                + maxWait
+                + " ] ms.");
+    }
+
+    /**
+     * Return a singleton instance to the AdmissionController object.
+     * @return The AdmissionController
+     */
+    public static AdmissionController getInstance() {
+        return AdmissionControllerHolder.getSingleton();
+    }
+
+    /**
+     * Estimate the cost of merging a list of input files.
+     *
+     * @param inputFiles The client-supplied list of input files.
+     * @return The estimated cost in bytes.
+     */
+    public long estimateCost(List<String> inputFiles) {
+        long cost = MINIMUM_COST;
+        if (inputFiles != null) {
+            List<URI> uris = new ArrayList<URI>(inputFiles.size());
+            for (String file : inputFiles) {
+                try {
+                    uris.add(URIUtils.getInstance().getURI(file));
+                }
+                catch (Exception e) {
+                    // Invalid files are discarded by the merge.
+                }
+            }
+            // Missing files are discarded by the merge, so only the files
+            // found contribute to the cost.
+            for (StorageMetadata metadata : 
+                    StorageFactory.getInstance().getMetadata(uris).values()) {
+                cost += metadata.getSize();
+            }
+        }
+        return Math.min(cost, budget);
+    }
+
+    /**
+     * Admit a request, waiting up to the configured period for capacity.
+     *
+     * @param inputFiles The client-supplied list of input files.
+     * @return A permit that must be closed when the request completes, or
+     * null if the request was rejected.
+     */
+    public Permit admit(List<String> inputFiles) {
+        return admit(inputFiles, maxWait);
+    }
+
+    /**
+     * Admit a request, waiting up to the specified period for capacity.
+     * Rejections are counted and logged.
+     *
+     * @param inputFiles The client-supplied list of input files.
+     * @param waitMillis Maximum time to wait for capacity.
+     * @return A permit that must be closed when the request completes, or
+     * null if the request was rejected.
+     */
+    public Permit admit(List<String> inputFiles, long waitMillis) {
+        long   cost   = estimateCost(inputFiles);
+        Permit permit = acquire(cost, waitMillis);
+        if (permit == null) {
+            synchronized (this) {
+                rejected++;
+            }
+            LOGGER.warn("Request with estimated cost [ "
+                    + FileUtils.humanReadableByteCount(cost, false)
+                    + " ] rejected.  "
+                    + toString());
+        }
+        return permit;
+    }
+
+    /**
+     * Reserve capacity, waiting up to the specified period for it to
+     * become available.  Unlike <code>admit()</code>, a failure to obtain
+     * capacity is not counted as a rejection, so callers may retry.
+     *
+     * @param cost The estimated cost (see <code>estimateCost()</code>).
+     * @param waitMillis Maximum time to wait for capacity.
+     * @return A permit that must be closed when the work completes, or
+     * null if the capacity did not become available in time.
+     */
+    public Permit acquire(long cost, long waitMillis) {
+
+        long charge   = Math.min(Math.max(cost, MINIMUM_COST), budget);
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+
+        synchronized (this) {
+            waitingRequests++;
+            try {
+                while (inFlightBytes + charge > budget) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(
+                            deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    wait(remaining);
+                }
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            finally {
+                waitingRequests--;
+            }
+            inFlightBytes += charge;
+            inFlightRequests++;
+            admitted++;
+        }
+        return new Permit(charge);
+    }
+
+    /**
+     * Return capacity to the budget.
+     *
+     * @param cost The cost charged when the request was admitted.
+     */
+    private synchronized void release(long cost) {
+        inFlightBytes -= cost;
+        inFlightRequests--;
+        notifyAll();
+    }
+
+    /**
+     * Getter method for the Retry-After value returned to rejected clients.
+     * @return Time in seconds.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Build a snapshot of the current budget usage.
+     * @return The admission status.
+     */
+    public synchronized AdmissionStatus getStatus() {
+        AdmissionStatus status = new AdmissionStatus();
+        status.setBudget(budget);
+        status.setInFlightBytes(inFlightBytes);
+        status.setInFlightRequests(inFlightRequests);
+        status.setWaitingRequests(waitingRequests);
+        status.setAdmitted(admitted);
+        status.setRejected(rejected);
+        return status;
+    }
+
+    /**
+     * Convert the budget usage to a printable String.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Admission status => [ in-flight=");
+        sb.append(FileUtils.humanReadableByteCount(inFlightBytes, false));
+        sb.append(" of ");
+        sb.append(FileUtils.humanReadableByteCount(budget, false));
+        sb.append(", requests=");
+        sb.append(inFlightRequests);
+        sb.append(", waiting=");
+        sb.append(waitingRequests);
+        sb.append(", admitted=");
+        sb.append(admitted);
+        sb.append(", rejected=");
+        sb.append(rejected);
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+    /**
+     * Handle on the capacity held by an admitted request.  Closing the
+     * permit returns the capacity to the budget.  Closing is idempotent.
+     */
+    public class Permit implements Closeable {
+
+        /**
+         * The cost charged to the request.
+         */
+        private final long cost;
+
+        /**
+         * Flag indicating the capacity has been returned.
+         */
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        /**
+         * Constructor.
+         * @param cost The cost charged to the request.
+         */
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        /**
+         * Return the capacity held by the request.
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(cost);
+            }
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class AdmissionControllerHolder {
+
+        /**
+         * Reference to the Singleton instance of the AdmissionController
+         */
+        private static AdmissionController _instance =
+                new AdmissionController();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * AdmissionController.
+         *
+         * @return The singleton instance of the AdmissionController.
+         */
+        public static AdmissionController getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the current usage of the admission control
+ * budget to the client.  The class contains annotations for constructing
+ * JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AdmissionStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 4026915706873542810L;
+
+    private long budget           = 0;
+    private long inFlightBytes    = 0;
+    private int  inFlightRequests = 0;
+    private int  waitingRequests  = 0;
+    private long admitted         = 0;
+    private long rejected         = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public AdmissionStatus() {}
+
+    /**
+     * Getter method for the total number of requests admitted.
+     * @return The number of admitted requests.
+     */
+    @JsonProperty(value="admitted")
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Getter method for the in-flight budget.
+     * @return The budget in bytes.
+     */
+    @JsonProperty(value="budget_bytes")
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Getter method for the estimated cost of the admitted requests.
+     * @return The in-flight cost in bytes.
+     */
+    @JsonProperty(value="in_flight_bytes")
+    public long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Getter method for the number of admitted requests.
+     * @return The number of in-flight requests.
+     */
+    @JsonProperty(value="in_flight_requests")
+    public int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    /**
+     * Getter method for the total number of requests rejected.
+     * @return The number of rejected requests.
+     */
+    @JsonProperty(value="rejected")
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Getter method for the percentage of the budget in use.
+     * @return Usage between 0 and 100.
+     */
+    @JsonProperty(value="usage_percent")
+    public int getUsage() {
+        return budget > 0 ? (int)((100 * inFlightBytes) / budget) : 0;
+    }
+
+    /**
+     * Getter method for the number of requests waiting for capacity.
+     * @return The number of waiting requests.
+     */
+    @JsonProperty(value="waiting_requests")
+    public int getWaitingRequests() {
+        return waitingRequests;
+    }
+
+    /**
+     * Setter method for the total number of requests admitted.
+     * @param value The number of admitted requests.
+     */
+    public void setAdmitted(long value) {
+        admitted = value;
+    }
+
+    /**
+     * Setter method for the in-flight budget.
+     * @param value The budget in bytes.
+     */
+    public void setBudget(long value) {
+        budget = value;
+    }
+
+    /**
+     * Setter method for the estimated cost of the admitted requests.
+     * @param value The in-flight cost in bytes.
+     */
+    public void setInFlightBytes(long value) {
+        inFlightBytes = value;
+    }
+
+    /**
+     * Setter method for the number of admitted requests.
+     * @param value The number of in-flight requests.
+     */
+    public void setInFlightRequests(int value) {
+        inFlightRequests = value;
+    }
+
+    /**
+     * Setter method for the total number of requests rejected.
+     * @param value The number of rejected requests.
+     */
+    public void setRejected(long value) {
+        rejected = value;
+    }
+
+    /**
+     * Setter method for the number of requests waiting for capacity.
+     * @param value The number of waiting requests.
+     */
+    public void setWaitingRequests(int value) {
+        waitingRequests = value;
+    }
+}
@@ -0,0 +1,118 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the request archive counters to the client.
+ * The class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ArchiveStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 7351298844061635127L;
+
+    private boolean enabled  = false;
+    private long    archived = 0;
+    private long    dropped  = 0;
+    private long    failed   = 0;
+    private int     queued   = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public ArchiveStatus() {}
+
+    /**
+     * Getter method for the number of requests written to the archive.
+     * @return The number of archived requests.
+     */
+    @JsonProperty(value="archived")
+    public long getArchived() {
+        return archived;
+    }
+
+    /**
+     * Getter method for the number of requests dropped because the archive
+     * queue was full.
+     * @return The number of dropped requests.
+     */
+    @JsonProperty(value="dropped")
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Getter method for whether the request archive is enabled.
+     * @return True if requests are being archived.
+     */
+    @JsonProperty(value="enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Getter method for the number of requests that could not be written.
+     * @return The number of failed requests.
+     */
+    @JsonProperty(value="failed")
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Getter method for the number of requests waiting to be archived.
+     * @return The number of queued requests.
+     */
+    @JsonProperty(value="queued")
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Setter method for the number of archived requests.
+     * @param value The number of archived requests.
+     */
+    public void setArchived(long value) {
+        archived = value;
+    }
+
+    /**
+     * Setter method for the number of dropped requests.
+     * @param value The number of dropped requests.
+     */
+    public void setDropped(long value) {
+        dropped = value;
+    }
+
+    /**
+     * Setter method for whether the request archive is enabled.
+     * @param value True if requests are being archived.
+     */
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Setter method for the number of failed requests.
+     * @param value The number of failed requests.
+     */
+    public void setFailed(long value) {
+        failed = value;
+    }
+
+    /**
+     * Setter method for the number of queued requests.
+     * @param value The number of queued requests.
+     */
+    public void setQueued(int value) {
+        queued = value;
+    }
+}
@@ -0,0 +1,97 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class representing a single entry in the request archive.  Each 
+ * entry wraps the client <code>MergeRequest</code> along with the unique
+ * ID assigned to the request and the time at which it was received.  The 
+ * class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ArchivedRequest implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -2358176204893321785L;
+
+    private String       id       = null;
+    private long         received = 0;
+    private MergeRequest request  = null;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public ArchivedRequest() {}
+
+    /**
+     * Constructor used when archiving a request.
+     * 
+     * @param id The unique request ID.
+     * @param received The time the request was received (ms since the 
+     * epoch).
+     * @param request The client request.
+     */
+    public ArchivedRequest(String id, long received, MergeRequest request) {
+        setId(id);
+        setReceived(received);
+        setRequest(request);
+    }
+
+    /**
+     * Getter method for the unique request ID.
+     * @return The request ID.
+     */
+    @JsonProperty(value="id")
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Getter method for the time the request was received.
+     * @return The time the request was received (ms since the epoch).
+     */
+    @JsonProperty(value="received")
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Getter method for the client request.
+     * @return The client request.
+     */
+    @JsonProperty(value="request")
+    public MergeRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Setter method for the unique request ID.
+     * @param value The request ID.
+     */
+    public void setId(String value) {
+        id = value;
+    }
+
+    /**
+     * Setter method for the time the request was received.
+     * @param value The time the request was received.
+     */
+    public void setReceived(long value) {
+        received = value;
+    }
+
+    /**
+     * Setter method for the client request.
+     * @param value The client request.
+     */
+    public void setRequest(MergeRequest value) {
+        request = value;
+    }
+}
@@ -0,0 +1,140 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the merge deduplication counters to the
+ * client.  The class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DeduplicationStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -6409822311572815204L;
+
+    private long merges         = 0;
+    private long saved          = 0;
+    private long sharedFailures = 0;
+    private long abandoned      = 0;
+    private int  inFlight       = 0;
+    private long timeouts       = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public DeduplicationStatus() {}
+
+    /**
+     * Getter method for the number of merges abandoned by the request
+     * performing them (the waiting requests performed the merge
+     * themselves).
+     * @return The number of abandoned merges.
+     */
+    @JsonProperty(value="abandoned")
+    public long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Getter method for the number of merges currently in flight.
+     * @return The number of in-flight merges.
+     */
+    @JsonProperty(value="in_flight")
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Getter method for the number of merges performed.
+     * @return The number of merges.
+     */
+    @JsonProperty(value="merges")
+    public long getMerges() {
+        return merges;
+    }
+
+    /**
+     * Getter method for the number of requests that shared the output of
+     * an identical in-flight merge (i.e. the number of merges saved).
+     * @return The number of merges saved.
+     */
+    @JsonProperty(value="saved")
+    public long getSaved() {
+        return saved;
+    }
+
+    /**
+     * Getter method for the number of requests that received the failure
+     * of an identical in-flight merge.
+     * @return The number of shared failures.
+     */
+    @JsonProperty(value="shared_failures")
+    public long getSharedFailures() {
+        return sharedFailures;
+    }
+
+    /**
+     * Getter method for the number of merges whose waiting requests gave
+     * up because the merge did not finish in time.
+     * @return The number of timed out merges.
+     */
+    @JsonProperty(value="timeouts")
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Setter method for the number of abandoned merges.
+     * @param value The number of abandoned merges.
+     */
+    public void setAbandoned(long value) {
+        abandoned = value;
+    }
+
+    /**
+     * Setter method for the number of merges currently in flight.
+     * @param value The number of in-flight merges.
+     */
+    public void setInFlight(int value) {
+        inFlight = value;
+    }
+
+    /**
+     * Setter method for the number of merges performed.
+     * @param value The number of merges.
+     */
+    public void setMerges(long value) {
+        merges = value;
+    }
+
+    /**
+     * Setter method for the number of merges saved.
+     * @param value The number of merges saved.
+     */
+    public void setSaved(long value) {
+        saved = value;
+    }
+
+    /**
+     * Setter method for the number of shared failures.
+     * @param value The number of shared failures.
+     */
+    public void setSharedFailures(long value) {
+        sharedFailures = value;
+    }
+
+    /**
+     * Setter method for the number of timed out merges.
+     * @param value The number of timed out merges.
+     */
+    public void setTimeouts(long value) {
+        timeouts = value;
+    }
+}
@@ -0,0 +1,290 @@
+package mil.nga;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged pipeline used to parse input documents ahead of the merge.  While
+ * document N is being appended to the output document by the calling
+ * thread, up to <code>depth</code> subsequent documents are read and parsed
+ * by the shared <code>WorkerPool</code>.  Documents are always handed back 
+ * to the caller in the order in which they were supplied, so the page order
+ * of the output is deterministic.  A depth of zero disables the look-ahead 
+ * and each document is parsed on the calling thread.  The pipeline may be
+ * closed from any thread in order to cancel the remaining work.
+ *
+ * @author L. Craig Carpenter
+ */
+public class DocumentPipeline implements Closeable {
+
+    /**
+     * Static logger for use throughout the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            DocumentPipeline.class);
+
+    /**
+     * The factory used to load (and validate) each input document.
+     */
+    private final PDFFactory factory;
+
+    /**
+     * The ordered list of input documents.
+     */
+    private final List<URI> inputs;
+
+    /**
+     * Number of documents to parse ahead of the current document.
+     */
+    private final int depth;
+
+    /**
+     * Memory settings used when parsing the input documents.
+     */
+    private final MemoryUsageSetting memUsageSetting;
+
+    /**
+     * Metrics object accumulating the timing information.
+     */
+    private final MergeMetrics metrics;
+
+    /**
+     * Pending parse operations, index-aligned with the input list.
+     */
+    private final AtomicReferenceArray<Future<PDDocument>> pending;
+
+    /**
+     * Documents that have been parsed but not yet handed to the caller.
+     * Guarded by <code>this</code>.
+     */
+    private final Set<PDDocument> unclaimed = new HashSet<PDDocument>();
+
+    /**
+     * Flag set when the pipeline is closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Index of the next document to be handed to the caller.
+     */
+    private int next = 0;
+
+    /**
+     * Constructor used to start the pipeline.  The first <code>depth</code>
+     * documents are submitted for parsing immediately.
+     *
+     * @param factory The factory used to load each input document.
+     * @param inputs The ordered list of input documents.
+     * @param depth The number of documents to parse ahead.
+     * @param memUsageSetting Memory settings used when parsing.
+     * @param metrics Object used to accumulate timing information.
+     */
+    public DocumentPipeline(
+            PDFFactory factory,
+            List<URI> inputs,
+            int depth,
+            MemoryUsageSetting memUsageSetting,
+            MergeMetrics metrics) {
+
+        this.factory         = factory;
+        this.inputs          = inputs;
+        this.depth           = Math.max(0, Math.min(depth, inputs.size()));
+        this.memUsageSetting = memUsageSetting;
+        this.metrics         = metrics;
+        this.pending         = new AtomicReferenceArray<Future<PDDocument>>(
+                inputs.size());
+
+        for (int i = 0; i < this.depth; i++) {
+            submit(i);
+        }
+    }
+
+    /**
+     * Submit the parse operation for the document at the input index.
+     *
+     * @param index Index of the document in the input list.
+     */
+    private void submit(int index) {
+        if ((depth > 0) && (index < inputs.size())) {
+            pending.set(index, WorkerPool.getInstance().submit(
+                    newParseTask(inputs.get(index))));
+            // Guard against a concurrent close() that missed this task.
+            if (closed) {
+                pending.get(index).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Parse a single input document.
+     *
+     * @param uri The input document.
+     * @return The loaded document, or null if the input is not a valid PDF.
+     */
+    private PDDocument parse(URI uri) {
+        long       start = System.currentTimeMillis();
+        PDDocument doc   = factory.loadPDF(uri, memUsageSetting);
+        metrics.addParseTime(System.currentTimeMillis() - start);
+        return claimable(doc);
+    }
+
+    /**
+     * Construct the task used to parse a single input document on the 
+     * executor.
+     *
+     * @param uri The input document.
+     * @return Task that returns the loaded document (or null if the input
+     * is not a valid PDF).
+     */
+    private Callable<PDDocument> newParseTask(final URI uri) {
+        return new Callable<PDDocument>() {
+            @Override
+            public PDDocument call() {
+                return parse(uri);
+            }
+        };
+    }
+
+    /**
+     * Register a freshly parsed document so that it can be released if 
+     * the pipeline is closed before the document is handed to the caller.
+     * 
+     * @param doc The parsed document (may be null).
+     * @return The input document, or null if the pipeline has already been
+     * closed.
+     */
+    private synchronized PDDocument claimable(PDDocument doc) {
+        if (doc != null) {
+            metrics.documentOpened();
+            if (closed) {
+                release(doc);
+                doc = null;
+            }
+            else {
+                unclaimed.add(doc);
+            }
+        }
+        return doc;
+    }
+    
+    /**
+     * Close a document that was never handed to the caller.
+     * 
+     * @param doc The parsed document.
+     */
+    private void release(PDDocument doc) {
+        try { doc.close(); } catch (Exception e) {}
+        metrics.documentClosed();
+    }
+    
+    /**
+     * Transfer ownership of a parsed document to the caller.
+     * 
+     * @param doc The parsed document (may be null).
+     * @return The input document.
+     * @throws CancellationException Thrown if the pipeline was closed (in
+     * which case the document has already been released).
+     */
+    private synchronized PDDocument claim(PDDocument doc) {
+        if (closed) {
+            throw new CancellationException("Document pipeline closed.");
+        }
+        if (doc != null) {
+            unclaimed.remove(doc);
+        }
+        return doc;
+    }
+
+    /**
+     * Determine whether there are additional documents available.
+     *
+     * @return True if there are documents remaining.
+     */
+    public boolean hasNext() {
+        return next < inputs.size();
+    }
+
+    /**
+     * Retrieve the next document in input order, blocking until it has
+     * been parsed.  Retrieving a document triggers the parse of the next
+     * document in the look-ahead window.  Ownership of the returned
+     * document passes to the caller.
+     *
+     * @return The next document, or null if the input file was not a
+     * valid PDF.
+     * @throws InterruptedException Thrown if the calling thread is
+     * interrupted while waiting on the parse.
+     * @throws CancellationException Thrown if the pipeline was closed.
+     */
+    public PDDocument next() throws InterruptedException {
+
+        PDDocument doc   = null;
+        int        index = next++;
+
+        if (closed) {
+            throw new CancellationException("Document pipeline closed.");
+        }
+        if (depth == 0) {
+            doc = parse(inputs.get(index));
+        }
+        else {
+            submit(index + depth);
+            long start = System.currentTimeMillis();
+            try {
+                Future<PDDocument> future = pending.get(index);
+                if (future == null) {
+                    throw new CancellationException(
+                            "Document pipeline closed.");
+                }
+                doc = future.get();
+            }
+            catch (ExecutionException ee) {
+                LOGGER.warn("Unexpected exception encountered while parsing "
+                        + "file [ "
+                        + inputs.get(index)
+                        + " ].  Exception message => [ "
+                        + ee.getCause()
+                        + " ].  Target file is not a valid PDF.");
+            }
+            finally {
+                pending.set(index, null);
+                metrics.addWaitTime(System.currentTimeMillis() - start);
+            }
+        }
+        return claim(doc);
+    }
+
+    /**
+     * Cancel any outstanding parse operations and release documents that
+     * were parsed but never handed to the caller.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (PDDocument doc : unclaimed) {
+                release(doc);
+            }
+            unclaimed.clear();
+        }
+        for (int i = 0; i < pending.length(); i++) {
+            Future<PDDocument> future = pending.getAndSet(i, null);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
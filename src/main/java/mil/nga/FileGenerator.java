@@ -2,12 +2,13 @@ package mil.nga;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.FileAlreadyExistsException;
 import java.util.Properties;
+import java.util.regex.Pattern;
 
 import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
 import mil.nga.util.FileUtils;
 import mil.nga.util.URIUtils;
 
@@ -33,6 +34,11 @@ public class FileGenerator implements PDFMergeI {
      */
     private URI stagingArea = null;
     
+    /**
+     * Layout of the output directories within the staging area.
+     */
+    private StagingLayout layout = null;
+    
     /**
      * User-supplied filename to use when creating the output merged PDF.
      */
@@ -49,12 +55,15 @@ public class FileGenerator implements PDFMergeI {
             setStagingArea(props.getProperty(STAGING_DIRECTORY_PROPERTY));
             setDefaultOutputFile(props.getProperty(OUTPUT_FILE_PROPERTY));
         }
+        layout = new StagingLayout(props);
     }
     
     /**
      * Calculate the name for a directory that will be used to store the 
      * output archive files.  Important note:  This method will return a 
      * different value for the archive directory every time it's called.
+     * The directory is placed according to the configured 
+     * <code>StagingLayout</code>.
      *   
      * @return A full path to an output directory.
      */
@@ -63,40 +72,50 @@ public class FileGenerator implements PDFMergeI {
         StringBuilder sb      = new StringBuilder();
         String        pathSep = System.getProperty("file.separator");
         
+        // Construct the unique directory name
+        StringBuilder name = new StringBuilder();
+        name.append(PREFIX);
+        name.append("_");
+        name.append(FileUtils.getHostName().trim());
+        name.append("_");
+        name.append(getUniqueToken());
+        
         sb.append(getStagingArea().toString());
         if (!sb.toString().endsWith(pathSep)) {
             sb.append(pathSep);
         }
-        
-        // Construct the unique directory name
-        sb.append(PREFIX);
-        sb.append("_");
-        sb.append(FileUtils.getHostName().trim());
-        sb.append("_");
-        sb.append(getUniqueToken());
-        
-        // If the calculated directory exists, recursively call 
-        // getOutputDirectory() until we find one that doesn't exist.
-        URI  dirPathUri = URIUtils.getInstance().getURI(sb.toString());
-        Path dirPath    = Paths.get(dirPathUri);
-        if (Files.exists(dirPath)) {
-            return getOutputDirectory();
+        String shard = getLayout().getShard(name.toString());
+        if (!shard.isEmpty()) {
+            sb.append(shard.replace("/", pathSep));
+            sb.append(pathSep);
         }
-        else {
-            Files.createDirectory(dirPath);
-            if (!Files.exists(dirPath)) {
-                LOGGER.error("Unable to create the output archive directory.  "
-                        + "Attempted to create [ " 
-                        + dirPathUri.toString()
-                        + " ].");
+        sb.append(name);
+        
+        // Create the directory.  If the calculated directory exists, 
+        // recursively call getOutputDirectory() until we find one that 
+        // doesn't exist.  Attempting the creation (rather than checking 
+        // for existence first) saves a round trip to the file system.
+        URI            dirPathUri = 
+                URIUtils.getInstance().getURI(sb.toString());
+        StorageBackend storage    = StorageFactory.get(dirPathUri);
+        try {
+            if (!shard.isEmpty()) {
+                storage.createDirectories(
+                        StorageFactory.getParent(dirPathUri));
             }
+            storage.createDirectory(dirPathUri);
+        }
+        catch (FileAlreadyExistsException faee) {
+            return getOutputDirectory();
         }
         return dirPathUri;
     }
     
     /**
      * Calculate a regular expression that can be used to search for 
-     * PDFMerge staging directories.  
+     * PDFMerge staging directories created by this host (see 
+     * <code>getOutputDirectory()</code>).  The host name is quoted as it 
+     * may contain characters that are significant in a regular expression.
      * 
      * @return A REGEX used to search for staging directories.
      */
@@ -104,7 +123,7 @@ public class FileGenerator implements PDFMergeI {
         StringBuilder sb = new StringBuilder();
         sb.append(PREFIX);
         sb.append("_");
-        sb.append(FileUtils.getHostName());
+        sb.append(Pattern.quote(FileUtils.getHostName().trim()));
         sb.append("_");
         sb.append("[A-Z0-9]{");
         sb.append(2*TOKEN_LENGTH);
@@ -129,20 +148,26 @@ public class FileGenerator implements PDFMergeI {
             sb.append(pathSep);
         }
         
+        sb.append(getOutputFileName(outputFile));
+        return URIUtils.getInstance().getURI(sb.toString());
+    }
+    
+    /**
+     * Calculate the name of the output file from the name suggested by 
+     * the client.
+     * 
+     * @param outputFile The suggested name of the output file (may be 
+     * null).
+     * @return The name of the output file.
+     */
+    public String getOutputFileName(String outputFile) {
         if ((outputFile == null) || (outputFile.isEmpty())) {
-            sb.append(getDefaultOutputFile());
+            return getDefaultOutputFile();
         }
-        else {
-            if (outputFile.endsWith(PDF_FILE_EXTENSION)) {
-                sb.append(outputFile);
-            }
-            else {
-                sb.append(
-                        FileUtils.removeExtensions(outputFile) + 
-                        PDF_FILE_EXTENSION);
-            }
+        else if (outputFile.endsWith(PDF_FILE_EXTENSION)) {
+            return outputFile;
         }
-        return URIUtils.getInstance().getURI(sb.toString());
+        return FileUtils.removeExtensions(outputFile) + PDF_FILE_EXTENSION;
     }
     
     /**
@@ -153,6 +178,15 @@ public class FileGenerator implements PDFMergeI {
         return defaultOutputFile;
     }
     
+    /**
+     * Getter method for the layout of the output directories.
+     * 
+     * @return The staging layout.
+     */
+    public StagingLayout getLayout() {
+        return layout;
+    }
+    
     /**
      * Getter method for the location of the staging area to be used.
      * 
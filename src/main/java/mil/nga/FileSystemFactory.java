@@ -1,27 +1,62 @@
 package mil.nga;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.file.FileSystemAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.upplication.s3fs.AmazonS3Factory;
+import com.upplication.s3fs.S3FileSystem;
 
 import mil.nga.PropertyLoader;
 import mil.nga.exceptions.PropertiesNotLoadedException;
 import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.PropertyUtils;
 
 /**
  * This class is responsible for ensuring that all required NIO2 file systems
  * are available.
  * 
+ * The S3 file system (and the S3 client it wraps) is created lazily the 
+ * first time it is needed.  If creation fails, later attempts are delayed
+ * by an exponentially increasing backoff rather than failing forever or 
+ * hammering S3.  Once started, a background task periodically checks 
+ * that S3 can be reached with the current client.  After a configurable 
+ * number of consecutive failures (e.g. a network outage or rotated 
+ * credentials) the file system and client are discarded and rebuilt.  
+ * The AWS credentials are read again each time the client is built, so 
+ * keys rotated in the properties file are picked up by the rebuild.  
+ * The replaced client is shut down after a grace period so requests 
+ * already using it can complete.
+ * 
+ * The client retries failed requests with exponential backoff and uses a
+ * connection pool sized for the merge concurrency (job, worker, upload 
+ * and metadata threads) unless a size is configured.
+ * 
  * @author L. Craig Carpenter
  */
 public class FileSystemFactory 
@@ -40,11 +75,96 @@ public class FileSystemFactory
     private static final String DEFAULT_S3_ENDPOINT = "s3.amazonaws.com";
     
     /**
-     * Flag indicating whether or not the S3 file system has been loaded.  This 
-     * was added to ensure that in any application the file system is loaded 
-     * once and only once.
+     * Delay (in ms) before the S3 file system is created again after the 
+     * first failure.  The delay doubles with each consecutive failure.
+     */
+    public static final long INITIAL_RETRY_DELAY_MS = 1000L;
+    
+    /**
+     * Maximum delay (in ms) between attempts to create the S3 file system.
+     */
+    public static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(2);
+    
+    /**
+     * How long (in ms) a replaced S3 client is kept open so requests 
+     * already using it can complete.
+     */
+    public static final long CLIENT_GRACE_PERIOD_MS = 
+            TimeUnit.MINUTES.toMillis(5);
+    
+    /**
+     * Error codes returned by S3 when the credentials of the client are no
+     * longer valid.  Any other error returned by S3 (e.g. access denied)
+     * shows S3 can be reached with the current credentials.
+     */
+    private static final Set<String> CREDENTIAL_ERRORS = new HashSet<String>(
+            Arrays.asList(
+                    "InvalidAccessKeyId", 
+                    "SignatureDoesNotMatch", 
+                    "ExpiredToken", 
+                    "InvalidToken", 
+                    "TokenRefreshRequired"));
+    
+    /**
+     * The current S3 file system (null until created or after it has been
+     * discarded).  This replaces a static, non-volatile flag that allowed 
+     * only one attempt to load the file system.
+     */
+    private volatile S3FileSystem s3FileSystem = null;
+    
+    /**
+     * Time before which the S3 file system will not be created again 
+     * following a failure, and the number of consecutive failures.
+     */
+    private long nextAttempt    = 0;
+    private int  failedAttempts = 0;
+    
+    /**
+     * S3 client settings.
+     */
+    private int maxConnections = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    private int maxRetries     = DEFAULT_S3_MAX_RETRIES;
+    
+    /**
+     * Health check settings.
+     */
+    private long   healthCheckInterval = DEFAULT_S3_HEALTH_CHECK_SECONDS;
+    private int    healthCheckFailures = DEFAULT_S3_HEALTH_CHECK_FAILURES;
+    private String healthCheckBucket   = null;
+    
+    /**
+     * Schedules the health checks (null until started).
+     */
+    private ScheduledExecutorService scheduler = null;
+    
+    /**
+     * Schedules the shutdown of replaced clients.  This is separate from 
+     * the health checks as a client may also be replaced when the health 
+     * checks are disabled (null until a client is replaced).
+     */
+    private ScheduledExecutorService retirements = null;
+    
+    /**
+     * Replaced clients that have not yet been shut down.
+     */
+    private final List<AmazonS3> retired = new ArrayList<AmazonS3>();
+    
+    /**
+     * How long (in ms) a replaced S3 client is kept open.
+     */
+    private long clientGracePeriod = CLIENT_GRACE_PERIOD_MS;
+    
+    /**
+     * Counters exposed through the service status.
      */
-    private static boolean s3FileSystemLoaded = false;
+    private volatile boolean healthy               = false;
+    private final AtomicLong initializations       = new AtomicLong(0);
+    private final AtomicLong failedInitializations = new AtomicLong(0);
+    private final AtomicLong reinitializations     = new AtomicLong(0);
+    private final AtomicLong probes                = new AtomicLong(0);
+    private final AtomicLong probeFailures         = new AtomicLong(0);
+    private final AtomicLong consecutiveFailures   = new AtomicLong(0);
+    private final AtomicLong lastProbeMillis       = new AtomicLong(0);
     
     /**
      * The IAM role that will be used to for authentication to AWS.
@@ -66,22 +186,21 @@ public class FileSystemFactory
      */
     private String s3EndPoint;
     
+    /**
+     * The properties supplied by unit tests, from which the credentials 
+     * are read again (null if the credentials are read again from the 
+     * properties file).
+     */
+    private Properties credentialSource = null;
+    
     /**
      * Default constructor used to load the required properties.
      */
     private FileSystemFactory() { 
         super(PROPERTY_FILE_NAME);
-        
-        String accessKey  = null;
-        String iamRole    = null;
-        String s3EndPoint = null;
-        String secretKey  = null;
-        
+        Properties props = null;
         try {
-            iamRole    = getProperty(IAM_ROLE_PROPERTY);
-            s3EndPoint = getProperty(S3_END_POINT_PROPERTY);
-            accessKey  = getProperty(ACCESS_KEY_PROPERTY);
-            secretKey  = getProperty(SECRET_KEY_PROPERTY);
+            props = getProperties();
         }
         catch (PropertiesNotLoadedException pnle) {
             LOGGER.warn("An unexpected PropertiesNotLoadedException " 
@@ -90,12 +209,144 @@ public class FileSystemFactory
                     + pnle.getMessage()
                     + " ].");
         }
-        setIAMRole(iamRole);
-        setAccessKey(accessKey);
-        setSecretKey(secretKey);
-        setS3EndPoint(s3EndPoint);
+        initialize(props);
     } 
     
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public FileSystemFactory(Properties props) {
+        credentialSource = props;
+        initialize(props);
+    }
+    
+    /**
+     * Read the AWS credentials and the S3 client and health check 
+     * settings.
+     * 
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
+        
+        setCredentials(props);
+        setS3EndPoint(PropertyUtils.getString(
+                props, 
+                S3_END_POINT_PROPERTY, 
+                null));
+        
+        // Size the connection pool so every thread that may access S3 at 
+        // the same time can hold a connection.
+        int workers = PropertyUtils.getInt(
+                props, 
+                WORKER_POOL_SIZE_PROPERTY, 
+                Runtime.getRuntime().availableProcessors());
+        int jobs    = PropertyUtils.getInt(
+                props, 
+                JOB_POOL_SIZE_PROPERTY, 
+                DEFAULT_JOB_POOL_SIZE);
+        int derived = Math.max(1, jobs) * (1 + Math.max(0, 
+                        PropertyUtils.getInt(
+                                props, 
+                                LOOKAHEAD_DEPTH_PROPERTY, 
+                                DEFAULT_LOOKAHEAD_DEPTH)))
+                + Math.max(1, workers)
+                + Math.max(1, PropertyUtils.getInt(
+                        props, 
+                        S3_UPLOAD_THREADS_PROPERTY, 
+                        DEFAULT_S3_UPLOAD_THREADS))
+                + Math.max(1, PropertyUtils.getInt(
+                        props, 
+                        STORAGE_METADATA_THREADS_PROPERTY, 
+                        DEFAULT_STORAGE_METADATA_THREADS));
+        maxConnections = PropertyUtils.getInt(
+                props, 
+                S3_MAX_CONNECTIONS_PROPERTY, 
+                0);
+        if (maxConnections <= 0) {
+            maxConnections = Math.max(
+                    ClientConfiguration.DEFAULT_MAX_CONNECTIONS, 
+                    derived);
+        }
+        maxRetries = Math.max(0, PropertyUtils.getInt(
+                props, 
+                S3_MAX_RETRIES_PROPERTY, 
+                DEFAULT_S3_MAX_RETRIES));
+        
+        healthCheckInterval = Math.max(0, PropertyUtils.getLong(
+                props, 
+                S3_HEALTH_CHECK_INTERVAL_PROPERTY, 
+                DEFAULT_S3_HEALTH_CHECK_SECONDS));
+        healthCheckFailures = Math.max(1, PropertyUtils.getInt(
+                props, 
+                S3_HEALTH_CHECK_FAILURES_PROPERTY, 
+                DEFAULT_S3_HEALTH_CHECK_FAILURES));
+        healthCheckBucket   = PropertyUtils.getString(
+                props, 
+                S3_HEALTH_CHECK_BUCKET_PROPERTY, 
+                null);
+    }
+    
+    /**
+     * Set the AWS credentials from the supplied properties.
+     * 
+     * @param props The system properties (may be null).
+     */
+    private void setCredentials(Properties props) {
+        setIAMRole(PropertyUtils.getString(props, IAM_ROLE_PROPERTY, null));
+        setAccessKey(PropertyUtils.getString(
+                props, 
+                ACCESS_KEY_PROPERTY, 
+                null));
+        setSecretKey(PropertyUtils.getString(
+                props, 
+                SECRET_KEY_PROPERTY, 
+                null));
+    }
+    
+    /**
+     * Read the AWS credentials again before a new S3 client is built so 
+     * that rotated keys are used.  The properties loaded at start up are 
+     * cached, so the properties file is read again from the classpath.  
+     * If it cannot be read, the credentials already held are kept.
+     */
+    protected void reloadCredentials() {
+        
+        Properties props = credentialSource;
+        if (props == null) {
+            try (InputStream stream = 
+                    FileSystemFactory.class
+                        .getClassLoader()
+                        .getResourceAsStream(getPropertyFileName())) {
+                if (stream == null) {
+                    LOGGER.warn("Unable to read properties file [ "
+                            + getPropertyFileName()
+                            + " ].  Using the AWS credentials already "
+                            + "loaded.");
+                    return;
+                }
+                props = new Properties();
+                props.load(stream);
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Unexpected IOException while reading the AWS "
+                        + "credentials from [ "
+                        + getPropertyFileName()
+                        + " ].  Using the credentials already loaded.  "
+                        + "Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+                return;
+            }
+        }
+        String previous = getAccessKey();
+        setCredentials(props);
+        if ((previous != null) && (!previous.equals(getAccessKey()))) {
+            LOGGER.info("AWS access key changed.  The new credentials "
+                    + "will be used by the S3 client.");
+        }
+    }
     
     /**
      * Method to list the available <code>FileSystemProvider</code> objects.
@@ -109,109 +360,450 @@ public class FileSystemFactory
     }
     
     /**
-     * Ensure that the S3 FileSystem provider is loaded and available.  Either 
-     * the IAM Role must be defined OR BOTH the access key and secret key must
-     * be defined.  
+     * Determine whether the AWS credentials have been configured.
+     * 
+     * @return True if either the IAM Role or BOTH the access key and 
+     * secret key are defined.
+     */
+    public boolean isS3Configured() {
+        return ((getIAMRole() != null) && (!getIAMRole().isEmpty())) ||
+                ((getAccessKey() != null) && (!getAccessKey().isEmpty()) && 
+                 (getSecretKey() != null) && (!getSecretKey().isEmpty()));
+    }
+    
+    /**
+     * Build the environment used to create the S3 file system, holding 
+     * the credentials and the client settings.  Either the IAM Role must 
+     * be defined OR BOTH the access key and secret key must be defined.
+     * 
+     * @return The file system environment.
+     * @throws IllegalStateException Thrown if the credentials are not 
+     * defined.
+     */
+    protected Map<String, ?> getS3Environment() throws IllegalStateException {
+        
+        ImmutableMap.Builder<String, Object> env = 
+                ImmutableMap.<String, Object> builder()
+                    .put(AmazonS3Factory.MAX_CONNECTIONS, 
+                        Integer.toString(maxConnections))
+                    .put(AmazonS3Factory.MAX_ERROR_RETRY, 
+                        Integer.toString(maxRetries));
+        
+        if ((getIAMRole() != null) && 
+                (!getIAMRole().isEmpty())) {
+            env.put(AmazonS3Factory.IAM_ROLE, getIAMRole());
+        }
+        else if ((getAccessKey() != null) && 
+                    (!getAccessKey().isEmpty()) && (getSecretKey() != null) && 
+                    (!getSecretKey().isEmpty())) {
+            env.put(AmazonS3Factory.ACCESS_KEY, getAccessKey());
+            env.put(AmazonS3Factory.SECRET_KEY, getSecretKey());
+        } 
+        else {
+            throw new IllegalStateException("AWS authentication "
+                    + "properties not defined.  Either [ "
+                    + IAM_ROLE_PROPERTY
+                    + " ] or BOTH [ "
+                    + ACCESS_KEY_PROPERTY 
+                    + " ] and [ "
+                    + SECRET_KEY_PROPERTY
+                    + " ] must be defined.");
+        }
+        return env.build();
+    }
+    
+    /**
+     * Ensure that the S3 FileSystem provider is loaded and available.  
+     * Failures are logged when the attempt is made (and not again during
+     * the backoff); the file system will be created again the next time 
+     * it is needed.
+     * 
+     * @throws IllegalStateException Thrown if the AWS credentials are not
+     * defined.
      */
     public void loadS3Filesystem() throws IllegalStateException {
+        try {
+            getS3FileSystem();
+        }
+        catch (IOException ioe) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(ioe.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Obtain the S3 file system, creating it if it does not exist.  Only 
+     * one thread creates the file system; other threads wait for it.  If 
+     * the last attempt to create it failed, no new attempt is made until 
+     * the backoff delay has expired.
+     * 
+     * @return The S3 file system.
+     * @throws IOException Thrown if the file system could not be created.
+     * @throws IllegalStateException Thrown if the AWS credentials are not
+     * defined.
+     */
+    public S3FileSystem getS3FileSystem() 
+            throws IOException, IllegalStateException {
+        S3FileSystem fileSystem = s3FileSystem;
+        if ((fileSystem != null) && (fileSystem.isOpen())) {
+            return fileSystem;
+        }
+        return createS3FileSystem();
+    }
+    
+    /**
+     * Create the S3 file system (and client) unless another thread has 
+     * already done so.
+     * 
+     * @return The S3 file system.
+     * @throws IOException Thrown if the file system could not be created.
+     * @throws IllegalStateException Thrown if the AWS credentials are not
+     * defined.
+     */
+    private synchronized S3FileSystem createS3FileSystem() 
+            throws IOException, IllegalStateException {
+        
+        if ((s3FileSystem != null) && (s3FileSystem.isOpen())) {
+            return s3FileSystem;
+        }
+        
+        long now = System.currentTimeMillis();
+        if (now < nextAttempt) {
+            throw new IOException("The S3 file system is not available.  "
+                    + "The next attempt to create it will be made in [ "
+                    + (nextAttempt - now)
+                    + " ] ms.");
+        }
         
-        String         uriString = "s3://" + getS3EndPoint() + "/";
-        Map<String, ?> env       = null;
+        reloadCredentials();
+        URI            uri = URI.create("s3://" + getS3EndPoint() + "/");
+        Map<String, ?> env = getS3Environment();
         
-        // Ensure the s3 filesystem is not already loaded.
-        if (!s3FileSystemLoaded) {
-            
-            LOGGER.info("Initializing the NIO2 S3 file system provider");
-            
-            if ((getIAMRole() != null) && 
-                    (!getIAMRole().isEmpty())) {
-                
-                env = ImmutableMap.<String, Object> builder()
-                        .put(com.upplication.s3fs.AmazonS3Factory.IAM_ROLE, 
-                            getIAMRole())
-                        .build();
+        LOGGER.info("Initializing the NIO2 S3 file system provider for [ "
+                + uri.toString()
+                + " ] with a pool of [ "
+                + maxConnections
+                + " ] connections and [ "
+                + maxRetries
+                + " ] retries.");
         
+        try {
+            S3FileSystem fileSystem;
+            try {
+                fileSystem = (S3FileSystem)FileSystems.newFileSystem(
+                        uri, 
+                        env, 
+                        Thread.currentThread().getContextClassLoader());
             }
-            else if ((getAccessKey() != null) && 
-                        (!getAccessKey().isEmpty()) && (getSecretKey() != null) && 
-                        (!getSecretKey().isEmpty())) {
-                
-                env = ImmutableMap.<String, Object> builder()
-                        .put(com.upplication.s3fs.AmazonS3Factory.ACCESS_KEY, 
-                            getAccessKey())
-                        .put(com.upplication.s3fs.AmazonS3Factory.SECRET_KEY, 
-                            getSecretKey())
-                        .build();
-                
-            } 
-            else {
-                throw new IllegalStateException("AWS authentication "
-                        + "properties not defined.  Either [ "
-                        + IAM_ROLE_PROPERTY
-                        + " ] or BOTH [ "
-                        + ACCESS_KEY_PROPERTY 
-                        + " ] and [ "
-                        + SECRET_KEY_PROPERTY
-                        + " ] must be defined.");
-                
+            catch (FileSystemAlreadyExistsException fsaee) {
+                // Created elsewhere (e.g. by a previous deployment).
+                fileSystem = (S3FileSystem)FileSystems.getFileSystem(uri);
             }
-            
-            if (env != null) {
-                
-                try {
-                    if (LOGGER.isDebugEnabled()) {
-                        
-                        StringBuilder sb   = new StringBuilder();
-                        Set<String>   keys = env.keySet();
-                        
-                        for (String key : keys) {
-                            sb.append(" Key => [ ");
-                            sb.append(key);
-                            sb.append(" ], Value => [ ");
-                            sb.append((String)env.get(key));
-                            sb.append(" ] ");
+            s3FileSystem   = fileSystem;
+            nextAttempt    = 0;
+            failedAttempts = 0;
+            healthy        = true;
+            initializations.incrementAndGet();
+            LOGGER.info("NIO2 s3 File System provider initialized "
+                    + "successfully.");
+            return fileSystem;
+        }
+        catch (IOException | RuntimeException e) {
+            long delay = Math.min(
+                    MAX_RETRY_DELAY_MS, 
+                    INITIAL_RETRY_DELAY_MS << Math.min(failedAttempts, 16));
+            failedAttempts++;
+            nextAttempt = System.currentTimeMillis() + delay;
+            healthy     = false;
+            failedInitializations.incrementAndGet();
+            // Logged once per attempt; callers arriving during the backoff
+            // are failed without logging.
+            String msg = "Unexpected exception while loading the "
+                    + "S3 filesystem provider.  The next attempt will be "
+                    + "made in [ "
+                    + delay
+                    + " ] ms.  Exception message => [ "
+                    + e.getMessage()
+                    + " ].";
+            LOGGER.warn(msg);
+            throw new IOException(msg, e);
+        }
+    }
+    
+    /**
+     * Discard a failed S3 file system and create a new one (with a new 
+     * client).  Nothing is done if the file system has already been 
+     * replaced.
+     * 
+     * @param failed The failed file system.
+     * @return True if the file system was replaced.
+     * @throws IOException Thrown if the new file system could not be 
+     * created.
+     */
+    public boolean reinitialize(S3FileSystem failed) throws IOException {
+        synchronized (this) {
+            if ((failed == null) || (s3FileSystem != failed)) {
+                return false;
+            }
+            LOGGER.warn("Rebuilding the S3 file system and client for [ "
+                    + getS3EndPoint()
+                    + " ].");
+            s3FileSystem   = null;
+            nextAttempt    = 0;
+            failedAttempts = 0;
+            reinitializations.incrementAndGet();
+            try {
+                failed.close();
+            }
+            catch (IOException ioe) { 
+                // Closing only unregisters the file system.
+            }
+            retire(failed.getClient());
+        }
+        getS3FileSystem();
+        return true;
+    }
+    
+    /**
+     * Shut down a replaced S3 client once the grace period has expired.
+     * 
+     * @param client The replaced client.
+     */
+    private synchronized void retire(final AmazonS3 client) {
+        Runnable shutdown = new Runnable() {
+            @Override
+            public void run() {
+                boolean pending;
+                synchronized (FileSystemFactory.this) {
+                    pending = retired.remove(client);
+                }
+                if (pending) {
+                    release(client);
+                }
+            }
+        };
+        retired.add(client);
+        if (retirements == null) {
+            retirements = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                        .setNameFormat("s3-client-retirement")
+                        .setDaemon(true)
+                        .build());
+        }
+        retirements.schedule(
+                shutdown, 
+                clientGracePeriod, 
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Setter method for how long a replaced S3 client is kept open.
+     * 
+     * @param value The grace period in milliseconds.
+     */
+    void setClientGracePeriod(long value) {
+        clientGracePeriod = Math.max(0, value);
+    }
+    
+    /**
+     * Start checking the connectivity to S3 periodically.  Called when 
+     * the application is deployed.
+     */
+    public synchronized void start() {
+        if (healthCheckInterval <= 0) {
+            LOGGER.info("S3 health checks are disabled.");
+            return;
+        }
+        if (!isS3Configured()) {
+            LOGGER.info("AWS authentication properties not defined.  S3 "
+                    + "health checks are disabled.");
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                        .setNameFormat("s3-health-check")
+                        .setDaemon(true)
+                        .build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            probe();
                         }
-                        LOGGER.debug("Initializing S3 filesystem with => "
-                                + sb.toString());
-                    }
-                    
-                    // Add the s3 file system provider
-                    FileSystems.newFileSystem(
-                        new URI(uriString), 
-                        env, 
-                        Thread.currentThread().getContextClassLoader());
-                    
-                    // If no exceptions, the file system provider was loaded 
-                    // successfully.
-                    s3FileSystemLoaded = true;
-                    
-                    LOGGER.info("NIO2 s3 File System provider initialized successfully.");
-                    
-                } 
-                catch (IOException ioe) {
-                    LOGGER.error("Unexpected IOException while loading the "
-                            + "S3 filesystem provider.  Exception "
-                            + "message => [ "
-                            + ioe.getMessage()
+                    },
+                    healthCheckInterval,
+                    healthCheckInterval,
+                    TimeUnit.SECONDS);
+            LOGGER.info("S3 health checks started with an interval of [ "
+                    + healthCheckInterval
+                    + " ] seconds.  The S3 client is rebuilt after [ "
+                    + healthCheckFailures
+                    + " ] consecutive failures.");
+        }
+    }
+    
+    /**
+     * Stop the health checks and release the S3 file system and client,
+     * along with any replaced clients still in their grace period.  
+     * Called when the application is undeployed.
+     */
+    public void shutdown() {
+        S3FileSystem   fileSystem;
+        List<AmazonS3> clients;
+        synchronized (this) {
+            if (scheduler != null) {
+                LOGGER.info("Shutting down the S3 health checks.");
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+            if (retirements != null) {
+                retirements.shutdownNow();
+                retirements = null;
+            }
+            clients = new ArrayList<AmazonS3>(retired);
+            retired.clear();
+            fileSystem   = s3FileSystem;
+            s3FileSystem = null;
+        }
+        if (fileSystem != null) {
+            try {
+                fileSystem.close();
+            }
+            catch (IOException ioe) { 
+                // Closing only unregisters the file system.
+            }
+            release(fileSystem.getClient());
+        }
+        for (AmazonS3 client : clients) {
+            release(client);
+        }
+    }
+    
+    /**
+     * Release the connection pool of an S3 client.
+     * 
+     * @param client The client to shut down.
+     */
+    protected void release(AmazonS3 client) {
+        if (client instanceof AmazonWebServiceClient) {
+            try {
+                ((AmazonWebServiceClient)client).shutdown();
+            }
+            catch (RuntimeException re) {
+                LOGGER.warn("Unexpected exception while shutting down an "
+                        + "S3 client.  Exception message => [ "
+                        + re.getMessage()
+                        + " ].");
+            }
+        }
+    }
+    
+    /**
+     * Check that S3 can be reached with the current client, creating the
+     * file system if it does not exist and rebuilding it once the 
+     * configured number of consecutive checks have failed.
+     * 
+     * @return True if S3 could be reached.
+     */
+    public boolean probe() {
+        
+        long start = System.currentTimeMillis();
+        probes.incrementAndGet();
+        
+        S3FileSystem fileSystem = s3FileSystem;
+        try {
+            if ((fileSystem == null) || (!fileSystem.isOpen())) {
+                fileSystem = getS3FileSystem();
+            }
+            check(fileSystem.getClient());
+            consecutiveFailures.set(0);
+            healthy = true;
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            long failures = consecutiveFailures.incrementAndGet();
+            probeFailures.incrementAndGet();
+            healthy = false;
+            LOGGER.warn("S3 health check failed ([ "
+                    + failures
+                    + " ] consecutive failures).  Exception message => [ "
+                    + e.getMessage()
+                    + " ].");
+            if ((fileSystem != null) && (failures >= healthCheckFailures)) {
+                consecutiveFailures.set(0);
+                try {
+                    reinitialize(fileSystem);
+                }
+                catch (IOException | RuntimeException re) {
+                    LOGGER.error("Unable to rebuild the S3 file system.  "
+                            + "Exception message => [ "
+                            + re.getMessage()
                             + " ].");
                 }
-                // URISyntaxException cannot happen because we're converting a 
-                // static String.  Just eat the exception.
-                catch (URISyntaxException use) { }
+            }
+            return false;
+        }
+        finally {
+            lastProbeMillis.set(System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * Issue a lightweight request to S3.  An error response other than a 
+     * server or credential error shows S3 was reached with valid 
+     * credentials (e.g. the account may not be allowed to list buckets), 
+     * so it is not treated as a failure.
+     * 
+     * @param client The S3 client to check.
+     * @throws AmazonClientException Thrown if S3 could not be reached or 
+     * rejected the credentials.
+     */
+    private void check(AmazonS3 client) throws AmazonClientException {
+        try {
+            if (healthCheckBucket != null) {
+                client.headBucket(new HeadBucketRequest(healthCheckBucket));
             }
             else {
-                LOGGER.error("Unexpected situation encountered in which the "
-                        + "Map object used to authenticate to AWS is "
-                        + "null.  Unable to load the S3 file system.");
+                client.getS3AccountOwner();
             }
         }
-        else {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("s3 file system provider already loaded.");
+        catch (AmazonServiceException ase) {
+            if ((ase.getStatusCode() >= 500) || 
+                    (CREDENTIAL_ERRORS.contains(ase.getErrorCode()))) {
+                throw ase;
             }
         }
     }
     
+    /**
+     * Obtain the S3 lifecycle statistics.
+     * 
+     * @return The current S3 health status.
+     */
+    public S3HealthStatus getStatus() {
+        S3HealthStatus status = new S3HealthStatus();
+        status.setInitialized(s3FileSystem != null);
+        status.setHealthy(healthy);
+        status.setMaxConnections(maxConnections);
+        status.setInitializations(initializations.get());
+        status.setFailedInitializations(failedInitializations.get());
+        status.setReinitializations(reinitializations.get());
+        status.setProbes(probes.get());
+        status.setProbeFailures(probeFailures.get());
+        status.setConsecutiveFailures(consecutiveFailures.get());
+        status.setLastProbeMillis(lastProbeMillis.get());
+        return status;
+    }
+    
+    /**
+     * Getter method for the size of the S3 connection pool.
+     * @return The maximum number of S3 connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
     /**
      * Getter method for the access key that will be used for authentication to
      * AWS.
@@ -0,0 +1,220 @@
+package mil.nga;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Class responsible for choosing the PDFBox memory settings used by a
+ * single merge request.  The policy is configured per deployment:
+ * <li><code>main</code> The merge is held entirely on the heap (the
+ * original behavior).</li>
+ * <li><code>mixed</code> Up to a fixed share of the current heap headroom
+ * is used, overflowing to the scratch directory.</li>
+ * <li><code>temp</code> All buffers are held in the scratch directory.</li>
+ * <li><code>auto</code> The mode is chosen per request based on the total
+ * size of the input files and the heap headroom at that moment.</li>
+ *
+ * @author L. Craig Carpenter
+ */
+public class MemoryPolicy implements PDFMergeI {
+
+    /**
+     * Static logger for use throughout the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MemoryPolicy.class);
+
+    /**
+     * Policy keeping the entire merge on the heap.
+     */
+    public static final String POLICY_MAIN = "main";
+
+    /**
+     * Policy using a bounded amount of heap with overflow to disk.
+     */
+    public static final String POLICY_MIXED = "mixed";
+
+    /**
+     * Policy keeping the entire merge on disk.
+     */
+    public static final String POLICY_TEMP = "temp";
+
+    /**
+     * Policy choosing the memory mode per request.
+     */
+    public static final String POLICY_AUTO = "auto";
+
+    /**
+     * Below this amount of heap headroom (bytes) the automatic policy will
+     * not use the heap at all.
+     */
+    private static final long MIN_HEAP_HEADROOM = 64L * 1024L * 1024L;
+
+    /**
+     * The configured policy.
+     */
+    private String policy = POLICY_AUTO;
+
+    /**
+     * Fraction of the current heap headroom that a single merge may use.
+     */
+    private double heapFraction = DEFAULT_MEMORY_HEAP_FRACTION;
+
+    /**
+     * Default constructor used to extract the policy from the input
+     * Properties object.
+     *
+     * @param props System properties object.
+     */
+    public MemoryPolicy(Properties props) {
+        setPolicy(PropertyUtils.getString(
+                props,
+                MEMORY_POLICY_PROPERTY,
+                POLICY_AUTO));
+        setHeapFraction(PropertyUtils.getDouble(
+                props,
+                MEMORY_HEAP_FRACTION_PROPERTY,
+                DEFAULT_MEMORY_HEAP_FRACTION));
+    }
+
+    /**
+     * Calculate the number of bytes currently available on the heap,
+     * including the amount the heap may still grow.
+     *
+     * @return Available heap in bytes.
+     */
+    public static long getHeapHeadroom() {
+        Runtime runtime = Runtime.getRuntime();
+        long    used    = runtime.totalMemory() - runtime.freeMemory();
+        return Math.max(0, runtime.maxMemory() - used);
+    }
+
+    /**
+     * Choose the memory settings for a merge request.
+     *
+     * @param inputBytes Total size of the input files in bytes.  The
+     * merged output holds a copy of every input so this is used as the
+     * estimate of the working set.
+     * @param scratchDir The per-request scratch directory (may be null).
+     * @param quota Maximum number of bytes that may be written to the
+     * scratch directory.
+     * @return The memory settings.
+     */
+    public MemoryUsageSetting select(
+            long inputBytes,
+            File scratchDir,
+            long quota) {
+
+        MemoryUsageSetting setting  = null;
+        String             mode     = policy;
+        long               headroom = getHeapHeadroom();
+        long               budget   = (long)(headroom * heapFraction);
+
+        if (mode.equals(POLICY_AUTO)) {
+            if (inputBytes <= budget) {
+                mode = POLICY_MAIN;
+            }
+            else if (headroom < MIN_HEAP_HEADROOM) {
+                mode = POLICY_TEMP;
+            }
+            else {
+                mode = POLICY_MIXED;
+            }
+        }
+
+        if (mode.equals(POLICY_MAIN)) {
+            setting = MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        else if (mode.equals(POLICY_TEMP)) {
+            setting = MemoryUsageSetting.setupTempFileOnly(quota);
+        }
+        else {
+            setting = MemoryUsageSetting.setupMixed(Math.max(1, budget), quota);
+        }
+        if (scratchDir != null) {
+            setting.setTempDir(scratchDir);
+        }
+
+        LOGGER.info("Memory policy [ "
+                + policy
+                + " ] selected mode [ "
+                + mode
+                + " ] for input size [ "
+                + FileUtils.humanReadableByteCount(inputBytes, false)
+                + " ] with heap headroom [ "
+                + FileUtils.humanReadableByteCount(headroom, false)
+                + " ].  Settings => [ "
+                + setting.toString()
+                + " ].");
+        return setting;
+    }
+
+    /**
+     * Getter method for the configured policy.
+     * @return The configured policy.
+     */
+    public String getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Getter method for the share of the heap headroom a merge may use.
+     * @return Fraction between 0 and 1.
+     */
+    public double getHeapFraction() {
+        return heapFraction;
+    }
+
+    /**
+     * Setter method for the share of the heap headroom a merge may use.
+     * @param value Fraction between 0 and 1.
+     */
+    public void setHeapFraction(double value) {
+        if ((value > 0) && (value <= 1)) {
+            heapFraction = value;
+        }
+        else {
+            LOGGER.warn("Invalid value for property [ "
+                    + MEMORY_HEAP_FRACTION_PROPERTY
+                    + " ] => [ "
+                    + value
+                    + " ].  Using the default value [ "
+                    + DEFAULT_MEMORY_HEAP_FRACTION
+                    + " ].");
+            heapFraction = DEFAULT_MEMORY_HEAP_FRACTION;
+        }
+    }
+
+    /**
+     * Setter method for the configured policy.  Unrecognized values
+     * revert to the automatic policy.
+     * @param value The policy.
+     */
+    public void setPolicy(String value) {
+        String candidate = (value == null) ? "" : value.trim().toLowerCase();
+        if (candidate.equals(POLICY_MAIN) ||
+                candidate.equals(POLICY_MIXED) ||
+                candidate.equals(POLICY_TEMP) ||
+                candidate.equals(POLICY_AUTO)) {
+            policy = candidate;
+        }
+        else {
+            LOGGER.warn("Invalid value for property [ "
+                    + MEMORY_POLICY_PROPERTY
+                    + " ] => [ "
+                    + value
+                    + " ].  Using [ "
+                    + POLICY_AUTO
+                    + " ].");
+            policy = POLICY_AUTO;
+        }
+    }
+}
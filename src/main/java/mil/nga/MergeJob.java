@@ -0,0 +1,273 @@
+package mil.nga;
+
+/**
+ * Holds the state of a single asynchronous merge job.  The state is
+ * written by the thread executing the job and read by the threads
+ * servicing status requests, so all mutable fields are volatile.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeJob {
+
+    /**
+     * Possible states of a merge job.
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETE,
+        FAILED,
+        CANCELLED;
+
+        /**
+         * Determine whether the state is terminal.
+         * @return True if the job will not change state again.
+         */
+        public boolean isFinished() {
+            return (this == COMPLETE) || (this == FAILED) || (this == CANCELLED);
+        }
+    }
+
+    /**
+     * Unique identifier of the job.
+     */
+    private final String jobId;
+
+    /**
+     * The client merge request.
+     */
+    private final MergeRequest request;
+
+    /**
+     * Time (ms) the job was submitted.
+     */
+    private final long submitTime;
+
+    /**
+     * Current state of the job.
+     */
+    private volatile State state = State.QUEUED;
+
+    /**
+     * Time (ms) the job started running (zero if not started).
+     */
+    private volatile long startTime = 0;
+
+    /**
+     * Time (ms) the job finished (zero if not finished).
+     */
+    private volatile long finishTime = 0;
+
+    /**
+     * The factory performing the merge (null until the job starts).
+     */
+    private volatile PDFFactory factory = null;
+
+    /**
+     * URL of the merged output (set when the job completes).
+     */
+    private volatile String url = null;
+
+    /**
+     * Number of input files merged (set when the job completes).
+     */
+    private volatile int mergedFiles = 0;
+
+    /**
+     * Error message (set when the job fails).
+     */
+    private volatile String message = null;
+
+    /**
+     * Constructor.
+     *
+     * @param jobId Unique identifier of the job.
+     * @param request The client merge request.
+     */
+    public MergeJob(String jobId, MergeRequest request) {
+        this.jobId      = jobId;
+        this.request    = request;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Record that the job started running.
+     *
+     * @param value The factory performing the merge.
+     * @return False if the job was cancelled before it started.
+     */
+    public synchronized boolean start(PDFFactory value) {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        factory   = value;
+        startTime = System.currentTimeMillis();
+        state     = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Record that the job completed successfully.
+     * @param value URL of the merged output.
+     * @param merged Number of input files merged.
+     */
+    public synchronized void complete(String value, int merged) {
+        if (!state.isFinished()) {
+            url         = value;
+            mergedFiles = merged;
+            finish(State.COMPLETE);
+        }
+    }
+
+    /**
+     * Record that the job failed.
+     * @param value The error message.
+     */
+    public synchronized void fail(String value) {
+        if (!state.isFinished()) {
+            message = value;
+            finish(State.FAILED);
+        }
+    }
+
+    /**
+     * Cancel the job.  A queued job will not be started, a running job is
+     * interrupted through <code>PDFFactory.cancel()</code>.
+     *
+     * @return False if the job had already finished.
+     */
+    public boolean cancel() {
+        PDFFactory running = null;
+        synchronized (this) {
+            if (state.isFinished()) {
+                return false;
+            }
+            running = factory;
+            message = "The job was cancelled by the client.";
+            finish(State.CANCELLED);
+        }
+        if (running != null) {
+            running.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Move the job into a terminal state.
+     * @param value The terminal state.
+     */
+    private void finish(State value) {
+        finishTime = System.currentTimeMillis();
+        factory    = null;
+        state      = value;
+    }
+
+    /**
+     * Getter method for the job identifier.
+     * @return The job identifier.
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Getter method for the time the job finished.
+     * @return Time in milliseconds (zero if not finished).
+     */
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * Getter method for the error message.
+     * @return The error message (may be null).
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Getter method for the client merge request.
+     * @return The merge request.
+     */
+    public MergeRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Getter method for the time the job started running.
+     * @return Time in milliseconds (zero if not started).
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Getter method for the current state of the job.
+     * @return The job state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Getter method for the time the job was submitted.
+     * @return Time in milliseconds.
+     */
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * Getter method for the URL of the merged output.
+     * @return The URL (null unless the job completed).
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /**
+     * Build a snapshot of the status of the job suitable for returning to
+     * the client.
+     *
+     * @return The job status.
+     */
+    public MergeJobStatus getStatus() {
+
+        MergeJobStatus status  = new MergeJobStatus();
+        long           now     = System.currentTimeMillis();
+        long           started = startTime;
+        long           ended   = finishTime;
+        State          current = state;
+
+        status.setJobId(jobId);
+        status.setState(current.name());
+        status.setMessage(message);
+        status.setInputFiles(request.getFiles() == null ?
+                0 : request.getFiles().size());
+        if (started > 0) {
+            status.setQueueTime(started - submitTime);
+            status.setRunTime((ended > 0 ? ended : now) - started);
+        }
+        else {
+            status.setQueueTime((ended > 0 ? ended : now) - submitTime);
+        }
+
+        if (current == State.COMPLETE) {
+            status.setMergedFiles(mergedFiles);
+            status.setProgress(100);
+        }
+        else {
+            PDFFactory   running = factory;
+            MergeMetrics metrics = (running == null) ?
+                    null : running.getActiveMetrics();
+            if ((metrics != null) && (metrics.getInputCount() > 0)) {
+                status.setMergedFiles(metrics.getMergedCount());
+                status.setProgress(
+                        (100 * metrics.getMergedCount())
+                        / metrics.getInputCount());
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,392 @@
+package mil.nga;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PDFException;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Executes merge requests asynchronously so that large merges do not tie
+ * up the container request threads.  Jobs are executed by a fixed number
+ * of threads fed by a bounded queue.  When the queue is full new jobs are
+ * rejected rather than queued.  Jobs cancelled while queued are removed
+ * from the queue so they no longer count against its capacity.  Finished 
+ * jobs are retained for a
+ * configurable period so that clients can retrieve the result, after
+ * which they are discarded.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeJobService
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MergeJobService.class);
+
+    /**
+     * How long (ms) a job waits for admission before checking whether it 
+     * has been cancelled.
+     */
+    private static final long ADMISSION_POLL_INTERVAL = 1000L;
+
+    /**
+     * The underlying executor.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Jobs that have been submitted and not yet discarded.
+     */
+    private final ConcurrentHashMap<String, MergeJob> jobs =
+            new ConcurrentHashMap<String, MergeJob>();
+
+    /**
+     * Executor tasks of the jobs that have not yet started, used to remove
+     * cancelled jobs from the queue.
+     */
+    private final ConcurrentHashMap<String, Runnable> tasks =
+            new ConcurrentHashMap<String, Runnable>();
+
+    /**
+     * How long (ms) finished jobs are retained.
+     */
+    private long retention;
+
+    /**
+     * The system properties used to construct the merge factories.
+     */
+    private Properties props = null;
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private MergeJobService() {
+        super(PROPERTY_FILE_NAME);
+
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        initialize();
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public MergeJobService(Properties props) {
+        this.props = props;
+        initialize();
+    }
+
+    /**
+     * Read the pool, queue and retention settings and create the 
+     * executor.
+     */
+    private void initialize() {
+
+        int poolSize = Math.max(1, PropertyUtils.getInt(
+                props,
+                JOB_POOL_SIZE_PROPERTY,
+                DEFAULT_JOB_POOL_SIZE));
+        int queueSize = Math.max(1, PropertyUtils.getInt(
+                props,
+                JOB_QUEUE_SIZE_PROPERTY,
+                DEFAULT_JOB_QUEUE_SIZE));
+        retention = TimeUnit.MINUTES.toMillis(Math.max(1, PropertyUtils.getLong(
+                props,
+                JOB_RETENTION_PROPERTY,
+                DEFAULT_JOB_RETENTION_MINUTES)));
+
+        executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("merge-job-%d")
+                    .setDaemon(true)
+                    .build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("Merge job service initialized with [ "
+                + poolSize
+                + " ] threads and a queue of [ "
+                + queueSize
+                + " ] jobs.");
+    }
+
+    /**
+     * Return a singleton instance to the MergeJobService object.
+     * @return The MergeJobService
+     */
+    public static MergeJobService getInstance() {
+        return MergeJobServiceHolder.getSingleton();
+    }
+
+    /**
+     * Submit a merge request for asynchronous execution.
+     *
+     * @param request The client merge request.
+     * @return The job.
+     * @throws RejectedExecutionException Thrown if the queue is full.
+     */
+    public MergeJob submit(MergeRequest request) {
+
+        purgeFinishedJobs();
+
+        final MergeJob job = new MergeJob(
+                UUID.randomUUID().toString(),
+                request);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                tasks.remove(job.getJobId());
+                execute(job);
+            }
+        };
+        jobs.put(job.getJobId(), job);
+        tasks.put(job.getJobId(), task);
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ree) {
+            jobs.remove(job.getJobId());
+            tasks.remove(job.getJobId());
+            LOGGER.warn("Merge job rejected, the job queue is full.  "
+                    + "Queued jobs [ "
+                    + executor.getQueue().size()
+                    + " ].");
+            throw ree;
+        }
+        LOGGER.info("Merge job [ "
+                + job.getJobId()
+                + " ] submitted.  Queued jobs [ "
+                + executor.getQueue().size()
+                + " ].");
+        return job;
+    }
+
+    /**
+     * Perform the merge associated with a job.
+     *
+     * @param job The job to execute.
+     */
+    private void execute(MergeJob job) {
+
+        PDFFactory pdfFact = new PDFFactory(props);
+        if (!job.start(pdfFact)) {
+            return;
+        }
+        
+        // Jobs share the admission control budget with the synchronous 
+        // requests.  Rather than being rejected they wait for capacity, 
+        // checking periodically whether the job was cancelled.
+        AdmissionController.Permit permit = null;
+        long cost = AdmissionController.getInstance().estimateCost(
+                job.getRequest().getFiles());
+        while ((permit == null) && (!job.getState().isFinished())) {
+            permit = AdmissionController.getInstance().acquire(
+                    cost, 
+                    ADMISSION_POLL_INTERVAL);
+            if (Thread.currentThread().isInterrupted()) {
+                job.fail("The merge job service is shutting down.");
+            }
+        }
+        if (permit == null) {
+            return;
+        }
+        
+        try {
+            URI output = pdfFact.merge(job.getRequest());
+            if (output != null) {
+                MergeMetrics metrics = pdfFact.getActiveMetrics();
+                job.complete(
+                        new UrlGenerator(props).toURL(output),
+                        metrics == null ? 0 : metrics.getMergedCount());
+            }
+            else {
+                job.fail("The merge did not produce an output file.");
+            }
+        }
+        catch (PDFException pe) {
+            job.fail(pe.getMessage());
+        }
+        catch (RuntimeException re) {
+            LOGGER.error("Unexpected exception encountered while executing "
+                    + "merge job [ "
+                    + job.getJobId()
+                    + " ].  Exception message => [ "
+                    + re.getMessage()
+                    + " ].", re);
+            job.fail("Unexpected error encountered while merging the "
+                    + "requested files.");
+        }
+        finally {
+            permit.close();
+        }
+        LOGGER.info("Merge job [ "
+                + job.getJobId()
+                + " ] finished with state [ "
+                + job.getState()
+                + " ].");
+    }
+
+    /**
+     * Look up a job.
+     *
+     * @param jobId The job identifier.
+     * @return The job, or null if it is unknown or has been discarded.
+     */
+    public MergeJob getJob(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Cancel a job.  A job that has not yet started is also removed from
+     * the executor queue.
+     *
+     * @param jobId The job identifier.
+     * @return The job, or null if it is unknown.
+     */
+    public MergeJob cancel(String jobId) {
+        MergeJob job = getJob(jobId);
+        if ((job != null) && (job.cancel())) {
+            Runnable task = tasks.remove(jobId);
+            if ((task != null) && (executor.remove(task))) {
+                LOGGER.info("Merge job [ "
+                        + jobId
+                        + " ] cancelled and removed from the queue.  "
+                        + "Queued jobs [ "
+                        + executor.getQueue().size()
+                        + " ].");
+            }
+            else {
+                LOGGER.info("Merge job [ "
+                        + jobId
+                        + " ] cancelled.");
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Discard finished jobs that are older than the retention period.
+     */
+    private void purgeFinishedJobs() {
+        purgeFinishedJobs(System.currentTimeMillis());
+    }
+
+    /**
+     * Discard jobs that finished before the retention period preceding 
+     * the supplied time.
+     *
+     * @param now The current time (ms).
+     */
+    void purgeFinishedJobs(long now) {
+        long cutoff = now - retention;
+        Iterator<MergeJob> iter = jobs.values().iterator();
+        while (iter.hasNext()) {
+            MergeJob job = iter.next();
+            if ((job.getState().isFinished()) &&
+                    (job.getFinishTime() < cutoff)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of jobs waiting to start.
+     * @return The number of queued jobs.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Getter method for the retention period of finished jobs.
+     * @return Time in milliseconds.
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * Getter method for the number of jobs currently running.
+     * @return The number of running jobs.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stop accepting jobs and cancel the running jobs.  Called when the
+     * application is undeployed.
+     */
+    public void shutdown() {
+        LOGGER.info("Shutting down the merge job service.");
+        executor.shutdownNow();
+        for (MergeJob job : jobs.values()) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MergeJobServiceHolder {
+
+        /**
+         * Reference to the Singleton instance of the MergeJobService
+         */
+        private static MergeJobService _instance = new MergeJobService();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * MergeJobService.
+         *
+         * @return The singleton instance of the MergeJobService.
+         */
+        public static MergeJobService getSingleton() {
+            return _instance;
+        }
+    }
+}
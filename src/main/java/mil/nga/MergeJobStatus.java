@@ -0,0 +1,175 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the status of an asynchronous merge job to
+ * the client.  The class contains annotations for constructing JSON
+ * output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MergeJobStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -2273051148916472337L;
+
+    private String jobId      = null;
+    private String state      = null;
+    private String message    = null;
+    private int    progress   = 0;
+    private int    inputFiles = 0;
+    private int    merged     = 0;
+    private long   queueTime  = 0;
+    private long   runTime    = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public MergeJobStatus() {}
+
+    /**
+     * Getter method for the job identifier.
+     * @return The job identifier.
+     */
+    @JsonProperty(value="job_id")
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Getter method for the number of input files in the request.
+     * @return The number of input files.
+     */
+    @JsonProperty(value="input_files")
+    public int getInputFiles() {
+        return inputFiles;
+    }
+
+    /**
+     * Getter method for the number of input files merged so far.
+     * @return The number of merged files.
+     */
+    @JsonProperty(value="merged_files")
+    public int getMergedFiles() {
+        return merged;
+    }
+
+    /**
+     * Getter method for the error message associated with a failed or
+     * cancelled job.
+     * @return The error message (may be null).
+     */
+    @JsonProperty(value="message")
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Getter method for the percentage of input files merged.
+     * @return Progress between 0 and 100.
+     */
+    @JsonProperty(value="progress")
+    public int getProgress() {
+        return progress;
+    }
+
+    /**
+     * Getter method for the time the job spent waiting in the queue.
+     * @return Time in milliseconds.
+     */
+    @JsonProperty(value="queue_time_ms")
+    public long getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Getter method for the time the job has been (or was) running.
+     * @return Time in milliseconds.
+     */
+    @JsonProperty(value="run_time_ms")
+    public long getRunTime() {
+        return runTime;
+    }
+
+    /**
+     * Getter method for the job state.
+     * @return The job state.
+     */
+    @JsonProperty(value="state")
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Setter method for the job identifier.
+     * @param value The job identifier.
+     */
+    public void setJobId(String value) {
+        jobId = value;
+    }
+
+    /**
+     * Setter method for the number of input files in the request.
+     * @param value The number of input files.
+     */
+    public void setInputFiles(int value) {
+        inputFiles = value;
+    }
+
+    /**
+     * Setter method for the number of input files merged so far.
+     * @param value The number of merged files.
+     */
+    public void setMergedFiles(int value) {
+        merged = value;
+    }
+
+    /**
+     * Setter method for the error message.
+     * @param value The error message.
+     */
+    public void setMessage(String value) {
+        message = value;
+    }
+
+    /**
+     * Setter method for the percentage of input files merged.
+     * @param value Progress between 0 and 100.
+     */
+    public void setProgress(int value) {
+        progress = value;
+    }
+
+    /**
+     * Setter method for the time the job spent waiting in the queue.
+     * @param value Time in milliseconds.
+     */
+    public void setQueueTime(long value) {
+        queueTime = value;
+    }
+
+    /**
+     * Setter method for the time the job has been running.
+     * @param value Time in milliseconds.
+     */
+    public void setRunTime(long value) {
+        runTime = value;
+    }
+
+    /**
+     * Setter method for the job state.
+     * @param value The job state.
+     */
+    public void setState(String value) {
+        state = value;
+    }
+}
@@ -0,0 +1,283 @@
+package mil.nga;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple class used to collect the per-stage timing information associated
+ * with a single merge operation.  The parse stage may execute on multiple
+ * threads simultaneously so the associated counter is thread-safe.  All
+ * other stages execute on the thread that requested the merge.  The input
+ * and merged counts may be read by other threads to report progress.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeMetrics {
+
+    /**
+     * Number of input files supplied by the client.
+     */
+    private volatile int inputCount = 0;
+
+    /**
+     * Number of input files that were valid and appended to the output.
+     */
+    private volatile int mergedCount = 0;
+
+    /**
+     * The number of documents parsed ahead of the document being appended.
+     */
+    private int lookaheadDepth = 0;
+
+    /**
+     * Maximum number of input documents open at the same time.  Zero 
+     * indicates the windowed merge was not used.
+     */
+    private int windowSize = 0;
+
+    /**
+     * Number of input documents currently open.
+     */
+    private final AtomicInteger openDocuments = new AtomicInteger(0);
+
+    /**
+     * The largest number of input documents open at the same time.
+     */
+    private final AtomicInteger peakOpenDocuments = new AtomicInteger(0);
+
+    /**
+     * Accumulated time (ms) spent parsing input documents.  Parsing occurs
+     * in parallel, so this value may exceed the total elapsed time.
+     */
+    private final AtomicLong parseTime = new AtomicLong(0);
+
+    /**
+     * Accumulated time (ms) the merge thread spent waiting for the next
+     * input document to become available.
+     */
+    private long waitTime = 0;
+
+    /**
+     * Accumulated time (ms) spent appending documents to the output.
+     */
+    private long appendTime = 0;
+
+    /**
+     * Time (ms) spent writing the output document.
+     */
+    private long saveTime = 0;
+
+    /**
+     * Total elapsed time (ms) of the merge operation.
+     */
+    private long totalTime = 0;
+
+    /**
+     * Add to the accumulated parse time.
+     * @param millis Time in milliseconds.
+     */
+    public void addParseTime(long millis) {
+        parseTime.addAndGet(millis);
+    }
+
+    /**
+     * Add to the accumulated wait time.
+     * @param millis Time in milliseconds.
+     */
+    public void addWaitTime(long millis) {
+        waitTime += millis;
+    }
+
+    /**
+     * Add to the accumulated append time.
+     * @param millis Time in milliseconds.
+     */
+    public void addAppendTime(long millis) {
+        appendTime += millis;
+    }
+
+    /**
+     * Record that an input document was opened.
+     */
+    public void documentOpened() {
+        int open = openDocuments.incrementAndGet();
+        int peak = peakOpenDocuments.get();
+        while ((open > peak) && 
+                (!peakOpenDocuments.compareAndSet(peak, open))) {
+            peak = peakOpenDocuments.get();
+        }
+    }
+
+    /**
+     * Record that an input document was closed.
+     */
+    public void documentClosed() {
+        openDocuments.decrementAndGet();
+    }
+
+    /**
+     * Increment the number of documents merged.
+     */
+    public void incrementMergedCount() {
+        mergedCount++;
+    }
+
+    /**
+     * Getter method for the accumulated append time.
+     * @return Time in milliseconds.
+     */
+    public long getAppendTime() {
+        return appendTime;
+    }
+
+    /**
+     * Getter method for the number of input files.
+     * @return The number of input files.
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Getter method for the look-ahead depth.
+     * @return The look-ahead depth.
+     */
+    public int getLookaheadDepth() {
+        return lookaheadDepth;
+    }
+
+    /**
+     * Getter method for the number of documents merged.
+     * @return The number of documents merged.
+     */
+    public int getMergedCount() {
+        return mergedCount;
+    }
+
+    /**
+     * Getter method for the number of input documents currently open.
+     * @return The number of open documents.
+     */
+    public int getOpenDocuments() {
+        return openDocuments.get();
+    }
+
+    /**
+     * Getter method for the largest number of input documents open at the
+     * same time.
+     * @return The peak number of open documents.
+     */
+    public int getPeakOpenDocuments() {
+        return peakOpenDocuments.get();
+    }
+
+    /**
+     * Getter method for the accumulated parse time.
+     * @return Time in milliseconds.
+     */
+    public long getParseTime() {
+        return parseTime.get();
+    }
+
+    /**
+     * Getter method for the time spent writing the output.
+     * @return Time in milliseconds.
+     */
+    public long getSaveTime() {
+        return saveTime;
+    }
+
+    /**
+     * Getter method for the total elapsed time.
+     * @return Time in milliseconds.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Getter method for the accumulated wait time.
+     * @return Time in milliseconds.
+     */
+    public long getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Setter method for the number of input files.
+     * @param value The number of input files.
+     */
+    public void setInputCount(int value) {
+        inputCount = value;
+    }
+
+    /**
+     * Setter method for the look-ahead depth.
+     * @param value The look-ahead depth.
+     */
+    public void setLookaheadDepth(int value) {
+        lookaheadDepth = value;
+    }
+
+    /**
+     * Getter method for the merge window size.
+     * @return The window size (zero if the windowed merge was not used).
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Setter method for the merge window size.
+     * @param value The window size.
+     */
+    public void setWindowSize(int value) {
+        windowSize = value;
+    }
+
+    /**
+     * Setter method for the time spent writing the output.
+     * @param value Time in milliseconds.
+     */
+    public void setSaveTime(long value) {
+        saveTime = value;
+    }
+
+    /**
+     * Setter method for the total elapsed time.
+     * @param value Time in milliseconds.
+     */
+    public void setTotalTime(long value) {
+        totalTime = value;
+    }
+
+    /**
+     * Convert the metrics to a single-line printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Merge metrics => [ inputs=");
+        sb.append(getInputCount());
+        sb.append(", merged=");
+        sb.append(getMergedCount());
+        sb.append(", lookahead=");
+        sb.append(getLookaheadDepth());
+        sb.append(", window=");
+        sb.append(getWindowSize());
+        sb.append(", peakOpen=");
+        sb.append(getPeakOpenDocuments());
+        sb.append(", parse=");
+        sb.append(getParseTime());
+        sb.append(" ms, wait=");
+        sb.append(getWaitTime());
+        sb.append(" ms, append=");
+        sb.append(getAppendTime());
+        sb.append(" ms, save=");
+        sb.append(getSaveTime());
+        sb.append(" ms, total=");
+        sb.append(getTotalTime());
+        sb.append(" ms ]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,492 @@
+package mil.nga;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.storage.StorageMetadata;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
+import mil.nga.util.URIUtils;
+
+/**
+ * Cache of previously merged output files.  Many clients request exactly
+ * the same list of input files, so rather than rebuilding the output the
+ * merged file left in the staging area by an earlier request is reused.
+ *
+ * Entries are keyed by a fingerprint of the ordered list of input files
+ * and the name of the output file, so a client is never handed an output
+ * file named for another client's request.  By default the fingerprint is
+ * calculated from the path, size and last modified time of each input,
+ * which costs one metadata lookup per file.  Alternatively the fingerprint
+ * can be calculated from the content of each input.
+ *
+ * The total size of the cached output files is bounded by a budget, with
+ * the least recently used entries evicted first, and each entry expires a
+ * fixed time after it was created.  Eviction only removes the entry; the
+ * output file stays in the staging area, as a client may still be 
+ * downloading it, until the <code>StagingReaper</code> reclaims it.  The
+ * TTL should therefore be shorter than the staging TTL.  Entries whose
+ * output file has already been reclaimed are discarded on lookup.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeOutputCache
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MergeOutputCache.class);
+
+    /**
+     * Fingerprint inputs using the path, size and last modified time.
+     */
+    public static final String KEY_MODE_METADATA = "metadata";
+
+    /**
+     * Fingerprint inputs using their content.
+     */
+    public static final String KEY_MODE_CONTENT = "content";
+
+    /**
+     * The underlying cache (null if caching is disabled).
+     */
+    private Cache<String, CachedOutput> cache;
+
+    /**
+     * Flag indicating inputs are fingerprinted by content.
+     */
+    private boolean contentKeys = false;
+
+    /**
+     * Number of lookups satisfied by the cache.
+     */
+    private final AtomicLong hits = new AtomicLong(0);
+
+    /**
+     * Number of lookups not satisfied by the cache.
+     */
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Number of entries evicted due to size or age.
+     */
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * Total size of the cached output files.
+     */
+    private final AtomicLong cachedBytes = new AtomicLong(0);
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private MergeOutputCache() {
+        super(PROPERTY_FILE_NAME);
+
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        initialize(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public MergeOutputCache(Properties props) {
+        initialize(props);
+    }
+
+    /**
+     * Read the cache settings and create the underlying cache.
+     *
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
+
+        long budgetMB = PropertyUtils.getLong(
+                props,
+                OUTPUT_CACHE_SIZE_PROPERTY,
+                DEFAULT_OUTPUT_CACHE_MB);
+        long ttl = PropertyUtils.getLong(
+                props,
+                OUTPUT_CACHE_TTL_PROPERTY,
+                DEFAULT_OUTPUT_CACHE_TTL_MINUTES);
+        contentKeys = KEY_MODE_CONTENT.equalsIgnoreCase(
+                PropertyUtils.getString(
+                        props,
+                        OUTPUT_CACHE_KEY_PROPERTY,
+                        KEY_MODE_METADATA).trim());
+
+        if ((budgetMB > 0) && (ttl > 0)) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(budgetMB * 1024L)
+                    .weigher(new Weigher<String, CachedOutput>() {
+                        @Override
+                        public int weigh(String key, CachedOutput value) {
+                            // Weight is expressed in KB.
+                            return (int)Math.min(
+                                    Integer.MAX_VALUE,
+                                    (value.getSize() + 1023) / 1024);
+                        }
+                    })
+                    .expireAfterWrite(ttl, TimeUnit.MINUTES)
+                    .removalListener(
+                            new RemovalListener<String, CachedOutput>() {
+                        @Override
+                        public void onRemoval(
+                                RemovalNotification<String, CachedOutput>
+                                notification) {
+                            evict(notification);
+                        }
+                    })
+                    .build();
+            LOGGER.info("Merged output cache enabled with a budget of [ "
+                    + budgetMB
+                    + " ] MB, a TTL of [ "
+                    + ttl
+                    + " ] minutes and [ "
+                    + (contentKeys ? KEY_MODE_CONTENT : KEY_MODE_METADATA)
+                    + " ] keys.");
+        }
+        else {
+            cache = null;
+            LOGGER.info("Merged output cache disabled.");
+        }
+    }
+
+    /**
+     * Return a singleton instance to the MergeOutputCache object.
+     * @return The MergeOutputCache
+     */
+    public static MergeOutputCache getInstance() {
+        return MergeOutputCacheHolder.getSingleton();
+    }
+
+    /**
+     * Determine whether caching is enabled.
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Calculate the cache key for an ordered list of input files and the
+     * name of the output file.  Inputs that do not exist still contribute
+     * to the key so that the key is deterministic.
+     *
+     * @param inputFiles The client-supplied list of input files.
+     * @param outputFileName The name of the output file.
+     * @return The cache key, or null if caching is disabled or the key
+     * could not be calculated.
+     */
+    public String getKey(List<String> inputFiles, String outputFileName) {
+
+        if ((!isEnabled()) || (inputFiles == null) || inputFiles.isEmpty()) {
+            return null;
+        }
+
+        long   startTime = System.currentTimeMillis();
+        Hasher hasher    = Hashing.sha256().newHasher();
+
+        for (String file : inputFiles) {
+            URI uri = URIUtils.getInstance().getURI(file);
+            if (uri == null) {
+                return null;
+            }
+            hasher.putString(uri.toString(), StandardCharsets.UTF_8);
+            hasher.putByte((byte)0);
+            try {
+                StorageBackend storage = StorageFactory.get(uri);
+                if (contentKeys) {
+                    try (InputStream is = storage.newInputStream(uri);
+                         OutputStream os = Funnels.asOutputStream(hasher)) {
+                        ByteStreams.copy(is, os);
+                    }
+                }
+                else {
+                    StorageMetadata attrs = storage.getMetadata(uri);
+                    hasher.putLong(attrs.getSize());
+                    hasher.putLong(attrs.getLastModified());
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                hasher.putLong(-1L);
+            }
+        }
+        hasher.putString(
+                String.valueOf(outputFileName),
+                StandardCharsets.UTF_8);
+
+        String key = hasher.hash().toString();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Cache key [ "
+                    + key
+                    + " ] calculated for [ "
+                    + inputFiles.size()
+                    + " ] input files in [ "
+                    + (System.currentTimeMillis() - startTime)
+                    + " ] ms.");
+        }
+        return key;
+    }
+
+    /**
+     * Look up a previously merged output file.  Entries whose output file
+     * no longer exists are discarded.
+     *
+     * @param key The cache key (may be null).
+     * @return The location of the merged output, or null if not cached.
+     */
+    public URI get(String key) {
+
+        if ((!isEnabled()) || (key == null)) {
+            return null;
+        }
+
+        URI          output = null;
+        CachedOutput entry  = cache.getIfPresent(key);
+        if (entry != null) {
+            URI cached = entry.getOutput();
+            if (StorageFactory.get(cached).exists(cached)) {
+                output = entry.getOutput();
+            }
+            else {
+                cache.invalidate(key);
+            }
+        }
+        if (output != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        LOGGER.info("Merged output cache "
+                + (output != null ? "hit" : "miss")
+                + " for key [ "
+                + key
+                + " ].  "
+                + toString());
+        return output;
+    }
+
+    /**
+     * Add a merged output file to the cache.
+     *
+     * @param key The cache key (may be null).
+     * @param output Location of the merged output file.
+     */
+    public void put(String key, URI output) {
+        if ((isEnabled()) && (key != null) && (output != null)) {
+            try {
+                long size = StorageFactory.get(output)
+                                .getMetadata(output)
+                                .getSize();
+                cachedBytes.addAndGet(size);
+                cache.put(key, new CachedOutput(output, size));
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Unable to cache merged output [ "
+                        + output.toString()
+                        + " ].  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Handle removal of an entry from the cache.  The output file is left
+     * in the staging area, as its URL may have just been returned to a
+     * client, and is reclaimed by the <code>StagingReaper</code>.
+     *
+     * @param notification The removal notification.
+     */
+    private void evict(RemovalNotification<String, CachedOutput> notification) {
+
+        CachedOutput entry = notification.getValue();
+        if (entry == null) {
+            return;
+        }
+        cachedBytes.addAndGet(-entry.getSize());
+
+        if (notification.wasEvicted()) {
+            evictions.incrementAndGet();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Evicted merged output [ "
+                        + entry.getOutput().toString()
+                        + " ] cause [ "
+                        + notification.getCause()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of entries evicted due to size or age.
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Getter method for the number of cache hits.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter method for the number of cache misses.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter method for the total size of the cached output files.
+     * @return Size in bytes.
+     */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Getter method for the number of cached entries.
+     * @return The number of entries.
+     */
+    public long getEntryCount() {
+        return isEnabled() ? cache.size() : 0;
+    }
+
+    /**
+     * Convert the cache statistics to a printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Cache statistics => [ entries=");
+        sb.append(getEntryCount());
+        sb.append(", size=");
+        sb.append(FileUtils.humanReadableByteCount(getCachedBytes(), false));
+        sb.append(", hits=");
+        sb.append(getHits());
+        sb.append(", misses=");
+        sb.append(getMisses());
+        sb.append(", evictions=");
+        sb.append(getEvictions());
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+    /**
+     * Simple value class holding the location and size of a cached
+     * output file.
+     */
+    private static class CachedOutput {
+
+        /**
+         * Location of the merged output file.
+         */
+        private final URI output;
+
+        /**
+         * Size of the merged output file.
+         */
+        private final long size;
+
+        /**
+         * Constructor setting all of the fields.
+         * @param output Location of the merged output file.
+         * @param size Size of the merged output file.
+         */
+        CachedOutput(URI output, long size) {
+            this.output = output;
+            this.size   = size;
+        }
+
+        /**
+         * Getter method for the location of the merged output file.
+         * @return The location of the output.
+         */
+        URI getOutput() {
+            return output;
+        }
+
+        /**
+         * Getter method for the size of the merged output file.
+         * @return Size in bytes.
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MergeOutputCacheHolder {
+
+        /**
+         * Reference to the Singleton instance of the MergeOutputCache
+         */
+        private static MergeOutputCache _instance = new MergeOutputCache();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * MergeOutputCache.
+         *
+         * @return The singleton instance of the MergeOutputCache.
+         */
+        public static MergeOutputCache getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -1,20 +1,38 @@
 package mil.nga;
 
-import java.text.DateFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 
 /**
  * Class providing methods to serialize/deserialize <code>MergeRequest</code> 
  * messages.
  * 
+ * The underlying Jackson <code>ObjectMapper</code> is configured once and
+ * the <code>ObjectWriter</code>/<code>ObjectReader</code> instances derived
+ * from it are immutable, so they are shared by all threads rather than 
+ * being constructed for every call.  The streaming methods write directly
+ * to the supplied <code>OutputStream</code> or <code>Writer</code> without
+ * building an intermediate <code>String</code>; they neither flush nor 
+ * close the target, which remains under the control of the caller.  
+ * Likewise, the streaming deserialization methods do not close the 
+ * source <code>InputStream</code> or <code>Reader</code>.
+ * 
  * @author L. Craig Carpenter
  */
 public class MergeRequestSerializer {
@@ -26,31 +44,57 @@ public class MergeRequestSerializer {
             MergeRequestSerializer.class);
     
     /** 
-     * DateFormat object used when serializing/deserializing dates.  This 
-     * overrides the default behavior which depends on the type of date being
-     * serialized/deserialized.
+     * Format used when serializing/deserializing dates.  This overrides the
+     * default behavior which depends on the type of date being 
+     * serialized/deserialized.  All times are in GMT.
      */
-    private static final DateFormat dateFormatter = 
-            new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+    public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
     
     /**
-     * Ensure that all times are in GMT
+     * The configured mapper.  Jackson clones the configured 
+     * <code>DateFormat</code> for each serialization/deserialization so 
+     * the (non-thread-safe) <code>SimpleDateFormat</code> is never shared
+     * between threads.
      */
-    static {
-        dateFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
+    private final ObjectMapper mapper;
+    
+    /**
+     * Shared writer producing compact output.
+     */
+    private final ObjectWriter writer;
+    
+    /**
+     * Shared writer producing "pretty-printed" output.
+     */
+    private final ObjectWriter prettyWriter;
+    
+    /**
+     * Shared reader for <code>MergeRequest</code> objects.
+     */
+    private final ObjectReader requestReader;
     
     /**
      * Private constructor enforcing the singleton design pattern.
      */
-    private MergeRequestSerializer() {}
+    private MergeRequestSerializer() {
+        SimpleDateFormat dateFormatter = new SimpleDateFormat(DATE_FORMAT);
+        dateFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+        mapper = new ObjectMapper();
+        mapper.setDateFormat(dateFormatter);
+        mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        mapper.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        mapper.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        writer        = mapper.writer();
+        prettyWriter  = mapper.writerWithDefaultPrettyPrinter();
+        requestReader = mapper.readerFor(MergeRequest.class);
+    }
     
     /**
      * Accessor method for the singleton instance of the 
-     * <code>BundlerMessageSerializer</code> class.
+     * <code>MergeRequestSerializer</code> class.
      * 
      * @return The singleton instance of the 
-     * <code>BundlerMessageSerializer</code> class.
+     * <code>MergeRequestSerializer</code> class.
      */
     public static MergeRequestSerializer getInstance() {
         return MergeRequestSerializerHolder.getSingleton();
@@ -65,51 +109,159 @@ public class MergeRequestSerializer {
      * @return A JSON String representation of the input Object.
      */
     public String serializePretty(Object obj) {
+        return toString(prettyWriter, obj);
+    }
+    
+    /**
+     * Convert the input object into JSON format. 
+     * 
+     * @param obj A populated object.
+     * @return A JSON String representation of the input Object.
+     */
+    public String serialize(Object obj) {
+        return toString(writer, obj);
+    }
+    
+    /**
+     * Write the input object in JSON format to the output stream (UTF-8 
+     * encoded).  The stream is not flushed or closed.
+     * 
+     * @param obj A populated object.
+     * @param out The target output stream.
+     * @throws IOException Thrown if the object could not be serialized or
+     * written.
+     */
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        writer.writeValue(out, obj);
+    }
+    
+    /**
+     * Write the input object in JSON format to the writer.  The writer is 
+     * not flushed or closed.
+     * 
+     * @param obj A populated object.
+     * @param out The target writer.
+     * @throws IOException Thrown if the object could not be serialized or
+     * written.
+     */
+    public void serialize(Object obj, Writer out) throws IOException {
+        writer.writeValue(out, obj);
+    }
+    
+    /**
+     * Write the input object in "pretty-printed" JSON format to the output
+     * stream (UTF-8 encoded).  The stream is not flushed or closed.
+     * 
+     * @param obj A populated object.
+     * @param out The target output stream.
+     * @throws IOException Thrown if the object could not be serialized or
+     * written.
+     */
+    public void serializePretty(Object obj, OutputStream out) 
+            throws IOException {
+        prettyWriter.writeValue(out, obj);
+    }
+    
+    /**
+     * Write the input object in "pretty-printed" JSON format to the writer.
+     * The writer is not flushed or closed.
+     * 
+     * @param obj A populated object.
+     * @param out The target writer.
+     * @throws IOException Thrown if the object could not be serialized or
+     * written.
+     */
+    public void serializePretty(Object obj, Writer out) throws IOException {
+        prettyWriter.writeValue(out, obj);
+    }
+    
+    /**
+     * Convert the input JSON String into a <code>MergeRequest</code> 
+     * object.
+     * 
+     * @param json The JSON representation of a <code>MergeRequest</code>.
+     * @return The <code>MergeRequest</code>, or null if the input could 
+     * not be parsed.
+     */
+    public MergeRequest deserialize(String json) {
         
-        String json = "null";
+        MergeRequest request = null;
         
-        if (obj != null) {
+        if ((json != null) && (!json.isEmpty())) {
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.setDateFormat(dateFormatter);
-                json = mapper.writerWithDefaultPrettyPrinter()
-                        .writeValueAsString(obj);
+                request = requestReader.readValue(json);
             }
-            catch (JsonProcessingException jpe) {
-                LOGGER.error("Unexpected JsonProcessingException encountered "
-                        + "while attempting to marshall the input "
-                        + "object to JSON.  Exception message => [ "
-                        + jpe.getMessage()
+            catch (IOException ioe) {
+                LOGGER.error("Unexpected IOException encountered "
+                        + "while attempting to unmarshall the input "
+                        + "JSON to a MergeRequest.  Exception message => [ "
+                        + ioe.getMessage()
                         + " ].");
             }
         }
         else {
-            LOGGER.warn("Input object is null.  Unable to "
-                    + "marshall the object to JSON.");
+            LOGGER.warn("Input JSON String is null or empty.  Unable to "
+                    + "unmarshall the MergeRequest.");
         }
-        return json;
+        return request;
     }
     
     /**
-     * Convert the input object into JSON format. 
+     * Read a <code>MergeRequest</code> from the input stream.  The stream 
+     * is not closed.
+     * 
+     * @param in The input stream.
+     * @return The <code>MergeRequest</code>.
+     * @throws IOException Thrown if the input could not be read or parsed.
+     */
+    public MergeRequest deserialize(InputStream in) throws IOException {
+        return requestReader.readValue(in);
+    }
+    
+    /**
+     * Read a <code>MergeRequest</code> from the reader.  The reader is not
+     * closed.
+     * 
+     * @param in The reader.
+     * @return The <code>MergeRequest</code>.
+     * @throws IOException Thrown if the input could not be read or parsed.
+     */
+    public MergeRequest deserialize(Reader in) throws IOException {
+        return requestReader.readValue(in);
+    }
+    
+    /**
+     * Convert the input JSON String into an object of the requested type
+     * using the shared configuration.
+     * 
+     * @param json The JSON representation of the object.
+     * @param type The target type.
+     * @return The object.
+     * @throws IOException Thrown if the input could not be parsed.
+     */
+    public <T> T readValue(String json, Class<T> type) throws IOException {
+        return mapper.readValue(json, type);
+    }
+    
+    /**
+     * Convert the input object to a String using the supplied writer.
      * 
+     * @param jsonWriter The writer to use.
      * @param obj A populated object.
      * @return A JSON String representation of the input Object.
      */
-    public String serialize(Object obj) {
+    private String toString(ObjectWriter jsonWriter, Object obj) {
         
         String json = "null";
         
         if (obj != null) {
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.setDateFormat(dateFormatter);
-                json = mapper.writeValueAsString(obj);
+                json = jsonWriter.writeValueAsString(obj);
             }
             catch (JsonProcessingException jpe) {
                 LOGGER.error("Unexpected JsonProcessingException encountered "
                         + "while attempting to marshall the input "
-                        + "object to JSON.  Exception message [ "
+                        + "object to JSON.  Exception message => [ "
                         + jpe.getMessage()
                         + " ].");
             }
@@ -0,0 +1,285 @@
+package mil.nga;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.exceptions.PDFException;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.PropertyUtils;
+import mil.nga.util.SingleFlight;
+
+/**
+ * Collapses identical merge requests that arrive while an earlier copy of
+ * the same request is still being merged.  Two requests are identical if
+ * they contain the same ordered list of input files and the same output
+ * file name.  The first request performs the merge and the remaining
+ * requests share its output file (or its failure).  Unlike the
+ * <code>MergeOutputCache</code> this works even when caching is disabled,
+ * and it prevents the burst of duplicate merges that occurs before the
+ * first result reaches the cache.
+ *
+ * If the request performing the merge gives up for a reason that does
+ * not apply to the others (e.g. it was rejected by admission control or
+ * its client disconnected), the waiting requests perform the merge
+ * themselves.  If it does not finish within the configured wait, the 
+ * waiting requests fail and the next identical request starts a new 
+ * merge.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeSingleFlight 
+        extends PropertyLoader 
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MergeSingleFlight.class);
+
+    /**
+     * Merges currently in flight.
+     */
+    private final SingleFlight<List<String>, URI> flights;
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private MergeSingleFlight() {
+        super(PROPERTY_FILE_NAME);
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        flights = newFlights(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public MergeSingleFlight(Properties props) {
+        flights = newFlights(props);
+    }
+
+    /**
+     * Construct the flights using the configured follower wait.
+     *
+     * @param props The system properties (may be null).
+     * @return The flights.
+     */
+    private static SingleFlight<List<String>, URI> newFlights(
+            Properties props) {
+        long wait = PropertyUtils.getLong(
+                props,
+                DEDUPLICATION_WAIT_PROPERTY,
+                DEFAULT_DEDUPLICATION_WAIT_MS);
+        return new SingleFlight<List<String>, URI>(wait);
+    }
+
+    /**
+     * Return a singleton instance to the MergeSingleFlight object.
+     * @return The MergeSingleFlight
+     */
+    public static MergeSingleFlight getInstance() {
+        return MergeSingleFlightHolder.getSingleton();
+    }
+
+    /**
+     * Calculate the key identifying a merge request.
+     *
+     * @param request The client merge request.
+     * @return The ordered input files followed by the output file name.
+     */
+    public static List<String> getKey(MergeRequest request) {
+        List<String> key = new ArrayList<String>();
+        if (request.getFiles() != null) {
+            key.addAll(request.getFiles());
+        }
+        key.add(String.valueOf(request.getFilename()));
+        return Collections.unmodifiableList(key);
+    }
+
+    /**
+     * Join the flight for a merge request.  If the returned ticket is the
+     * leader the caller must perform the merge and finish the ticket.
+     * Otherwise the caller should wait for the leader's result.
+     *
+     * @param request The client merge request.
+     * @return The ticket.
+     */
+    public SingleFlight<List<String>, URI>.Ticket begin(MergeRequest request) {
+        SingleFlight<List<String>, URI>.Ticket ticket =
+                flights.begin(getKey(request));
+        if (!ticket.isLeader()) {
+            LOGGER.info("Identical merge already in progress, waiting "
+                    + "for its output.  "
+                    + toString());
+        }
+        return ticket;
+    }
+
+    /**
+     * Wait for the leader of a flight to finish.
+     *
+     * @param ticket A follower ticket obtained from <code>begin()</code>.
+     * @return The URI of the output merged PDF file, or null if the leader
+     * abandoned the merge (the caller should try again).
+     * @throws PDFException The failure of the leader's merge, or thrown if
+     * the leader did not finish in time or the caller was interrupted.
+     */
+    public URI await(SingleFlight<List<String>, URI>.Ticket ticket)
+            throws PDFException {
+        try {
+            return ticket.await();
+        }
+        catch (CancellationException ce) {
+            return null;
+        }
+        catch (Exception e) {
+            throw toPDFException(e);
+        }
+    }
+
+    /**
+     * Perform a merge, or share the output of an identical merge that is
+     * already in flight.  If the merge throws a
+     * <code>CancellationException</code>, the merge is abandoned: the
+     * exception is re-thrown to the caller and any waiting requests
+     * perform the merge themselves.
+     *
+     * @param request The client merge request.
+     * @param merge The merge to perform.
+     * @return The URI of the output merged PDF file.
+     * @throws PDFException The failure of the merge (or of the identical
+     * merge whose output was shared).
+     */
+    public URI execute(MergeRequest request, Callable<URI> merge)
+            throws PDFException {
+        try {
+            return flights.execute(getKey(request), merge);
+        }
+        catch (Exception e) {
+            throw toPDFException(e);
+        }
+    }
+
+    /**
+     * Convert the failure of a merge to the exception thrown to the
+     * client.  Runtime exceptions are re-thrown unchanged.
+     *
+     * @param e The failure.
+     * @return The exception to throw.
+     */
+    private PDFException toPDFException(Exception e) {
+        if (e instanceof PDFException) {
+            return (PDFException)e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+        if ((e instanceof TimeoutException) || 
+                (e instanceof InterruptedException)) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            String msg = "Gave up waiting for an identical merge already "
+                    + "in progress.  Exception message => [ "
+                    + e.getMessage()
+                    + " ].";
+            LOGGER.error("Exception to be thrown to the client [ "
+                    + msg
+                    + " ].");
+            return new PDFException(msg);
+        }
+        String msg = "Unexpected exception encountered while "
+                + "merging the requested files.  Exception message "
+                + "=> [ "
+                + e.getMessage()
+                + " ].";
+        LOGGER.error(msg, e);
+        return new PDFException(msg);
+    }
+
+    /**
+     * Build a snapshot of the deduplication counters.
+     * @return The deduplication status.
+     */
+    public DeduplicationStatus getStatus() {
+        DeduplicationStatus status = new DeduplicationStatus();
+        status.setMerges(flights.getExecutions());
+        status.setSaved(flights.getShared());
+        status.setSharedFailures(flights.getSharedFailures());
+        status.setAbandoned(flights.getAbandoned());
+        status.setTimeouts(flights.getTimeouts());
+        status.setInFlight(flights.getInFlight());
+        return status;
+    }
+
+    /**
+     * Convert the deduplication counters to a printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Merge deduplication => [ merges=");
+        sb.append(flights.getExecutions());
+        sb.append(", saved=");
+        sb.append(flights.getShared());
+        sb.append(", shared failures=");
+        sb.append(flights.getSharedFailures());
+        sb.append(", abandoned=");
+        sb.append(flights.getAbandoned());
+        sb.append(", timeouts=");
+        sb.append(flights.getTimeouts());
+        sb.append(", in-flight=");
+        sb.append(flights.getInFlight());
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MergeSingleFlightHolder {
+
+        /**
+         * Reference to the Singleton instance of the MergeSingleFlight
+         */
+        private static MergeSingleFlight _instance = new MergeSingleFlight();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * MergeSingleFlight.
+         *
+         * @return The singleton instance of the MergeSingleFlight.
+         */
+        public static MergeSingleFlight getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package mil.nga;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.util.CloseShieldOutputStream;
+
+/**
+ * Holds the result of assembling a merge: the output document along with
+ * the resources it depends on (input documents that must stay open until
+ * the output has been written, and the per-request scratch directory).
+ * Separating assembly from writing allows the output to be written either
+ * to the staging area or directly to a client connection.  Callers must
+ * always call <code>close()</code>, which releases all of the resources
+ * and logs the metrics for the merge.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergedDocument implements Closeable {
+
+    /**
+     * Static logger for use throughout the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MergedDocument.class);
+
+    /**
+     * Size of the buffer placed in front of the target output stream.
+     * PDFBox issues a large number of very small writes.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The assembled output document.
+     */
+    private final PDDocument destination;
+
+    /**
+     * Input documents that must remain open until the output is written.
+     */
+    private final List<PDDocument> sources;
+
+    /**
+     * The per-request scratch directory (may be null).
+     */
+    private final File scratchDir;
+
+    /**
+     * Metrics associated with the merge.
+     */
+    private final MergeMetrics metrics;
+
+    /**
+     * Time at which the merge started.
+     */
+    private final long startTime;
+
+    /**
+     * Flag indicating the resources have been released.
+     */
+    private boolean closed = false;
+
+    /**
+     * Constructor used by the <code>PDFFactory</code> to hand over
+     * ownership of the merge resources.
+     *
+     * @param destination The assembled output document.
+     * @param sources Input documents that must stay open until the output
+     * has been written.
+     * @param scratchDir The per-request scratch directory (may be null).
+     * @param metrics Metrics associated with the merge.
+     * @param startTime Time at which the merge started.
+     */
+    MergedDocument(
+            PDDocument destination,
+            List<PDDocument> sources,
+            File scratchDir,
+            MergeMetrics metrics,
+            long startTime) {
+        this.destination = destination;
+        this.sources     = sources;
+        this.scratchDir  = scratchDir;
+        this.metrics     = metrics;
+        this.startTime   = startTime;
+    }
+
+    /**
+     * Getter method for the metrics associated with the merge.
+     * @return The merge metrics.
+     */
+    public MergeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Getter method for the number of pages in the output document.
+     * @return The number of pages.
+     */
+    public int getPageCount() {
+        return destination.getNumberOfPages();
+    }
+
+    /**
+     * Write the output document to the target stream.  The target stream
+     * is flushed but not closed, even though PDFBox closes the stream it 
+     * saves to.  On failure the caller decides whether to abort the 
+     * target (e.g. an S3 upload or a client connection).
+     *
+     * @param os The target stream.
+     * @throws IOException Thrown if the output could not be written.  The
+     * target stream will contain a partial document.
+     */
+    public void save(OutputStream os) throws IOException {
+        long saveStartTime = System.currentTimeMillis();
+        BufferedOutputStream bos = new BufferedOutputStream(
+                new CloseShieldOutputStream(os), OUTPUT_BUFFER_SIZE);
+        destination.save(bos);
+        bos.flush();
+        metrics.setSaveTime(System.currentTimeMillis() - saveStartTime);
+    }
+
+    /**
+     * Release the output document, the input documents and the scratch
+     * directory.  This method is idempotent.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            try { destination.close(); } catch (Exception e) {}
+            for (PDDocument source : sources) {
+                try { source.close(); } catch (Exception e) {}
+                metrics.documentClosed();
+            }
+            ScratchSpace.getInstance().release(scratchDir);
+            metrics.setTotalTime(System.currentTimeMillis() - startTime);
+            LOGGER.info(metrics.toString());
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package mil.nga;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.SocketException;
 import java.net.URI;
-import java.nio.file.Files;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Properties;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import mil.nga.exceptions.PDFException;
+import mil.nga.storage.S3MultipartOutputStream;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.storage.StorageMetadata;
+import mil.nga.util.PropertyUtils;
+import mil.nga.util.ChannelRandomAccessRead;
+import mil.nga.util.TeeOutputStream;
 import mil.nga.util.URIUtils;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +55,48 @@ public class PDFFactory extends FileGenerator {
      */
     private final Logger LOG = LoggerFactory.getLogger(PDFFactory.class);
     
+    /**
+     * Number of input documents parsed ahead of the document being merged.
+     */
+    private int lookaheadDepth = DEFAULT_LOOKAHEAD_DEPTH;
+    
+    /**
+     * Policy used to select the memory settings for each merge.
+     */
+    private final MemoryPolicy memoryPolicy;
+    
+    /**
+     * Maximum number of input documents open at the same time.  Zero 
+     * disables the windowed merge.
+     */
+    private int mergeWindow = 0;
+    
+    /**
+     * Flag indicating that input files are validated structurally rather 
+     * than by a full parse.
+     */
+    private boolean structuralValidation = false;
+    
+    /**
+     * Flag set when the client cancels the in-progress operation.
+     */
+    private volatile boolean cancelled = false;
+    
+    /**
+     * The pipeline associated with the in-progress merge operation.
+     */
+    private volatile DocumentPipeline activePipeline = null;
+    
+    /**
+     * Metrics associated with the most recent merge operation.
+     */
+    private volatile MergeMetrics activeMetrics = null;
+    
+    /**
+     * Outstanding tasks associated with the in-progress validation.
+     */
+    private volatile List<Future<Boolean>> activeValidation = null;
+    
     /**
      * Default constructor requiring clients to supply a system properties 
      * object.
@@ -44,35 +104,379 @@ public class PDFFactory extends FileGenerator {
      */
     public PDFFactory(Properties props) {
         super(props);
+        memoryPolicy = new MemoryPolicy(props);
+        if (props != null) {
+            setLookaheadDepth(PropertyUtils.getInt(
+                    props, 
+                    LOOKAHEAD_DEPTH_PROPERTY, 
+                    DEFAULT_LOOKAHEAD_DEPTH));
+            setValidationMode(props.getProperty(VALIDATION_MODE_PROPERTY));
+            setMergeWindow(PropertyUtils.getInt(
+                    props, 
+                    MERGE_WINDOW_PROPERTY, 
+                    0));
+        }
     }
     
     /**
      * Test a client-supplied filename to ensure it is a valid PDF before
-     * adding the file to the merge operation.
+     * adding the file to the merge operation.  Depending on the configured
+     * validation mode, the file is either checked structurally or fully 
+     * parsed.  Results are cached, so a file that has not changed since it
+     * was last validated costs a single metadata lookup.
      * 
      * @param filename Full path to a candidate file.
      * @return Boolean indicating whether the input file is a valid PDF
      */
     public boolean isValidPDF (URI pdfFile) {
+        return getMetadata(pdfFile).isValid();
+    }
+    
+    /**
+     * Obtain the validation result and basic metadata for a client-supplied
+     * file, using the cached result if the file has not changed.  In 
+     * structural mode, a file failing the structural check is fully 
+     * parsed before it is rejected, as the lenient parser repairs damage
+     * such as a wrong cross-reference offset.  A file that could not be 
+     * read is reported as invalid but the result is not cached, so the 
+     * next request reads the file again.
+     * 
+     * @param pdfFile URI of a candidate file.
+     * @return The metadata associated with the file.
+     */
+    public PDFMetadata getMetadata (URI pdfFile) {
+        
+        StorageMetadata attrs    = PDFMetadataCache.stat(pdfFile);
+        PDFMetadata     metadata = PDFMetadataCache.getInstance().get(
+                                        pdfFile, attrs);
+        
+        if (metadata == null) {
+            try {
+                if (isStructuralValidation()) {
+                    metadata = newMetadata(pdfFile, attrs);
+                    if (!PDFStructureValidator.getInstance().inspect(
+                            pdfFile, 
+                            metadata)) {
+                        LOG.info("File [ "
+                                + pdfFile.toString()
+                                + " ] failed structural validation.  "
+                                + "Falling back to a full parse.");
+                        metadata = parseMetadata(pdfFile, attrs);
+                    }
+                }
+                else {
+                    metadata = parseMetadata(pdfFile, attrs);
+                }
+                if (attrs != null) {
+                    PDFMetadataCache.getInstance().put(metadata);
+                }
+            }
+            catch (IOException ioe) {
+                metadata = newMetadata(pdfFile, attrs);
+            }
+        }
+        return metadata;
+    }
+    
+    /**
+     * Fully parse a file to obtain its validation result and metadata.
+     * 
+     * @param pdfFile The target file.
+     * @param attrs The attributes of the file (may be null).
+     * @return The metadata object.
+     * @throws IOException Thrown if the file could not be read.
+     */
+    private PDFMetadata parseMetadata (URI pdfFile, StorageMetadata attrs) 
+            throws IOException {
+        PDDocument  pdf      = load(
+                                    pdfFile, 
+                                    MemoryUsageSetting.setupMainMemoryOnly());
+        PDFMetadata metadata = describe(pdfFile, attrs, pdf);
+        if (pdf != null) {
+            try { pdf.close(); } catch (Exception e) {}
+        }
+        return metadata;
+    }
+    
+    /**
+     * Construct an empty metadata object for a file.
+     * 
+     * @param pdfFile The target file.
+     * @param attrs The attributes of the file (may be null).
+     * @return The metadata object.
+     */
+    private PDFMetadata newMetadata (URI pdfFile, StorageMetadata attrs) {
+        if (attrs != null) {
+            return new PDFMetadata(
+                    pdfFile, 
+                    attrs.getSize(), 
+                    attrs.getLastModified());
+        }
+        return new PDFMetadata(
+                pdfFile, 
+                PDFMetadata.UNKNOWN, 
+                PDFMetadata.UNKNOWN);
+    }
+    
+    /**
+     * Construct the metadata describing a loaded document.
+     * 
+     * @param pdfFile The target file.
+     * @param attrs The attributes of the file (may be null).
+     * @param pdf The loaded document (null if the file is not valid).
+     * @return The metadata object.
+     */
+    private PDFMetadata describe (
+            URI pdfFile, 
+            StorageMetadata attrs, 
+            PDDocument pdf) {
+        PDFMetadata metadata = newMetadata(pdfFile, attrs);
+        if (pdf != null) {
+            metadata.setValid(true);
+            metadata.setPageCount(pdf.getNumberOfPages());
+            metadata.setVersion(String.valueOf(pdf.getVersion()));
+            metadata.setEncrypted(pdf.isEncrypted());
+        }
+        return metadata;
+    }
+    
+    /**
+     * Validate the client-supplied list of files in parallel using the 
+     * shared <code>WorkerPool</code>.  The results are returned in the 
+     * same order as the input list.
+     * 
+     * @param inputFiles List of candidate files.
+     * @return List of flags indicating whether the file at the same index
+     * in the input list is a valid PDF.
+     * @throws PDFException Thrown if the validation was cancelled or 
+     * interrupted.
+     */
+    public List<Boolean> validate (List<String> inputFiles) 
+            throws PDFException {
+        
+        List<Boolean>         results   = new ArrayList<Boolean>();
+        List<Future<Boolean>> futures   = new ArrayList<Future<Boolean>>();
+        long                  startTime = System.currentTimeMillis();
+        
+        if ((inputFiles != null) && (inputFiles.size() > 0)) {
+            try {
+                activeValidation = futures;
+                for (String pdfFile : inputFiles) {
+                    final URI uri = URIUtils.getInstance().getURI(pdfFile);
+                    futures.add(WorkerPool.getInstance().submit(
+                            new Callable<Boolean>() {
+                                @Override
+                                public Boolean call() {
+                                    return isValidPDF(uri);
+                                }
+                            }));
+                }
+                if (cancelled) {
+                    cancel();
+                }
+                for (Future<Boolean> future : futures) {
+                    results.add(future.get());
+                }
+            }
+            catch (CancellationException ce) {
+                throw newCancelledException();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw newCancelledException();
+            }
+            catch (ExecutionException ee) {
+                // isValidPDF does not throw checked exceptions so this 
+                // can only be a runtime failure.
+                cancel();
+                String msg = "Unexpected exception encountered while "
+                        + "validating the input PDF files.  Exception "
+                        + "message => [ "
+                        + ee.getCause()
+                        + " ].";
+                LOG.error("Exception to be thrown to the client [ "
+                        + msg
+                        + " ].");
+                throw new PDFException(msg);
+            }
+            finally {
+                activeValidation = null;
+            }
+            
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Validation of [ "
+                        + inputFiles.size()
+                        + " ] files completed in [ "
+                        + (System.currentTimeMillis() - startTime)
+                        + " ] ms.");
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Cancel the validation or merge operation currently in progress.  
+     * This method may be called from any thread.  Work that has not yet 
+     * started is removed from the shared worker pool and the thread 
+     * executing the operation receives a <code>PDFException</code>.
+     */
+    public void cancel() {
+        
+        cancelled = true;
+        
+        DocumentPipeline      pipeline = activePipeline;
+        List<Future<Boolean>> futures  = activeValidation;
+        
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (futures != null) {
+            for (Future<Boolean> future : futures) {
+                future.cancel(false);
+            }
+        }
+        WorkerPool.getInstance().purge();
+    }
+    
+    /**
+     * Getter method for the metrics associated with the most recent merge
+     * operation.  May be called from any thread to monitor the progress of
+     * an in-progress merge.
+     * 
+     * @return The metrics (null if no merge has been started).
+     */
+    public MergeMetrics getActiveMetrics() {
+        return activeMetrics;
+    }
+    
+    /**
+     * Determine whether the client cancelled the operation.
+     * 
+     * @return True if <code>cancel()</code> was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Construct the exception thrown to the client when an operation was
+     * cancelled.
+     * 
+     * @return The exception to throw.
+     */
+    private PDFException newCancelledException() {
+        String msg = "The operation was cancelled before it completed.";
+        LOG.error("Exception to be thrown to the client [ "
+                + msg
+                + " ].");
+        return new PDFException(msg);
+    }
+    
+    /**
+     * Load the client-supplied file into a PDDocument.  A file that can be
+     * loaded is considered to be a valid PDF, so the document returned is 
+     * both the validation result and the source used in the merge 
+     * operation.  This ensures each input file is only parsed once.  Files
+     * that are known to be invalid (and have not changed since) are 
+     * rejected without being parsed, and the result of every parse is 
+     * recorded in the metadata cache.  Files that could not be read are
+     * skipped without recording a result.
+     * 
+     * @param pdfFile URI of a candidate file.
+     * @param memUsageSetting The memory settings used when parsing.
+     * @return The loaded document, or null if the input file is not a valid
+     * PDF (or could not be read).  Callers are responsible for closing the
+     * returned document.
+     */
+    public PDDocument loadPDF (URI pdfFile, MemoryUsageSetting memUsageSetting) {
+        
+        StorageMetadata attrs  = PDFMetadataCache.stat(pdfFile);
+        PDFMetadata     cached = PDFMetadataCache.getInstance().get(
+                                        pdfFile, attrs);
         
-        boolean    valid     = false;
+        if ((cached != null) && (!cached.isValid())) {
+            LOG.warn("File [ "
+                    + pdfFile.toString()
+                    + " ] previously failed validation and has not changed."
+                    + "  Target file is not a valid PDF.");
+            return null;
+        }
+        try {
+            PDDocument pdf = load(pdfFile, memUsageSetting);
+            if (attrs != null) {
+                PDFMetadataCache.getInstance().put(
+                        describe(pdfFile, attrs, pdf));
+            }
+            return pdf;
+        }
+        catch (IOException ioe) {
+            return null;
+        }
+    }
+    
+    /**
+     * Parse the client-supplied file into a PDDocument.  A file that can be
+     * loaded is considered to be a valid PDF.  Files residing on the
+     * default file system, or with a local copy (e.g. cached S3 inputs), 
+     * are opened in random access mode; other files are parsed from the 
+     * read channel of their storage backend, so only the parts of the 
+     * document the parser touches are transferred.  Failures to read the 
+     * file (as opposed to failures to parse it) do not show the file is 
+     * invalid, so they are passed on to the caller.
+     * 
+     * @param pdfFile URI of a candidate file.
+     * @param memUsageSetting The memory settings used when parsing.
+     * @return The loaded document, or null if the input file is not a valid
+     * PDF.  Callers are responsible for closing the returned document.
+     * @throws IOException Thrown if the file could not be read.
+     */
+    private PDDocument load (URI pdfFile, MemoryUsageSetting memUsageSetting) 
+            throws IOException {
+        
+        PDDocument pdf       = null;
         long       startTime = System.currentTimeMillis();
         
         if (pdfFile != null) {
             
-            Path p = Paths.get(pdfFile);
-            
-            try (InputStream is = Files.newInputStream(p);
-                    PDDocument pdf = PDDocument.load(is)) {
-                valid = true;
+            try {
+                StorageBackend storage = StorageFactory.get(pdfFile);
+                Path           p       = storage.getLocalCopy(pdfFile);
+                try {
+                    if (p != null) {
+                        try {
+                            pdf = PDDocument.load(p.toFile(), memUsageSetting);
+                        }
+                        catch (FileNotFoundException fnfe) {
+                            // The local copy was removed before it could 
+                            // be opened, so obtain it again.
+                            pdf = reload(storage, pdfFile, memUsageSetting);
+                        }
+                    }
+                    else {
+                        pdf = parse(storage, pdfFile, memUsageSetting);
+                    }
+                }
+                catch (IOException ioe) {
+                    if (isReadFailure(ioe)) {
+                        throw ioe;
+                    }
+                    LOG.warn("IOException encountered while checking the "
+                            + "validity of file [ "
+                            + pdfFile.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].  Target file is not a valid PDF.");
+                }
             }
             catch (IOException ioe) {
-                LOG.warn("IOException encountered while checking the validity "
-                        + "of file [ "
+                LOG.warn("IOException encountered while reading file [ "
                         + pdfFile.toString()
                         + " ].  Error message [ "
                         + ioe.getMessage()
-                        + " ].  Target file is not a valid PDF.");
+                        + " ].  The file will be skipped but not recorded "
+                        + "as invalid.");
+                throw ioe;
             }
             
             if (LOG.isDebugEnabled()) {
@@ -81,7 +485,7 @@ public class PDFFactory extends FileGenerator {
                         + " ] completed in [ "
                         + (System.currentTimeMillis() - startTime)
                         + " ] ms, result was [ "
-                        + valid 
+                        + (pdf != null)
                         + " ].");
             }
             
@@ -89,13 +493,106 @@ public class PDFFactory extends FileGenerator {
         else {
             LOG.warn("Input filename is null or empty.");
         }
+        return pdf;
+    }
+    
+    /**
+     * Load a document whose local copy was removed (e.g. evicted from the
+     * S3 input cache) between the time it was obtained and the time it 
+     * was opened.  A new local copy is requested, and if none is available
+     * the document is parsed from the read channel of its backend.
+     * 
+     * @param storage The backend holding the document.
+     * @param pdfFile URI of the document.
+     * @param memUsageSetting The memory settings used when parsing.
+     * @return The parsed document.
+     * @throws IOException Thrown if the document could not be read or is 
+     * not a valid PDF.
+     */
+    private PDDocument reload(
+            StorageBackend storage, 
+            URI pdfFile, 
+            MemoryUsageSetting memUsageSetting) throws IOException {
         
-
-        return valid;
+        LOG.info("Local copy of file [ "
+                + pdfFile.toString()
+                + " ] was removed before it was opened.  Retrying.");
+        Path p = storage.getLocalCopy(pdfFile);
+        if (p != null) {
+            return PDDocument.load(p.toFile(), memUsageSetting);
+        }
+        return parse(storage, pdfFile, memUsageSetting);
     }
     
+    /**
+     * Determine whether an exception raised while loading a document was 
+     * caused by a failure to read the file (missing file, network error, 
+     * interrupted transfer) rather than by its content.  PDFBox reports 
+     * parse errors as plain <code>IOException</code>s (or an 
+     * <code>InvalidPasswordException</code>), while the storage backends
+     * raise file system exceptions or wrap the failure of the underlying
+     * client.
+     * 
+     * @param ioe The exception raised while loading the document.
+     * @return True if the file could not be read.
+     */
+    private static boolean isReadFailure(IOException ioe) {
+        if (ioe instanceof InvalidPasswordException) {
+            return false;
+        }
+        for (Throwable t = ioe; t != null; t = t.getCause()) {
+            if ((t instanceof FileSystemException) ||
+                    (t instanceof FileNotFoundException) ||
+                    (t instanceof InterruptedIOException) ||
+                    (t instanceof SocketException) ||
+                    (t instanceof ClosedChannelException) ||
+                    (t instanceof RuntimeException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Parse a document held by a storage backend directly from its read
+     * channel rather than reading the whole document into memory first.
+     * The channel is released when the returned document is closed.
+     * 
+     * @param storage The backend holding the document.
+     * @param pdfFile URI of the document.
+     * @param memUsageSetting The memory settings used when parsing.
+     * @return The parsed document.
+     * @throws IOException Thrown if the document could not be read or is 
+     * not a valid PDF.
+     */
+    private PDDocument parse(
+            StorageBackend storage, 
+            URI pdfFile, 
+            MemoryUsageSetting memUsageSetting) throws IOException {
+        
+        RandomAccessRead source  = new ChannelRandomAccessRead(
+                storage.newReadChannel(pdfFile));
+        ScratchFile      scratch = null;
+        try {
+            scratch = new ScratchFile(memUsageSetting);
+            PDFParser parser = new PDFParser(source, "", null, null, scratch);
+            parser.parse();
+            return parser.getPDDocument();
+        }
+        catch (IOException | RuntimeException e) {
+            if (scratch != null) {
+                scratch.close();
+            }
+            source.close();
+            throw e;
+        }
+    }
     
     /**
+     * Merge the client-supplied list of PDF files into a single output 
+     * file in the staging area.  If the same list of input files was 
+     * merged previously, and the merged output is still cached, the 
+     * existing output file is returned without performing the merge.
      * 
      * @param inputFiles List of input PDF files to merge.
      * @param outputFileName The name of the output PDF file to create.
@@ -104,51 +601,309 @@ public class PDFFactory extends FileGenerator {
     public URI merge (List<String> inputFiles, String outputFileName) 
             throws PDFException {
         
-        URI               output      = null;
-        PDFMergerUtility  pmut        = new PDFMergerUtility();
-        List<InputStream> pdfsToMerge = new ArrayList<InputStream>();
-        OutputStream      os          = null;
+        String key    = getCacheKey(inputFiles, outputFileName);
+        URI    output = getCachedOutput(key);
+        
+        if (output != null) {
+            LOG.info("Returning cached output file [ "
+                    + output.toString()
+                    + " ].");
+            return output;
+        }
+        return merge(inputFiles, outputFileName, key);
+    }
+    
+    /**
+     * Merge the client-supplied list of PDF files into a single output 
+     * file in the staging area without consulting the merged output 
+     * cache.  The output is added to the cache under the supplied key.
+     * If the output cannot be written in full, the partial output is 
+     * removed (or, in S3, never committed).
+     * 
+     * @param inputFiles List of input PDF files to merge.
+     * @param outputFileName The name of the output PDF file to create.
+     * @param key The cache key for the input files (may be null).
+     * @return The URI of the output merged PDF file (may be null).
+     */
+    public URI merge (List<String> inputFiles, String outputFileName, String key) 
+            throws PDFException {
+        
+        URI output = null;
+        
+        try (MergedDocument merged = assemble(inputFiles)) {
+            output = super.getOutputPath(outputFileName);
+            LOG.info("Merging specified PDFs into output file [ "
+                    + output.toString()
+                    + " ].");
+            OutputStream os = 
+                    StorageFactory.get(output).newOutputStream(output);
+            try {
+                merged.save(os);
+                os.close();
+            }
+            catch (IOException | RuntimeException e) {
+                abort(os);
+                discard(output);
+                throw e;
+            }
+        }
+        catch (IOException ioe) {
+            String msg = "Unexpected IOException encountered while "
+                    + "attempting to generate the output merged PDF file."
+                    + "  Exception message => [ "
+                    + ioe.getMessage() 
+                    + " ].";
+            LOG.error("Exception to be thrown to the client [ "
+                    + msg
+                    + " ].");
+            throw new PDFException (msg);
+        }
+        MergeOutputCache.getInstance().put(key, output);
+        return output;
+    }
+    
+    /**
+     * Write an assembled document to a client stream.  If a cache key is 
+     * supplied, a copy of the output is written to the staging area and 
+     * added to the merged output cache.  Failures writing the copy do not
+     * affect the client stream.
+     * 
+     * @param merged The assembled document.
+     * @param key The cache key for the input files (may be null).
+     * @param outputFileName The name of the output PDF file.
+     * @param os The client stream.
+     * @return The cached copy of the output, or null if no copy was 
+     * cached.
+     * @throws IOException Thrown if the client stream could not be 
+     * written.
+     */
+    public URI save (
+            MergedDocument merged, 
+            String key, 
+            String outputFileName, 
+            OutputStream os) throws IOException {
+        
+        URI          output = null;
+        OutputStream copy   = null;
         
+        if (key != null) {
+            try {
+                output = super.getOutputPath(outputFileName);
+                copy   = StorageFactory.get(output).newOutputStream(output);
+            }
+            catch (IOException ioe) {
+                LOG.warn("Unable to create the cached copy of the merged "
+                        + "output.  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        if (copy == null) {
+            merged.save(os);
+            if (output != null) {
+                discard(output);
+            }
+            return null;
+        }
+        
+        boolean complete = false;
+        try {
+            TeeOutputStream tee = new TeeOutputStream(os, copy);
+            merged.save(tee);
+            complete = tee.isCopyComplete();
+        }
+        finally {
+            if (complete) {
+                try { 
+                    copy.close(); 
+                } 
+                catch (IOException ioe) {
+                    complete = false;
+                }
+            }
+            else {
+                abort(copy);
+            }
+            if (complete) {
+                MergeOutputCache.getInstance().put(key, output);
+            }
+            else {
+                discard(output);
+            }
+        }
+        return complete ? output : null;
+    }
+    
+    /**
+     * Abandon a partially written output stream.  An upload to S3 is 
+     * aborted so that the truncated content is never committed; other
+     * streams are closed and the caller removes the partial file.
+     * 
+     * @param os The output stream.
+     */
+    private void abort(OutputStream os) {
+        if (os instanceof S3MultipartOutputStream) {
+            ((S3MultipartOutputStream)os).abort();
+        }
+        else {
+            try { os.close(); } catch (Exception e) {}
+        }
+    }
+    
+    /**
+     * Remove an output file that will not be used, along with its 
+     * per-request staging directory.
+     * 
+     * @param output The output file.
+     */
+    private void discard(URI output) {
+        try {
+            StorageBackend storage = StorageFactory.get(output);
+            URI            parent  = StorageFactory.getParent(output);
+            storage.delete(output);
+            if (parent != null) {
+                storage.delete(parent);
+            }
+        }
+        catch (IOException ioe) {
+            LOG.warn("Unable to remove unused output file [ "
+                    + output.toString()
+                    + " ].  Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Calculate the merged output cache key for a list of input files 
+     * and the name of the output file.
+     * 
+     * @param inputFiles List of input PDF files.
+     * @param outputFileName The name of the output PDF file.
+     * @return The cache key, or null if caching is disabled.
+     */
+    public String getCacheKey (List<String> inputFiles, String outputFileName) {
+        return MergeOutputCache.getInstance().getKey(
+                inputFiles, 
+                getOutputFileName(outputFileName));
+    }
+    
+    /**
+     * Look up a previously merged output file.
+     * 
+     * @param key The cache key (may be null).
+     * @return The cached output file, or null if not cached.
+     */
+    public URI getCachedOutput (String key) {
+        return MergeOutputCache.getInstance().get(key);
+    }
+    
+    /**
+     * Assemble the client-supplied list of PDF files into a single output 
+     * document without writing it.  Each input file is parsed exactly 
+     * once: the document loaded during validation is appended directly to
+     * the output document.  Input files are parsed ahead of the merge by a 
+     * <code>DocumentPipeline</code> so that storage latency overlaps with 
+     * the append operations.  If structural validation is enabled, the 
+     * input files are first checked in parallel and invalid files are 
+     * discarded before any parsing takes place.
+     * 
+     * @param inputFiles List of input PDF files to merge.
+     * @return The assembled document.  The caller is responsible for 
+     * writing and closing the document.
+     * @throws PDFException Thrown if there are no valid input files or 
+     * the operation was cancelled.
+     */
+    public MergedDocument assemble (List<String> inputFiles) 
+            throws PDFException {
+        
+        MergedDocument   merged      = null;
+        PDFMergerUtility pmut        = new PDFMergerUtility();
+        List<PDDocument> pdfsToMerge = new ArrayList<PDDocument>();
+        PDDocument       destination = null;
+        DocumentPipeline pipeline    = null;
+        File             scratchDir  = null;
+        MergeMetrics     metrics     = new MergeMetrics();
+        
+        activeMetrics = metrics;
         if ((inputFiles != null) && (inputFiles.size() > 0)) {
             
+            long startTime = System.currentTimeMillis();
+            
             try {
                 
-                long validateStartTime = System.currentTimeMillis();
-                
-                // Ensure the client-supplied list of PDF files is valid.
-                for (String pdfFile : inputFiles) {
-                    URI uri = URIUtils.getInstance().getURI(pdfFile);
-                    if (isValidPDF(uri)) {
-                        pdfsToMerge.add(Files.newInputStream(Paths.get(uri)));
+                List<URI>     uris  = new ArrayList<URI>(inputFiles.size());
+                List<Boolean> valid = null;
+                if (isStructuralValidation()) {
+                    valid = validate(inputFiles);
+                }
+                for (int i = 0; i < inputFiles.size(); i++) {
+                    if ((valid == null) || (valid.get(i))) {
+                        uris.add(URIUtils.getInstance().getURI(
+                                inputFiles.get(i)));
                     }
                 }
+                metrics.setInputCount(inputFiles.size());
+                metrics.setLookaheadDepth(getEffectiveLookaheadDepth());
+                metrics.setWindowSize(getMergeWindow());
                 
-                // Log the time it took to validate the PDF files.
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("PDF validation operation completed in [ "
-                            + (System.currentTimeMillis() - validateStartTime)
-                            + " ] ms.");
+                // Half of the memory allowance goes to the output document,
+                // the other half is shared by the open input documents.
+                // Unless the windowed merge is enabled, every input remains
+                // open until the output has been saved.
+                scratchDir = ScratchSpace.getInstance().allocate();
+                MemoryUsageSetting memUsageSetting = memoryPolicy.select(
+                        getTotalSize(uris), 
+                        scratchDir, 
+                        ScratchSpace.getInstance().getQuota());
+                destination = new PDDocument(
+                        memUsageSetting.getPartitionedCopy(2));
+                pipeline = new DocumentPipeline(
+                        this, 
+                        uris, 
+                        getEffectiveLookaheadDepth(), 
+                        memUsageSetting.getPartitionedCopy(
+                                2 * getOpenDocumentLimit(uris.size())), 
+                        metrics);
+                activePipeline = pipeline;
+                if (cancelled) {
+                    pipeline.close();
                 }
                 
-                if (pdfsToMerge.size() >= 1) {
-                    
-                    long mergeStartTime = System.currentTimeMillis();
-                    output = super.getOutputPath(outputFileName);
-                    LOG.info("Merging specified PDFs into output file [ "
-                            + output.toString()
-                            + " ].");
-                    os = Files.newOutputStream(Paths.get(output));
-                    pmut.addSources(pdfsToMerge);
-                    pmut.setDestinationStream(os);
-                    pmut.mergeDocuments(MemoryUsageSetting.setupMainMemoryOnly());
-                    
-                    // Log the time it took to merge the PDF documents.
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("PDF merge operation completed in [ "
-                                + (System.currentTimeMillis() - mergeStartTime)
-                                + " ] ms.");
+                // Validate and append each of the client-supplied PDF files.
+                // Unless the windowed merge is enabled, the source documents 
+                // remain open until the destination document has been saved.
+                // appendDocument() copies the content streams into the 
+                // destination, so in windowed mode each source is closed as 
+                // soon as it has been appended.
+                while (pipeline.hasNext()) {
+                    PDDocument source = pipeline.next();
+                    if (source != null) {
+                        pdfsToMerge.add(source);
+                        long appendStartTime = System.currentTimeMillis();
+                        pmut.appendDocument(destination, source);
+                        metrics.addAppendTime(
+                                System.currentTimeMillis() - appendStartTime);
+                        metrics.incrementMergedCount();
+                        if (isWindowedMerge()) {
+                            pdfsToMerge.remove(source);
+                            closeSource(source, metrics);
+                        }
                     }
                 }
+                
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                
+                if (metrics.getMergedCount() >= 1) {
+                    merged = new MergedDocument(
+                            destination, 
+                            pdfsToMerge, 
+                            scratchDir, 
+                            metrics, 
+                            startTime);
+                }
                 else {
                     String msg = "The validation of the input PDF files resulted in "
                             + "less than one valid PDF for merging.  Processing "
@@ -160,6 +915,18 @@ public class PDFFactory extends FileGenerator {
                 }
                 
             }
+            catch (CancellationException ce) {
+                throw newCancelledException();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                String msg = "The merge operation was interrupted while "
+                        + "waiting for input PDF files to be parsed.";
+                LOG.error("Exception to be thrown to the client [ "
+                        + msg
+                        + " ].");
+                throw new PDFException (msg);
+            }
             catch (IOException ioe) {
                 String msg = "Unexpected IOException encountered while "
                         + "attempting to generate the output merged PDF file."
@@ -172,15 +939,23 @@ public class PDFFactory extends FileGenerator {
                 throw new PDFException (msg);
             }
             finally {
-                // Not sure if the PDFMergerUtility closes the streams so 
-                // manually close them here.
-                if (os != null) {
-                    try { os.close(); } catch (Exception e) {}
-                }
-                if ((pdfsToMerge != null) && (pdfsToMerge.size() > 0)) {
-                    for (InputStream stream : pdfsToMerge) {
-                        try { stream.close(); } catch (Exception e) {}
+                activePipeline = null;
+                if (pipeline != null) {
+                    pipeline.close();
+                }
+                // On success, ownership of the remaining resources passes 
+                // to the MergedDocument.
+                if (merged == null) {
+                    if (destination != null) {
+                        try { destination.close(); } catch (Exception e) {}
+                    }
+                    for (PDDocument source : pdfsToMerge) {
+                        closeSource(source, metrics);
                     }
+                    ScratchSpace.getInstance().release(scratchDir);
+                    metrics.setTotalTime(
+                            System.currentTimeMillis() - startTime);
+                    LOG.info(metrics.toString());
                 }
             }
         }
@@ -191,11 +966,172 @@ public class PDFFactory extends FileGenerator {
                     + " ].");
             throw new PDFException(msg);
         }
-        return output;
+        return merged;
+    }
+    
+    /**
+     * Calculate the total size of the input files.  Files whose size 
+     * cannot be determined are ignored.
+     * 
+     * @param uris The input files.
+     * @return The total size in bytes.
+     */
+    private long getTotalSize(List<URI> uris) {
+        long total = 0;
+        for (StorageMetadata metadata : 
+                StorageFactory.getInstance().getMetadata(uris).values()) {
+            total += metadata.getSize();
+        }
+        return total;
+    }
+
+    
+    /**
+     * Close an input document, updating the count of open documents.
+     * 
+     * @param source The input document.
+     * @param metrics Metrics associated with the current merge.
+     */
+    private void closeSource(PDDocument source, MergeMetrics metrics) {
+        try { source.close(); } catch (Exception e) {}
+        metrics.documentClosed();
     }
     
+    /**
+     * Calculate the look-ahead depth to use for a merge.  In windowed mode
+     * the window must hold the document being appended plus the documents
+     * being parsed ahead of it.
+     * 
+     * @return The look-ahead depth.
+     */
+    public int getEffectiveLookaheadDepth() {
+        if (isWindowedMerge()) {
+            return Math.min(getLookaheadDepth(), getMergeWindow() - 1);
+        }
+        return getLookaheadDepth();
+    }
     
+    /**
+     * Calculate the maximum number of input documents open at the same 
+     * time during a merge.  In windowed mode this is the document being 
+     * appended plus the documents being parsed ahead of it.  Otherwise 
+     * every input remains open until the output has been saved.
+     * 
+     * @param inputCount The number of input documents to merge.
+     * @return The number of input documents sharing the memory allowance.
+     */
+    public int getOpenDocumentLimit(int inputCount) {
+        if (isWindowedMerge()) {
+            return getEffectiveLookaheadDepth() + 1;
+        }
+        return Math.max(1, inputCount);
+    }
+    
+    /**
+     * Getter method for the maximum number of input documents open at the 
+     * same time.  A value of zero indicates the windowed merge is disabled.
+     * 
+     * @return The merge window size.
+     */
+    public int getMergeWindow() {
+        return mergeWindow;
+    }
+    
+    /**
+     * Determine whether the windowed merge is enabled.
+     * 
+     * @return True if input documents are closed as soon as they have been
+     * appended.
+     */
+    public boolean isWindowedMerge() {
+        return mergeWindow > 0;
+    }
+    
+    /**
+     * Setter method for the maximum number of input documents open at the
+     * same time.
+     * 
+     * @param value The merge window size (zero disables the windowed merge).
+     */
+    public void setMergeWindow(int value) {
+        mergeWindow = Math.max(0, value);
+    }
+    
+    /**
+     * Getter method for the number of input documents parsed ahead of the 
+     * document being merged.
+     * 
+     * @return The look-ahead depth.
+     */
+    public int getLookaheadDepth() {
+        return lookaheadDepth;
+    }
+    
+    /**
+     * Setter method for the number of input documents parsed ahead of the 
+     * document being merged.
+     * 
+     * @param value The look-ahead depth.
+     */
+    public void setLookaheadDepth(int value) {
+        lookaheadDepth = Math.max(0, value);
+    }
+    
+    /**
+     * Getter method for the flag indicating whether input files are 
+     * validated structurally rather than by a full parse.
+     * 
+     * @return True if structural validation is enabled.
+     */
+    public boolean isStructuralValidation() {
+        return structuralValidation;
+    }
+    
+    /**
+     * Setter method for the validation mode.  If the value is not 
+     * supplied or is not recognized, strict validation is used.
+     * 
+     * @param value The validation mode.
+     */
+    public void setValidationMode(String value) {
+        structuralValidation = false;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            if (value.trim().equalsIgnoreCase(VALIDATION_MODE_STRUCTURAL)) {
+                structuralValidation = true;
+            }
+            else if (!value.trim().equalsIgnoreCase(VALIDATION_MODE_STRICT)) {
+                LOG.warn("Invalid value for property [ "
+                        + VALIDATION_MODE_PROPERTY
+                        + " ] => [ "
+                        + value
+                        + " ].  Using [ "
+                        + VALIDATION_MODE_STRICT
+                        + " ] validation.");
+            }
+        }
+    }
+    
+    /**
+     * Merge the files identified by a client request into the staging 
+     * area.
+     * 
+     * @param request The client merge request.
+     * @return The URI of the output merged PDF file (may be null).
+     */
     public URI merge (MergeRequest request) throws PDFException {
         return merge(request.getFiles(), request.getFilename());
     }
+    
+    /**
+     * Assemble the files identified by a client request without writing
+     * the output.
+     * 
+     * @param request The client merge request.
+     * @return The assembled document.  The caller is responsible for 
+     * writing and closing the document.
+     */
+    public MergedDocument assemble (MergeRequest request) 
+            throws PDFException {
+        return assemble(request.getFiles());
+    }
 }
@@ -1,32 +1,50 @@
 package mil.nga;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
 
-import javax.annotation.PostConstruct;
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteStreams;
+
 import mil.nga.MergeRequest;
 import mil.nga.FileSystemFactory;
+import mil.nga.exceptions.ErrorMessageHolder;
 import mil.nga.exceptions.PDFException;
 import mil.nga.exceptions.PropertiesNotLoadedException;
 import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.S3InputCache;
+import mil.nga.storage.S3ReadMetrics;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
 import mil.nga.util.FileUtils;
+import mil.nga.util.SingleFlight;
 
 /**
  * Simple application that will merge PDF documents.
@@ -37,13 +55,16 @@ import mil.nga.util.FileUtils;
  * documents into a single PDF file.  
  * 
  * Two separate merging functions are provided, but the only differ by output.
- * Both functions perform the merge operation synchronously.
+ * Both functions perform the merge operation synchronously.  A third, 
+ * asynchronous, form is provided for large merges (see 
+ * <code>submitJob</code>).
  * <li><code>merge</code> Merges the requested documents and returns JSON 
  * containing a valid URL to the merged PDF document.</li>
  * <li><code>mergeAndDownload</code> Merges the requested documents and 
  * forces the browser to download the merged PDF document.  This version 
  * mimics the ColdFusion-based PDF merge process that this code was meant
- * to replace</li> 
+ * to replace.  By default the merged document is streamed directly to the
+ * client without a staging file.</li> 
  * 
  * Most errors are thrown as an HTML 400 (bad request) with a response body
  * made up of JSON with a relevant error message.
@@ -68,12 +89,24 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
         "SM_USER_CN"
     };
     
+    /**
+     * HTTP status returned when a request is rejected by admission 
+     * control (not defined by <code>Response.Status</code> in JAX-RS 2.0).
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+    
     /** 
      * Container-injected ServletContext object.
      */
     @Context 
     ServletContext _context;
     
+    /** 
+     * Container-injected HttpServletRequest object.
+     */
+    @Context 
+    HttpServletRequest _request;
+    
     /**
      * Default constructor.
      */
@@ -81,15 +114,6 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
         super(PROPERTY_FILE_NAME);
     }
 
-    /**
-     * Ensure the S3 file system provider is loaded.
-     */
-    @PostConstruct
-    public void init() {
-        // Ensure the S3 file system provider is loaded.
-        FileSystemFactory.getInstance().loadS3Filesystem();
-    }
-    
     /**
      * Try a couple of different headers to see if we can get a user 
      * name for the incoming request.  Most of the time this function 
@@ -172,7 +196,18 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
             try {
                 
                 PDFFactory pdfFact = new PDFFactory(super.getProperties());
-                URI output = pdfFact.merge(request);
+                String     key     = pdfFact.getCacheKey(
+                        request.getFiles(), 
+                        request.getFilename());
+                URI        output  = pdfFact.getCachedOutput(key);
+                
+                // Requests satisfied by the cache bypass admission control.
+                if (output == null) {
+                    output = mergeOnce(pdfFact, request, key);
+                    if (output == null) {
+                        return newTooManyRequestsResponse();
+                    }
+                }
                 
                 if (output != null) {
                     UrlGenerator urlFact = new UrlGenerator(super.getProperties());
@@ -201,12 +236,155 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
         return Response.ok(holder, MediaType.APPLICATION_JSON).build();
     }
     
+    /**
+     * Asynchronous form of the merge method.  Accepts a merge request 
+     * object (de-serialized via JAX-B), queues it for execution and 
+     * immediately returns the status of the new job, including the job 
+     * identifier used to poll for the result.  If the job queue is full 
+     * the request is rejected with an HTML 503 (service unavailable).
+     * 
+     * @param request An incoming PDF merge request.
+     * @return HTML 202 (accepted) with the status of the new job.
+     */
+    @POST
+    @Path("/jobs")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitJob(MergeRequest request) {
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("submitJob() invoked.");
+        }
+        if (request == null) {
+            LOGGER.error("Unable to deserialize the inputPDF merge request.  "
+                    + "The merge request was null.");
+            return Response.serverError().build();
+        }
+        
+        LOGGER.info(request.toString());
+        RequestArchiveService.getInstance().archiveRequest(request);
+        
+        try {
+            MergeJob job = MergeJobService.getInstance().submit(request);
+            return Response.status(Status.ACCEPTED)
+                    .entity(job.getStatus())
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        catch (RejectedExecutionException ree) {
+            return Response.status(Status.SERVICE_UNAVAILABLE)
+                    .entity(new ErrorMessageHolder("The merge job queue is "
+                            + "full.  Please try again later."))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+    }
+    
+    /**
+     * Report the state, progress and timing of an asynchronous merge job.
+     * 
+     * @param jobId The job identifier.
+     * @return The status of the job, or HTML 404 if the job is unknown.
+     */
+    @GET
+    @Path("/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobStatus(@PathParam("jobId") String jobId) {
+        MergeJob job = MergeJobService.getInstance().getJob(jobId);
+        if (job == null) {
+            return newUnknownJobResponse(jobId);
+        }
+        return Response.ok(job.getStatus(), MediaType.APPLICATION_JSON)
+                .build();
+    }
+    
+    /**
+     * Retrieve the result of an asynchronous merge job.  If the job has 
+     * completed, the response contains the URL of the merged PDF.  If the
+     * job is still queued or running, HTML 202 (accepted) is returned with
+     * the status of the job.  If the job failed or was cancelled, HTML 400
+     * is returned with the error message.
+     * 
+     * @param jobId The job identifier.
+     * @return The result of the job.
+     */
+    @GET
+    @Path("/jobs/{jobId}/result")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobResult(@PathParam("jobId") String jobId) 
+            throws PDFException {
+        
+        MergeJob job = MergeJobService.getInstance().getJob(jobId);
+        if (job == null) {
+            return newUnknownJobResponse(jobId);
+        }
+        
+        MergeJob.State state = job.getState();
+        if (state == MergeJob.State.COMPLETE) {
+            return Response.ok(
+                    new UrlHolder(job.getURL()), 
+                    MediaType.APPLICATION_JSON).build();
+        }
+        else if (state.isFinished()) {
+            throw new PDFException(job.getMessage());
+        }
+        return Response.status(Status.ACCEPTED)
+                .entity(job.getStatus())
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+    
+    /**
+     * Cancel an asynchronous merge job.
+     * 
+     * @param jobId The job identifier.
+     * @return The status of the job, or HTML 404 if the job is unknown.
+     */
+    @DELETE
+    @Path("/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelJob(@PathParam("jobId") String jobId) {
+        MergeJob job = MergeJobService.getInstance().cancel(jobId);
+        if (job == null) {
+            return newUnknownJobResponse(jobId);
+        }
+        return Response.ok(job.getStatus(), MediaType.APPLICATION_JSON)
+                .build();
+    }
+    
+    /**
+     * Construct the response returned when a client references a job that
+     * does not exist (or has been discarded).
+     * 
+     * @param jobId The job identifier.
+     * @return HTML 404 with a JSON message body.
+     */
+    private Response newUnknownJobResponse(String jobId) {
+        return Response.status(Status.NOT_FOUND)
+                .entity(new ErrorMessageHolder("Unknown merge job [ "
+                        + jobId
+                        + " ]."))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+    
     /**
      * Alternate form of the merge method.  Accepts a merge request object 
      * (de-serialized via JAX-B) and generates a merged PDF.  It then returns
      * a Response object that forces a download.
      * 
+     * In <code>stream</code> mode (the default) the input files are 
+     * validated and assembled before the response is committed, so invalid
+     * requests still result in an HTML 400.  The output is then written 
+     * directly to the client connection without a staging file.  If an 
+     * error occurs while the output is being written, the connection is 
+     * aborted rather than completed, so the client never receives a 
+     * truncated file that looks complete.  In <code>staged</code> mode the
+     * output is written to the staging area and then returned.
+     * 
      * @param request An incoming PDF merge request.
+     * @param mode Optional override of the configured download mode 
+     * (<code>stream</code> or <code>staged</code>).
      * @return A Response object that forces the browser to start a download 
      * of the output PDF.
      */
@@ -214,8 +392,10 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
     @Path("/mergeAndDownload")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces("application/pdf")
-    public Response mergeAndDownload(MergeRequest request) 
-            throws PDFException {
+    public Response mergeAndDownload(
+            MergeRequest request, 
+            @QueryParam("mode") String mode) 
+                    throws PDFException {
         
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("mergeAndDownload() invoked.");
@@ -228,16 +408,51 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
         
             try {
                 PDFFactory pdfFact = new PDFFactory(super.getProperties());
-                URI output = pdfFact.merge(request);
+                String     key     = pdfFact.getCacheKey(
+                        request.getFiles(), 
+                        request.getFilename());
+                URI        output  = pdfFact.getCachedOutput(key);
+                
+                if (isStreamingDownload(mode)) {
+                    StreamingOutput entity = null;
+                    if (output != null) {
+                        entity = newStreamingOutput(output);
+                    }
+                    else {
+                        entity = newStreamingOutput(pdfFact, request, key);
+                        if (entity == null) {
+                            return newTooManyRequestsResponse();
+                        }
+                    }
+                    return Response.ok(entity)
+                            .header("Content-Disposition", 
+                                    "attachment; filename=\"" 
+                                    + pdfFact.getOutputFileName(
+                                            request.getFilename())
+                                    + "\"")
+                            .build();
+                }
+                
+                if (output == null) {
+                    output = mergeOnce(pdfFact, request, key);
+                    if (output == null) {
+                        return newTooManyRequestsResponse();
+                    }
+                }
                 
                 if (output != null) {
                     
-                    java.nio.file.Path p = Paths.get(output);
-                    // If the output file exists, start the download.
-                    if (Files.exists(p)) {
-                        return Response.ok(p)
+                    StorageBackend storage = StorageFactory.get(output);
+                    // If the output file exists, start the download.  
+                    // Output that is not on local disk is streamed from 
+                    // the storage backend.
+                    if (storage.exists(output)) {
+                        java.nio.file.Path p = storage.getLocalPath(output);
+                        Object entity = (p != null) ? 
+                                p : newStreamingOutput(output);
+                        return Response.ok(entity)
                                 .header("Content-Disposition", 
-                                        "attachment; filename=" + p.toString() + "\"")
+                                        "attachment; filename=" + output.getPath() + "\"")
                                 .build();
                     }
                     else {
@@ -269,4 +484,339 @@ public class PDFMerge extends PropertyLoader implements PDFMergeI {
             return Response.serverError().build();
         }
     }
+    
+    /**
+     * Report the current usage of the admission control budget, the 
+     * merge deduplication counters, the request archive counters and the
+     * staging reaper counters.
+     * 
+     * @return The service status.
+     */
+    @GET
+    @Path("/status")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getStatus() {
+        ServiceStatus status = new ServiceStatus();
+        status.setAdmission(AdmissionController.getInstance().getStatus());
+        status.setDeduplication(MergeSingleFlight.getInstance().getStatus());
+        status.setArchive(RequestArchiveService.getInstance().getStatus());
+        status.setStaging(StagingReaper.getInstance().getStatus());
+        status.setS3(S3ReadMetrics.getInstance().getStatus());
+        status.setS3Cache(S3InputCache.getInstance().getStatus());
+        status.setS3Health(FileSystemFactory.getInstance().getStatus());
+        return Response.ok(status, MediaType.APPLICATION_JSON).build();
+    }
+    
+    /**
+     * Merge the files identified by a client request into the staging 
+     * area, subject to admission control.  If an identical request is 
+     * already being merged, its output is shared rather than merging the
+     * files again.
+     * 
+     * @param pdfFact The factory used to perform the merge.
+     * @param request The client merge request.
+     * @param key The merged output cache key (may be null).
+     * @return The URI of the output merged PDF file, or null if the 
+     * request was rejected by admission control.
+     */
+    private URI mergeOnce(
+            final PDFFactory pdfFact, 
+            final MergeRequest request, 
+            final String key) throws PDFException {
+        try {
+            return MergeSingleFlight.getInstance().execute(
+                    request, 
+                    new Callable<URI>() {
+                        @Override
+                        public URI call() throws PDFException {
+                            AdmissionController.Permit permit = 
+                                    AdmissionController.getInstance().admit(
+                                            request.getFiles());
+                            if (permit == null) {
+                                // Abandon the merge so that identical 
+                                // requests make their own admission 
+                                // decision.
+                                throw new CancellationException();
+                            }
+                            try {
+                                return pdfFact.merge(
+                                        request.getFiles(), 
+                                        request.getFilename(), 
+                                        key);
+                            }
+                            finally {
+                                permit.close();
+                            }
+                        }
+                    });
+        }
+        catch (CancellationException ce) {
+            return null;
+        }
+    }
+    
+    /**
+     * Construct the response returned when a request is rejected by 
+     * admission control.
+     * 
+     * @return HTML 429 with a Retry-After header and a JSON message body.
+     */
+    private Response newTooManyRequestsResponse() {
+        return Response.status(TOO_MANY_REQUESTS)
+                .header("Retry-After", 
+                        AdmissionController.getInstance().getRetryAfter())
+                .entity(new ErrorMessageHolder("The server is busy "
+                        + "processing other merge requests.  Please try "
+                        + "again later."))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+    
+    /**
+     * Determine whether <code>mergeAndDownload</code> should stream the 
+     * output directly to the client.  The client-supplied mode takes 
+     * precedence over the configured mode.
+     * 
+     * @param mode The client-supplied mode (may be null).
+     * @return True if the output should be streamed.
+     * @throws PropertiesNotLoadedException Thrown if the system properties
+     * are not available.
+     */
+    private boolean isStreamingDownload(String mode) 
+            throws PropertiesNotLoadedException {
+        String value = mode;
+        if ((value == null) || (value.trim().isEmpty())) {
+            value = super.getProperties().getProperty(
+                    DOWNLOAD_MODE_PROPERTY, 
+                    DOWNLOAD_MODE_STREAM);
+        }
+        return !value.trim().equalsIgnoreCase(DOWNLOAD_MODE_STAGED);
+    }
+    
+    /**
+     * Construct the <code>StreamingOutput</code> for a request that is not
+     * satisfied by the merged output cache, subject to admission control.
+     * The input files are assembled before the response is committed.  
+     * 
+     * If the merged output is cached, identical requests arriving while 
+     * the output is being streamed wait for the cached copy and stream 
+     * that instead of merging the files again.  If the cached copy is not
+     * produced (e.g. the client disconnected) the waiting requests 
+     * perform the merge themselves.
+     * 
+     * @param pdfFact The factory used to perform the merge.
+     * @param request The client merge request.
+     * @param key The merged output cache key (may be null).
+     * @return The entity to return to the client, or null if the request 
+     * was rejected by admission control.
+     */
+    private StreamingOutput newStreamingOutput(
+            PDFFactory pdfFact, 
+            MergeRequest request, 
+            String key) throws PDFException {
+        
+        SingleFlight<List<String>, URI>.Ticket ticket = null;
+        while ((key != null) && (ticket == null)) {
+            ticket = MergeSingleFlight.getInstance().begin(request);
+            if (!ticket.isLeader()) {
+                URI shared = MergeSingleFlight.getInstance().await(ticket);
+                ticket = null;
+                if (shared != null) {
+                    if (StorageFactory.get(shared).exists(shared)) {
+                        return newStreamingOutput(shared);
+                    }
+                    break;
+                }
+            }
+        }
+        
+        AdmissionController.Permit permit = 
+                AdmissionController.getInstance().admit(request.getFiles());
+        if (permit == null) {
+            if (ticket != null) {
+                ticket.abandon();
+            }
+            return null;
+        }
+        
+        MergedDocument merged = null;
+        try {
+            merged = pdfFact.assemble(request);
+        }
+        catch (PDFException | RuntimeException e) {
+            permit.close();
+            if (ticket != null) {
+                ticket.fail(e);
+            }
+            throw e;
+        }
+        return newStreamingOutput(
+                pdfFact, 
+                merged, 
+                key, 
+                request.getFilename(), 
+                permit, 
+                ticket);
+    }
+    
+    /**
+     * Wrap an assembled document in a <code>StreamingOutput</code> that 
+     * writes the document to the client connection and then releases it.
+     * Any failure is re-thrown, with the client stream left open, so that
+     * the container aborts the connection rather than ending the response
+     * as if the (truncated) document were complete.
+     * The container does not call the output if the response fails before
+     * the entity is written, so the resources are also registered with the
+     * request and released by the <code>PDFMergeContextListener</code> 
+     * when the request completes.
+     * 
+     * @param pdfFact The factory that assembled the document.
+     * @param merged The assembled document.
+     * @param key The merged output cache key (may be null).
+     * @param outputFileName The client-requested output file name.
+     * @param permit Admission permit released once the output has been 
+     * written.
+     * @param ticket Deduplication ticket finished once the output has been 
+     * written (may be null).
+     * @return The entity to return to the client.
+     */
+    StreamingOutput newStreamingOutput(
+            final PDFFactory pdfFact, 
+            final MergedDocument merged, 
+            final String key, 
+            final String outputFileName, 
+            final AdmissionController.Permit permit, 
+            final SingleFlight<List<String>, URI>.Ticket ticket) {
+        final StreamedMerge resources = 
+                new StreamedMerge(merged, permit, ticket);
+        if (_request != null) {
+            _request.setAttribute(
+                    PDFMergeContextListener.RELEASE_ATTRIBUTE, 
+                    resources);
+        }
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                URI copy = null;
+                try {
+                    copy = pdfFact.save(merged, key, outputFileName, os);
+                }
+                catch (IOException | RuntimeException e) {
+                    logStreamingFailure(e);
+                    throw e;
+                }
+                finally {
+                    resources.release(copy);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Wrap a previously merged output file in a 
+     * <code>StreamingOutput</code>.
+     * 
+     * @param output The cached output file.
+     * @return The entity to return to the client.
+     */
+    private StreamingOutput newStreamingOutput(final URI output) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                try (InputStream is = 
+                        StorageFactory.get(output).newInputStream(output)) {
+                    ByteStreams.copy(is, os);
+                }
+                catch (IOException | RuntimeException e) {
+                    logStreamingFailure(e);
+                    throw e;
+                }
+            }
+        };
+    }
+    
+    /**
+     * Log a failure encountered after the response was committed.
+     * 
+     * @param e The failure.
+     */
+    private void logStreamingFailure(Exception e) {
+        LOGGER.error("Unexpected exception encountered while "
+                + "streaming the merged PDF to the client.  The "
+                + "connection will be aborted.  Exception "
+                + "message => [ "
+                + e.getMessage()
+                + " ].");
+    }
+    
+    /**
+     * Resources held by a merge whose output is streamed to the client: 
+     * the assembled document, the admission permit and the deduplication
+     * ticket.  They are released exactly once, either when the output has
+     * been written or when the request completes without the output 
+     * being written.
+     */
+    static class StreamedMerge implements Closeable {
+        
+        private final MergedDocument                         merged;
+        private final AdmissionController.Permit             permit;
+        private final SingleFlight<List<String>, URI>.Ticket ticket;
+        private boolean                                      released = false;
+        
+        /**
+         * Constructor.
+         * 
+         * @param merged The assembled document.
+         * @param permit The admission permit.
+         * @param ticket The deduplication ticket (may be null).
+         */
+        StreamedMerge(
+                MergedDocument merged, 
+                AdmissionController.Permit permit, 
+                SingleFlight<List<String>, URI>.Ticket ticket) {
+            this.merged = merged;
+            this.permit = permit;
+            this.ticket = ticket;
+        }
+        
+        /**
+         * Release the resources.  The deduplication ticket is completed 
+         * with the cached copy of the output, or abandoned if there is 
+         * none.  Subsequent calls have no effect.
+         * 
+         * @param copy The cached copy of the output (may be null).
+         */
+        synchronized void release(URI copy) {
+            if (!released) {
+                released = true;
+                merged.close();
+                permit.close();
+                if (ticket != null) {
+                    if (copy != null) {
+                        ticket.complete(copy);
+                    }
+                    else {
+                        ticket.abandon();
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Release the resources of a merge whose output was never written.
+         */
+        @Override
+        public void close() {
+            release(null);
+        }
+        
+        /**
+         * Getter method for the flag indicating the resources have been 
+         * released.
+         * @return True if the resources have been released.
+         */
+        synchronized boolean isReleased() {
+            return released;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package mil.nga;
+
+import java.io.Closeable;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet context listener used to start the application-wide background
+ * tasks when the application is deployed, and to release the 
+ * application-wide resources (i.e. background threads) when the 
+ * application is undeployed.  Without this, redeploying the WAR would 
+ * leave the previous deployment's threads running in the container.
+ * 
+ * The listener also releases per-request resources registered under
+ * <code>RELEASE_ATTRIBUTE</code> once the request completes.  Resources 
+ * handed to a <code>StreamingOutput</code> are normally released when the
+ * output is written, but the container does not call the output if the 
+ * response fails (or the client disconnects) before the entity is 
+ * written.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class PDFMergeContextListener 
+        implements ServletContextListener, ServletRequestListener {
+
+    /**
+     * Static logger for use throughout the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PDFMergeContextListener.class);
+    
+    /**
+     * Name of the request attribute holding a <code>Closeable</code> to 
+     * be closed when the request completes.
+     */
+    public static final String RELEASE_ATTRIBUTE = 
+            "mil.nga.PDFMergeContextListener.release";
+    
+    /**
+     * Start the staging reaper and the S3 health checks.  The other 
+     * shared resources are created lazily.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) { 
+        StagingReaper.getInstance().start();
+        FileSystemFactory.getInstance().start();
+    }
+
+    /**
+     * Shut down the shared resources.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        LOGGER.info("Application is shutting down.  Releasing shared "
+                + "resources.");
+        StagingReaper.getInstance().shutdown();
+        MergeJobService.getInstance().shutdown();
+        WorkerPool.getInstance().shutdown();
+        RequestArchiveService.getInstance().shutdown();
+        FileSystemFactory.getInstance().shutdown();
+    }
+
+    /**
+     * Nothing to do when a request starts.
+     */
+    @Override
+    public void requestInitialized(ServletRequestEvent sre) { }
+
+    /**
+     * Release any resources the request left behind.
+     */
+    @Override
+    public void requestDestroyed(ServletRequestEvent sre) {
+        Object release = sre.getServletRequest().getAttribute(
+                RELEASE_ATTRIBUTE);
+        if (release instanceof Closeable) {
+            try {
+                ((Closeable)release).close();
+            }
+            catch (Exception e) {
+                LOGGER.warn("Unexpected exception encountered while "
+                        + "releasing the resources of a completed request."
+                        + "  Exception message => [ "
+                        + e.getMessage()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package mil.nga;
+
+import java.net.URI;
+
+/**
+ * Simple class holding the result of validating a single input file along
+ * with cheap metadata collected at the same time.  Each instance records
+ * the size and last modified time of the file at the time it was
+ * inspected so that the <code>PDFMetadataCache</code> can detect changes
+ * to the file.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFMetadata {
+
+    /**
+     * Value used for metadata that was not collected.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * The input file.
+     */
+    private final URI uri;
+
+    /**
+     * Size of the file when it was inspected.
+     */
+    private final long size;
+
+    /**
+     * Last modified time (ms) of the file when it was inspected.
+     */
+    private final long lastModified;
+
+    /**
+     * Flag indicating the file is a valid PDF.
+     */
+    private boolean valid = false;
+
+    /**
+     * Flag indicating the file is encrypted.
+     */
+    private boolean encrypted = false;
+
+    /**
+     * Number of pages (UNKNOWN if only the structure was checked).
+     */
+    private int pageCount = UNKNOWN;
+
+    /**
+     * PDF version from the file header (null if unknown).
+     */
+    private String version = null;
+
+    /**
+     * Constructor recording the identity of the file.
+     *
+     * @param uri The input file.
+     * @param size Size of the file in bytes.
+     * @param lastModified Last modified time of the file (ms).
+     */
+    public PDFMetadata(URI uri, long size, long lastModified) {
+        this.uri          = uri;
+        this.size         = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Determine whether this metadata still describes the file.
+     *
+     * @param currentSize The current size of the file.
+     * @param currentLastModified The current last modified time (ms).
+     * @return True if the file has not changed.
+     */
+    public boolean matches(long currentSize, long currentLastModified) {
+        return (size == currentSize) && (lastModified == currentLastModified);
+    }
+
+    /**
+     * Getter method for the last modified time of the file.
+     * @return Time in milliseconds.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Getter method for the number of pages.
+     * @return The number of pages (UNKNOWN if not collected).
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Getter method for the size of the file.
+     * @return Size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter method for the input file.
+     * @return The input file.
+     */
+    public URI getURI() {
+        return uri;
+    }
+
+    /**
+     * Getter method for the PDF version.
+     * @return The version (null if unknown).
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter method for the encryption flag.
+     * @return True if the file is encrypted.
+     */
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    /**
+     * Getter method for the validation result.
+     * @return True if the file is a valid PDF.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Setter method for the encryption flag.
+     * @param value True if the file is encrypted.
+     */
+    public void setEncrypted(boolean value) {
+        encrypted = value;
+    }
+
+    /**
+     * Setter method for the number of pages.
+     * @param value The number of pages.
+     */
+    public void setPageCount(int value) {
+        pageCount = value;
+    }
+
+    /**
+     * Setter method for the validation result.
+     * @param value True if the file is a valid PDF.
+     */
+    public void setValid(boolean value) {
+        valid = value;
+    }
+
+    /**
+     * Setter method for the PDF version.
+     * @param value The version.
+     */
+    public void setVersion(String value) {
+        version = value;
+    }
+
+    /**
+     * Convert the metadata to a printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("PDF metadata => [ uri=");
+        sb.append(getURI());
+        sb.append(", size=");
+        sb.append(getSize());
+        sb.append(", valid=");
+        sb.append(isValid());
+        sb.append(", pages=");
+        sb.append(getPageCount());
+        sb.append(", version=");
+        sb.append(getVersion());
+        sb.append(", encrypted=");
+        sb.append(isEncrypted());
+        sb.append(" ]");
+        return sb.toString();
+    }
+}
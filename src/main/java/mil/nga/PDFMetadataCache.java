@@ -0,0 +1,286 @@
+package mil.nga;
+
+import java.net.URI;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageFactory;
+import mil.nga.storage.StorageMetadata;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * In-memory cache of input file validation results.  The same input files
+ * are requested over and over again, so rather than parsing (or
+ * structurally checking) each file on every request the result of the
+ * first validation is retained along with the size and last modified time
+ * of the file.  A cached entry is only used if the file still has the
+ * same size and last modified time, so with a warm cache validating a
+ * file costs a single <code>stat</code>.  The cache is bounded by entry
+ * count with least recently used entries evicted first.  Files that failed
+ * validation are held separately and expire after a short, configurable
+ * interval.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFMetadataCache
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PDFMetadataCache.class);
+
+    /**
+     * The underlying cache (null if caching is disabled).
+     */
+    private final Cache<URI, PDFMetadata> cache;
+
+    /**
+     * Cache of files that failed validation (null if caching is disabled).
+     */
+    private final Cache<URI, PDFMetadata> invalid;
+
+    /**
+     * Number of lookups satisfied by the cache.
+     */
+    private final AtomicLong hits = new AtomicLong(0);
+
+    /**
+     * Number of lookups not satisfied by the cache.
+     */
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Number of entries discarded because the file changed.
+     */
+    private final AtomicLong stale = new AtomicLong(0);
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private PDFMetadataCache() {
+        super(PROPERTY_FILE_NAME);
+
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        long maxEntries = PropertyUtils.getLong(
+                props,
+                METADATA_CACHE_SIZE_PROPERTY,
+                DEFAULT_METADATA_CACHE_SIZE);
+        long invalidTTL = PropertyUtils.getLong(
+                props,
+                METADATA_CACHE_INVALID_TTL_PROPERTY,
+                DEFAULT_METADATA_CACHE_INVALID_TTL);
+        if (maxEntries > 0) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(maxEntries)
+                    .build();
+            invalid = CacheBuilder.newBuilder()
+                    .maximumSize(maxEntries)
+                    .expireAfterWrite(Math.max(0, invalidTTL), TimeUnit.SECONDS)
+                    .build();
+            LOGGER.info("PDF metadata cache enabled with a maximum of [ "
+                    + maxEntries
+                    + " ] entries.  Invalid files are retained for [ "
+                    + invalidTTL
+                    + " ] seconds.");
+        }
+        else {
+            cache   = null;
+            invalid = null;
+            LOGGER.info("PDF metadata cache disabled.");
+        }
+    }
+
+    /**
+     * Return a singleton instance to the PDFMetadataCache object.
+     * @return The PDFMetadataCache
+     */
+    public static PDFMetadataCache getInstance() {
+        return PDFMetadataCacheHolder.getSingleton();
+    }
+
+    /**
+     * Read the size and last modified time of a file.
+     *
+     * @param uri The target file.
+     * @return The file metadata, or null if it is not available.
+     */
+    public static StorageMetadata stat(URI uri) {
+        try {
+            return StorageFactory.get(uri).getMetadata(uri);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Look up the cached metadata for a file.  Entries are only returned
+     * if the file has not changed since it was inspected.
+     *
+     * @param uri The target file.
+     * @param attrs The current attributes of the file (may be null).
+     * @return The cached metadata, or null if not cached.
+     */
+    public PDFMetadata get(URI uri, StorageMetadata attrs) {
+
+        PDFMetadata metadata = null;
+
+        if ((cache != null) && (uri != null) && (attrs != null)) {
+            PDFMetadata entry = cache.getIfPresent(uri);
+            if (entry == null) {
+                entry = invalid.getIfPresent(uri);
+            }
+            if (entry != null) {
+                if (entry.matches(
+                        attrs.getSize(),
+                        attrs.getLastModified())) {
+                    metadata = entry;
+                }
+                else {
+                    cache.invalidate(uri);
+                    invalid.invalidate(uri);
+                    stale.incrementAndGet();
+                }
+            }
+            if (metadata != null) {
+                hits.incrementAndGet();
+            }
+            else {
+                misses.incrementAndGet();
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("PDF metadata cache "
+                        + (metadata != null ? "hit" : "miss")
+                        + " for file [ "
+                        + uri.toString()
+                        + " ].  "
+                        + toString());
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Add the metadata for a file to the cache.  Callers should only add
+     * invalid results for files that were read but could not be parsed,
+     * never for files that could not be read.
+     *
+     * @param metadata The metadata (may be null).
+     */
+    public void put(PDFMetadata metadata) {
+        if ((cache != null) && (metadata != null) &&
+                (metadata.getURI() != null)) {
+            if (metadata.isValid()) {
+                invalid.invalidate(metadata.getURI());
+                cache.put(metadata.getURI(), metadata);
+            }
+            else {
+                cache.invalidate(metadata.getURI());
+                invalid.put(metadata.getURI(), metadata);
+            }
+        }
+    }
+
+    /**
+     * Discard all cached metadata.
+     */
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+            invalid.invalidateAll();
+        }
+    }
+
+    /**
+     * Getter method for the number of cache hits.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter method for the number of cache misses.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter method for the number of entries discarded because the file
+     * changed.
+     * @return The number of stale entries.
+     */
+    public long getStale() {
+        return stale.get();
+    }
+
+    /**
+     * Convert the cache statistics to a printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Cache statistics => [ entries=");
+        sb.append(cache != null ? cache.size() + invalid.size() : 0);
+        sb.append(", hits=");
+        sb.append(getHits());
+        sb.append(", misses=");
+        sb.append(getMisses());
+        sb.append(", stale=");
+        sb.append(getStale());
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class PDFMetadataCacheHolder {
+
+        /**
+         * Reference to the Singleton instance of the PDFMetadataCache
+         */
+        private static PDFMetadataCache _instance = new PDFMetadataCache();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * PDFMetadataCache.
+         *
+         * @return The singleton instance of the PDFMetadataCache.
+         */
+        public static PDFMetadataCache getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package mil.nga;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.storage.StorageFactory;
+
+/**
+ * Lightweight PDF validator that checks the structure of a file without
+ * building the document object graph.  Only a few small, bounded regions
+ * of the file are read:
+ * <li>The head of the file, which must contain the <code>%PDF-</code>
+ * header.</li>
+ * <li>The tail of the file, which must contain the <code>startxref</code>
+ * keyword, the cross-reference offset and the <code>%%EOF</code>
+ * marker.</li>
+ * <li>The region at the cross-reference offset, which must contain either
+ * a parsable cross-reference table or a cross-reference stream object.</li>
+ *
+ * The cost of validation is therefore independent of the size of the file.
+ * The regions are read through a random access channel obtained from the
+ * storage backend holding the file.
+ * A file that passes structural validation may still fail to parse, so
+ * the merge process still handles parse failures.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFStructureValidator {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PDFStructureValidator.class);
+
+    /**
+     * Number of bytes at the head of the file searched for the header.
+     * The specification allows arbitrary bytes to precede the header and
+     * most readers search the first 1024 bytes.
+     */
+    private static final int HEAD_LENGTH = 1024;
+
+    /**
+     * Number of bytes at the tail of the file searched for the trailer.
+     */
+    private static final int TAIL_LENGTH = 2048;
+
+    /**
+     * Number of bytes read at the cross-reference offset.
+     */
+    private static final int XREF_LENGTH = 1024;
+
+    /**
+     * Pattern used to locate the PDF header.
+     */
+    private static final Pattern HEADER =
+            Pattern.compile("%PDF-(\\d\\.\\d)");
+
+    /**
+     * Pattern used to extract the cross-reference offset from the trailer.
+     */
+    private static final Pattern STARTXREF =
+            Pattern.compile("startxref\\s+(\\d+)\\s+%%EOF");
+
+    /**
+     * Pattern matching the start of a cross-reference table: the keyword,
+     * a subsection header and the first 20-byte entry.
+     */
+    private static final Pattern XREF_TABLE = Pattern.compile(
+            "^\\s*xref\\s+\\d+\\s+\\d+\\s*[\\r\\n]+\\d{10} \\d{5} [nf]");
+
+    /**
+     * Pattern matching the start of a cross-reference stream object.
+     */
+    private static final Pattern XREF_STREAM = Pattern.compile(
+            "^\\s*\\d+\\s+\\d+\\s+obj\\s*<<.*?/Type\\s*/XRef",
+            Pattern.DOTALL);
+
+    /**
+     * Pattern used to detect an encryption dictionary reference in the
+     * trailer or cross-reference stream dictionary.
+     */
+    private static final Pattern ENCRYPT = Pattern.compile("/Encrypt\\b");
+
+    /**
+     * Private constructor enforcing the singleton design pattern.
+     */
+    private PDFStructureValidator() {}
+
+    /**
+     * Accessor method for the singleton instance of the
+     * <code>PDFStructureValidator</code> class.
+     *
+     * @return The singleton instance.
+     */
+    public static PDFStructureValidator getInstance() {
+        return PDFStructureValidatorHolder.getSingleton();
+    }
+
+    /**
+     * Read a bounded region of the file.
+     *
+     * @param channel Open channel to the target file.
+     * @param position Offset of the first byte to read.
+     * @param length Maximum number of bytes to read.
+     * @return The bytes read decoded as ISO-8859-1 so that binary content
+     * maps one-to-one onto characters.
+     */
+    private String readAt(
+            SeekableByteChannel channel,
+            long position,
+            int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return StandardCharsets.ISO_8859_1.decode(buffer).toString();
+    }
+
+    /**
+     * Check the structure of the target file.
+     *
+     * @param pdfFile URI of a candidate file.
+     * @return True if the file appears to be a structurally valid PDF.
+     */
+    public boolean isValidPDF(URI pdfFile) {
+        try {
+            return inspect(pdfFile, null);
+        }
+        catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Check the structure of the target file, recording the version and
+     * encryption flag found along the way.  A file that could not be read
+     * is not known to be invalid, so read failures are passed on to the
+     * caller rather than recorded in the metadata.
+     *
+     * @param pdfFile URI of a candidate file.
+     * @param metadata Object populated with the result (may be null).
+     * @return True if the file appears to be a structurally valid PDF.
+     * @throws IOException Thrown if the file could not be read.
+     */
+    public boolean inspect(URI pdfFile, PDFMetadata metadata)
+            throws IOException {
+
+        boolean valid     = false;
+        boolean encrypted = false;
+        String  version   = null;
+        String  reason    = null;
+        long    startTime = System.currentTimeMillis();
+
+        if (pdfFile != null) {
+            try (SeekableByteChannel channel =
+                    StorageFactory.get(pdfFile).newReadChannel(pdfFile)) {
+
+                long size = channel.size();
+
+                String head = readAt(
+                        channel,
+                        0,
+                        (int)Math.min(size, HEAD_LENGTH));
+                Matcher header = HEADER.matcher(head);
+                if (!header.find()) {
+                    reason = "Missing %PDF- header";
+                }
+                else {
+                    version = header.group(1);
+                    long tailStart = Math.max(0, size - TAIL_LENGTH);
+                    String tail = readAt(
+                            channel,
+                            tailStart,
+                            (int)(size - tailStart));
+
+                    // Use the last startxref in the file, incremental
+                    // updates append additional trailers.
+                    Matcher matcher = STARTXREF.matcher(tail);
+                    long    offset  = -1;
+                    while (matcher.find()) {
+                        try {
+                            offset = Long.parseLong(matcher.group(1));
+                        }
+                        catch (NumberFormatException nfe) {
+                            // Too many digits for a long, so the offset 
+                            // is beyond the end of any file.
+                            offset = Long.MAX_VALUE;
+                        }
+                    }
+                    if (offset < 0) {
+                        reason = "Missing startxref/%%EOF trailer";
+                    }
+                    else if (offset >= size) {
+                        reason = "Cross-reference offset [ "
+                                + offset
+                                + " ] beyond end of file";
+                    }
+                    else {
+                        String xref = readAt(
+                                channel,
+                                offset,
+                                (int)Math.min(size - offset, XREF_LENGTH));
+                        if (XREF_TABLE.matcher(xref).find() ||
+                                XREF_STREAM.matcher(xref).find()) {
+                            valid     = true;
+                            encrypted = ENCRYPT.matcher(tail).find() ||
+                                    ENCRYPT.matcher(xref).find();
+                        }
+                        else {
+                            reason = "No cross-reference table or stream "
+                                    + "at offset [ "
+                                    + offset
+                                    + " ]";
+                        }
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("IOException encountered while reading file [ "
+                        + pdfFile.toString()
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+                throw ioe;
+            }
+
+            if (metadata != null) {
+                metadata.setValid(valid);
+                metadata.setVersion(version);
+                metadata.setEncrypted(encrypted);
+            }
+            if (!valid) {
+                LOGGER.warn("File [ "
+                        + pdfFile.toString()
+                        + " ] failed structural validation.  Reason => [ "
+                        + reason
+                        + " ].");
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Structural validation of file [ "
+                        + pdfFile.toString()
+                        + " ] completed in [ "
+                        + (System.currentTimeMillis() - startTime)
+                        + " ] ms, result was [ "
+                        + valid
+                        + " ].");
+            }
+        }
+        else {
+            LOGGER.warn("Input filename is null or empty.");
+        }
+        return valid;
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This class
+     * exploits the fact that classes are not loaded until they are referenced
+     * therefore enforcing thread safety without the performance hit imposed
+     * by the <code>synchronized</code> keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class PDFStructureValidatorHolder {
+
+        /**
+         * Reference to the Singleton instance of the
+         * <code>PDFStructureValidator</code>.
+         */
+        private static PDFStructureValidator _instance =
+                new PDFStructureValidator();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * <code>PDFStructureValidator</code>.
+         * @return The Singleton instance of the
+         * <code>PDFStructureValidator</code>.
+         */
+        public static PDFStructureValidator getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package mil.nga;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * Class used to stream the requests stored by the 
+ * <code>RequestArchiveService</code> back out of the archive directory 
+ * for analysis or replay.  
+ * 
+ * The archive consists of segment files containing one JSON-encoded 
+ * <code>ArchivedRequest</code> per line.  Rolled segments are gzip 
+ * compressed.  Segment names identify the service instance that wrote them
+ * and their position in that instance's sequence, so the segments of each
+ * instance are read one after the other and the instances are merged on 
+ * the time the requests were received.  Only one segment per instance is 
+ * open at any time, and requests are returned in time order even when 
+ * several instances share the archive directory.  Lines that cannot be 
+ * parsed (e.g. the last line of a segment that is still being written) 
+ * are skipped.
+ * 
+ * Example usage:
+ * <pre>
+ * try (RequestArchiveReader reader = new RequestArchiveReader(dir)) {
+ *     while (reader.hasNext()) {
+ *         ArchivedRequest request = reader.next();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author L. Craig Carpenter
+ */
+public class RequestArchiveReader 
+        implements Iterator<ArchivedRequest>, Closeable {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */        
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            RequestArchiveReader.class);
+    
+    /**
+     * Pattern matching the segment file names.  The groups are the 
+     * instance token, the segment sequence number and the (optional) 
+     * compressed extension.
+     */
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile(
+            Pattern.quote(RequestArchiveService.SEGMENT_PREFIX)
+            + "_\\d{8}_\\d{2}-\\d{2}-\\d{2}_([0-9A-Za-z]+)_(\\d+)"
+            + Pattern.quote(RequestArchiveService.SEGMENT_EXTENSION)
+            + "(" 
+            + Pattern.quote(RequestArchiveService.COMPRESSED_EXTENSION)
+            + ")?");
+    
+    /**
+     * One source per service instance, ordered on the time the next 
+     * request was received.
+     */
+    private final PriorityQueue<Source> sources = 
+            new PriorityQueue<Source>(11, new Comparator<Source>() {
+                @Override
+                public int compare(Source a, Source b) {
+                    int result = Long.compare(
+                            a.head.getReceived(), 
+                            b.head.getReceived());
+                    return (result != 0) ? result : a.order - b.order;
+                }
+            });
+    
+    /**
+     * Constructor.
+     * 
+     * @param dir The archive directory.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    public RequestArchiveReader(URI dir) throws IOException {
+        Map<String, List<URI>> instances = groupSegments(dir);
+        int order = 0;
+        for (List<URI> segments : instances.values()) {
+            Source source = new Source(segments, order++);
+            source.advance();
+            if (source.head != null) {
+                sources.add(source);
+            }
+        }
+    }
+    
+    /**
+     * Constructor used to read an archive directory on the local file 
+     * system.
+     * 
+     * @param dir The archive directory.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    public RequestArchiveReader(Path dir) throws IOException {
+        this(dir.toUri());
+    }
+    
+    /**
+     * List the segment files in the archive directory in the order they 
+     * are read (grouped by service instance, then by sequence number).
+     * 
+     * @param dir The archive directory.
+     * @return The segment files.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    public static List<URI> listSegments(URI dir) throws IOException {
+        List<URI> segments = new ArrayList<URI>();
+        for (List<URI> instance : groupSegments(dir).values()) {
+            segments.addAll(instance);
+        }
+        return segments;
+    }
+    
+    /**
+     * List the segment files in an archive directory on the local file 
+     * system.
+     * 
+     * @param dir The archive directory.
+     * @return The segment files.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    public static List<URI> listSegments(Path dir) throws IOException {
+        return listSegments(dir.toUri());
+    }
+    
+    /**
+     * Group the segment files by the service instance that wrote them, 
+     * ordered by sequence number.  If both the compressed and uncompressed
+     * copies of a segment exist (compression was interrupted after the 
+     * compressed copy was completed) only the compressed copy is used.
+     * 
+     * @param dir The archive directory.
+     * @return The segments of each instance.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    private static Map<String, List<URI>> groupSegments(URI dir) 
+            throws IOException {
+        
+        Map<String, TreeMap<Long, URI>> found = 
+                new TreeMap<String, TreeMap<Long, URI>>();
+        
+        for (URI file : StorageFactory.get(dir).list(dir)) {
+            Matcher m = SEGMENT_PATTERN.matcher(
+                    StorageFactory.getFileName(file));
+            if (m.matches()) {
+                TreeMap<Long, URI> segments = found.get(m.group(1));
+                if (segments == null) {
+                    segments = new TreeMap<Long, URI>();
+                    found.put(m.group(1), segments);
+                }
+                Long sequence = Long.valueOf(m.group(2));
+                if ((m.group(3) != null) || 
+                        (!segments.containsKey(sequence))) {
+                    segments.put(sequence, file);
+                }
+            }
+        }
+        Map<String, List<URI>> instances = new TreeMap<String, List<URI>>();
+        for (Map.Entry<String, TreeMap<Long, URI>> entry : found.entrySet()) {
+            instances.put(
+                    entry.getKey(), 
+                    new ArrayList<URI>(entry.getValue().values()));
+        }
+        return instances;
+    }
+    
+    /**
+     * Check whether any archived requests remain.
+     * 
+     * @return True if there are more requests.
+     */
+    @Override
+    public boolean hasNext() {
+        return !sources.isEmpty();
+    }
+    
+    /**
+     * Retrieve the next archived request in time order.
+     * 
+     * @return The next request.
+     */
+    @Override
+    public ArchivedRequest next() {
+        Source source = sources.poll();
+        if (source == null) {
+            throw new NoSuchElementException();
+        }
+        ArchivedRequest next = source.head;
+        source.advance();
+        if (source.head != null) {
+            sources.add(source);
+        }
+        return next;
+    }
+    
+    /**
+     * The archive is read-only.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Close any open segment files.
+     */
+    @Override
+    public void close() {
+        for (Source source : sources) {
+            source.closeSegment();
+        }
+        sources.clear();
+    }
+    
+    /**
+     * Open a segment file, decompressing it if necessary.  If an 
+     * uncompressed segment has been compressed since the directory was 
+     * listed, the compressed copy is opened instead.
+     * 
+     * @param segment The segment file.
+     * @return A reader over the segment content.
+     * @throws IOException Thrown if the segment could not be opened.
+     */
+    private static BufferedReader open(URI segment) throws IOException {
+        InputStream    in      = null;
+        StorageBackend storage = StorageFactory.get(segment);
+        String         name    = StorageFactory.getFileName(segment);
+        if (name.endsWith(RequestArchiveService.COMPRESSED_EXTENSION)) {
+            in = new GZIPInputStream(storage.newInputStream(segment));
+        }
+        else {
+            try {
+                in = storage.newInputStream(segment);
+            }
+            catch (NoSuchFileException nsfe) {
+                in = new GZIPInputStream(storage.newInputStream(
+                        StorageFactory.resolve(
+                                StorageFactory.getParent(segment), 
+                                name 
+                                + RequestArchiveService.COMPRESSED_EXTENSION)));
+            }
+        }
+        return new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * The segments written by a single service instance.
+     */
+    private static final class Source {
+        
+        private final Deque<URI>  segments;
+        private final int         order;
+        private BufferedReader    current = null;
+        private URI               path    = null;
+        private ArchivedRequest   head    = null;
+        
+        /**
+         * Constructor.
+         * 
+         * @param segments The segments in sequence order.
+         * @param order Tie-breaker used when two requests were received 
+         * at the same time.
+         */
+        Source(List<URI> segments, int order) {
+            this.segments = new ArrayDeque<URI>(segments);
+            this.order    = order;
+        }
+        
+        /**
+         * Read the next request into <code>head</code>, moving on to the 
+         * next segment when the current one is exhausted.  
+         * <code>head</code> is null once all segments have been read.
+         */
+        void advance() {
+            head = null;
+            while (head == null) {
+                if (current == null) {
+                    if (segments.isEmpty()) {
+                        return;
+                    }
+                    path = segments.poll();
+                    try {
+                        current = open(path);
+                    }
+                    catch (IOException ioe) {
+                        LOGGER.warn("Skipping unreadable archive segment [ "
+                                + path.toString()
+                                + " ].  Exception message => [ "
+                                + ioe.getMessage()
+                                + " ].");
+                        continue;
+                    }
+                }
+                try {
+                    String line = current.readLine();
+                    if (line == null) {
+                        closeSegment();
+                    }
+                    else if (!line.trim().isEmpty()) {
+                        head = parse(line);
+                    }
+                }
+                catch (IOException ioe) {
+                    LOGGER.warn("Unexpected IOException encountered while "
+                            + "reading archive segment [ "
+                            + path.toString()
+                            + " ].  The remainder of the segment is "
+                            + "skipped.  Exception message => [ "
+                            + ioe.getMessage()
+                            + " ].");
+                    closeSegment();
+                }
+            }
+        }
+        
+        /**
+         * Parse a single line of a segment.
+         * 
+         * @param line The line.
+         * @return The archived request, or null if the line is not valid.
+         */
+        private ArchivedRequest parse(String line) {
+            try {
+                ArchivedRequest request = MergeRequestSerializer
+                        .getInstance()
+                        .readValue(line, ArchivedRequest.class);
+                if (request.getRequest() != null) {
+                    return request;
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Skipping unreadable entry in archive segment [ "
+                        + path.toString()
+                        + " ].  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+            return null;
+        }
+        
+        /**
+         * Close the current segment.
+         */
+        void closeSegment() {
+            if (current != null) {
+                try {
+                    current.close();
+                }
+                catch (IOException ioe) { }
+                current = null;
+            }
+        }
+    }
+}
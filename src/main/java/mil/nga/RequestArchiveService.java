@@ -1,29 +1,56 @@
 package mil.nga;
 
-import java.io.BufferedWriter;
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.FileAlreadyExistsException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import mil.nga.PropertyLoader;
 import mil.nga.exceptions.PropertiesNotLoadedException;
 import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
 import mil.nga.util.URIUtils;
 
 /**
  * This class is mainly for debugging purposes.  As input it takes a 
  * <code>MergeRequest</code> object and serializes the data in JSON format 
- * to an on disk file.  
+ * to an on disk archive.  
+ * 
+ * Archiving is performed off the request thread.  Incoming requests are 
+ * placed on a bounded in-memory queue which is drained in batches by a 
+ * single background writer thread.  If the queue is full the request is 
+ * dropped (and counted) rather than blocking the merge.  Each archived 
+ * request is assigned a unique ID.
+ * 
+ * Requests are appended, one compact JSON document per line, to segment 
+ * files named 
+ * <code>MergeRequests_&lt;opened&gt;_&lt;instance&gt;_&lt;sequence&gt;.jsonl</code>.
+ * The active segment is rolled when it reaches the configured size or 
+ * age, after which it is gzip compressed.  Segments are written through 
+ * the storage backend selected by the scheme of the output location.  Use
+ * the <code>RequestArchiveReader</code> to read the archive.
  * 
  * @author L. Craig Carpenter
  */
@@ -38,35 +65,136 @@ public class RequestArchiveService
             RequestArchiveService.class);
     
     /**
-     * Default date format added to generated job IDs.
+     * Prefix of the archive segment file names.
+     */
+    public static final String SEGMENT_PREFIX = "MergeRequests";
+    
+    /**
+     * Filename extension of the archive segment files.
+     */
+    public static final String SEGMENT_EXTENSION = ".jsonl";
+    
+    /**
+     * Filename extension appended to compressed segment files.
+     */
+    public static final String COMPRESSED_EXTENSION = ".gz";
+    
+    /**
+     * Date format used for the time a segment was opened.
      */
     private static final String DATE_FORMAT = "yyyyMMdd_HH-mm-ss";
     
     /**
-     * Filename extension to add to the output JSON file.
+     * Number of random bytes in the token identifying this instance of 
+     * the service (used to keep request IDs unique across restarts).
+     */
+    private static final int INSTANCE_TOKEN_LENGTH = 4;
+    
+    /**
+     * How often (in ms) the writer thread checks whether the service has 
+     * been shut down while the queue is empty.
+     */
+    private static final long POLL_INTERVAL_MS = 1000L;
+    
+    /**
+     * How long (in ms) shutdown waits for the writer thread to flush the 
+     * queued requests.
      */
-    private static final String EXTENSION = ".json";
+    private static final long SHUTDOWN_WAIT_MS = 10000L;
     
     /**
-     * String to prepend to the front of generated job IDs. 
+     * A warning is logged for the first dropped request and then for every
+     * <code>DROP_LOG_INTERVAL</code> dropped requests.
      */
-    private static final String DEFAULT_FILE_PREPEND = "MergeRequest";
+    private static final long DROP_LOG_INTERVAL = 100L;
     
     /**
      * Calculated path in which the request data will be stored.
      */
     private URI outputPath = null;
     
+    /**
+     * Requests waiting to be written by the background writer.
+     */
+    private BlockingQueue<ArchivedRequest> queue = null;
+    
+    /**
+     * Maximum number of requests written per batch.
+     */
+    private int batchSize = DEFAULT_ARCHIVE_BATCH_SIZE;
+    
+    /**
+     * Segments are rolled once they reach this size (in bytes).
+     */
+    private long maxSegmentBytes = 
+            DEFAULT_ARCHIVE_SEGMENT_SIZE_MB * 1024L * 1024L;
+    
+    /**
+     * Segments are rolled once they have been open this long (in ms).
+     */
+    private long maxSegmentAge = TimeUnit.MINUTES.toMillis(
+            DEFAULT_ARCHIVE_SEGMENT_MINUTES);
+    
+    /**
+     * Whether rolled segments are gzip compressed.
+     */
+    private boolean compress = true;
+    
+    /**
+     * The background writer thread (null if archiving is disabled).
+     */
+    private Thread writer = null;
+    
+    /**
+     * Cleared when the service is shut down.
+     */
+    private volatile boolean running = false;
+    
+    /**
+     * Token identifying this instance of the service.
+     */
+    private final String instanceToken = 
+            FileUtils.generateUniqueToken(INSTANCE_TOKEN_LENGTH);
+    
+    /**
+     * Sequence number used to generate the request IDs.
+     */
+    private final AtomicLong sequence = new AtomicLong(0);
+    
+    /**
+     * Counters exposed through the service status.
+     */
+    private final AtomicLong archived = new AtomicLong(0);
+    private final AtomicLong dropped  = new AtomicLong(0);
+    private final AtomicLong failed   = new AtomicLong(0);
+    
+    /**
+     * The active segment, its output stream (which counts the bytes 
+     * written) and the time it was opened.  Only used by the writer 
+     * thread.
+     */
+    private URI                  segment         = null;
+    private CountingOutputStream segmentOut      = null;
+    private long                 segmentOpened   = 0;
+    private long                 segmentSequence = 0;
+    
+    /**
+     * Date format used for the segment file names.  Only used by the 
+     * writer thread.
+     */
+    private final DateFormat fileDateFormat = 
+            new SimpleDateFormat(DATE_FORMAT);
+    
     /**
      * Default private constructor used in production to enforce the singleton
      * design pattern and ensure that properties are retrieved from the 
      * system properties file. 
      */
     private RequestArchiveService() { 
-        super(MERGE_REQUEST_DIRECTORY_PROP);
+        super(PROPERTY_FILE_NAME);
+        Properties props = null;
         try {
-            setOutputPath(getProperty(MERGE_REQUEST_DIRECTORY_PROP));
-            checkOutputPath();
+            props = getProperties();
         }
         catch (PropertiesNotLoadedException pnle) {
             LOGGER.warn("An unexpected PropertiesNotLoadedException " 
@@ -75,6 +203,7 @@ public class RequestArchiveService
                     + pnle.getMessage()
                     + " ].");
         }
+        initialize(props);
     }
 
     /**
@@ -83,10 +212,65 @@ public class RequestArchiveService
      * object.
      */
     public RequestArchiveService(Properties props) {
+        initialize(props);
+    }
+    
+    /**
+     * Configure the service and, if archiving is enabled, start the 
+     * background writer.
+     * 
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
         if (props != null) {
             setOutputPath(props.getProperty(MERGE_REQUEST_DIRECTORY_PROP));
             checkOutputPath();
         }
+        if (getOutputPath() != null) {
+            int queueSize = Math.max(1, PropertyUtils.getInt(
+                    props, 
+                    ARCHIVE_QUEUE_SIZE_PROPERTY, 
+                    DEFAULT_ARCHIVE_QUEUE_SIZE));
+            batchSize = Math.max(1, PropertyUtils.getInt(
+                    props, 
+                    ARCHIVE_BATCH_SIZE_PROPERTY, 
+                    DEFAULT_ARCHIVE_BATCH_SIZE));
+            maxSegmentBytes = Math.max(1, PropertyUtils.getLong(
+                    props, 
+                    ARCHIVE_SEGMENT_SIZE_PROPERTY, 
+                    DEFAULT_ARCHIVE_SEGMENT_SIZE_MB)) * 1024L * 1024L;
+            maxSegmentAge = TimeUnit.MINUTES.toMillis(Math.max(1, 
+                    PropertyUtils.getLong(
+                            props, 
+                            ARCHIVE_SEGMENT_AGE_PROPERTY, 
+                            DEFAULT_ARCHIVE_SEGMENT_MINUTES)));
+            compress = Boolean.parseBoolean(PropertyUtils.getString(
+                    props, 
+                    ARCHIVE_COMPRESS_PROPERTY, 
+                    "true"));
+            queue = new ArrayBlockingQueue<ArchivedRequest>(queueSize);
+            running = true;
+            writer = new ThreadFactoryBuilder()
+                    .setNameFormat("request-archive-%d")
+                    .setDaemon(true)
+                    .build()
+                    .newThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    });
+            writer.start();
+            LOGGER.info("Request archive service started with a queue of [ "
+                    + queueSize
+                    + " ] requests and a batch size of [ "
+                    + batchSize
+                    + " ].  Segments are rolled at [ "
+                    + maxSegmentBytes
+                    + " ] bytes or [ "
+                    + maxSegmentAge
+                    + " ] ms.");
+        }
     }
     
     /**
@@ -95,10 +279,10 @@ public class RequestArchiveService
     private void checkOutputPath() {
 
         if (getOutputPath() != null) {
-            Path p = Paths.get(getOutputPath());
-            if (!Files.exists(p)) {
+            StorageBackend storage = StorageFactory.get(getOutputPath());
+            if (!storage.exists(getOutputPath())) {
                 try {
-                    Files.createDirectory(p);
+                    storage.createDirectory(getOutputPath());
                 }
                 catch (IOException ioe) {
                     LOGGER.error("System property [ "
@@ -119,104 +303,245 @@ public class RequestArchiveService
     }
     
     /**
-     * If the job ID is not supplied we'll still export the request data but
-     * the job ID will be generated from the current system time.
-     * 
-     * @return A default job ID.
+     * Main loop of the background writer.  Queued requests are written in
+     * batches until the service is shut down, after which any requests 
+     * remaining in the queue are flushed and the active segment is rolled.
      */
-    private String generateFilename() {
-        
-        StringBuilder sb = new StringBuilder();
-        DateFormat  df = new SimpleDateFormat(DATE_FORMAT);
+    private void drain() {
         
-        sb.append(DEFAULT_FILE_PREPEND);
-        sb.append("_");
-        sb.append(df.format(System.currentTimeMillis()));
+        List<ArchivedRequest> batch = 
+                new ArrayList<ArchivedRequest>(batchSize);
         
-        return sb.toString();
+        while (running) {
+            try {
+                ArchivedRequest first = queue.poll(
+                        POLL_INTERVAL_MS, 
+                        TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                }
+                if ((segment != null) && 
+                        (System.currentTimeMillis() - segmentOpened 
+                                >= maxSegmentAge)) {
+                    rollSegment();
+                }
+            }
+            catch (InterruptedException ie) {
+                break;
+            }
+        }
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+        }
+        rollSegment();
     }
     
     /**
-     * Method to assemble the full path to the target output file.
+     * Append a batch of requests to the active segment (opening a new 
+     * segment if required) and clear the batch.  The segment is rolled if
+     * it has reached the maximum size.  Failures are logged and counted 
+     * but do not stop the writer.
      * 
-     * @param jobID The "main" part of the filename.
-     * @return The full path to the target output file.
+     * @param batch The requests to write.
      */
-    private URI getFilePath() {
+    private void writeBatch(List<ArchivedRequest> batch) {
         
-        StringBuilder sb = new StringBuilder();
+        MergeRequestSerializer serializer = 
+                MergeRequestSerializer.getInstance();
+        int written = 0;
         
-        if (getOutputPath() != null) {
-            sb.append(getOutputPath().toString());
-            if (!sb.toString().endsWith(File.separator)) {
-                sb.append(File.separator);
+        try {
+            if (segment == null) {
+                openSegment();
+            }
+            for (ArchivedRequest record : batch) {
+                serializer.serialize(record, segmentOut);
+                segmentOut.write('\n');
+                written++;
+            }
+            segmentOut.flush();
+            archived.addAndGet(written);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Archived [ "
+                        + written
+                        + " ] PDF merge requests to [ "
+                        + segment.toString()
+                        + " ].");
+            }
+            if (segmentOut.getCount() >= maxSegmentBytes) {
+                rollSegment();
             }
         }
-        else {
-            LOGGER.warn("Output path is not defined!");
+        catch (IOException ioe) {
+            // Requests still in the stream buffer may also have been lost.
+            failed.addAndGet(batch.size() - written);
+            archived.addAndGet(written);
+            LOGGER.error("Unexpected IOException encountered while " 
+                    + "attempting to archive [ "
+                    + (batch.size() - written)
+                    + " ] PDF merge requests to [ "
+                    + String.valueOf(segment)
+                    + " ].  Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+            rollSegment();
         }
-        sb.append(generateFilename());
-        sb.append(EXTENSION);
-        return URIUtils.getInstance().getURI(sb.toString());
+        batch.clear();
     }
     
     /**
-     * Save the input String containing pretty-printed JSON data to an output 
-     * file.  The output file path is calculated using the input jobID.
+     * Open a new active segment.
      * 
-     * @param request The "pretty-printed" JSON data.
-     * @param jobID The job ID (used to calculate the output file name)
+     * @throws IOException Thrown if the segment could not be created.
      */
-    private void saveToFile(String request) {
+    private void openSegment() throws IOException {
         
-        URI outputFile = getFilePath();
+        segmentOpened = System.currentTimeMillis();
         
-        if ((request != null) && (!request.isEmpty())) {
-            LOGGER.info("Saving PDF merge request information "
-                        + "to [ "
-                        + outputFile.toString()
-                        + " ].");
-            Path p = Paths.get(outputFile);
-            try (BufferedWriter writer = 
-                    Files.newBufferedWriter(p, Charset.forName("UTF-8"))) {
-                writer.write(request);
-                writer.flush();
+        StringBuilder sb = new StringBuilder();
+        sb.append(SEGMENT_PREFIX);
+        sb.append("_");
+        sb.append(fileDateFormat.format(segmentOpened));
+        sb.append("_");
+        sb.append(instanceToken);
+        sb.append("_");
+        sb.append(++segmentSequence);
+        sb.append(SEGMENT_EXTENSION);
+        
+        URI            path    = StorageFactory.resolve(
+                                        getOutputPath(), 
+                                        sb.toString());
+        StorageBackend storage = StorageFactory.get(path);
+        if (storage.exists(path)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        segmentOut = new CountingOutputStream(new BufferedOutputStream(
+                storage.newOutputStream(path)));
+        segment = path;
+        LOGGER.info("Opened request archive segment [ "
+                + path.toString()
+                + " ].");
+    }
+    
+    /**
+     * Close the active segment (if any) and compress it.
+     */
+    private void rollSegment() {
+        
+        URI path = segment;
+        
+        if (segmentOut != null) {
+            try {
+                segmentOut.close();
             }
             catch (IOException ioe) {
                 LOGGER.error("Unexpected IOException encountered while " 
-                        + "attempting to archive the PDF merge request.  "
-                        + "Exception message => [ "
+                        + "closing request archive segment [ "
+                        + String.valueOf(path)
+                        + " ].  Exception message => [ "
                         + ioe.getMessage()
                         + " ].");
             }
         }
-        else {
-            LOGGER.warn("Unable to serialise the PDF merge request.  "
-                    + "The output String is null or empty.");
+        segment    = null;
+        segmentOut = null;
+        if ((path != null) && compress) {
+            compressSegment(path);
         }
     }
     
     /**
-     * External interface used to marshal a BundleRequest into a JSON-based
-     * String and then store the results in an on-disk file.
+     * Gzip compress a rolled segment.  The compressed copy is written to 
+     * a temporary file and renamed into place before the original is 
+     * deleted, so a reader always sees at least one complete copy.  If 
+     * compression fails the uncompressed segment is retained.
      * 
-     * @param request Incoming BundleRequest object.
-     * @param jobID The job ID assigned to input BundleRequest object.
+     * @param path The rolled segment.
      */
-    public void archiveRequest(MergeRequest request) {
+    private void compressSegment(URI path) {
+        
+        StorageBackend storage = StorageFactory.get(path);
+        String         name    = StorageFactory.getFileName(path);
+        URI            dir     = StorageFactory.getParent(path);
+        URI            target  = StorageFactory.resolve(
+                                    dir, 
+                                    name + COMPRESSED_EXTENSION);
+        URI            temp    = StorageFactory.resolve(
+                                    dir, 
+                                    name + COMPRESSED_EXTENSION + ".tmp");
+        
+        try {
+            try (InputStream  in  = storage.newInputStream(path);
+                 OutputStream out = new GZIPOutputStream(
+                         storage.newOutputStream(temp))) {
+                ByteStreams.copy(in, out);
+            }
+            storage.move(temp, target);
+            storage.delete(path);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Compressed request archive segment [ "
+                        + target.toString()
+                        + " ].");
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error("Unexpected IOException encountered while " 
+                    + "compressing request archive segment [ "
+                    + path.toString()
+                    + " ].  The segment is left uncompressed.  "
+                    + "Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+            try {
+                storage.delete(temp);
+            }
+            catch (IOException e) { }
+        }
+    }
+    
+    /**
+     * External interface used to archive an incoming MergeRequest.  The 
+     * request is queued for the background writer and this method returns
+     * immediately.  If the queue is full the request is dropped.
+     * 
+     * @param request Incoming MergeRequest object.
+     * @return The unique ID assigned to the archived request, or null if 
+     * the request was not archived.
+     */
+    public String archiveRequest(MergeRequest request) {
         if (getOutputPath() != null) {
             if (request != null) {
                 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Archiving incoming PDF merge request.");
+                String id = instanceToken 
+                        + "-" 
+                        + sequence.incrementAndGet();
+                ArchivedRequest record = new ArchivedRequest(
+                        id, 
+                        System.currentTimeMillis(), 
+                        request);
+                
+                if (running && queue.offer(record)) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Queued incoming PDF merge request [ "
+                                + id
+                                + " ] for archiving.");
+                    }
+                    return id;
+                }
+                long count = dropped.incrementAndGet();
+                if ((count == 1) || (count % DROP_LOG_INTERVAL == 0)) {
+                    LOGGER.warn("The request archive queue is full or "
+                            + "the service is shut down.  Incoming PDF "
+                            + "merge requests are being dropped.  Total "
+                            + "dropped => [ "
+                            + count
+                            + " ].");
                 }
-                String requestString = MergeRequestSerializer
-                                .getInstance()
-                                .serializePretty(request);
-                saveToFile(requestString);
             }
             else {
-                LOGGER.error("The input BundleRequest is null.  Unable to "
+                LOGGER.error("The input MergeRequest is null.  Unable to "
                         + "archive the incoming request information.");
             }
         }
@@ -225,6 +550,46 @@ public class RequestArchiveService
                 LOGGER.debug("PDF Merge request archive feature is disabled.");
             }
         }
+        return null;
+    }
+    
+    /**
+     * Stop accepting requests and wait for the writer thread to flush the
+     * requests remaining in the queue.  Called when the application is 
+     * undeployed.
+     */
+    public void shutdown() {
+        if (writer != null) {
+            LOGGER.info("Shutting down the request archive service.");
+            running = false;
+            try {
+                writer.join(SHUTDOWN_WAIT_MS);
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            if (writer.isAlive()) {
+                LOGGER.warn("The request archive writer did not finish "
+                        + "within [ "
+                        + SHUTDOWN_WAIT_MS
+                        + " ] ms.  Queued requests may be lost.");
+            }
+        }
+    }
+    
+    /**
+     * Obtain the archive counters for inclusion in the service status.
+     * 
+     * @return The current archive counters.
+     */
+    public ArchiveStatus getStatus() {
+        ArchiveStatus status = new ArchiveStatus();
+        status.setEnabled(getOutputPath() != null);
+        status.setArchived(archived.get());
+        status.setDropped(dropped.get());
+        status.setFailed(failed.get());
+        status.setQueued(queue == null ? 0 : queue.size());
+        return status;
     }
     
     /**
@@ -0,0 +1,186 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the S3 input cache statistics to the 
+ * client.  <code>bytes_saved</code> is the total size of the inputs 
+ * served from a local copy rather than downloaded again.  The class 
+ * contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class S3CacheStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 6402183975318864217L;
+
+    private boolean enabled         = false;
+    private long    entries         = 0;
+    private long    cachedBytes     = 0;
+    private long    hits            = 0;
+    private long    misses          = 0;
+    private long    bytesSaved      = 0;
+    private long    bytesDownloaded = 0;
+    private long    evictions       = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public S3CacheStatus() {}
+
+    /**
+     * Getter method for the number of bytes downloaded into the cache.
+     * @return The number of bytes downloaded.
+     */
+    @JsonProperty(value="bytes_downloaded")
+    public long getBytesDownloaded() {
+        return bytesDownloaded;
+    }
+
+    /**
+     * Getter method for the number of bytes served from local copies.
+     * @return The number of bytes saved.
+     */
+    @JsonProperty(value="bytes_saved")
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Getter method for the total size of the local copies.
+     * @return Size in bytes.
+     */
+    @JsonProperty(value="cached_bytes")
+    public long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Getter method for the flag indicating the cache is enabled.
+     * @return True if the cache is enabled.
+     */
+    @JsonProperty(value="enabled")
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Getter method for the number of local copies.
+     * @return The number of entries.
+     */
+    @JsonProperty(value="entries")
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Getter method for the number of local copies evicted to stay 
+     * within the budget.
+     * @return The number of evictions.
+     */
+    @JsonProperty(value="evictions")
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Getter method for the ratio of lookups served by a local copy.
+     * @return The hit ratio (0 if there have been no lookups).
+     */
+    @JsonProperty(value="hit_ratio")
+    public double getHitRatio() {
+        if ((hits + misses) == 0) {
+            return 0.0;
+        }
+        return (double)hits / (double)(hits + misses);
+    }
+
+    /**
+     * Getter method for the number of lookups served by a local copy.
+     * @return The number of hits.
+     */
+    @JsonProperty(value="hits")
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter method for the number of lookups that required a download.
+     * @return The number of misses.
+     */
+    @JsonProperty(value="misses")
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Setter method for the number of bytes downloaded.
+     * @param value The number of bytes downloaded.
+     */
+    public void setBytesDownloaded(long value) {
+        bytesDownloaded = value;
+    }
+
+    /**
+     * Setter method for the number of bytes saved.
+     * @param value The number of bytes saved.
+     */
+    public void setBytesSaved(long value) {
+        bytesSaved = value;
+    }
+
+    /**
+     * Setter method for the total size of the local copies.
+     * @param value Size in bytes.
+     */
+    public void setCachedBytes(long value) {
+        cachedBytes = value;
+    }
+
+    /**
+     * Setter method for the flag indicating the cache is enabled.
+     * @param value True if the cache is enabled.
+     */
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Setter method for the number of local copies.
+     * @param value The number of entries.
+     */
+    public void setEntries(long value) {
+        entries = value;
+    }
+
+    /**
+     * Setter method for the number of evictions.
+     * @param value The number of evictions.
+     */
+    public void setEvictions(long value) {
+        evictions = value;
+    }
+
+    /**
+     * Setter method for the number of hits.
+     * @param value The number of hits.
+     */
+    public void setHits(long value) {
+        hits = value;
+    }
+
+    /**
+     * Setter method for the number of misses.
+     * @param value The number of misses.
+     */
+    public void setMisses(long value) {
+        misses = value;
+    }
+}
@@ -0,0 +1,212 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the state of the S3 file system and client
+ * to the client.  <code>reinitializations</code> counts the number of
+ * times the S3 client was rebuilt after failed health checks.  The class
+ * contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class S3HealthStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -7719453368203348812L;
+
+    private boolean initialized           = false;
+    private boolean healthy               = false;
+    private int     maxConnections        = 0;
+    private long    initializations       = 0;
+    private long    failedInitializations = 0;
+    private long    reinitializations     = 0;
+    private long    probes                = 0;
+    private long    probeFailures         = 0;
+    private long    consecutiveFailures   = 0;
+    private long    lastProbeMillis       = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public S3HealthStatus() {}
+
+    /**
+     * Getter method for the number of consecutive failed health checks.
+     * @return The number of consecutive failures.
+     */
+    @JsonProperty(value="consecutive_failures")
+    public long getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Getter method for the number of failed attempts to create the S3
+     * file system.
+     * @return The number of failed initializations.
+     */
+    @JsonProperty(value="failed_initializations")
+    public long getFailedInitializations() {
+        return failedInitializations;
+    }
+
+    /**
+     * Getter method for the flag indicating the last health check (or
+     * initialization) succeeded.
+     * @return True if S3 was reachable.
+     */
+    @JsonProperty(value="healthy")
+    public boolean getHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Getter method for the flag indicating the S3 file system exists.
+     * @return True if the S3 file system has been created.
+     */
+    @JsonProperty(value="initialized")
+    public boolean getInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Getter method for the number of times the S3 file system was
+     * created.
+     * @return The number of initializations.
+     */
+    @JsonProperty(value="initializations")
+    public long getInitializations() {
+        return initializations;
+    }
+
+    /**
+     * Getter method for the duration of the last health check.
+     * @return Time in milliseconds.
+     */
+    @JsonProperty(value="last_probe_ms")
+    public long getLastProbeMillis() {
+        return lastProbeMillis;
+    }
+
+    /**
+     * Getter method for the size of the S3 connection pool.
+     * @return The maximum number of connections.
+     */
+    @JsonProperty(value="max_connections")
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Getter method for the number of failed health checks.
+     * @return The number of failed health checks.
+     */
+    @JsonProperty(value="probe_failures")
+    public long getProbeFailures() {
+        return probeFailures;
+    }
+
+    /**
+     * Getter method for the number of health checks performed.
+     * @return The number of health checks.
+     */
+    @JsonProperty(value="probes")
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Getter method for the number of times the S3 client was rebuilt.
+     * @return The number of reinitializations.
+     */
+    @JsonProperty(value="reinitializations")
+    public long getReinitializations() {
+        return reinitializations;
+    }
+
+    /**
+     * Setter method for the number of consecutive failed health checks.
+     * @param value The number of consecutive failures.
+     */
+    public void setConsecutiveFailures(long value) {
+        consecutiveFailures = value;
+    }
+
+    /**
+     * Setter method for the number of failed initializations.
+     * @param value The number of failed initializations.
+     */
+    public void setFailedInitializations(long value) {
+        failedInitializations = value;
+    }
+
+    /**
+     * Setter method for the flag indicating S3 was reachable.
+     * @param value True if S3 was reachable.
+     */
+    public void setHealthy(boolean value) {
+        healthy = value;
+    }
+
+    /**
+     * Setter method for the flag indicating the S3 file system exists.
+     * @param value True if the S3 file system has been created.
+     */
+    public void setInitialized(boolean value) {
+        initialized = value;
+    }
+
+    /**
+     * Setter method for the number of initializations.
+     * @param value The number of initializations.
+     */
+    public void setInitializations(long value) {
+        initializations = value;
+    }
+
+    /**
+     * Setter method for the duration of the last health check.
+     * @param value Time in milliseconds.
+     */
+    public void setLastProbeMillis(long value) {
+        lastProbeMillis = value;
+    }
+
+    /**
+     * Setter method for the size of the S3 connection pool.
+     * @param value The maximum number of connections.
+     */
+    public void setMaxConnections(int value) {
+        maxConnections = value;
+    }
+
+    /**
+     * Setter method for the number of failed health checks.
+     * @param value The number of failed health checks.
+     */
+    public void setProbeFailures(long value) {
+        probeFailures = value;
+    }
+
+    /**
+     * Setter method for the number of health checks.
+     * @param value The number of health checks.
+     */
+    public void setProbes(long value) {
+        probes = value;
+    }
+
+    /**
+     * Setter method for the number of reinitializations.
+     * @param value The number of reinitializations.
+     */
+    public void setReinitializations(long value) {
+        reinitializations = value;
+    }
+}
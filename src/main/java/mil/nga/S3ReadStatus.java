@@ -0,0 +1,151 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the S3 range read counters to the client.
+ * Comparing <code>bytes_fetched</code> with <code>object_bytes</code>
+ * shows how much of each input object was actually transferred.  The 
+ * class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class S3ReadStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -4183520966724093551L;
+
+    private long objectsOpened = 0;
+    private long objectBytes   = 0;
+    private long bytesFetched  = 0;
+    private long rangeRequests = 0;
+    private long blockHits     = 0;
+    private long blockMisses   = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public S3ReadStatus() {}
+
+    /**
+     * Getter method for the number of block reads served by a block 
+     * cache.
+     * @return The number of cache hits.
+     */
+    @JsonProperty(value="block_hits")
+    public long getBlockHits() {
+        return blockHits;
+    }
+
+    /**
+     * Getter method for the number of block reads that required a fetch.
+     * @return The number of cache misses.
+     */
+    @JsonProperty(value="block_misses")
+    public long getBlockMisses() {
+        return blockMisses;
+    }
+
+    /**
+     * Getter method for the number of bytes fetched from S3.
+     * @return The number of bytes fetched.
+     */
+    @JsonProperty(value="bytes_fetched")
+    public long getBytesFetched() {
+        return bytesFetched;
+    }
+
+    /**
+     * Getter method for the ratio of bytes fetched to the total size of 
+     * the objects opened.
+     * @return The fetch ratio (0 if no objects have been opened).
+     */
+    @JsonProperty(value="fetch_ratio")
+    public double getFetchRatio() {
+        if (objectBytes == 0) {
+            return 0.0;
+        }
+        return (double)bytesFetched / (double)objectBytes;
+    }
+
+    /**
+     * Getter method for the total size of the objects opened.
+     * @return The total size in bytes.
+     */
+    @JsonProperty(value="object_bytes")
+    public long getObjectBytes() {
+        return objectBytes;
+    }
+
+    /**
+     * Getter method for the number of objects opened.
+     * @return The number of objects opened.
+     */
+    @JsonProperty(value="objects_opened")
+    public long getObjectsOpened() {
+        return objectsOpened;
+    }
+
+    /**
+     * Getter method for the number of ranged GET requests issued.
+     * @return The number of range requests.
+     */
+    @JsonProperty(value="range_requests")
+    public long getRangeRequests() {
+        return rangeRequests;
+    }
+
+    /**
+     * Setter method for the number of block cache hits.
+     * @param value The number of cache hits.
+     */
+    public void setBlockHits(long value) {
+        blockHits = value;
+    }
+
+    /**
+     * Setter method for the number of block cache misses.
+     * @param value The number of cache misses.
+     */
+    public void setBlockMisses(long value) {
+        blockMisses = value;
+    }
+
+    /**
+     * Setter method for the number of bytes fetched.
+     * @param value The number of bytes fetched.
+     */
+    public void setBytesFetched(long value) {
+        bytesFetched = value;
+    }
+
+    /**
+     * Setter method for the total size of the objects opened.
+     * @param value The total size in bytes.
+     */
+    public void setObjectBytes(long value) {
+        objectBytes = value;
+    }
+
+    /**
+     * Setter method for the number of objects opened.
+     * @param value The number of objects opened.
+     */
+    public void setObjectsOpened(long value) {
+        objectsOpened = value;
+    }
+
+    /**
+     * Setter method for the number of range requests.
+     * @param value The number of range requests.
+     */
+    public void setRangeRequests(long value) {
+        rangeRequests = value;
+    }
+}
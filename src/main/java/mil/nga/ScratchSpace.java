@@ -0,0 +1,272 @@
+package mil.nga;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+import mil.nga.util.URIUtils;
+
+/**
+ * Manages the dedicated scratch directory used by PDFBox when a merge
+ * cannot be held entirely on the heap.  Each merge request is allocated
+ * its own sub-directory, along with a quota on the number of bytes that
+ * PDFBox may write to it.  The sub-directory is removed when the request
+ * completes.  Any sub-directories left behind by a previous instance of
+ * the application (e.g. after a crash) are removed at startup.
+ *
+ * @author L. Craig Carpenter
+ */
+public class ScratchSpace
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ScratchSpace.class);
+
+    /**
+     * Prefix applied to each per-request scratch directory.
+     */
+    private static final String SCRATCH_PREFIX = "scratch_";
+
+    /**
+     * The root scratch directory.
+     */
+    private Path scratchDirectory = null;
+
+    /**
+     * The maximum number of bytes a single request may write to the
+     * scratch directory.
+     */
+    private long quota = DEFAULT_SCRATCH_QUOTA_MB * 1024L * 1024L;
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private ScratchSpace() {
+        super(PROPERTY_FILE_NAME);
+
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        initialize(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public ScratchSpace(Properties props) {
+        initialize(props);
+    }
+
+    /**
+     * Read the scratch settings, create the root scratch directory and
+     * remove anything left in it by a previous instance.
+     *
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
+        String directory = null;
+        String quotaMB   = null;
+        if (props != null) {
+            directory = props.getProperty(SCRATCH_DIRECTORY_PROPERTY);
+            quotaMB   = props.getProperty(SCRATCH_QUOTA_PROPERTY);
+        }
+        setQuota(quotaMB);
+        setScratchDirectory(directory);
+        removeStaleAllocations();
+    }
+
+    /**
+     * Return a singleton instance to the ScratchSpace object.
+     * @return The ScratchSpace
+     */
+    public static ScratchSpace getInstance() {
+        return ScratchSpaceHolder.getSingleton();
+    }
+
+    /**
+     * Allocate a scratch directory for a single merge request.
+     *
+     * @return The per-request scratch directory, or null if the scratch
+     * area is not available (in which case PDFBox will fall back to the
+     * default temporary directory).
+     */
+    public File allocate() {
+        File dir = null;
+        if (scratchDirectory != null) {
+            try {
+                dir = Files.createTempDirectory(
+                        scratchDirectory,
+                        SCRATCH_PREFIX).toFile();
+            }
+            catch (IOException ioe) {
+                LOGGER.error("Unable to allocate a scratch directory in [ "
+                        + scratchDirectory.toString()
+                        + " ].  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Remove a per-request scratch directory and anything PDFBox left in
+     * it.
+     *
+     * @param dir The directory returned by <code>allocate()</code>.
+     */
+    public void release(File dir) {
+        if ((dir != null) && (dir.exists())) {
+            try {
+                FileUtils.delete(dir);
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Unable to remove scratch directory [ "
+                        + dir.getAbsolutePath()
+                        + " ].  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Remove per-request directories left behind by a previous instance
+     * of the application.
+     */
+    private void removeStaleAllocations() {
+        if (scratchDirectory != null) {
+            File[] children = scratchDirectory.toFile().listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.getName().startsWith(SCRATCH_PREFIX)) {
+                        release(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter method for the per-request scratch quota.
+     * @return The maximum number of bytes a request may write.
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    /**
+     * Getter method for the root scratch directory.
+     * @return The root scratch directory (may be null).
+     */
+    public Path getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Setter method for the per-request quota.
+     * @param value The quota in MB.
+     */
+    private void setQuota(String value) {
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                quota = Long.parseLong(value.trim()) * 1024L * 1024L;
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn("Invalid value for property [ "
+                        + SCRATCH_QUOTA_PROPERTY
+                        + " ] => [ "
+                        + value
+                        + " ].  Using the default quota [ "
+                        + DEFAULT_SCRATCH_QUOTA_MB
+                        + " ] MB.");
+            }
+        }
+    }
+
+    /**
+     * Setter method for the root scratch directory.  If not supplied, a
+     * sub-directory of the system temporary directory is used.
+     *
+     * @param value The root scratch directory.
+     */
+    private void setScratchDirectory(String value) {
+        try {
+            Path dir = null;
+            if ((value == null) || (value.trim().isEmpty())) {
+                dir = Paths.get(
+                        System.getProperty("java.io.tmpdir"),
+                        APPLICATION_NAME + "_scratch");
+            }
+            else {
+                URI uri = URIUtils.getInstance().getURI(value.trim());
+                dir = Paths.get(uri);
+            }
+            Files.createDirectories(dir);
+            scratchDirectory = dir;
+            LOGGER.info("PDF merge scratch directory [ "
+                    + scratchDirectory.toString()
+                    + " ] with a per-request quota of [ "
+                    + FileUtils.humanReadableByteCount(quota, false)
+                    + " ].");
+        }
+        catch (Exception e) {
+            LOGGER.error("Unable to create the scratch directory [ "
+                    + value
+                    + " ].  Exception message => [ "
+                    + e.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class ScratchSpaceHolder {
+
+        /**
+         * Reference to the Singleton instance of the ScratchSpace
+         */
+        private static ScratchSpace _instance = new ScratchSpace();
+
+        /**
+         * Accessor method for the singleton instance of the ScratchSpace.
+         *
+         * @return The singleton instance of the ScratchSpace.
+         */
+        public static ScratchSpace getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the current load on the service to the
+ * client.  The class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ServiceStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 2871406528194406637L;
+
+    private AdmissionStatus     admission     = null;
+    private DeduplicationStatus deduplication = null;
+    private ArchiveStatus       archive       = null;
+    private StagingStatus       staging       = null;
+    private S3ReadStatus        s3            = null;
+    private S3CacheStatus       s3Cache       = null;
+    private S3HealthStatus      s3Health      = null;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public ServiceStatus() {}
+
+    /**
+     * Getter method for the admission control status.
+     * @return The admission status.
+     */
+    @JsonProperty(value="admission")
+    public AdmissionStatus getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Getter method for the request archive status.
+     * @return The archive status.
+     */
+    @JsonProperty(value="archive")
+    public ArchiveStatus getArchive() {
+        return archive;
+    }
+
+    /**
+     * Getter method for the merge deduplication status.
+     * @return The deduplication status.
+     */
+    @JsonProperty(value="deduplication")
+    public DeduplicationStatus getDeduplication() {
+        return deduplication;
+    }
+
+    /**
+     * Getter method for the S3 range read status.
+     * @return The S3 read status.
+     */
+    @JsonProperty(value="s3")
+    public S3ReadStatus getS3() {
+        return s3;
+    }
+
+    /**
+     * Getter method for the staging reaper status.
+     * @return The staging status.
+     */
+    @JsonProperty(value="staging")
+    public StagingStatus getStaging() {
+        return staging;
+    }
+
+    /**
+     * Setter method for the request archive status.
+     * @param value The archive status.
+     */
+    public void setArchive(ArchiveStatus value) {
+        archive = value;
+    }
+
+    /**
+     * Setter method for the admission control status.
+     * @param value The admission status.
+     */
+    public void setAdmission(AdmissionStatus value) {
+        admission = value;
+    }
+
+    /**
+     * Setter method for the merge deduplication status.
+     * @param value The deduplication status.
+     */
+    public void setDeduplication(DeduplicationStatus value) {
+        deduplication = value;
+    }
+
+    /**
+     * Getter method for the S3 input cache status.
+     * @return The S3 input cache status.
+     */
+    @JsonProperty(value="s3_cache")
+    public S3CacheStatus getS3Cache() {
+        return s3Cache;
+    }
+
+    /**
+     * Getter method for the S3 file system health status.
+     * @return The S3 health status.
+     */
+    @JsonProperty(value="s3_health")
+    public S3HealthStatus getS3Health() {
+        return s3Health;
+    }
+
+    /**
+     * Setter method for the S3 range read status.
+     * @param value The S3 read status.
+     */
+    public void setS3(S3ReadStatus value) {
+        s3 = value;
+    }
+
+    /**
+     * Setter method for the S3 input cache status.
+     * @param value The S3 input cache status.
+     */
+    public void setS3Cache(S3CacheStatus value) {
+        s3Cache = value;
+    }
+
+    /**
+     * Setter method for the S3 file system health status.
+     * @param value The S3 health status.
+     */
+    public void setS3Health(S3HealthStatus value) {
+        s3Health = value;
+    }
+
+    /**
+     * Setter method for the staging reaper status.
+     * @param value The staging status.
+     */
+    public void setStaging(StagingStatus value) {
+        staging = value;
+    }
+}
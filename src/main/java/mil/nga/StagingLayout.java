@@ -0,0 +1,187 @@
+package mil.nga;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Class defining where the per-merge output directories are placed within
+ * the staging area.  In the "sharded" layout (the default) each output
+ * directory is placed beneath one or more levels of shard directories
+ * derived from a hash of the directory name, e.g.
+ * <code>&lt;staging&gt;/3f/a0/nga_host_token</code>, so that no single
+ * directory accumulates an unbounded number of entries.  In the "flat"
+ * layout (the original behavior) output directories are created directly
+ * in the staging area.
+ *
+ * Regardless of the configured layout, <code>list()</code> finds output
+ * directories in both layouts.  Switching layouts therefore never strands
+ * existing output: directories (and the URLs already handed out for them)
+ * remain where they were created until they are removed by the
+ * <code>StagingReaper</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class StagingLayout implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StagingLayout.class);
+
+    /**
+     * The maximum number of shard levels (limited by the width of the
+     * hash).
+     */
+    public static final int MAX_SHARD_LEVELS = 4;
+
+    /**
+     * Pattern matching a shard directory name.
+     */
+    private static final Pattern SHARD_PATTERN =
+            Pattern.compile("[0-9a-f]{2}");
+
+    /**
+     * Whether output directories are sharded.
+     */
+    private boolean sharded = true;
+
+    /**
+     * Number of shard levels.
+     */
+    private int levels = DEFAULT_STAGING_SHARD_LEVELS;
+
+    /**
+     * Constructor.
+     *
+     * @param props System properties object (may be null).
+     */
+    public StagingLayout(Properties props) {
+        String layout = PropertyUtils.getString(
+                props,
+                STAGING_LAYOUT_PROPERTY,
+                STAGING_LAYOUT_SHARDED);
+        if (STAGING_LAYOUT_FLAT.equalsIgnoreCase(layout)) {
+            sharded = false;
+        }
+        else if (!STAGING_LAYOUT_SHARDED.equalsIgnoreCase(layout)) {
+            LOGGER.warn("Invalid value [ "
+                    + layout
+                    + " ] for property [ "
+                    + STAGING_LAYOUT_PROPERTY
+                    + " ].  Using [ "
+                    + STAGING_LAYOUT_SHARDED
+                    + " ].");
+        }
+        levels = Math.min(MAX_SHARD_LEVELS, Math.max(1, PropertyUtils.getInt(
+                props,
+                STAGING_SHARD_LEVELS_PROPERTY,
+                DEFAULT_STAGING_SHARD_LEVELS)));
+    }
+
+    /**
+     * Calculate the shard path for an output directory name, e.g.
+     * <code>3f/a0</code>.  Shards are the leading bytes of a hash of the
+     * name, so output directories are spread evenly across the shards.
+     *
+     * @param name The output directory name.
+     * @return The shard path (using '/' as the separator), or an empty
+     * String if the layout is flat.
+     */
+    public String getShard(String name) {
+        if (!sharded) {
+            return "";
+        }
+        String        hash = Hashing.murmur3_32()
+                                .hashString(name, StandardCharsets.UTF_8)
+                                .toString();
+        StringBuilder sb   = new StringBuilder();
+        for (int i = 0; i < levels; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            sb.append(hash, 2 * i, 2 * i + 2);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Find the output directories within the staging area whose names
+     * match the input pattern, in both the flat and sharded layouts (and 
+     * at any number of shard levels, so changing the number of levels is
+     * also safe).
+     *
+     * @param stagingArea The staging area.
+     * @param pattern Pattern matching the output directory names.
+     * @return The matching output directories.
+     * @throws IOException Thrown if the staging area could not be listed.
+     */
+    public List<Path> list(Path stagingArea, Pattern pattern)
+            throws IOException {
+        List<Path> found = new ArrayList<Path>();
+        list(stagingArea, pattern, MAX_SHARD_LEVELS, found);
+        return found;
+    }
+
+    /**
+     * Recursive helper for <code>list()</code>.  Matching directories are
+     * collected at every level, and shard directories are descended into
+     * until the maximum number of levels is reached.
+     *
+     * @param dir The directory to list.
+     * @param pattern Pattern matching the output directory names.
+     * @param depth Number of shard levels remaining beneath this
+     * directory.
+     * @param found The matching output directories.
+     * @throws IOException Thrown if the directory could not be listed.
+     */
+    private void list(Path dir, Pattern pattern, int depth, List<Path> found)
+            throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (pattern.matcher(name).matches()) {
+                    if (Files.isDirectory(path)) {
+                        found.add(path);
+                    }
+                }
+                else if ((depth > 0) &&
+                        SHARD_PATTERN.matcher(name).matches() &&
+                        Files.isDirectory(path)) {
+                    list(path, pattern, depth - 1, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of shard levels.
+     * @return The number of shard levels.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Getter method for whether output directories are sharded.
+     * @return True if the layout is sharded.
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+}
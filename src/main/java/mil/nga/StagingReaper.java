@@ -0,0 +1,592 @@
+package mil.nga;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageFactory;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Background task that removes the per-merge staging directories created
+ * by <code>FileGenerator.getOutputDirectory()</code>.  Only directories
+ * created by this host (i.e. those matching
+ * <code>FileGenerator.getRegEx()</code>) are considered, so several hosts
+ * may share the staging area.  Directories are found in both the flat and
+ * sharded layouts (see <code>StagingLayout</code>).  Empty shard 
+ * directories are left in place for reuse.
+ *
+ * Each run scans the staging directories in parallel, walking each tree to
+ * find its size and the time anything in it was last modified.
+ * Directories that have not been modified within the TTL are deleted.  If
+ * the remaining directories occupy more than the disk budget, the least
+ * recently modified directories are deleted until the budget is met.
+ * Directories modified within the last <code>MINIMUM_AGE_MS</code> are
+ * never deleted as a merge may still be writing to them.  Deletion is
+ * also performed in parallel.
+ *
+ * Only staging areas on the local file system are managed.  Staging areas
+ * held by other storage backends (e.g. S3) are expected to expire their
+ * content themselves.
+ *
+ * @author L. Craig Carpenter
+ */
+public class StagingReaper
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StagingReaper.class);
+
+    /**
+     * Directories modified more recently than this (in ms) are never
+     * deleted.
+     */
+    public static final long MINIMUM_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The staging area containing the staging directories.
+     */
+    private Path stagingArea = null;
+
+    /**
+     * Layout used to find the staging directories.
+     */
+    private StagingLayout layout = null;
+
+    /**
+     * Pattern matching this host's staging directories.
+     */
+    private final Pattern pattern = Pattern.compile(FileGenerator.getRegEx());
+
+    /**
+     * Staging directories are deleted this long (in ms) after they were
+     * last modified.
+     */
+    private long ttl = TimeUnit.MINUTES.toMillis(DEFAULT_STAGING_TTL_MINUTES);
+
+    /**
+     * Maximum disk space (in bytes) used by the staging directories, 0 for
+     * no limit.
+     */
+    private long budget = 0;
+
+    /**
+     * How often (in minutes) the reaper runs, 0 if it is disabled.
+     */
+    private long interval = DEFAULT_STAGING_REAPER_INTERVAL_MINUTES;
+
+    /**
+     * Number of threads used to scan and delete directories.
+     */
+    private int threads = DEFAULT_STAGING_REAPER_THREADS;
+
+    /**
+     * Schedules the reaper runs (null until started).
+     */
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Threads used to scan and delete directories (null until started).
+     */
+    private ExecutorService workers = null;
+
+    /**
+     * Counters exposed through the service status.
+     */
+    private final AtomicLong runs                  = new AtomicLong(0);
+    private final AtomicLong reclaimedDirectories  = new AtomicLong(0);
+    private final AtomicLong reclaimedBytes        = new AtomicLong(0);
+    private final AtomicLong failures              = new AtomicLong(0);
+    private final AtomicLong lastRunMillis         = new AtomicLong(0);
+    private final AtomicLong totalRunMillis        = new AtomicLong(0);
+    private final AtomicLong stagedDirectories     = new AtomicLong(0);
+    private final AtomicLong stagedBytes           = new AtomicLong(0);
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private StagingReaper() {
+        super(PROPERTY_FILE_NAME);
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        initialize(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public StagingReaper(Properties props) {
+        initialize(props);
+    }
+
+    /**
+     * Read the reaper settings.
+     *
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
+        FileGenerator generator = new FileGenerator(props);
+        URI           staging   = generator.getStagingArea();
+        stagingArea = StorageFactory.get(staging).getLocalPath(staging);
+        layout      = generator.getLayout();
+        ttl = TimeUnit.MINUTES.toMillis(Math.max(1, PropertyUtils.getLong(
+                props,
+                STAGING_TTL_PROPERTY,
+                DEFAULT_STAGING_TTL_MINUTES)));
+        budget = Math.max(0, PropertyUtils.getLong(
+                props,
+                STAGING_BUDGET_PROPERTY,
+                0)) * 1024L * 1024L;
+        interval = Math.max(0, PropertyUtils.getLong(
+                props,
+                STAGING_REAPER_INTERVAL_PROPERTY,
+                DEFAULT_STAGING_REAPER_INTERVAL_MINUTES));
+        threads = Math.max(1, PropertyUtils.getInt(
+                props,
+                STAGING_REAPER_THREADS_PROPERTY,
+                DEFAULT_STAGING_REAPER_THREADS));
+    }
+
+    /**
+     * Return a singleton instance to the StagingReaper object.
+     * @return The StagingReaper
+     */
+    public static StagingReaper getInstance() {
+        return StagingReaperHolder.getSingleton();
+    }
+
+    /**
+     * Start running the reaper periodically.  The first run takes place
+     * immediately.  Called when the application is deployed.
+     */
+    public synchronized void start() {
+        if (interval <= 0) {
+            LOGGER.info("The staging reaper is disabled.");
+            return;
+        }
+        if (stagingArea == null) {
+            LOGGER.info("The staging area is not on the local file system. "
+                    + " The staging reaper is disabled.");
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                        .setNameFormat("staging-reaper")
+                        .setDaemon(true)
+                        .build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            reap();
+                        }
+                    },
+                    0,
+                    interval,
+                    TimeUnit.MINUTES);
+            LOGGER.info("Staging reaper started for [ "
+                    + stagingArea.toString()
+                    + " ] with a TTL of [ "
+                    + TimeUnit.MILLISECONDS.toMinutes(ttl)
+                    + " ] minutes, a budget of [ "
+                    + (budget > 0 ?
+                            FileUtils.humanReadableByteCount(budget, false) :
+                            "none")
+                    + " ] and an interval of [ "
+                    + interval
+                    + " ] minutes.");
+        }
+    }
+
+    /**
+     * Stop the reaper.  Called when the application is undeployed.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            LOGGER.info("Shutting down the staging reaper.");
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Obtain the pool used to scan and delete directories, creating it if
+     * necessary.
+     *
+     * @return The worker pool.
+     */
+    private synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(
+                    threads,
+                    new ThreadFactoryBuilder()
+                        .setNameFormat("staging-reaper-%d")
+                        .setDaemon(true)
+                        .build());
+        }
+        return workers;
+    }
+
+    /**
+     * Perform a single pass over the staging area.
+     *
+     * @return The number of bytes reclaimed.
+     */
+    public long reap() {
+
+        long start     = System.currentTimeMillis();
+        long reclaimed = 0;
+
+        if (stagingArea == null) {
+            return reclaimed;
+        }
+
+        try {
+            List<StagingDirectory> directories = scan(start);
+            List<StagingDirectory> doomed      = select(directories, start);
+
+            int  deleted   = 0;
+            long remaining = 0;
+            for (StagingDirectory dir : directories) {
+                remaining += dir.bytes;
+            }
+            for (StagingDirectory dir : delete(doomed)) {
+                deleted++;
+                reclaimed += dir.reclaimed;
+                remaining -= dir.bytes;
+            }
+
+            reclaimedDirectories.addAndGet(deleted);
+            reclaimedBytes.addAndGet(reclaimed);
+            stagedDirectories.set(directories.size() - deleted);
+            stagedBytes.set(remaining);
+
+            LOGGER.info("Staging reaper deleted [ "
+                    + deleted
+                    + " ] of [ "
+                    + directories.size()
+                    + " ] staging directories, reclaiming [ "
+                    + FileUtils.humanReadableByteCount(reclaimed, false)
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        catch (IOException ioe) {
+            failures.incrementAndGet();
+            LOGGER.error("Unexpected IOException encountered while "
+                    + "scanning the staging area [ "
+                    + stagingArea.toString()
+                    + " ].  Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            long elapsed = System.currentTimeMillis() - start;
+            runs.incrementAndGet();
+            lastRunMillis.set(elapsed);
+            totalRunMillis.addAndGet(elapsed);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * List this host's staging directories (in both the flat and sharded
+     * layouts) and measure each of them in parallel.
+     *
+     * @param now The start of the run.
+     * @return The staging directories.
+     * @throws IOException Thrown if the staging area could not be listed.
+     * @throws InterruptedException Thrown if the reaper is shut down.
+     */
+    private List<StagingDirectory> scan(long now)
+            throws IOException, InterruptedException {
+
+        List<Future<StagingDirectory>> pending =
+                new ArrayList<Future<StagingDirectory>>();
+
+        for (final Path path : layout.list(stagingArea, pattern)) {
+            pending.add(getWorkers().submit(
+                    new Callable<StagingDirectory>() {
+                        @Override
+                        public StagingDirectory call() throws IOException {
+                            return measure(path);
+                        }
+                    }));
+        }
+
+        List<StagingDirectory> directories = new ArrayList<StagingDirectory>();
+        for (Future<StagingDirectory> future : pending) {
+            try {
+                directories.add(future.get());
+            }
+            catch (ExecutionException ee) {
+                // The directory was deleted or could not be read.  It is
+                // reconsidered on the next run.
+                if (!(ee.getCause() instanceof NoSuchFileException)) {
+                    failures.incrementAndGet();
+                    LOGGER.warn("Unable to scan staging directory.  "
+                            + "Exception message => [ "
+                            + ee.getCause().getMessage()
+                            + " ].");
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Walk a staging directory to find the space it occupies and the time
+     * anything in it was last modified.
+     *
+     * @param path The staging directory.
+     * @return The measured directory.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    private static StagingDirectory measure(Path path) throws IOException {
+
+        final StagingDirectory dir = new StagingDirectory(path);
+
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(
+                    Path current,
+                    BasicFileAttributes attrs) {
+                dir.touch(attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(
+                    Path file,
+                    BasicFileAttributes attrs) {
+                dir.bytes += attrs.size();
+                dir.touch(attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(
+                    Path file,
+                    IOException exc) throws IOException {
+                if (exc instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+        });
+        return dir;
+    }
+
+    /**
+     * Select the directories to delete: those older than the TTL, followed
+     * by the least recently modified directories until the remainder fit
+     * within the budget.
+     *
+     * @param directories The staging directories.
+     * @param now The start of the run.
+     * @return The directories to delete.
+     */
+    private List<StagingDirectory> select(
+            List<StagingDirectory> directories,
+            long now) {
+
+        List<StagingDirectory> doomed = new ArrayList<StagingDirectory>();
+        List<StagingDirectory> sorted =
+                new ArrayList<StagingDirectory>(directories);
+        Collections.sort(sorted, new Comparator<StagingDirectory>() {
+            @Override
+            public int compare(StagingDirectory a, StagingDirectory b) {
+                return Long.compare(a.lastModified, b.lastModified);
+            }
+        });
+
+        long total = 0;
+        for (StagingDirectory dir : sorted) {
+            total += dir.bytes;
+        }
+        for (StagingDirectory dir : sorted) {
+            long age = now - dir.lastModified;
+            if (age < MINIMUM_AGE_MS) {
+                break;
+            }
+            if ((age >= ttl) || ((budget > 0) && (total > budget))) {
+                doomed.add(dir);
+                total -= dir.bytes;
+            }
+            else {
+                break;
+            }
+        }
+        return doomed;
+    }
+
+    /**
+     * Delete the selected directories in parallel.
+     *
+     * @param doomed The directories to delete.
+     * @return The directories that were deleted.
+     * @throws InterruptedException Thrown if the reaper is shut down.
+     */
+    private List<StagingDirectory> delete(List<StagingDirectory> doomed)
+            throws InterruptedException {
+
+        List<Future<StagingDirectory>> pending =
+                new ArrayList<Future<StagingDirectory>>();
+
+        for (final StagingDirectory dir : doomed) {
+            pending.add(getWorkers().submit(new Callable<StagingDirectory>() {
+                @Override
+                public StagingDirectory call() throws IOException {
+                    dir.reclaimed = FileUtils.delete(dir.path);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Deleted staging directory [ "
+                                + dir.path.toString()
+                                + " ].");
+                    }
+                    return dir;
+                }
+            }));
+        }
+
+        List<StagingDirectory> deleted = new ArrayList<StagingDirectory>();
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                deleted.add(pending.get(i).get());
+            }
+            catch (ExecutionException ee) {
+                failures.incrementAndGet();
+                LOGGER.warn("Unable to delete staging directory [ "
+                        + doomed.get(i).path.toString()
+                        + " ].  Exception message => [ "
+                        + ee.getCause().getMessage()
+                        + " ].");
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Obtain the reaper counters for inclusion in the service status.
+     *
+     * @return The current reaper counters.
+     */
+    public StagingStatus getStatus() {
+        StagingStatus status = new StagingStatus();
+        status.setRuns(runs.get());
+        status.setReclaimedDirectories(reclaimedDirectories.get());
+        status.setReclaimedBytes(reclaimedBytes.get());
+        status.setFailures(failures.get());
+        status.setLastRunMillis(lastRunMillis.get());
+        status.setTotalRunMillis(totalRunMillis.get());
+        status.setStagedDirectories(stagedDirectories.get());
+        status.setStagedBytes(stagedBytes.get());
+        return status;
+    }
+
+    /**
+     * A staging directory found by the scan, along with the number of 
+     * bytes reclaimed if it was deleted.  Each instance is populated by a 
+     * single worker thread at a time and read after the worker completes.
+     */
+    private static final class StagingDirectory {
+
+        private final Path path;
+        private long       bytes        = 0;
+        private long       lastModified = 0;
+        private long       reclaimed    = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param path The staging directory.
+         */
+        StagingDirectory(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Record a modification time found in the directory tree.
+         *
+         * @param time The modification time.
+         */
+        void touch(long time) {
+            lastModified = Math.max(lastModified, time);
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class StagingReaperHolder {
+
+        /**
+         * Reference to the Singleton instance of the StagingReaper
+         */
+        private static StagingReaper _instance = new StagingReaper();
+
+        /**
+         * Accessor method for the singleton instance of the StagingReaper.
+         *
+         * @return The singleton instance of the StagingReaper.
+         */
+        public static StagingReaper getSingleton() {
+            return _instance;
+        }
+    }
+}
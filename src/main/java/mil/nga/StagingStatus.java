@@ -0,0 +1,175 @@
+package mil.nga;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Simple class used to return the staging reaper counters to the client.
+ * The class contains annotations for constructing JSON output.
+ *
+ * @author L. Craig Carpenter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StagingStatus implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 3904461870245527196L;
+
+    private long runs                 = 0;
+    private long reclaimedDirectories = 0;
+    private long reclaimedBytes       = 0;
+    private long failures             = 0;
+    private long lastRunMillis        = 0;
+    private long totalRunMillis       = 0;
+    private long stagedDirectories    = 0;
+    private long stagedBytes          = 0;
+
+    /**
+     * Default constructor required by JAX-B
+     */
+    public StagingStatus() {}
+
+    /**
+     * Getter method for the number of directories that could not be
+     * scanned or deleted.
+     * @return The number of failures.
+     */
+    @JsonProperty(value="failures")
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Getter method for the duration of the most recent reaper run.
+     * @return The duration of the last run in ms.
+     */
+    @JsonProperty(value="last_run_ms")
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    /**
+     * Getter method for the number of bytes reclaimed by the reaper.
+     * @return The number of bytes reclaimed.
+     */
+    @JsonProperty(value="reclaimed_bytes")
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    /**
+     * Getter method for the number of staging directories deleted by the
+     * reaper.
+     * @return The number of directories deleted.
+     */
+    @JsonProperty(value="reclaimed_directories")
+    public long getReclaimedDirectories() {
+        return reclaimedDirectories;
+    }
+
+    /**
+     * Getter method for the number of reaper runs.
+     * @return The number of runs.
+     */
+    @JsonProperty(value="runs")
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Getter method for the space occupied by the staging directories
+     * after the most recent run.
+     * @return The number of staged bytes.
+     */
+    @JsonProperty(value="staged_bytes")
+    public long getStagedBytes() {
+        return stagedBytes;
+    }
+
+    /**
+     * Getter method for the number of staging directories remaining after
+     * the most recent run.
+     * @return The number of staging directories.
+     */
+    @JsonProperty(value="staged_directories")
+    public long getStagedDirectories() {
+        return stagedDirectories;
+    }
+
+    /**
+     * Getter method for the total time spent in reaper runs.
+     * @return The total run time in ms.
+     */
+    @JsonProperty(value="total_run_ms")
+    public long getTotalRunMillis() {
+        return totalRunMillis;
+    }
+
+    /**
+     * Setter method for the number of failures.
+     * @param value The number of failures.
+     */
+    public void setFailures(long value) {
+        failures = value;
+    }
+
+    /**
+     * Setter method for the duration of the most recent run.
+     * @param value The duration in ms.
+     */
+    public void setLastRunMillis(long value) {
+        lastRunMillis = value;
+    }
+
+    /**
+     * Setter method for the number of bytes reclaimed.
+     * @param value The number of bytes reclaimed.
+     */
+    public void setReclaimedBytes(long value) {
+        reclaimedBytes = value;
+    }
+
+    /**
+     * Setter method for the number of directories deleted.
+     * @param value The number of directories deleted.
+     */
+    public void setReclaimedDirectories(long value) {
+        reclaimedDirectories = value;
+    }
+
+    /**
+     * Setter method for the number of runs.
+     * @param value The number of runs.
+     */
+    public void setRuns(long value) {
+        runs = value;
+    }
+
+    /**
+     * Setter method for the number of staged bytes.
+     * @param value The number of staged bytes.
+     */
+    public void setStagedBytes(long value) {
+        stagedBytes = value;
+    }
+
+    /**
+     * Setter method for the number of staging directories.
+     * @param value The number of staging directories.
+     */
+    public void setStagedDirectories(long value) {
+        stagedDirectories = value;
+    }
+
+    /**
+     * Setter method for the total run time.
+     * @param value The total run time in ms.
+     */
+    public void setTotalRunMillis(long value) {
+        totalRunMillis = value;
+    }
+}
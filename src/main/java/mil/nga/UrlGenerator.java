@@ -1,16 +1,20 @@
 package mil.nga;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import mil.nga.PropertyLoader;
 import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.StorageFactory;
+import mil.nga.util.PropertyUtils;
 
 public class UrlGenerator 
         extends PropertyLoader implements PDFMergeI {
@@ -41,12 +45,22 @@ public class UrlGenerator
      */
     private String authority = null;
     
+    /**
+     * How long (in minutes) signed URLs remain valid.  Zero disables 
+     * signed URLs.
+     */
+    private long signedUrlTTL = DEFAULT_SIGNED_URL_TTL_MINUTES;
+    
     /**
      * Default constructor
      */
     public UrlGenerator(Properties props) {
         setBaseDir(props.getProperty(STAGING_DIRECTORY_BASE_PROPERTY));
         setBaseURL(props.getProperty(BASE_URL_PROPERTY));
+        signedUrlTTL = PropertyUtils.getLong(
+                props, 
+                SIGNED_URL_TTL_PROPERTY, 
+                DEFAULT_SIGNED_URL_TTL_MINUTES);
     }
     
     /**
@@ -100,8 +114,11 @@ public class UrlGenerator
     }
     
     /**
-     * Convert the input local file String to a full URL.
-     * TODO: This probably needs to be made fancier.
+     * Convert the input local file String to a full URL.  The path of 
+     * the file relative to the base directory is appended to the base URL,
+     * so files in both the flat and sharded staging layouts (see 
+     * <code>StagingLayout</code>) map to URLs that mirror their location
+     * on disk.
      * 
      * @param localFile The full path to the local archive file.
      * @return The associated URL
@@ -113,7 +130,7 @@ public class UrlGenerator
             sb.append("://");
             sb.append(authority);
             URI uri = new URI(localFile);
-            sb.append(uri.getPath().replace(getBaseDir(), "").replace('\\', '/'));
+            sb.append(getRelativePath(uri.getPath()));
         }
         catch (URISyntaxException use) {
             
@@ -122,22 +139,81 @@ public class UrlGenerator
     }
     
     /**
-     * Convert the input local file String to a full URL.
-     * TODO: This probably needs to be made fancier.
+     * Convert the input local file String to a full URL.  See 
+     * <code>toURL(String)</code>.  Files held by a storage backend that 
+     * supports signed URLs (i.e. S3) are returned as a time-limited 
+     * signed URL instead, falling back to the path-derived URL if the 
+     * URL could not be signed.
      * 
      * @param uri The full URI to the local 
      * @return The associated URL
      */
     public String toURL(URI uri) {
+        
+        String signed = toSignedURL(uri);
+        if (signed != null) {
+            return signed;
+        }
+        
         StringBuilder sb = new StringBuilder();
 
         sb.append(scheme);
         sb.append("://");
         sb.append(authority);
-        sb.append(uri.getPath().replace(getBaseDir(), "").replace('\\', '/'));
+        sb.append(getRelativePath(uri.getPath()));
         
         return sb.toString();
     }
+    
+    /**
+     * Obtain a signed URL for a file held outside the default file system.
+     * 
+     * @param uri The full URI to the file.
+     * @return The signed URL, or null if signed URLs are disabled or not
+     * supported by the storage backend holding the file.
+     */
+    private String toSignedURL(URI uri) {
+        if ((signedUrlTTL > 0) && 
+                (uri != null) && 
+                (uri.getScheme() != null) &&
+                (!"file".equalsIgnoreCase(uri.getScheme()))) {
+            try {
+                URL url = StorageFactory.get(uri).getSignedURL(
+                        uri, 
+                        TimeUnit.MINUTES.toMillis(signedUrlTTL));
+                if (url != null) {
+                    return url.toString();
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                LOGGER.warn("Unable to generate a signed URL for [ "
+                        + uri.toString()
+                        + " ].  Exception message => [ "
+                        + e.getMessage()
+                        + " ].");
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Remove the base directory from the front of the input path.  Only a
+     * leading occurrence is removed (the base directory name may also 
+     * appear further down the path, e.g. in a shard or file name).
+     * 
+     * @param path The path to the local file.
+     * @return The path relative to the base directory using '/' as the 
+     * separator.
+     */
+    private String getRelativePath(String path) {
+        String relative = path.replace('\\', '/');
+        String base     = (getBaseDir() == null) ? 
+                "" : getBaseDir().replace('\\', '/');
+        if ((!base.isEmpty()) && (relative.startsWith(base))) {
+            relative = relative.substring(base.length());
+        }
+        return relative;
+    }
 
 }
 
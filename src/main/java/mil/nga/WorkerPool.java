@@ -0,0 +1,182 @@
+package mil.nga;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * Bounded pool of worker threads shared by all merge requests.  The PDF
+ * parsing and validation work associated with every request is executed
+ * by this pool, so the number of threads performing CPU-intensive work is
+ * fixed regardless of the number of concurrent requests.  The pool size
+ * is read from the system properties.
+ *
+ * @author L. Craig Carpenter
+ */
+public class WorkerPool
+        extends PropertyLoader
+        implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            WorkerPool.class);
+
+    /**
+     * The underlying executor.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private WorkerPool() {
+        super(PROPERTY_FILE_NAME);
+
+        int poolSize = Runtime.getRuntime().availableProcessors();
+
+        try {
+            String value = getProperty(WORKER_POOL_SIZE_PROPERTY);
+            if ((value != null) && (!value.trim().isEmpty())) {
+                poolSize = Integer.parseInt(value.trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.warn("Invalid value for property [ "
+                    + WORKER_POOL_SIZE_PROPERTY
+                    + " ].  Using the default pool size [ "
+                    + poolSize
+                    + " ].");
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        poolSize = Math.max(1, poolSize);
+
+        executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("pdf-worker-%d")
+                    .setDaemon(true)
+                    .build());
+        executor.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("PDF worker pool initialized with [ "
+                + poolSize
+                + " ] threads.");
+    }
+
+    /**
+     * Return a singleton instance to the WorkerPool object.
+     * @return The WorkerPool
+     */
+    public static WorkerPool getInstance() {
+        return WorkerPoolHolder.getSingleton();
+    }
+
+    /**
+     * Getter method for the maximum number of worker threads.
+     * @return The size of the pool.
+     */
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Setter method for the number of worker threads.  Allows the pool to
+     * be resized without restarting the application.
+     * @param value The size of the pool (at least one thread).
+     */
+    public synchronized void setPoolSize(int value) {
+        int size = Math.max(1, value);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        }
+        else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Getter method for the number of tasks waiting for a worker thread.
+     * @return The number of queued tasks.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Remove cancelled tasks from the work queue.  Clients should call
+     * this method after cancelling a large number of tasks.
+     */
+    public void purge() {
+        executor.purge();
+    }
+
+    /**
+     * Stop accepting work and interrupt the running tasks.  Called when
+     * the application is undeployed.
+     */
+    public void shutdown() {
+        LOGGER.info("Shutting down the PDF worker pool.");
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit a task for execution on the shared pool.
+     *
+     * @param task The task to execute.
+     * @return Future associated with the task.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class WorkerPoolHolder {
+
+        /**
+         * Reference to the Singleton instance of the WorkerPool
+         */
+        private static WorkerPool _instance = new WorkerPool();
+
+        /**
+         * Accessor method for the singleton instance of the WorkerPool.
+         *
+         * @return The singleton instance of the WorkerPool.
+         */
+        public static WorkerPool getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -53,12 +53,327 @@ public interface PDFMergeI {
     public static final String MERGE_REQUEST_DIRECTORY_PROP = 
             "mergePDF.request_output_location";
     
+    /**
+     * Property defining the maximum number of merge requests waiting to be 
+     * archived.  Requests arriving while the queue is full are not archived.
+     */
+    public static final String ARCHIVE_QUEUE_SIZE_PROPERTY = 
+            "mergePDF.request_archive_queue_size";
+    
+    /**
+     * The default maximum number of requests waiting to be archived.
+     */
+    public static final int DEFAULT_ARCHIVE_QUEUE_SIZE = 1000;
+    
+    /**
+     * Property defining the maximum number of merge requests written by 
+     * the archive writer in a single batch.
+     */
+    public static final String ARCHIVE_BATCH_SIZE_PROPERTY = 
+            "mergePDF.request_archive_batch_size";
+    
+    /**
+     * The default archive batch size.
+     */
+    public static final int DEFAULT_ARCHIVE_BATCH_SIZE = 100;
+    
+    /**
+     * Property defining the size (in MB) at which the active request 
+     * archive segment is rolled.
+     */
+    public static final String ARCHIVE_SEGMENT_SIZE_PROPERTY = 
+            "mergePDF.request_archive_segment_mb";
+    
+    /**
+     * The default maximum archive segment size in MB.
+     */
+    public static final long DEFAULT_ARCHIVE_SEGMENT_SIZE_MB = 64L;
+    
+    /**
+     * Property defining the age (in minutes) at which the active request 
+     * archive segment is rolled.
+     */
+    public static final String ARCHIVE_SEGMENT_AGE_PROPERTY = 
+            "mergePDF.request_archive_segment_minutes";
+    
+    /**
+     * The default maximum archive segment age in minutes.
+     */
+    public static final long DEFAULT_ARCHIVE_SEGMENT_MINUTES = 60L;
+    
+    /**
+     * Property controlling whether rolled request archive segments are 
+     * gzip compressed (true/false).
+     */
+    public static final String ARCHIVE_COMPRESS_PROPERTY = 
+            "mergePDF.request_archive_compress";
+    
     /**
      * System property identifying the target staging directory.  
      */
     public static final String STAGING_DIRECTORY_PROPERTY = 
             "mergePDF.staging_directory";
     
+    /**
+     * Property selecting how output directories are laid out in the 
+     * staging directory.
+     */
+    public static final String STAGING_LAYOUT_PROPERTY = 
+            "mergePDF.staging_layout";
+    
+    /**
+     * Output directories are created directly in the staging directory.
+     */
+    public static final String STAGING_LAYOUT_FLAT = "flat";
+    
+    /**
+     * Output directories are created beneath hashed shard directories.
+     */
+    public static final String STAGING_LAYOUT_SHARDED = "sharded";
+    
+    /**
+     * Property defining the number of shard directory levels used by the
+     * sharded staging layout (1 to 4, each level has 256 directories).
+     */
+    public static final String STAGING_SHARD_LEVELS_PROPERTY = 
+            "mergePDF.staging_shard_levels";
+    
+    /**
+     * The default number of shard directory levels.
+     */
+    public static final int DEFAULT_STAGING_SHARD_LEVELS = 2;
+    
+    /**
+     * Property defining how long (in minutes) a staging directory is kept
+     * after it was last modified before the reaper deletes it.
+     */
+    public static final String STAGING_TTL_PROPERTY = 
+            "mergePDF.staging_ttl_minutes";
+    
+    /**
+     * The default staging directory TTL in minutes.
+     */
+    public static final long DEFAULT_STAGING_TTL_MINUTES = 1440L;
+    
+    /**
+     * Property defining the maximum disk space (in MB) used by this host's
+     * staging directories.  The oldest directories are deleted once the 
+     * budget is exceeded.  0 disables the budget.
+     */
+    public static final String STAGING_BUDGET_PROPERTY = 
+            "mergePDF.staging_budget_mb";
+    
+    /**
+     * Property defining how often (in minutes) the staging reaper runs.  
+     * 0 disables the reaper.
+     */
+    public static final String STAGING_REAPER_INTERVAL_PROPERTY = 
+            "mergePDF.staging_reaper_interval_minutes";
+    
+    /**
+     * The default staging reaper interval in minutes.
+     */
+    public static final long DEFAULT_STAGING_REAPER_INTERVAL_MINUTES = 15L;
+    
+    /**
+     * Property defining the number of threads used by the staging reaper 
+     * to scan and delete staging directories.
+     */
+    public static final String STAGING_REAPER_THREADS_PROPERTY = 
+            "mergePDF.staging_reaper_threads";
+    
+    /**
+     * The default number of staging reaper threads.
+     */
+    public static final int DEFAULT_STAGING_REAPER_THREADS = 2;
+    
+    /**
+     * Property defining the number of threads used to look up the 
+     * metadata (size and last modified time) of a batch of objects held 
+     * in remote storage (e.g. S3).
+     */
+    public static final String STORAGE_METADATA_THREADS_PROPERTY = 
+            "mergePDF.storage_metadata_threads";
+    
+    /**
+     * The default number of remote metadata lookup threads.
+     */
+    public static final int DEFAULT_STORAGE_METADATA_THREADS = 8;
+    
+    /**
+     * Property defining the size (in KB) of the blocks fetched with ranged
+     * GET requests when reading S3 objects randomly (e.g. parsing PDFs).
+     */
+    public static final String S3_BLOCK_SIZE_PROPERTY = 
+            "mergePDF.s3_block_size_kb";
+    
+    /**
+     * The default S3 block size in KB.
+     */
+    public static final int DEFAULT_S3_BLOCK_SIZE = 256;
+    
+    /**
+     * Property defining the number of blocks cached by each S3 reader.
+     */
+    public static final String S3_CACHE_BLOCKS_PROPERTY = 
+            "mergePDF.s3_cache_blocks";
+    
+    /**
+     * The default number of blocks cached by each S3 reader.
+     */
+    public static final int DEFAULT_S3_CACHE_BLOCKS = 16;
+    
+    /**
+     * Property defining the maximum number of additional blocks fetched 
+     * in the same request when an S3 object is being read sequentially.
+     */
+    public static final String S3_READ_AHEAD_BLOCKS_PROPERTY = 
+            "mergePDF.s3_read_ahead_blocks";
+    
+    /**
+     * The default number of read-ahead blocks.
+     */
+    public static final int DEFAULT_S3_READ_AHEAD_BLOCKS = 4;
+    
+    /**
+     * Property defining the local directory holding cached copies of S3 
+     * input files.  Defaults to a directory under java.io.tmpdir.
+     */
+    public static final String S3_INPUT_CACHE_DIRECTORY_PROPERTY = 
+            "mergePDF.s3_input_cache_dir";
+    
+    /**
+     * Name of the default S3 input cache directory within java.io.tmpdir.
+     */
+    public static final String DEFAULT_S3_INPUT_CACHE_DIRECTORY = 
+            "pdfmerge_s3_cache";
+    
+    /**
+     * Property defining the disk budget (in MB) of the S3 input cache.  
+     * Zero disables the cache.
+     */
+    public static final String S3_INPUT_CACHE_SIZE_PROPERTY = 
+            "mergePDF.s3_input_cache_mb";
+    
+    /**
+     * The default disk budget of the S3 input cache in MB.
+     */
+    public static final long DEFAULT_S3_INPUT_CACHE_MB = 1024L;
+    
+    /**
+     * Property defining how long (in seconds) a local copy evicted from 
+     * the S3 input cache is kept on disk before it is deleted, so that a
+     * request that obtained the copy just before the eviction can still 
+     * open it.
+     */
+    public static final String S3_INPUT_CACHE_EVICTION_DELAY_PROPERTY = 
+            "mergePDF.s3_input_cache_eviction_delay";
+    
+    /**
+     * The default delay (in seconds) before an evicted local copy is 
+     * deleted.
+     */
+    public static final long DEFAULT_S3_INPUT_CACHE_EVICTION_DELAY = 60L;
+    
+    /**
+     * Property defining the size (in MB) of the parts used when uploading
+     * output files to S3.  S3 requires parts of at least 5 MB.
+     */
+    public static final String S3_UPLOAD_PART_SIZE_PROPERTY = 
+            "mergePDF.s3_upload_part_size_mb";
+    
+    /**
+     * The default S3 upload part size in MB.
+     */
+    public static final int DEFAULT_S3_UPLOAD_PART_SIZE = 8;
+    
+    /**
+     * Property defining the maximum number of part buffers held by each 
+     * S3 upload (the part being written plus the parts being uploaded).
+     */
+    public static final String S3_UPLOAD_BUFFERS_PROPERTY = 
+            "mergePDF.s3_upload_buffers";
+    
+    /**
+     * The default number of part buffers per S3 upload.
+     */
+    public static final int DEFAULT_S3_UPLOAD_BUFFERS = 4;
+    
+    /**
+     * Property defining the number of threads uploading parts to S3.
+     */
+    public static final String S3_UPLOAD_THREADS_PROPERTY = 
+            "mergePDF.s3_upload_threads";
+    
+    /**
+     * The default number of S3 upload threads.
+     */
+    public static final int DEFAULT_S3_UPLOAD_THREADS = 16;
+    
+    /**
+     * Property defining how long (in minutes) a pre-signed URL returned 
+     * for output staged in S3 remains valid.  Zero disables pre-signed 
+     * URLs (URLs are then derived from the path of the output).
+     */
+    public static final String SIGNED_URL_TTL_PROPERTY = 
+            "mergePDF.signed_url_ttl_minutes";
+    
+    /**
+     * The default validity of pre-signed URLs in minutes.
+     */
+    public static final long DEFAULT_SIGNED_URL_TTL_MINUTES = 60L;
+
+    /**
+     * Property defining the size of the HTTP connection pool of the S3
+     * client.  Zero (the default) sizes the pool from the merge
+     * concurrency (job, worker, upload and metadata threads).
+     */
+    public static final String S3_MAX_CONNECTIONS_PROPERTY =
+            "mergePDF.s3_max_connections";
+
+    /**
+     * Property defining how many times a failed S3 request is retried
+     * (with exponential backoff) before the failure is reported.
+     */
+    public static final String S3_MAX_RETRIES_PROPERTY =
+            "mergePDF.s3_max_retries";
+
+    /**
+     * The default number of S3 request retries.
+     */
+    public static final int DEFAULT_S3_MAX_RETRIES = 5;
+
+    /**
+     * Property defining how often (in seconds) the connectivity to S3 is
+     * checked.  Zero disables the health checks.
+     */
+    public static final String S3_HEALTH_CHECK_INTERVAL_PROPERTY =
+            "mergePDF.s3_health_check_seconds";
+
+    /**
+     * The default S3 health check interval in seconds.
+     */
+    public static final long DEFAULT_S3_HEALTH_CHECK_SECONDS = 60L;
+
+    /**
+     * Property defining the number of consecutive failed health checks
+     * after which the S3 client and file system are rebuilt.
+     */
+    public static final String S3_HEALTH_CHECK_FAILURES_PROPERTY =
+            "mergePDF.s3_health_check_failures";
+
+    /**
+     * The default number of failed health checks tolerated.
+     */
+    public static final int DEFAULT_S3_HEALTH_CHECK_FAILURES = 3;
+
+    /**
+     * Property defining the bucket checked by the S3 health checks.  If
+     * not set the health check lists the owner of the account instead.
+     */
+    public static final String S3_HEALTH_CHECK_BUCKET_PROPERTY =
+            "mergePDF.s3_health_check_bucket";
+
     /**
      * Property defining the "base" staging directory (i.e. the portion
      * of the staging directory that will be replaced with a URL).  This
@@ -67,6 +382,252 @@ public interface PDFMergeI {
     public static final String STAGING_DIRECTORY_BASE_PROPERTY = 
             "mergePDF.staging_directory_base";
     
+    /**
+     * Property defining the number of input documents that will be read 
+     * and parsed ahead of the document currently being merged.  A value 
+     * of zero disables the look-ahead.
+     */
+    public static final String LOOKAHEAD_DEPTH_PROPERTY = 
+            "mergePDF.lookahead_depth";
+    
+    /**
+     * The default look-ahead depth.
+     */
+    public static final int DEFAULT_LOOKAHEAD_DEPTH = 2;
+    
+    /**
+     * Property defining the maximum number of input documents that may be
+     * open at the same time during a merge.  When set, each input document
+     * is closed as soon as it has been appended to the output.  A value of
+     * zero (the default) keeps every input open until the output has been 
+     * written.
+     */
+    public static final String MERGE_WINDOW_PROPERTY = 
+            "mergePDF.merge_window";
+    
+    /**
+     * Property defining the number of threads in the worker pool shared by
+     * all merge requests for parsing and validating input files.  Defaults
+     * to the number of available processors.
+     */
+    public static final String WORKER_POOL_SIZE_PROPERTY = 
+            "mergePDF.worker_pool_size";
+    
+    /**
+     * Property selecting how input files are validated.  Supported values
+     * are <code>strict</code> (the file must be fully parsed) and 
+     * <code>structural</code> (only the header, trailer and 
+     * cross-reference section are checked).
+     */
+    public static final String VALIDATION_MODE_PROPERTY = 
+            "mergePDF.validation_mode";
+    
+    /**
+     * Validation mode in which each input file is fully parsed.
+     */
+    public static final String VALIDATION_MODE_STRICT = "strict";
+    
+    /**
+     * Validation mode in which only the structure of each input file is 
+     * checked.
+     */
+    public static final String VALIDATION_MODE_STRUCTURAL = "structural";
+    
+    /**
+     * Property selecting the memory policy used by merge requests.  
+     * Supported values are <code>auto</code>, <code>main</code>, 
+     * <code>mixed</code> and <code>temp</code>.
+     */
+    public static final String MEMORY_POLICY_PROPERTY = 
+            "mergePDF.memory_policy";
+    
+    /**
+     * Property defining the fraction of the current heap headroom that a 
+     * single merge request may use before overflowing to disk.
+     */
+    public static final String MEMORY_HEAP_FRACTION_PROPERTY = 
+            "mergePDF.memory_heap_fraction";
+    
+    /**
+     * The default fraction of the heap headroom a merge request may use.
+     */
+    public static final double DEFAULT_MEMORY_HEAP_FRACTION = 0.25;
+    
+    /**
+     * Property identifying the directory used for merge scratch files.
+     */
+    public static final String SCRATCH_DIRECTORY_PROPERTY = 
+            "mergePDF.scratch_directory";
+    
+    /**
+     * Property defining the maximum number of megabytes a single merge 
+     * request may write to the scratch directory.
+     */
+    public static final String SCRATCH_QUOTA_PROPERTY = 
+            "mergePDF.scratch_quota_mb";
+    
+    /**
+     * The default per-request scratch quota in megabytes.
+     */
+    public static final long DEFAULT_SCRATCH_QUOTA_MB = 4096L;
+    
+    /**
+     * Property selecting how <code>mergeAndDownload</code> returns the 
+     * merged file: <code>stream</code> or <code>staged</code>.
+     */
+    public static final String DOWNLOAD_MODE_PROPERTY = 
+            "mergePDF.download_mode";
+    
+    /**
+     * Download mode writing the merged PDF directly to the client.
+     */
+    public static final String DOWNLOAD_MODE_STREAM = "stream";
+    
+    /**
+     * Download mode writing the merged PDF to the staging area before 
+     * returning it to the client.
+     */
+    public static final String DOWNLOAD_MODE_STAGED = "staged";
+    
+    /**
+     * Property defining the disk budget (in MB) of the merged output 
+     * cache.  Zero disables the cache.
+     */
+    public static final String OUTPUT_CACHE_SIZE_PROPERTY = 
+            "mergePDF.output_cache_mb";
+    
+    /**
+     * The default disk budget of the merged output cache in MB.
+     */
+    public static final long DEFAULT_OUTPUT_CACHE_MB = 2048L;
+    
+    /**
+     * Property defining how long (in minutes) a merged output file is 
+     * reused after it was created.
+     */
+    public static final String OUTPUT_CACHE_TTL_PROPERTY = 
+            "mergePDF.output_cache_ttl_minutes";
+    
+    /**
+     * The default TTL of merged output cache entries in minutes.
+     */
+    public static final long DEFAULT_OUTPUT_CACHE_TTL_MINUTES = 60L;
+    
+    /**
+     * Property selecting how input files are fingerprinted by the merged
+     * output cache: <code>metadata</code> or <code>content</code>.
+     */
+    public static final String OUTPUT_CACHE_KEY_PROPERTY = 
+            "mergePDF.output_cache_key";
+    
+    /**
+     * Property defining the maximum number of entries held in the input 
+     * file metadata cache.  Zero disables the cache.
+     */
+    public static final String METADATA_CACHE_SIZE_PROPERTY = 
+            "mergePDF.metadata_cache_size";
+    
+    /**
+     * The default maximum number of entries in the metadata cache.
+     */
+    public static final long DEFAULT_METADATA_CACHE_SIZE = 10000L;
+    
+    /**
+     * Property defining how long (in seconds) the metadata cache retains
+     * the result of a file that failed validation.  Files are only cached
+     * as invalid if they could be read but not parsed; this expiry bounds
+     * the cost of any failure that was misclassified.
+     */
+    public static final String METADATA_CACHE_INVALID_TTL_PROPERTY = 
+            "mergePDF.metadata_cache_invalid_ttl";
+    
+    /**
+     * The default retention (in seconds) of invalid files in the metadata
+     * cache.
+     */
+    public static final long DEFAULT_METADATA_CACHE_INVALID_TTL = 300L;
+    
+    /**
+     * Property defining the number of asynchronous merge jobs executed 
+     * at the same time.
+     */
+    public static final String JOB_POOL_SIZE_PROPERTY = 
+            "mergePDF.job_pool_size";
+    
+    /**
+     * The default number of concurrently executing merge jobs.
+     */
+    public static final int DEFAULT_JOB_POOL_SIZE = 2;
+    
+    /**
+     * Property defining the maximum number of merge jobs waiting to 
+     * execute.  Jobs submitted while the queue is full are rejected.
+     */
+    public static final String JOB_QUEUE_SIZE_PROPERTY = 
+            "mergePDF.job_queue_size";
+    
+    /**
+     * The default maximum number of queued merge jobs.
+     */
+    public static final int DEFAULT_JOB_QUEUE_SIZE = 50;
+    
+    /**
+     * Property defining how long (in minutes) finished merge jobs are 
+     * retained for clients to retrieve the result.
+     */
+    public static final String JOB_RETENTION_PROPERTY = 
+            "mergePDF.job_retention_minutes";
+    
+    /**
+     * The default retention period of finished merge jobs in minutes.
+     */
+    public static final long DEFAULT_JOB_RETENTION_MINUTES = 60L;
+    
+    /**
+     * Property defining the global in-flight budget (in MB) used by 
+     * admission control.  Defaults to half of the maximum heap.
+     */
+    public static final String ADMISSION_BUDGET_PROPERTY = 
+            "mergePDF.admission_budget_mb";
+    
+    /**
+     * Property defining how long (in ms) a request waits for capacity 
+     * before it is rejected.
+     */
+    public static final String ADMISSION_WAIT_PROPERTY = 
+            "mergePDF.admission_wait_ms";
+    
+    /**
+     * The default time a request waits for capacity in ms.
+     */
+    public static final long DEFAULT_ADMISSION_WAIT_MS = 2000L;
+    
+    /**
+     * Property defining the Retry-After value (in seconds) returned with 
+     * a rejected request.
+     */
+    public static final String ADMISSION_RETRY_AFTER_PROPERTY = 
+            "mergePDF.admission_retry_after_seconds";
+    
+    /**
+     * The default Retry-After value in seconds.
+     */
+    public static final int DEFAULT_ADMISSION_RETRY_AFTER = 10;
+    
+    /**
+     * Property defining how long (in ms) a request waits for the output
+     * of an identical merge already in progress.  If the wait expires 
+     * the waiting requests fail and the next identical request starts a
+     * new merge.
+     */
+    public static final String DEDUPLICATION_WAIT_PROPERTY = 
+            "mergePDF.dedup_wait_ms";
+    
+    /**
+     * The default time a request waits for an identical merge in ms.
+     */
+    public static final long DEFAULT_DEDUPLICATION_WAIT_MS = 300000L;
+    
     /**
      * Length of unique token utilized in the construction of a unique
      * staging area for output files. 
@@ -0,0 +1,191 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Implementation of the <code>StorageBackend</code> operations that can
+ * be expressed in terms of the others.  Batched metadata lookups are
+ * performed one object at a time and ranged reads are served by a
+ * positioned read channel.  Backends with a cheaper mechanism override
+ * these methods.
+ *
+ * @author L. Craig Carpenter
+ */
+public abstract class AbstractStorageBackend implements StorageBackend {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            AbstractStorageBackend.class);
+
+    /**
+     * The URI scheme handled by the backend.
+     */
+    private final String scheme;
+
+    /**
+     * Constructor.
+     *
+     * @param scheme The URI scheme handled by the backend.
+     */
+    protected AbstractStorageBackend(String scheme) {
+        this.scheme = scheme;
+    }
+
+    /**
+     * Getter method for the URI scheme handled by the backend.
+     * @return The URI scheme.
+     */
+    @Override
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * Look up the metadata of a batch of objects sequentially.
+     *
+     * @param uris The target objects.
+     * @return The metadata of each object found, keyed by URI.
+     */
+    @Override
+    public Map<URI, StorageMetadata> getMetadata(Collection<URI> uris) {
+        Map<URI, StorageMetadata> results =
+                new LinkedHashMap<URI, StorageMetadata>();
+        if (uris != null) {
+            for (URI uri : uris) {
+                StorageMetadata metadata = lookup(uri);
+                if (metadata != null) {
+                    results.put(uri, metadata);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Look up the metadata of a single object within a batch.
+     *
+     * @param uri The target object (may be null).
+     * @return The metadata, or null if the object does not exist or could
+     * not be accessed.
+     */
+    protected StorageMetadata lookup(URI uri) {
+        if (uri != null) {
+            try {
+                return getMetadata(uri);
+            }
+            catch (NoSuchFileException nsfe) {
+                // Missing objects are omitted from the result.
+            }
+            catch (IOException | RuntimeException e) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Unable to obtain the metadata for [ "
+                            + uri.toString()
+                            + " ].  Exception message => [ "
+                            + e.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open a range of an object by positioning a read channel.
+     *
+     * @param uri The target object.
+     * @param offset Offset of the first byte to read.
+     * @param length Maximum number of bytes to read.
+     * @return A stream over the requested range.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    @Override
+    public InputStream newInputStream(URI uri, long offset, long length)
+            throws IOException {
+        if ((offset < 0) || (length < 0)) {
+            throw new IllegalArgumentException("Invalid range requested "
+                    + "offset => [ "
+                    + offset
+                    + " ], length => [ "
+                    + length
+                    + " ].");
+        }
+        SeekableByteChannel channel = newReadChannel(uri);
+        try {
+            channel.position(offset);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
+    }
+
+    /**
+     * Objects are not held on the default file system unless the backend
+     * says otherwise.
+     *
+     * @param uri The target object.
+     * @return Always null.
+     */
+    @Override
+    public Path getLocalPath(URI uri) {
+        return null;
+    }
+
+    /**
+     * Objects held on the default file system are their own local copy.
+     *
+     * @param uri The target object.
+     * @return The result of <code>getLocalPath()</code>.
+     */
+    @Override
+    public Path getLocalCopy(URI uri) throws IOException {
+        return getLocalPath(uri);
+    }
+
+    /**
+     * Signed URLs are not supported unless the backend says otherwise.
+     *
+     * @param uri The target object.
+     * @param ttl How long (in milliseconds) the URL remains valid.
+     * @return Always null.
+     */
+    @Override
+    public URL getSignedURL(URI uri, long ttl) throws IOException {
+        return null;
+    }
+
+    /**
+     * Ensure a URI is handled by this backend.
+     *
+     * @param uri The target location.
+     * @throws IllegalArgumentException Thrown if the URI is null or has a
+     * different scheme.
+     */
+    protected void checkScheme(URI uri) {
+        if ((uri == null) || (!scheme.equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalArgumentException("URI [ "
+                    + String.valueOf(uri)
+                    + " ] is not handled by the [ "
+                    + scheme
+                    + " ] storage backend.");
+        }
+    }
+}
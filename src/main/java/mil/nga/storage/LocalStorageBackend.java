@@ -0,0 +1,55 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Storage backend for files on the default file system (local disk or
+ * NFS mounts), addressed with <code>file:</code> URIs.
+ *
+ * @author L. Craig Carpenter
+ */
+public class LocalStorageBackend extends PathStorageBackend {
+
+    /**
+     * The URI scheme handled by this backend.
+     */
+    public static final String SCHEME = "file";
+
+    /**
+     * Default constructor.
+     */
+    public LocalStorageBackend() {
+        super(SCHEME);
+    }
+
+    /**
+     * Convert a URI into a Path on the default file system.
+     *
+     * @param uri The target location.
+     * @return The associated Path.
+     */
+    @Override
+    protected Path toPath(URI uri) throws IOException {
+        checkScheme(uri);
+        return Paths.get(uri);
+    }
+
+    /**
+     * Every object handled by this backend is a local file.
+     *
+     * @param uri The target object.
+     * @return The local file, or null if the URI is not a file URI.
+     */
+    @Override
+    public Path getLocalPath(URI uri) {
+        try {
+            return toPath(uri);
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
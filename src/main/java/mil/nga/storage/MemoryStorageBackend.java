@@ -0,0 +1,524 @@
+package mil.nga.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Storage backend holding objects in memory, addressed with 
+ * <code>mem:</code> URIs (e.g. <code>mem:///corpus/input_1.pdf</code>).
+ * It exists so that tests and benchmarks can measure the cost of merging
+ * without disk or network I/O.  Only the path component of the URI is 
+ * significant.  Content written through <code>newOutputStream()</code> 
+ * becomes visible to readers, in its entirety, when the stream is 
+ * closed.  Directories must be created before objects are written into 
+ * them, as with a file system.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MemoryStorageBackend extends AbstractStorageBackend {
+
+    /**
+     * The URI scheme handled by this backend.
+     */
+    public static final String SCHEME = "mem";
+
+    /**
+     * Path of the root directory, which always exists.
+     */
+    private static final String ROOT = "/";
+
+    /**
+     * The stored objects keyed by path.
+     */
+    private final Map<String, StoredObject> objects = 
+            new ConcurrentHashMap<String, StoredObject>();
+
+    /**
+     * The directories that have been created (excluding the root).
+     */
+    private final Set<String> directories = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Default constructor.
+     */
+    public MemoryStorageBackend() {
+        super(SCHEME);
+    }
+
+    /**
+     * Store an object, creating any missing parent directories.  
+     * Convenience method used to populate the store.
+     *
+     * @param uri The target object.
+     * @param content The content of the object.  The array is not copied
+     * and must not be modified afterwards.
+     * @throws IOException Thrown if a parent of the target is an object.
+     */
+    public void put(URI uri, byte[] content) throws IOException {
+        String path = toKey(uri);
+        createDirectories(parent(path));
+        if (directories.contains(path)) {
+            throw new FileAlreadyExistsException(path);
+        }
+        objects.put(path, new StoredObject(content));
+    }
+
+    /**
+     * Remove all objects and directories.
+     */
+    public void clear() {
+        objects.clear();
+        directories.clear();
+    }
+
+    /**
+     * Getter method for the total size of the stored objects.
+     * @return The total size in bytes.
+     */
+    public long getTotalSize() {
+        long total = 0;
+        for (StoredObject object : objects.values()) {
+            total += object.content.length;
+        }
+        return total;
+    }
+
+    /**
+     * Check whether an object or directory exists.
+     *
+     * @param uri The target location.
+     * @return True if the object exists.
+     */
+    @Override
+    public boolean exists(URI uri) {
+        try {
+            String path = toKey(uri);
+            return objects.containsKey(path) || isDirectory(path);
+        }
+        catch (IllegalArgumentException iae) {
+            return false;
+        }
+    }
+
+    /**
+     * Look up the size and last modified time of an object.
+     *
+     * @param uri The target object.
+     * @return The object metadata.
+     * @throws NoSuchFileException Thrown if the object does not exist.
+     */
+    @Override
+    public StorageMetadata getMetadata(URI uri) throws IOException {
+        String       path   = toKey(uri);
+        StoredObject object = objects.get(path);
+        if (object != null) {
+            return new StorageMetadata(
+                    uri, 
+                    object.content.length, 
+                    object.lastModified, 
+                    false);
+        }
+        if (isDirectory(path)) {
+            return new StorageMetadata(uri, 0, 0, true);
+        }
+        throw new NoSuchFileException(path);
+    }
+
+    /**
+     * Open an object for sequential reading.
+     *
+     * @param uri The target object.
+     * @return A stream over the content of the object.
+     * @throws NoSuchFileException Thrown if the object does not exist.
+     */
+    @Override
+    public InputStream newInputStream(URI uri) throws IOException {
+        return new ByteArrayInputStream(get(uri));
+    }
+
+    /**
+     * Open a range of an object for sequential reading.
+     *
+     * @param uri The target object.
+     * @param offset Offset of the first byte to read.
+     * @param length Maximum number of bytes to read.
+     * @return A stream over the requested range.
+     * @throws NoSuchFileException Thrown if the object does not exist.
+     */
+    @Override
+    public InputStream newInputStream(URI uri, long offset, long length)
+            throws IOException {
+        if ((offset < 0) || (length < 0)) {
+            return super.newInputStream(uri, offset, length);
+        }
+        byte[] content = get(uri);
+        int    start   = (int)Math.min(offset, content.length);
+        int    count   = (int)Math.min(length, content.length - start);
+        return new ByteArrayInputStream(content, start, count);
+    }
+
+    /**
+     * Open an object for random access reading.
+     *
+     * @param uri The target object.
+     * @return A read-only channel over the content of the object.
+     * @throws NoSuchFileException Thrown if the object does not exist.
+     */
+    @Override
+    public SeekableByteChannel newReadChannel(URI uri) throws IOException {
+        return new ByteArrayChannel(get(uri));
+    }
+
+    /**
+     * Open an object for writing.  The content is buffered and published
+     * when the stream is closed.
+     *
+     * @param uri The target object.
+     * @return A stream to which the content is written.
+     * @throws IOException Thrown if the parent directory does not exist or
+     * the target is a directory.
+     */
+    @Override
+    public OutputStream newOutputStream(URI uri) throws IOException {
+        final String path = toKey(uri);
+        checkParent(path);
+        if (isDirectory(path)) {
+            throw new FileAlreadyExistsException(path);
+        }
+        return new ByteArrayOutputStream() {
+            private boolean closed = false;
+            @Override
+            public synchronized void close() {
+                if (!closed) {
+                    closed = true;
+                    objects.put(path, new StoredObject(toByteArray()));
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a single directory.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the parent does not exist or the 
+     * directory already exists.
+     */
+    @Override
+    public void createDirectory(URI uri) throws IOException {
+        String path = toKey(uri);
+        checkParent(path);
+        if (objects.containsKey(path) || 
+                ROOT.equals(path) || 
+                (!directories.add(path))) {
+            throw new FileAlreadyExistsException(path);
+        }
+    }
+
+    /**
+     * Create a directory along with any missing parent directories.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the path (or one of its parents) is an
+     * object.
+     */
+    @Override
+    public void createDirectories(URI uri) throws IOException {
+        createDirectories(toKey(uri));
+    }
+
+    /**
+     * List the entries of a directory.
+     *
+     * @param uri The target directory.
+     * @return The locations of the directory entries.
+     * @throws IOException Thrown if the target is not a directory.
+     */
+    @Override
+    public List<URI> list(URI uri) throws IOException {
+        String path = toKey(uri);
+        if (!isDirectory(path)) {
+            if (objects.containsKey(path)) {
+                throw new NotDirectoryException(path);
+            }
+            throw new NoSuchFileException(path);
+        }
+        List<URI> entries = new ArrayList<URI>();
+        for (String key : objects.keySet()) {
+            if (path.equals(parent(key))) {
+                entries.add(toURI(key));
+            }
+        }
+        for (String key : directories) {
+            if (path.equals(parent(key))) {
+                entries.add(toURI(key));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Rename an object, replacing any existing target.  Renaming a 
+     * directory is not supported.
+     *
+     * @param source The object to rename.
+     * @param target The new location of the object.
+     * @throws IOException Thrown if the object could not be renamed.
+     */
+    @Override
+    public void move(URI source, URI target) throws IOException {
+        String from = toKey(source);
+        String to   = toKey(target);
+        checkParent(to);
+        if (isDirectory(to)) {
+            throw new FileAlreadyExistsException(to);
+        }
+        StoredObject object = objects.remove(from);
+        if (object == null) {
+            throw new NoSuchFileException(from);
+        }
+        objects.put(to, object);
+    }
+
+    /**
+     * Delete an object or an empty directory if it exists.
+     *
+     * @param uri The target location.
+     * @return True if the object was deleted.
+     * @throws DirectoryNotEmptyException Thrown if the target is a 
+     * directory that is not empty.
+     */
+    @Override
+    public boolean delete(URI uri) throws IOException {
+        String path = toKey(uri);
+        if (objects.remove(path) != null) {
+            return true;
+        }
+        if (directories.contains(path)) {
+            if (!list(uri).isEmpty()) {
+                throw new DirectoryNotEmptyException(path);
+            }
+            return directories.remove(path);
+        }
+        return false;
+    }
+
+    /**
+     * Retrieve the content of an object.
+     *
+     * @param uri The target object.
+     * @return The content.
+     * @throws NoSuchFileException Thrown if the object does not exist.
+     */
+    private byte[] get(URI uri) throws IOException {
+        String       path   = toKey(uri);
+        StoredObject object = objects.get(path);
+        if (object == null) {
+            throw new NoSuchFileException(path);
+        }
+        return object.content;
+    }
+
+    /**
+     * Create a directory and its parents.
+     *
+     * @param path The directory path.
+     * @throws FileAlreadyExistsException Thrown if the path (or one of its
+     * parents) is an object.
+     */
+    private void createDirectories(String path) throws IOException {
+        if (!isDirectory(path)) {
+            if (objects.containsKey(path)) {
+                throw new FileAlreadyExistsException(path);
+            }
+            createDirectories(parent(path));
+            directories.add(path);
+        }
+    }
+
+    /**
+     * Ensure the parent directory of a path exists.
+     *
+     * @param path The target path.
+     * @throws NoSuchFileException Thrown if the parent does not exist.
+     */
+    private void checkParent(String path) throws IOException {
+        String parent = parent(path);
+        if (!isDirectory(parent)) {
+            throw new NoSuchFileException(parent);
+        }
+    }
+
+    /**
+     * Check whether a path is a directory.
+     *
+     * @param path The target path.
+     * @return True if the path is a directory.
+     */
+    private boolean isDirectory(String path) {
+        return ROOT.equals(path) || directories.contains(path);
+    }
+
+    /**
+     * Calculate the parent of a path.
+     *
+     * @param path The target path.
+     * @return The parent path (the root is its own parent).
+     */
+    private static String parent(String path) {
+        int index = path.lastIndexOf('/');
+        return (index <= 0) ? ROOT : path.substring(0, index);
+    }
+
+    /**
+     * Convert a URI into the normalized path used as the key in the 
+     * store.
+     *
+     * @param uri The target location.
+     * @return The absolute path without a trailing separator.
+     */
+    private String toKey(URI uri) {
+        checkScheme(uri);
+        String path = uri.normalize().getPath();
+        if (path == null) {
+            path = uri.getSchemeSpecificPart();
+        }
+        if ((path == null) || (!path.startsWith(ROOT))) {
+            throw new IllegalArgumentException("URI [ "
+                    + uri.toString()
+                    + " ] does not contain an absolute path.");
+        }
+        while ((path.length() > 1) && path.endsWith(ROOT)) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Convert a store key back into a URI.
+     *
+     * @param path The store key.
+     * @return The associated URI.
+     */
+    private static URI toURI(String path) {
+        try {
+            return new URI(SCHEME, "", path, null, null);
+        }
+        catch (URISyntaxException use) {
+            // The path has already been parsed from a URI.
+            throw new IllegalArgumentException(use);
+        }
+    }
+
+    /**
+     * The content of a single object.
+     */
+    private static final class StoredObject {
+        
+        private final byte[] content;
+        private final long   lastModified;
+        
+        StoredObject(byte[] content) {
+            this.content      = content;
+            this.lastModified = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Read-only channel over a byte array.
+     */
+    private static final class ByteArrayChannel 
+            implements SeekableByteChannel {
+
+        private final byte[] content;
+        private long         position = 0;
+        private boolean      open     = true;
+
+        ByteArrayChannel(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            checkOpen();
+            if (position >= content.length) {
+                return -1;
+            }
+            int count = (int)Math.min(
+                    dst.remaining(), 
+                    content.length - position);
+            dst.put(content, (int)position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            checkOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long newPosition) 
+                throws IOException {
+            checkOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position.");
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return content.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() {
+            open = false;
+        }
+
+        private synchronized void checkOpen() throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
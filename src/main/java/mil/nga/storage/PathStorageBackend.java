@@ -0,0 +1,190 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage backend implemented on top of a NIO2 file system.  Subclasses
+ * are responsible for converting URIs into <code>Path</code> objects on
+ * the file system they represent.
+ *
+ * @author L. Craig Carpenter
+ */
+public abstract class PathStorageBackend extends AbstractStorageBackend {
+
+    /**
+     * Constructor.
+     *
+     * @param scheme The URI scheme handled by the backend.
+     */
+    protected PathStorageBackend(String scheme) {
+        super(scheme);
+    }
+
+    /**
+     * Convert a URI into a Path on the underlying file system.
+     *
+     * @param uri The target location.
+     * @return The associated Path.
+     * @throws IOException Thrown if the file system is not available.
+     */
+    protected abstract Path toPath(URI uri) throws IOException;
+
+    /**
+     * Check whether an object or directory exists.
+     *
+     * @param uri The target location.
+     * @return True if the object exists.
+     */
+    @Override
+    public boolean exists(URI uri) {
+        try {
+            return Files.exists(toPath(uri));
+        }
+        catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Look up the size and last modified time of an object.
+     *
+     * @param uri The target object.
+     * @return The object metadata.
+     * @throws IOException Thrown if the object does not exist or could not
+     * be accessed.
+     */
+    @Override
+    public StorageMetadata getMetadata(URI uri) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(
+                toPath(uri),
+                BasicFileAttributes.class);
+        return new StorageMetadata(
+                uri,
+                attrs.size(),
+                attrs.lastModifiedTime().toMillis(),
+                attrs.isDirectory());
+    }
+
+    /**
+     * Open an object for sequential reading.
+     *
+     * @param uri The target object.
+     * @return A stream over the content of the object.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    @Override
+    public InputStream newInputStream(URI uri) throws IOException {
+        return Files.newInputStream(toPath(uri));
+    }
+
+    /**
+     * Open an object for random access reading.
+     *
+     * @param uri The target object.
+     * @return A read-only channel over the content of the object.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    @Override
+    public SeekableByteChannel newReadChannel(URI uri) throws IOException {
+        return Files.newByteChannel(toPath(uri), StandardOpenOption.READ);
+    }
+
+    /**
+     * Open an object for writing, replacing any existing content.
+     *
+     * @param uri The target object.
+     * @return A stream to which the content is written.
+     * @throws IOException Thrown if the object could not be created.
+     */
+    @Override
+    public OutputStream newOutputStream(URI uri) throws IOException {
+        return Files.newOutputStream(toPath(uri));
+    }
+
+    /**
+     * Create a single directory.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the directory could not be created.
+     */
+    @Override
+    public void createDirectory(URI uri) throws IOException {
+        Files.createDirectory(toPath(uri));
+    }
+
+    /**
+     * Create a directory along with any missing parent directories.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the directory could not be created.
+     */
+    @Override
+    public void createDirectories(URI uri) throws IOException {
+        Files.createDirectories(toPath(uri));
+    }
+
+    /**
+     * List the entries of a directory.
+     *
+     * @param uri The target directory.
+     * @return The locations of the directory entries.
+     * @throws IOException Thrown if the directory could not be listed.
+     */
+    @Override
+    public List<URI> list(URI uri) throws IOException {
+        List<URI> entries = new ArrayList<URI>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(toPath(uri))) {
+            for (Path path : stream) {
+                entries.add(path.toUri());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Rename an object atomically, falling back to a plain move if the
+     * file system does not support atomic renames.
+     *
+     * @param source The object to rename.
+     * @param target The new location of the object.
+     * @throws IOException Thrown if the object could not be renamed.
+     */
+    @Override
+    public void move(URI source, URI target) throws IOException {
+        Path from = toPath(source);
+        Path to   = toPath(target);
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException |
+                UnsupportedOperationException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Delete an object or an empty directory if it exists.
+     *
+     * @param uri The target location.
+     * @return True if the object was deleted.
+     * @throws IOException Thrown if the object could not be deleted.
+     */
+    @Override
+    public boolean delete(URI uri) throws IOException {
+        return Files.deleteIfExists(toPath(uri));
+    }
+}
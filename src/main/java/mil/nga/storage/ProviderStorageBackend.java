@@ -0,0 +1,48 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Storage backend for any other URI scheme for which a NIO2 file system
+ * provider has been installed.  This preserves the behavior that existed
+ * before storage backends were introduced, in which every URI was simply
+ * passed to <code>Paths.get()</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class ProviderStorageBackend extends PathStorageBackend {
+
+    /**
+     * Constructor.
+     *
+     * @param scheme The URI scheme handled by the backend.
+     */
+    public ProviderStorageBackend(String scheme) {
+        super(scheme);
+    }
+
+    /**
+     * Convert a URI into a Path using the installed file system provider.
+     *
+     * @param uri The target location.
+     * @return The associated Path.
+     * @throws IOException Thrown if no file system is available for the
+     * URI.
+     */
+    @Override
+    protected Path toPath(URI uri) throws IOException {
+        checkScheme(uri);
+        try {
+            return Paths.get(uri);
+        }
+        catch (FileSystemNotFoundException fsnfe) {
+            throw new IOException("No file system available for URI [ "
+                    + uri.toString()
+                    + " ].", fsnfe);
+        }
+    }
+}
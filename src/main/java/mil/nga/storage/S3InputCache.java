@@ -0,0 +1,713 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import mil.nga.PropertyLoader;
+import mil.nga.S3CacheStatus;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Read-through cache of S3 input files on local disk.  The same input
+ * files are requested many times a day, so rather than downloading an
+ * object for every request a local copy is kept and handed to the PDF
+ * parser.
+ *
+ * Entries are keyed by bucket, key and ETag.  Every lookup costs a HEAD
+ * request, but a new version of an object always has a new key, so a
+ * stale copy is never served.  Concurrent misses for the same object
+ * share a single download.  The total size of the local copies is
+ * bounded by a disk budget with the least recently used copies evicted
+ * first.  An evicted copy is only deleted after a configurable delay, as
+ * a request may have looked it up just before the eviction and not yet
+ * opened it.  Copies are named after their key, so they are re-indexed
+ * rather than downloaded again when the application restarts.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3InputCache extends PropertyLoader implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            S3InputCache.class);
+
+    /**
+     * Extension of a complete local copy.
+     */
+    private static final String COPY_EXTENSION = ".s3";
+
+    /**
+     * Extension of a download in progress.
+     */
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /**
+     * The underlying cache (null if caching is disabled).
+     */
+    private final Cache<String, CachedObject> cache;
+
+    /**
+     * Directory holding the local copies.
+     */
+    private Path directory;
+
+    /**
+     * The disk budget in bytes.
+     */
+    private long budget = 0;
+
+    /**
+     * Time (in milliseconds) an evicted copy is kept before it is deleted.
+     */
+    private long evictionDelay = 0;
+
+    /**
+     * Evicted copies waiting to be deleted, and the time after which each
+     * may be deleted.
+     */
+    private final ConcurrentMap<Path, Long> pendingDeletes =
+            new ConcurrentHashMap<Path, Long>();
+
+    /**
+     * Counters exposed through the service status.
+     */
+    private final AtomicLong hits            = new AtomicLong(0);
+    private final AtomicLong misses          = new AtomicLong(0);
+    private final AtomicLong bytesSaved      = new AtomicLong(0);
+    private final AtomicLong bytesDownloaded = new AtomicLong(0);
+    private final AtomicLong evictions       = new AtomicLong(0);
+    private final AtomicLong cachedBytes     = new AtomicLong(0);
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private S3InputCache() {
+        super(PROPERTY_FILE_NAME);
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        cache = initialize(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public S3InputCache(Properties props) {
+        cache = initialize(props);
+    }
+
+    /**
+     * Build the cache from the configured settings and index any local
+     * copies left by an earlier run.
+     *
+     * @param props The system properties (may be null).
+     * @return The cache, or null if caching is disabled.
+     */
+    private Cache<String, CachedObject> initialize(Properties props) {
+
+        long   budgetMB = PropertyUtils.getLong(
+                props,
+                S3_INPUT_CACHE_SIZE_PROPERTY,
+                DEFAULT_S3_INPUT_CACHE_MB);
+        String dir      = PropertyUtils.getString(
+                props,
+                S3_INPUT_CACHE_DIRECTORY_PROPERTY,
+                "").trim();
+
+        if (budgetMB <= 0) {
+            LOGGER.info("S3 input cache disabled.");
+            return null;
+        }
+        try {
+            directory = dir.isEmpty() ?
+                    Paths.get(
+                            System.getProperty("java.io.tmpdir"),
+                            DEFAULT_S3_INPUT_CACHE_DIRECTORY) :
+                    Paths.get(dir);
+            Files.createDirectories(directory);
+        }
+        catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to create the S3 input cache directory [ "
+                    + dir
+                    + " ].  The S3 input cache is disabled.  Exception "
+                    + "message => [ "
+                    + e.getMessage()
+                    + " ].");
+            return null;
+        }
+
+        budget        = budgetMB * 1024L * 1024L;
+        evictionDelay = 1000L * Math.max(0, PropertyUtils.getLong(
+                props,
+                S3_INPUT_CACHE_EVICTION_DELAY_PROPERTY,
+                DEFAULT_S3_INPUT_CACHE_EVICTION_DELAY));
+
+        // A single segment keeps the eviction order (and budget) global
+        // rather than per segment.
+        Cache<String, CachedObject> entries = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(budgetMB * 1024L)
+                .weigher(new Weigher<String, CachedObject>() {
+                    @Override
+                    public int weigh(String key, CachedObject value) {
+                        // Weight is expressed in KB.
+                        return (int)Math.min(
+                                Integer.MAX_VALUE,
+                                (value.getSize() + 1023) / 1024);
+                    }
+                })
+                .removalListener(
+                        new RemovalListener<String, CachedObject>() {
+                    @Override
+                    public void onRemoval(
+                            RemovalNotification<String, CachedObject>
+                            notification) {
+                        evict(notification);
+                    }
+                })
+                .build();
+        restore(entries);
+
+        LOGGER.info("S3 input cache enabled in directory [ "
+                + directory.toString()
+                + " ] with a budget of [ "
+                + budgetMB
+                + " ] MB.  [ "
+                + entries.size()
+                + " ] local copies restored.");
+        return entries;
+    }
+
+    /**
+     * Index the local copies left by an earlier run, oldest first, and
+     * remove any incomplete downloads.
+     *
+     * @param entries The cache to populate.
+     */
+    private void restore(Cache<String, CachedObject> entries) {
+
+        List<Path> copies = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(COPY_EXTENSION)) {
+                    copies.add(path);
+                }
+                else if (name.endsWith(TEMP_EXTENSION)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Unable to index the S3 input cache directory [ "
+                    + directory.toString()
+                    + " ].  Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+
+        Collections.sort(copies, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Long.compare(
+                        a.toFile().lastModified(),
+                        b.toFile().lastModified());
+            }
+        });
+        for (Path path : copies) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(
+                        path,
+                        BasicFileAttributes.class);
+                String name = path.getFileName().toString();
+                String id   = name.substring(
+                        0,
+                        name.length() - COPY_EXTENSION.length());
+                cachedBytes.addAndGet(attrs.size());
+                entries.put(id, new CachedObject(path, attrs.size()));
+            }
+            catch (IOException ioe) {
+                // The copy vanished, nothing to index.
+            }
+        }
+    }
+
+    /**
+     * Return a singleton instance to the S3InputCache object.
+     * @return The S3InputCache
+     */
+    public static S3InputCache getInstance() {
+        return S3InputCacheHolder.getSingleton();
+    }
+
+    /**
+     * Determine whether caching is enabled.
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Obtain a local copy of an S3 object, downloading it if the current
+     * version is not already cached.  The copy must not be modified or
+     * deleted by the caller, and should be opened straight away; a copy 
+     * evicted in the meantime is only kept for the configured delay.
+     *
+     * @param client The S3 client.
+     * @param bucket The bucket holding the object.
+     * @param key The key of the object.
+     * @return The local copy, or null if caching is disabled, the object
+     * is larger than the budget or could not be downloaded (the caller
+     * should read the object from S3).
+     * @throws IOException Thrown if the object does not exist or its
+     * metadata could not be obtained.
+     */
+    public Path get(
+            final AmazonS3 client,
+            final String bucket,
+            final String key) throws IOException {
+
+        if (!isEnabled()) {
+            return null;
+        }
+        purge();
+
+        ObjectMetadata metadata;
+        try {
+            metadata = client.getObjectMetadata(bucket, key);
+        }
+        catch (AmazonClientException ace) {
+            throw S3RangeChannel.translate(ace, bucket, key);
+        }
+        final long   size = metadata.getContentLength();
+        final String eTag = metadata.getETag();
+        if ((size > budget) || (eTag == null)) {
+            return null;
+        }
+
+        final String id    = getId(bucket, key, eTag);
+        CachedObject entry = cache.getIfPresent(id);
+        if ((entry != null) && (!Files.exists(entry.getPath()))) {
+            cache.invalidate(id);
+            entry = null;
+        }
+
+        boolean downloaded = false;
+        if (entry == null) {
+            final boolean[] loader = { false };
+            try {
+                entry = cache.get(id, new Callable<CachedObject>() {
+                    @Override
+                    public CachedObject call() throws IOException {
+                        loader[0] = true;
+                        return download(client, bucket, key, eTag, id, size);
+                    }
+                });
+            }
+            catch (ExecutionException | UncheckedExecutionException e) {
+                LOGGER.warn("Unable to cache S3 object [ s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ].  Exception message => [ "
+                        + e.getCause()
+                        + " ].");
+                return null;
+            }
+            downloaded = loader[0];
+        }
+
+        if (downloaded) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(size);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("S3 input cache "
+                    + (downloaded ? "miss" : "hit")
+                    + " for [ s3://"
+                    + bucket
+                    + "/"
+                    + key
+                    + " ].  "
+                    + toString());
+        }
+        return entry.getPath();
+    }
+
+    /**
+     * Download an object into the cache directory.  The object is written
+     * to a temporary file and renamed once complete, so a partial download
+     * is never visible.
+     *
+     * @return The cache entry.
+     * @throws IOException Thrown if the download failed or the object
+     * changed during the download.
+     */
+    private CachedObject download(
+            AmazonS3 client,
+            String bucket,
+            String key,
+            String eTag,
+            String id,
+            long size) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        Path target    = directory.resolve(id + COPY_EXTENSION);
+        Path temp      = Files.createTempFile(directory, id, TEMP_EXTENSION);
+        try {
+            S3Object object = client.getObject(
+                    new GetObjectRequest(bucket, key)
+                        .withMatchingETagConstraint(eTag));
+            if (object == null) {
+                throw new IOException("S3 object [ s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ] changed while it was being downloaded.");
+            }
+            long copied;
+            try (InputStream in = object.getObjectContent()) {
+                copied = Files.copy(
+                        in,
+                        temp,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (copied != size) {
+                throw new IOException("Incomplete download of S3 object [ "
+                        + "s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ], expected [ "
+                        + size
+                        + " ] bytes, received [ "
+                        + copied
+                        + " ].");
+            }
+            Files.move(
+                    temp,
+                    target,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            // An earlier copy of the same version may be awaiting deletion.
+            pendingDeletes.remove(target);
+        }
+        catch (AmazonClientException ace) {
+            Files.deleteIfExists(temp);
+            throw S3RangeChannel.translate(ace, bucket, key);
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        bytesDownloaded.addAndGet(size);
+        cachedBytes.addAndGet(size);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Downloaded S3 object [ s3://"
+                    + bucket
+                    + "/"
+                    + key
+                    + " ] ([ "
+                    + size
+                    + " ] bytes) in [ "
+                    + (System.currentTimeMillis() - startTime)
+                    + " ] ms.");
+        }
+        return new CachedObject(target, size);
+    }
+
+    /**
+     * Handle removal of an entry from the cache by scheduling the deletion
+     * of the local copy.  Readers that already opened the copy are 
+     * unaffected, and readers that obtained the copy but have not yet 
+     * opened it have until the eviction delay expires to do so.
+     *
+     * @param notification The removal notification.
+     */
+    private void evict(RemovalNotification<String, CachedObject> notification) {
+        CachedObject entry = notification.getValue();
+        if (entry == null) {
+            return;
+        }
+        cachedBytes.addAndGet(-entry.getSize());
+        if (notification.wasEvicted()) {
+            evictions.incrementAndGet();
+        }
+        if (evictionDelay > 0) {
+            pendingDeletes.put(
+                    entry.getPath(), 
+                    System.currentTimeMillis() + evictionDelay);
+        }
+        else {
+            delete(entry.getPath());
+        }
+    }
+
+    /**
+     * Delete the evicted copies whose eviction delay has expired.
+     */
+    private void purge() {
+        if (pendingDeletes.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Long> pending : pendingDeletes.entrySet()) {
+            if ((pending.getValue() <= now) &&
+                    pendingDeletes.remove(
+                            pending.getKey(), 
+                            pending.getValue())) {
+                delete(pending.getKey());
+            }
+        }
+    }
+
+    /**
+     * Delete a local copy.
+     *
+     * @param path The local copy.
+     */
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn("Unable to remove S3 input cache entry [ "
+                    + path.toString()
+                    + " ].  Exception message => [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Calculate the identifier of a version of an object, which is also
+     * used as the name of the local copy.
+     *
+     * @param bucket The bucket.
+     * @param key The key.
+     * @param eTag The ETag of the version.
+     * @return The identifier.
+     */
+    private static String getId(String bucket, String key, String eTag) {
+        return Hashing.sha256().newHasher()
+                .putString(bucket, StandardCharsets.UTF_8)
+                .putByte((byte)0)
+                .putString(key, StandardCharsets.UTF_8)
+                .putByte((byte)0)
+                .putString(eTag, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    /**
+     * Remove every local copy from the cache.
+     */
+    public void clear() {
+        if (isEnabled()) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Obtain a snapshot of the cache statistics.
+     *
+     * @return The current statistics.
+     */
+    public S3CacheStatus getStatus() {
+        S3CacheStatus status = new S3CacheStatus();
+        status.setEnabled(isEnabled());
+        status.setEntries(getEntryCount());
+        status.setCachedBytes(cachedBytes.get());
+        status.setHits(hits.get());
+        status.setMisses(misses.get());
+        status.setBytesSaved(bytesSaved.get());
+        status.setBytesDownloaded(bytesDownloaded.get());
+        status.setEvictions(evictions.get());
+        return status;
+    }
+
+    /**
+     * Getter method for the number of lookups served by a local copy.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter method for the number of lookups that required a download.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter method for the number of bytes served from local copies.
+     * @return The number of bytes not downloaded.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Getter method for the total size of the local copies.
+     * @return Size in bytes.
+     */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Getter method for the number of local copies.
+     * @return The number of entries.
+     */
+    public long getEntryCount() {
+        return isEnabled() ? cache.size() : 0;
+    }
+
+    /**
+     * Convert the cache statistics to a printable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("S3 input cache statistics => [ entries=");
+        sb.append(getEntryCount());
+        sb.append(", size=");
+        sb.append(FileUtils.humanReadableByteCount(getCachedBytes(), false));
+        sb.append(", hits=");
+        sb.append(getHits());
+        sb.append(", misses=");
+        sb.append(getMisses());
+        sb.append(", saved=");
+        sb.append(FileUtils.humanReadableByteCount(getBytesSaved(), false));
+        sb.append(", evictions=");
+        sb.append(evictions.get());
+        sb.append(" ]");
+        return sb.toString();
+    }
+
+    /**
+     * Simple value class holding the location and size of a local copy.
+     */
+    private static class CachedObject {
+
+        /**
+         * Location of the local copy.
+         */
+        private final Path path;
+
+        /**
+         * Size of the local copy.
+         */
+        private final long size;
+
+        /**
+         * Constructor setting all of the fields.
+         * @param path Location of the local copy.
+         * @param size Size of the local copy.
+         */
+        CachedObject(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        /**
+         * Getter method for the location of the local copy.
+         * @return The location of the copy.
+         */
+        Path getPath() {
+            return path;
+        }
+
+        /**
+         * Getter method for the size of the local copy.
+         * @return Size in bytes.
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class S3InputCacheHolder {
+
+        /**
+         * Reference to the Singleton instance of the S3InputCache
+         */
+        private static S3InputCache _instance = new S3InputCache();
+
+        /**
+         * Accessor method for the singleton instance of the
+         * S3InputCache.
+         *
+         * @return The singleton instance of the S3InputCache.
+         */
+        public static S3InputCache getSingleton() {
+            return _instance;
+        }
+    }
+}
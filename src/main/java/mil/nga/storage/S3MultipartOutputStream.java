@@ -0,0 +1,414 @@
+package mil.nga.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * OutputStream that uploads an S3 object in parts while it is being
+ * written, so the upload overlaps the generation of the content rather
+ * than starting once the content is complete.
+ *
+ * Content is collected into part-sized buffers.  Each full buffer is
+ * uploaded as one part of a multipart upload on the supplied executor
+ * while the writer fills the next buffer.  At most
+ * <code>maxBuffers</code> buffers (the one being filled plus those being
+ * uploaded) exist at any time; the writer blocks until an upload finishes
+ * if the limit is reached.  Content smaller than a single part is
+ * uploaded with one PUT request when the stream is closed.  If any part
+ * fails the multipart upload is aborted and the failure is thrown from
+ * the next write or from <code>close()</code>.
+ *
+ * <code>close()</code> commits the object, so a writer that fails part 
+ * way through must call <code>abort()</code> instead; otherwise the 
+ * truncated content would be stored under the target key.
+ *
+ * Instances are not thread safe.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            S3MultipartOutputStream.class);
+
+    private final AmazonS3        client;
+    private final String          bucket;
+    private final String          key;
+    private final int             partSize;
+    private final ExecutorService executor;
+
+    /**
+     * Permits for the part buffers.
+     */
+    private final Semaphore buffers;
+
+    /**
+     * Outstanding and completed part uploads in part order.
+     */
+    private final List<Future<PartETag>> parts =
+            new ArrayList<Future<PartETag>>();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private byte[]  buffer   = null;
+    private int     count    = 0;
+    private String  uploadId = null;
+    private long    size     = 0;
+    private boolean closed   = false;
+
+    /**
+     * Set by a part upload that failed, so the failure is reported on the
+     * next write rather than at the next part boundary.
+     */
+    private volatile boolean failed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param client The S3 client.
+     * @param bucket The target bucket.
+     * @param key The target key.
+     * @param partSize The size of each part.
+     * @param maxBuffers The maximum number of part buffers in existence
+     * (at least 2, so one part can upload while the next is filled).
+     * @param executor Executor on which the parts are uploaded.
+     */
+    public S3MultipartOutputStream(
+            AmazonS3 client,
+            String bucket,
+            String key,
+            int partSize,
+            int maxBuffers,
+            ExecutorService executor) {
+        this.client   = client;
+        this.bucket   = bucket;
+        this.key      = key;
+        this.partSize = Math.max(1, partSize);
+        this.executor = executor;
+        this.buffers  = new Semaphore(Math.max(2, maxBuffers));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureBuffer();
+        buffer[count++] = (byte)b;
+        if (count == partSize) {
+            uploadPart();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            ensureBuffer();
+            int chunk = Math.min(len, partSize - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off   += chunk;
+            len   -= chunk;
+            if (count == partSize) {
+                uploadPart();
+            }
+        }
+    }
+
+    /**
+     * Ensure a buffer is available for writing, waiting for a part upload
+     * to finish if the buffer limit has been reached.
+     *
+     * @throws IOException Thrown if the stream is closed, a part upload
+     * failed or the writer was interrupted.
+     */
+    private void ensureBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (failed) {
+            checkParts();
+        }
+        if (buffer == null) {
+            try {
+                buffers.acquire();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                abort();
+                throw new InterruptedIOException("Interrupted while waiting "
+                        + "for an upload buffer for S3 object [ "
+                        + getLocation()
+                        + " ].");
+            }
+            buffer = new byte[partSize];
+            count  = 0;
+        }
+    }
+
+    /**
+     * Hand the current buffer to the executor for upload as the next part,
+     * starting the multipart upload if necessary.
+     *
+     * @throws IOException Thrown if the multipart upload could not be
+     * started or an earlier part failed.
+     */
+    private void uploadPart() throws IOException {
+
+        checkParts();
+        if (uploadId == null) {
+            try {
+                uploadId = client.initiateMultipartUpload(
+                        new InitiateMultipartUploadRequest(bucket, key))
+                        .getUploadId();
+            }
+            catch (AmazonClientException ace) {
+                release();
+                throw S3RangeChannel.translate(ace, bucket, key);
+            }
+        }
+
+        final String id     = uploadId;
+        final byte[] data   = buffer;
+        final int    length = count;
+        final int    number = parts.size() + 1;
+        buffer = null;
+        count  = 0;
+        size  += length;
+
+        parts.add(executor.submit(new Callable<PartETag>() {
+            @Override
+            public PartETag call() {
+                try {
+                    return client.uploadPart(new UploadPartRequest()
+                            .withBucketName(bucket)
+                            .withKey(key)
+                            .withUploadId(id)
+                            .withPartNumber(number)
+                            .withPartSize(length)
+                            .withInputStream(
+                                    new ByteArrayInputStream(data, 0, length)))
+                            .getPartETag();
+                }
+                catch (RuntimeException re) {
+                    failed = true;
+                    throw re;
+                }
+                finally {
+                    buffers.release();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Throw the failure of any part upload that has already finished.
+     *
+     * @throws IOException Thrown if a part upload failed.
+     */
+    private void checkParts() throws IOException {
+        for (Future<PartETag> part : parts) {
+            if (part.isDone()) {
+                await(part);
+            }
+        }
+    }
+
+    /**
+     * Wait for a part upload to finish.
+     *
+     * @param part The part upload.
+     * @return The ETag of the uploaded part.
+     * @throws IOException Thrown if the part upload failed or the writer
+     * was interrupted.
+     */
+    private PartETag await(Future<PartETag> part) throws IOException {
+        try {
+            return part.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new InterruptedIOException("Interrupted while uploading "
+                    + "S3 object [ "
+                    + getLocation()
+                    + " ].");
+        }
+        catch (ExecutionException ee) {
+            abort();
+            Throwable cause = ee.getCause();
+            if (cause instanceof AmazonClientException) {
+                throw S3RangeChannel.translate(
+                        (AmazonClientException)cause, bucket, key);
+            }
+            throw new IOException("Unexpected exception encountered while "
+                    + "uploading S3 object [ "
+                    + getLocation()
+                    + " ].  Exception message => [ "
+                    + cause
+                    + " ].", cause);
+        }
+    }
+
+    /**
+     * Upload any remaining content and complete the object.  Content that
+     * never filled a part is uploaded with a single PUT request.
+     *
+     * @throws IOException Thrown if the object could not be uploaded.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (uploadId == null) {
+            byte[] data   = (buffer == null) ? new byte[0] : buffer;
+            int    length = count;
+            release();
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(length);
+            try {
+                client.putObject(new PutObjectRequest(
+                        bucket,
+                        key,
+                        new ByteArrayInputStream(data, 0, length),
+                        metadata));
+            }
+            catch (AmazonClientException ace) {
+                throw S3RangeChannel.translate(ace, bucket, key);
+            }
+            size = length;
+        }
+        else {
+            if (count > 0) {
+                uploadPart();
+            }
+            else {
+                release();
+            }
+            List<PartETag> eTags = new ArrayList<PartETag>(parts.size());
+            for (Future<PartETag> part : parts) {
+                eTags.add(await(part));
+            }
+            try {
+                client.completeMultipartUpload(
+                        new CompleteMultipartUploadRequest(
+                                bucket,
+                                key,
+                                uploadId,
+                                eTags));
+            }
+            catch (AmazonClientException ace) {
+                abort();
+                throw S3RangeChannel.translate(ace, bucket, key);
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Uploaded S3 object [ "
+                    + getLocation()
+                    + " ] ([ "
+                    + size
+                    + " ] bytes in [ "
+                    + Math.max(1, parts.size())
+                    + " ] parts) in [ "
+                    + (System.currentTimeMillis() - startTime)
+                    + " ] ms.");
+        }
+    }
+
+    /**
+     * Abandon the object after a failure.  The multipart upload (if 
+     * started) is aborted and any outstanding parts are cancelled, so 
+     * nothing is stored under the target key.  Subsequent calls to 
+     * <code>close()</code> have no effect.
+     */
+    public void abort() {
+        closed = true;
+        release();
+        for (Future<PartETag> part : parts) {
+            part.cancel(true);
+        }
+        if (uploadId != null) {
+            try {
+                client.abortMultipartUpload(new AbortMultipartUploadRequest(
+                        bucket,
+                        key,
+                        uploadId));
+            }
+            catch (AmazonClientException ace) {
+                LOGGER.warn("Unable to abort the multipart upload of S3 "
+                        + "object [ "
+                        + getLocation()
+                        + " ].  Exception message => [ "
+                        + ace.getMessage()
+                        + " ].");
+            }
+            uploadId = null;
+        }
+    }
+
+    /**
+     * Discard the buffer being filled, returning its permit.
+     */
+    private void release() {
+        if (buffer != null) {
+            buffer = null;
+            count  = 0;
+            buffers.release();
+        }
+    }
+
+    /**
+     * Getter method for the number of bytes uploaded.
+     * @return The size of the uploaded object.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter method for the number of parts uploaded (zero if the object
+     * was uploaded with a single request).
+     * @return The number of parts.
+     */
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    /**
+     * Convert the target to a printable location.
+     * @return The location of the target object.
+     */
+    private String getLocation() {
+        return "s3://" + bucket + "/" + key;
+    }
+}
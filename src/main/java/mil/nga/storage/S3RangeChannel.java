@@ -0,0 +1,360 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Read-only channel over an S3 object that fetches the object in
+ * fixed-size blocks using ranged GET requests, so a reader that seeks
+ * (e.g. a PDF parser reading the trailer, cross-reference table and
+ * selected objects) only transfers the blocks it touches.
+ *
+ * Recently used blocks are held in a small LRU cache.  When a miss
+ * immediately follows the previous block fetched, the reader is assumed
+ * to be reading sequentially and the following blocks are fetched in the
+ * same request (read-ahead), up to the first block already cached.  Every
+ * request is conditional on the ETag observed when the channel was
+ * opened, so a reader never mixes the content of two versions of an
+ * object.
+ *
+ * Instances are not thread safe.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3RangeChannel implements SeekableByteChannel {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            S3RangeChannel.class);
+
+    /**
+     * HTTP status returned for a missing object.
+     */
+    private static final int NOT_FOUND = 404;
+
+    private final AmazonS3 client;
+    private final String   bucket;
+    private final String   key;
+    private final String   eTag;
+    private final long     size;
+    private final int      blockSize;
+    private final int      readAhead;
+
+    /**
+     * Recently used blocks keyed by block index.
+     */
+    private final Map<Long, byte[]> blocks;
+
+    private long    position      = 0;
+    private long    lastFetched   = -2;
+    private long    bytesFetched  = 0;
+    private long    rangeRequests = 0;
+    private boolean open          = true;
+
+    /**
+     * Constructor.  The size and ETag of the object are obtained with a
+     * HEAD request.
+     *
+     * @param client The S3 client.
+     * @param bucket The bucket holding the object.
+     * @param key The key of the object.
+     * @param blockSize The size of each block fetched.
+     * @param cacheBlocks The number of blocks held in the cache.
+     * @param readAhead The maximum number of additional blocks fetched
+     * when reading sequentially.
+     * @throws IOException Thrown if the object does not exist or could not
+     * be accessed.
+     */
+    public S3RangeChannel(
+            AmazonS3 client,
+            String bucket,
+            String key,
+            int blockSize,
+            final int cacheBlocks,
+            int readAhead) throws IOException {
+
+        this.client    = client;
+        this.bucket    = bucket;
+        this.key       = key;
+        this.blockSize = Math.max(1, blockSize);
+        this.readAhead = Math.max(0, Math.min(readAhead, cacheBlocks - 1));
+        this.blocks    = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> e) {
+                return size() > Math.max(1, cacheBlocks);
+            }
+        };
+
+        try {
+            ObjectMetadata metadata = client.getObjectMetadata(bucket, key);
+            size = metadata.getContentLength();
+            eTag = metadata.getETag();
+        }
+        catch (AmazonClientException ace) {
+            throw translate(ace, bucket, key);
+        }
+        S3ReadMetrics.getInstance().opened(size);
+    }
+
+    /**
+     * Read bytes from the current position.
+     *
+     * @param dst The buffer into which bytes are read.
+     * @return The number of bytes read, or -1 at the end of the object.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && (position < size)) {
+            long   index  = position / blockSize;
+            byte[] block  = getBlock(index);
+            int    offset = (int)(position - index * blockSize);
+            int    count  = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, count);
+            position += count;
+            total    += count;
+        }
+        return total;
+    }
+
+    /**
+     * Obtain a block from the cache, fetching it if necessary.
+     *
+     * @param index The block index.
+     * @return The block content.
+     * @throws IOException Thrown if the block could not be fetched.
+     */
+    private byte[] getBlock(long index) throws IOException {
+        byte[] block = blocks.get(index);
+        if (block != null) {
+            S3ReadMetrics.getInstance().hit();
+            return block;
+        }
+        S3ReadMetrics.getInstance().miss();
+
+        long lastBlock = (size - 1) / blockSize;
+        long end       = index;
+        if (index == lastFetched + 1) {
+            while ((end < lastBlock) &&
+                    (end - index < readAhead) &&
+                    (!blocks.containsKey(end + 1))) {
+                end++;
+            }
+        }
+
+        long   start   = index * blockSize;
+        long   stop    = Math.min(size, (end + 1) * blockSize);
+        byte[] content = fetch(start, stop - start);
+        for (long i = index; i <= end; i++) {
+            int from = (int)((i - index) * blockSize);
+            int to   = Math.min(content.length, from + blockSize);
+            blocks.put(i, (from == 0) && (to == content.length) ?
+                    content : Arrays.copyOfRange(content, from, to));
+        }
+        lastFetched = end;
+        return blocks.get(index);
+    }
+
+    /**
+     * Fetch a range of the object.
+     *
+     * @param start Offset of the first byte.
+     * @param length Number of bytes to fetch.
+     * @return The content of the range.
+     * @throws IOException Thrown if the range could not be fetched or the
+     * object has changed.
+     */
+    private byte[] fetch(long start, long length) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(bucket, key)
+                .withRange(start, start + length - 1);
+        if (eTag != null) {
+            request.withMatchingETagConstraint(eTag);
+        }
+        try {
+            S3Object object = client.getObject(request);
+            if (object == null) {
+                throw new IOException("S3 object [ s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ] changed while it was being read.");
+            }
+            byte[] content = new byte[(int)length];
+            try (InputStream in = object.getObjectContent()) {
+                ByteStreams.readFully(in, content);
+            }
+            bytesFetched += length;
+            rangeRequests++;
+            S3ReadMetrics.getInstance().fetched(length);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Fetched [ "
+                        + length
+                        + " ] bytes at offset [ "
+                        + start
+                        + " ] of S3 object [ s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ].");
+            }
+            return content;
+        }
+        catch (AmazonClientException ace) {
+            throw translate(ace, bucket, key);
+        }
+    }
+
+    /**
+     * Convert an AWS client exception into an IOException.
+     *
+     * @param ace The client exception.
+     * @param bucket The bucket holding the object.
+     * @param key The key of the object.
+     * @return The equivalent IOException.
+     */
+    static IOException translate(
+            AmazonClientException ace, 
+            String bucket, 
+            String key) {
+        if ((ace instanceof AmazonS3Exception) &&
+                (((AmazonS3Exception)ace).getStatusCode() == NOT_FOUND)) {
+            return new NoSuchFileException("s3://" + bucket + "/" + key);
+        }
+        return new IOException("Unexpected error accessing S3 object [ s3://"
+                + bucket
+                + "/"
+                + key
+                + " ].  Exception message => [ "
+                + ace.getMessage()
+                + " ].", ace);
+    }
+
+    /**
+     * The channel is read-only.
+     */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        checkOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position.");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return size;
+    }
+
+    /**
+     * The channel is read-only.
+     */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Close the channel, releasing the cached blocks.
+     */
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            blocks.clear();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Closed S3 object [ s3://"
+                        + bucket
+                        + "/"
+                        + key
+                        + " ].  Fetched [ "
+                        + bytesFetched
+                        + " ] of [ "
+                        + size
+                        + " ] bytes in [ "
+                        + rangeRequests
+                        + " ] requests.");
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of bytes fetched by this channel.
+     * @return The number of bytes fetched.
+     */
+    public long getBytesFetched() {
+        return bytesFetched;
+    }
+
+    /**
+     * Getter method for the number of ranged GET requests issued by this
+     * channel.
+     * @return The number of requests.
+     */
+    public long getRangeRequests() {
+        return rangeRequests;
+    }
+
+    /**
+     * Getter method for the ETag of the object being read.
+     * @return The ETag.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Ensure the channel is open.
+     *
+     * @throws ClosedChannelException Thrown if the channel is closed.
+     */
+    private void checkOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
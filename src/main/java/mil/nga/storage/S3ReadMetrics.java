@@ -0,0 +1,113 @@
+package mil.nga.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import mil.nga.S3ReadStatus;
+
+/**
+ * Application-wide counters describing the ranged reads issued against 
+ * S3 objects by <code>S3RangeChannel</code>.  
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3ReadMetrics {
+
+    /**
+     * Counters exposed through the service status.
+     */
+    private final AtomicLong objectsOpened = new AtomicLong(0);
+    private final AtomicLong objectBytes   = new AtomicLong(0);
+    private final AtomicLong bytesFetched  = new AtomicLong(0);
+    private final AtomicLong rangeRequests = new AtomicLong(0);
+    private final AtomicLong blockHits     = new AtomicLong(0);
+    private final AtomicLong blockMisses   = new AtomicLong(0);
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private S3ReadMetrics() { }
+
+    /**
+     * Return a singleton instance to the S3ReadMetrics object.
+     * @return The S3ReadMetrics
+     */
+    public static S3ReadMetrics getInstance() {
+        return S3ReadMetricsHolder.getSingleton();
+    }
+
+    /**
+     * Record that an object was opened.
+     *
+     * @param size The size of the object.
+     */
+    void opened(long size) {
+        objectsOpened.incrementAndGet();
+        objectBytes.addAndGet(size);
+    }
+
+    /**
+     * Record a ranged GET request.
+     *
+     * @param bytes The number of bytes fetched.
+     */
+    void fetched(long bytes) {
+        rangeRequests.incrementAndGet();
+        bytesFetched.addAndGet(bytes);
+    }
+
+    /**
+     * Record a block read served by a block cache.
+     */
+    void hit() {
+        blockHits.incrementAndGet();
+    }
+
+    /**
+     * Record a block read that required a fetch.
+     */
+    void miss() {
+        blockMisses.incrementAndGet();
+    }
+
+    /**
+     * Obtain a snapshot of the counters.
+     *
+     * @return The current counters.
+     */
+    public S3ReadStatus getStatus() {
+        S3ReadStatus status = new S3ReadStatus();
+        status.setObjectsOpened(objectsOpened.get());
+        status.setObjectBytes(objectBytes.get());
+        status.setBytesFetched(bytesFetched.get());
+        status.setRangeRequests(rangeRequests.get());
+        status.setBlockHits(blockHits.get());
+        status.setBlockMisses(blockMisses.get());
+        return status;
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class S3ReadMetricsHolder {
+
+        /**
+         * Reference to the Singleton instance of the S3ReadMetrics
+         */
+        private static S3ReadMetrics _instance = new S3ReadMetrics();
+
+        /**
+         * Accessor method for the singleton instance of the S3ReadMetrics.
+         *
+         * @return The singleton instance of the S3ReadMetrics.
+         */
+        public static S3ReadMetrics getSingleton() {
+            return _instance;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.upplication.s3fs.S3FileSystem;
+
+import mil.nga.FileSystemFactory;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.PropertyUtils;
+
+/**
+ * Storage backend for objects held in S3, addressed with <code>s3:</code>
+ * URIs and accessed through the NIO2 S3 file system provider (i.e. with 
+ * the same path semantics as an NFS mount).  The provider is registered 
+ * through the <code>FileSystemFactory</code> the first time the backend 
+ * is used, and the factory rebuilds it (and its client) if S3 becomes 
+ * unreachable.
+ * 
+ * Every metadata lookup is a round trip to S3, so batched lookups are 
+ * issued in parallel on a small pool of daemon threads.  Idle threads 
+ * are released after a minute.
+ * 
+ * Random access reads (i.e. PDF parsing) do not go through the file 
+ * system provider, which downloads the entire object, but through an 
+ * <code>S3RangeChannel</code> that fetches the blocks actually read.
+ * Callers that need the whole object (i.e. a full parse) obtain a local 
+ * copy from the <code>S3InputCache</code> instead.  Output is uploaded 
+ * in parallel parts by an <code>S3MultipartOutputStream</code> while it
+ * is being written.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3StorageBackend 
+        extends PathStorageBackend implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            S3StorageBackend.class);
+
+    /**
+     * The URI scheme handled by this backend.
+     */
+    public static final String SCHEME = "s3";
+
+    /**
+     * The minimum part size (in MB) accepted by S3 for multipart uploads.
+     */
+    public static final int MIN_UPLOAD_PART_SIZE = 5;
+
+    /**
+     * Threads used for batched metadata lookups.
+     */
+    private final ThreadPoolExecutor metadataPool;
+
+    /**
+     * Threads used to upload the parts of output files.
+     */
+    private final ThreadPoolExecutor uploadPool;
+
+    /**
+     * Settings used for the multipart uploads.
+     */
+    private final int partSize;
+    private final int uploadBuffers;
+
+    /**
+     * Settings used for the ranged read channels.
+     */
+    private final int blockSize;
+    private final int cacheBlocks;
+    private final int readAheadBlocks;
+
+    /**
+     * Constructor.
+     *
+     * @param props The system properties (may be null).
+     */
+    public S3StorageBackend(Properties props) {
+        super(SCHEME);
+        int threads     = Math.max(1, PropertyUtils.getInt(
+                props, 
+                STORAGE_METADATA_THREADS_PROPERTY, 
+                DEFAULT_STORAGE_METADATA_THREADS));
+        blockSize       = 1024 * Math.max(1, PropertyUtils.getInt(
+                props, 
+                S3_BLOCK_SIZE_PROPERTY, 
+                DEFAULT_S3_BLOCK_SIZE));
+        cacheBlocks     = Math.max(1, PropertyUtils.getInt(
+                props, 
+                S3_CACHE_BLOCKS_PROPERTY, 
+                DEFAULT_S3_CACHE_BLOCKS));
+        readAheadBlocks = Math.max(0, PropertyUtils.getInt(
+                props, 
+                S3_READ_AHEAD_BLOCKS_PROPERTY, 
+                DEFAULT_S3_READ_AHEAD_BLOCKS));
+        metadataPool = new ThreadPoolExecutor(
+                threads, 
+                threads, 
+                60L, 
+                TimeUnit.SECONDS, 
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("storage-metadata-%d")
+                    .setDaemon(true)
+                    .build());
+        metadataPool.allowCoreThreadTimeOut(true);
+
+        int uploadThreads = Math.max(1, PropertyUtils.getInt(
+                props, 
+                S3_UPLOAD_THREADS_PROPERTY, 
+                DEFAULT_S3_UPLOAD_THREADS));
+        partSize      = 1024 * 1024 * Math.max(
+                MIN_UPLOAD_PART_SIZE, 
+                PropertyUtils.getInt(
+                        props, 
+                        S3_UPLOAD_PART_SIZE_PROPERTY, 
+                        DEFAULT_S3_UPLOAD_PART_SIZE));
+        uploadBuffers = Math.max(2, PropertyUtils.getInt(
+                props, 
+                S3_UPLOAD_BUFFERS_PROPERTY, 
+                DEFAULT_S3_UPLOAD_BUFFERS));
+        uploadPool    = new ThreadPoolExecutor(
+                uploadThreads, 
+                uploadThreads, 
+                60L, 
+                TimeUnit.SECONDS, 
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("storage-upload-%d")
+                    .setDaemon(true)
+                    .build());
+        uploadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Convert a URI into a Path on the S3 file system, registering the 
+     * file system provider if necessary.
+     *
+     * @param uri The target location.
+     * @return The associated Path.
+     * @throws IOException Thrown if the S3 file system is not available.
+     */
+    @Override
+    protected Path toPath(URI uri) throws IOException {
+        checkScheme(uri);
+        try {
+            FileSystemFactory.getInstance().getS3FileSystem();
+        }
+        catch (IllegalStateException ise) {
+            throw new IOException("Unable to load the S3 file system.  "
+                    + "Exception message => [ "
+                    + ise.getMessage()
+                    + " ].", ise);
+        }
+        try {
+            return Paths.get(uri);
+        }
+        catch (FileSystemNotFoundException fsnfe) {
+            throw new IOException("The S3 file system is not available for "
+                    + "URI [ "
+                    + uri.toString()
+                    + " ].", fsnfe);
+        }
+    }
+
+    /**
+     * Obtain the S3 client used to access an object.
+     *
+     * @param uri The target object.
+     * @return The client of the S3 file system holding the object.
+     * @throws IOException Thrown if the S3 file system is not available.
+     */
+    protected AmazonS3 getClient(URI uri) throws IOException {
+        return ((S3FileSystem)toPath(uri).getFileSystem()).getClient();
+    }
+
+    /**
+     * Obtain the S3 input cache used for local copies.
+     *
+     * @return The S3 input cache.
+     */
+    protected S3InputCache getInputCache() {
+        return S3InputCache.getInstance();
+    }
+
+    /**
+     * Split an S3 URI into its bucket and key.
+     *
+     * @param uri The target object (<code>s3://endpoint/bucket/key</code>).
+     * @return Two element array holding the bucket and key.
+     * @throws IOException Thrown if the URI does not identify an object.
+     */
+    private String[] getBucketAndKey(URI uri) throws IOException {
+        checkScheme(uri);
+        String path  = uri.getPath();
+        int    slash = (path == null) ? -1 : path.indexOf('/', 1);
+        if ((slash < 0) || (slash == path.length() - 1)) {
+            throw new IOException("URI [ "
+                    + uri.toString()
+                    + " ] does not identify an S3 object.");
+        }
+        return new String[] { 
+                path.substring(1, slash), 
+                path.substring(slash + 1) };
+    }
+
+    /**
+     * Open an object for random access reading.  Blocks of the object are 
+     * fetched with ranged GET requests as they are read.
+     *
+     * @param uri The target object (<code>s3://endpoint/bucket/key</code>).
+     * @return A read-only channel over the content of the object.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    @Override
+    public SeekableByteChannel newReadChannel(URI uri) throws IOException {
+        String[] location = getBucketAndKey(uri);
+        return new S3RangeChannel(
+                getClient(uri), 
+                location[0], 
+                location[1], 
+                blockSize, 
+                cacheBlocks, 
+                readAheadBlocks);
+    }
+
+    /**
+     * Open an object for writing.  The content is uploaded in parts while
+     * it is being written rather than when the stream is closed.
+     *
+     * @param uri The target object (<code>s3://endpoint/bucket/key</code>).
+     * @return A stream to which the content is written.  The object is 
+     * created when the stream is closed.
+     * @throws IOException Thrown if the S3 client is not available.
+     */
+    @Override
+    public OutputStream newOutputStream(URI uri) throws IOException {
+        String[] location = getBucketAndKey(uri);
+        return new S3MultipartOutputStream(
+                getClient(uri), 
+                location[0], 
+                location[1], 
+                partSize, 
+                uploadBuffers, 
+                uploadPool);
+    }
+
+    /**
+     * Generate a pre-signed URL allowing the holder to download an object
+     * without credentials until the URL expires.
+     *
+     * @param uri The target object (<code>s3://endpoint/bucket/key</code>).
+     * @param ttl How long (in milliseconds) the URL remains valid.
+     * @return The pre-signed URL.
+     * @throws IOException Thrown if the URL could not be generated.
+     */
+    @Override
+    public URL getSignedURL(URI uri, long ttl) throws IOException {
+        String[] location = getBucketAndKey(uri);
+        try {
+            return getClient(uri).generatePresignedUrl(
+                    location[0], 
+                    location[1], 
+                    new Date(System.currentTimeMillis() + ttl), 
+                    HttpMethod.GET);
+        }
+        catch (AmazonClientException ace) {
+            throw S3RangeChannel.translate(ace, location[0], location[1]);
+        }
+    }
+
+    /**
+     * Obtain a local copy of an object from the S3 input cache, 
+     * downloading the object if the current version is not cached.
+     *
+     * @param uri The target object (<code>s3://endpoint/bucket/key</code>).
+     * @return The local copy, or null if the object is not cached and 
+     * could not be downloaded (or the cache is disabled).
+     * @throws IOException Thrown if the object does not exist or could 
+     * not be accessed.
+     */
+    @Override
+    public Path getLocalCopy(URI uri) throws IOException {
+        S3InputCache inputCache = getInputCache();
+        if (!inputCache.isEnabled()) {
+            return null;
+        }
+        String[] location = getBucketAndKey(uri);
+        return inputCache.get(getClient(uri), location[0], location[1]);
+    }
+
+    /**
+     * Look up the metadata of a batch of objects in parallel.
+     *
+     * @param uris The target objects.
+     * @return The metadata of each object found, keyed by URI.
+     */
+    @Override
+    public Map<URI, StorageMetadata> getMetadata(Collection<URI> uris) {
+        
+        if ((uris == null) || (uris.size() < 2)) {
+            return super.getMetadata(uris);
+        }
+        
+        Map<URI, StorageMetadata>       results = 
+                new LinkedHashMap<URI, StorageMetadata>();
+        List<Future<StorageMetadata>>   futures = 
+                new ArrayList<Future<StorageMetadata>>(uris.size());
+        
+        for (final URI uri : uris) {
+            futures.add(metadataPool.submit(new Callable<StorageMetadata>() {
+                @Override
+                public StorageMetadata call() {
+                    return lookup(uri);
+                }
+            }));
+        }
+        try {
+            for (Future<StorageMetadata> future : futures) {
+                StorageMetadata metadata = future.get();
+                if (metadata != null) {
+                    results.put(metadata.getURI(), metadata);
+                }
+            }
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            for (Future<StorageMetadata> future : futures) {
+                future.cancel(true);
+            }
+        }
+        catch (ExecutionException ee) {
+            // lookup() does not throw, so this cannot happen.
+            LOGGER.warn("Unexpected ExecutionException encountered while "
+                    + "looking up S3 object metadata.  Exception message "
+                    + "=> [ "
+                    + ee.getMessage()
+                    + " ].");
+        }
+        return results;
+    }
+}
@@ -0,0 +1,188 @@
+package mil.nga.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface implemented by the classes providing access to the locations
+ * in which input files, merged output and archived requests are held.
+ * Each backend handles a single URI scheme and is obtained from the
+ * <code>StorageFactory</code>.  Objects are addressed by absolute URI,
+ * and directories are created, listed and deleted like those of a file
+ * system (backends without real directories emulate them).
+ *
+ * Failures are reported with the same exceptions as
+ * <code>java.nio.file.Files</code>, i.e.
+ * <code>NoSuchFileException</code> for a missing object and
+ * <code>FileAlreadyExistsException</code> for an existing directory.
+ *
+ * @author L. Craig Carpenter
+ */
+public interface StorageBackend {
+
+    /**
+     * Getter method for the URI scheme handled by the backend.
+     * @return The URI scheme (e.g. "file").
+     */
+    public String getScheme();
+
+    /**
+     * Check whether an object or directory exists.
+     *
+     * @param uri The target location.
+     * @return True if the object exists.
+     */
+    public boolean exists(URI uri);
+
+    /**
+     * Look up the size and last modified time of an object.
+     *
+     * @param uri The target object.
+     * @return The object metadata.
+     * @throws IOException Thrown if the object does not exist or could not
+     * be accessed.
+     */
+    public StorageMetadata getMetadata(URI uri) throws IOException;
+
+    /**
+     * Look up the metadata of a batch of objects.  Objects that do not
+     * exist (or could not be accessed) are omitted from the result.
+     *
+     * @param uris The target objects.
+     * @return The metadata of each object found, keyed by URI.
+     */
+    public Map<URI, StorageMetadata> getMetadata(Collection<URI> uris);
+
+    /**
+     * Open an object for sequential reading.
+     *
+     * @param uri The target object.
+     * @return A stream over the content of the object.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    public InputStream newInputStream(URI uri) throws IOException;
+
+    /**
+     * Open a range of an object for sequential reading.
+     *
+     * @param uri The target object.
+     * @param offset Offset of the first byte to read.
+     * @param length Maximum number of bytes to read.
+     * @return A stream over the requested range (shorter than
+     * <code>length</code> if the object ends first).
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    public InputStream newInputStream(URI uri, long offset, long length)
+            throws IOException;
+
+    /**
+     * Open an object for random access reading.
+     *
+     * @param uri The target object.
+     * @return A read-only channel over the content of the object.
+     * @throws IOException Thrown if the object could not be opened.
+     */
+    public SeekableByteChannel newReadChannel(URI uri) throws IOException;
+
+    /**
+     * Open an object for writing, replacing any existing content.  The
+     * parent directory must exist.  The object is not guaranteed to be
+     * visible to readers until the stream is closed.
+     *
+     * @param uri The target object.
+     * @return A stream to which the content is written.
+     * @throws IOException Thrown if the object could not be created.
+     */
+    public OutputStream newOutputStream(URI uri) throws IOException;
+
+    /**
+     * Create a single directory.  The parent directory must exist.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the directory could not be created
+     * (<code>FileAlreadyExistsException</code> if it already exists).
+     */
+    public void createDirectory(URI uri) throws IOException;
+
+    /**
+     * Create a directory along with any missing parent directories.  It is
+     * not an error if the directory already exists.
+     *
+     * @param uri The directory to create.
+     * @throws IOException Thrown if the directory could not be created.
+     */
+    public void createDirectories(URI uri) throws IOException;
+
+    /**
+     * List the entries of a directory.
+     *
+     * @param uri The target directory.
+     * @return The locations of the directory entries.
+     * @throws IOException Thrown if the directory could not be listed.
+     */
+    public List<URI> list(URI uri) throws IOException;
+
+    /**
+     * Rename an object, replacing any existing target.  The rename is
+     * atomic if the backend supports it.
+     *
+     * @param source The object to rename.
+     * @param target The new location of the object.
+     * @throws IOException Thrown if the object could not be renamed.
+     */
+    public void move(URI source, URI target) throws IOException;
+
+    /**
+     * Delete an object or an empty directory if it exists.
+     *
+     * @param uri The target location.
+     * @return True if the object was deleted, false if it did not exist.
+     * @throws IOException Thrown if the object could not be deleted (e.g.
+     * a directory that is not empty).
+     */
+    public boolean delete(URI uri) throws IOException;
+
+    /**
+     * Obtain the file on the default file system backing an object.
+     * Callers use this to access local files directly (e.g. in random
+     * access mode) rather than through a stream.
+     *
+     * @param uri The target object.
+     * @return The local file, or null if the object is not held on the
+     * default file system.
+     */
+    public Path getLocalPath(URI uri);
+
+    /**
+     * Obtain a read-only copy of an object on the default file system.
+     * Objects already held on the default file system are returned as is;
+     * remote backends may return a locally cached copy.  The copy must 
+     * not be modified or deleted by the caller.
+     *
+     * @param uri The target object.
+     * @return The local copy, or null if no local copy is available (the 
+     * object should then be read through the backend).
+     * @throws IOException Thrown if the object could not be accessed.
+     */
+    public Path getLocalCopy(URI uri) throws IOException;
+
+    /**
+     * Generate a time-limited URL allowing a client to download an object
+     * directly from the backend without credentials.
+     *
+     * @param uri The target object.
+     * @param ttl How long (in milliseconds) the URL remains valid.
+     * @return The signed URL, or null if the backend does not support 
+     * signed URLs.
+     * @throws IOException Thrown if the URL could not be generated.
+     */
+    public URL getSignedURL(URI uri, long ttl) throws IOException;
+}
@@ -0,0 +1,283 @@
+package mil.nga.storage;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.PropertyLoader;
+import mil.nga.exceptions.PropertiesNotLoadedException;
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * Class responsible for selecting the <code>StorageBackend</code> that 
+ * handles a given URI.  Backends are selected by URI scheme:
+ * <li><code>file</code> - local disk or NFS mounts.</li>
+ * <li><code>s3</code> - S3 through the NIO2 S3 file system.</li>
+ * <li><code>mem</code> - a single in-memory store shared by the 
+ * application (used by tests and benchmarks).</li>
+ * 
+ * URIs with any other scheme are handed to the matching NIO2 file system 
+ * provider, if one is installed.  URIs without a scheme are treated as 
+ * local files.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class StorageFactory extends PropertyLoader implements PDFMergeI {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            StorageFactory.class);
+
+    /**
+     * The registered backends keyed by (lower case) URI scheme.
+     */
+    private final ConcurrentHashMap<String, StorageBackend> backends = 
+            new ConcurrentHashMap<String, StorageBackend>();
+
+    /**
+     * Default private constructor used to enforce the singleton design
+     * pattern.
+     */
+    private StorageFactory() {
+        super(PROPERTY_FILE_NAME);
+        Properties props = null;
+        try {
+            props = getProperties();
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Exception message => [ "
+                    + pnle.getMessage()
+                    + " ].");
+        }
+        initialize(props);
+    }
+
+    /**
+     * Alternate public constructor used to for generating unit tests.
+     * @param props Clients must supply the populated properties
+     * object.
+     */
+    public StorageFactory(Properties props) {
+        initialize(props);
+    }
+
+    /**
+     * Register the default backends.
+     *
+     * @param props The system properties (may be null).
+     */
+    private void initialize(Properties props) {
+        register(new LocalStorageBackend());
+        register(new S3StorageBackend(props));
+        register(new MemoryStorageBackend());
+    }
+
+    /**
+     * Return a singleton instance to the StorageFactory object.
+     * @return The StorageFactory
+     */
+    public static StorageFactory getInstance() {
+        return StorageFactoryHolder.getSingleton();
+    }
+
+    /**
+     * Register a backend, replacing any backend previously registered for 
+     * the same URI scheme.
+     *
+     * @param backend The backend.
+     */
+    public void register(StorageBackend backend) {
+        if (backend != null) {
+            backends.put(
+                    backend.getScheme().toLowerCase(Locale.ROOT), 
+                    backend);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Registered storage backend [ "
+                        + backend.getClass().getName()
+                        + " ] for URI scheme [ "
+                        + backend.getScheme()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Obtain the backend that handles the input URI.
+     *
+     * @param uri The target location.
+     * @return The backend handling the URI scheme.
+     */
+    public StorageBackend getBackend(URI uri) {
+        String scheme = LocalStorageBackend.SCHEME;
+        if ((uri != null) && 
+                (uri.getScheme() != null) && 
+                (!uri.getScheme().isEmpty())) {
+            scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        }
+        StorageBackend backend = backends.get(scheme);
+        if (backend == null) {
+            backend = new ProviderStorageBackend(scheme);
+            StorageBackend existing = backends.putIfAbsent(scheme, backend);
+            if (existing != null) {
+                backend = existing;
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Convenience method used to obtain the backend that handles the 
+     * input URI from the singleton instance.
+     *
+     * @param uri The target location.
+     * @return The backend handling the URI scheme.
+     */
+    public static StorageBackend get(URI uri) {
+        return getInstance().getBackend(uri);
+    }
+
+    /**
+     * Look up the metadata of a list of files, which may reside in 
+     * different storage backends.  The files held by each backend are 
+     * looked up in a single batch.
+     * 
+     * @param uris The target files (null entries are ignored).
+     * @return The metadata of each file found, keyed by URI.
+     */
+    public Map<URI, StorageMetadata> getMetadata(Collection<URI> uris) {
+        
+        Map<StorageBackend, List<URI>> batches = 
+                new LinkedHashMap<StorageBackend, List<URI>>();
+        Map<URI, StorageMetadata>      results = 
+                new HashMap<URI, StorageMetadata>();
+        
+        for (URI uri : uris) {
+            if (uri != null) {
+                StorageBackend storage = getBackend(uri);
+                List<URI>      batch   = batches.get(storage);
+                if (batch == null) {
+                    batch = new ArrayList<URI>();
+                    batches.put(storage, batch);
+                }
+                batch.add(uri);
+            }
+        }
+        for (Map.Entry<StorageBackend, List<URI>> batch : 
+                batches.entrySet()) {
+            results.putAll(batch.getKey().getMetadata(batch.getValue()));
+        }
+        return results;
+    }
+
+    /**
+     * Calculate the location of an entry within a directory.
+     *
+     * @param dir The directory.
+     * @param name The name of the entry.
+     * @return The location of the entry.
+     */
+    public static URI resolve(URI dir, String name) {
+        try {
+            String path = dir.getPath();
+            if (!path.endsWith("/")) {
+                path = path + "/";
+            }
+            return new URI(
+                    dir.getScheme(), 
+                    dir.getAuthority(), 
+                    path + name, 
+                    null, 
+                    null);
+        }
+        catch (URISyntaxException use) {
+            throw new IllegalArgumentException("Unable to resolve [ "
+                    + name
+                    + " ] against [ "
+                    + dir.toString()
+                    + " ].", use);
+        }
+    }
+
+    /**
+     * Calculate the parent directory of a location.
+     *
+     * @param uri The target location.
+     * @return The parent directory, or null if the location is the root.
+     */
+    public static URI getParent(URI uri) {
+        String path = uri.getPath();
+        while ((path.length() > 1) && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        int index = path.lastIndexOf('/');
+        if (index <= 0) {
+            return null;
+        }
+        try {
+            return new URI(
+                    uri.getScheme(), 
+                    uri.getAuthority(), 
+                    path.substring(0, index), 
+                    null, 
+                    null);
+        }
+        catch (URISyntaxException use) {
+            // The path has already been parsed from a URI.
+            throw new IllegalArgumentException(use);
+        }
+    }
+
+    /**
+     * Extract the name of the last element of a location.
+     *
+     * @param uri The target location.
+     * @return The name of the file or directory.
+     */
+    public static String getFileName(URI uri) {
+        String path = uri.getPath();
+        while ((path.length() > 1) && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class StorageFactoryHolder {
+
+        /**
+         * Reference to the Singleton instance of the StorageFactory
+         */
+        private static StorageFactory _instance = new StorageFactory();
+
+        /**
+         * Accessor method for the singleton instance of the StorageFactory.
+         *
+         * @return The singleton instance of the StorageFactory.
+         */
+        public static StorageFactory getSingleton() {
+            return _instance;
+        }
+    }
+}
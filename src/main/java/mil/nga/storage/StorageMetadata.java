@@ -0,0 +1,104 @@
+package mil.nga.storage;
+
+import java.net.URI;
+
+/**
+ * Simple immutable POJO holding the basic metadata of an object held by a
+ * <code>StorageBackend</code>.  The size and last modified time are used
+ * to detect that an input file has changed, so backends must return the
+ * same values for an object that has not been modified.
+ *
+ * @author L. Craig Carpenter
+ */
+public class StorageMetadata {
+
+    /**
+     * Location of the object.
+     */
+    private final URI uri;
+
+    /**
+     * Size of the object in bytes.
+     */
+    private final long size;
+
+    /**
+     * Last modified time of the object (ms since the epoch).
+     */
+    private final long lastModified;
+
+    /**
+     * Whether the object is a directory (or, for object stores, a common
+     * key prefix).
+     */
+    private final boolean directory;
+
+    /**
+     * Constructor.
+     *
+     * @param uri Location of the object.
+     * @param size Size of the object in bytes.
+     * @param lastModified Last modified time of the object.
+     * @param directory Whether the object is a directory.
+     */
+    public StorageMetadata(
+            URI uri,
+            long size,
+            long lastModified,
+            boolean directory) {
+        this.uri          = uri;
+        this.size         = size;
+        this.lastModified = lastModified;
+        this.directory    = directory;
+    }
+
+    /**
+     * Getter method for the location of the object.
+     * @return The location of the object.
+     */
+    public URI getURI() {
+        return uri;
+    }
+
+    /**
+     * Getter method for the size of the object.
+     * @return The size of the object in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter method for the last modified time of the object.
+     * @return The last modified time (ms since the epoch).
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Getter method for the directory flag.
+     * @return True if the object is a directory.
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Convert to human-readable String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("StorageMetadata: URI => [ ");
+        sb.append(uri);
+        sb.append(" ], size => [ ");
+        sb.append(size);
+        sb.append(" ], last modified => [ ");
+        sb.append(lastModified);
+        sb.append(" ], directory => [ ");
+        sb.append(directory);
+        sb.append(" ].");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package mil.nga.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+/**
+ * Adapter allowing PDFBox to parse a document directly from a
+ * <code>SeekableByteChannel</code> (e.g. a storage backend read channel)
+ * rather than copying the whole document into memory or a scratch file
+ * first.  Reads are served from a small buffer holding a window of the
+ * channel, so the many single-byte reads issued by the parser do not
+ * each reach the channel.  The channel is closed with this object.
+ *
+ * Instances are not thread safe.
+ *
+ * @author L. Craig Carpenter
+ */
+public class ChannelRandomAccessRead implements RandomAccessRead {
+
+    /**
+     * Default size of the read buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The underlying channel.
+     */
+    private final SeekableByteChannel channel;
+
+    /**
+     * The size of the channel content.
+     */
+    private final long length;
+
+    /**
+     * Buffer holding the window [bufferStart, bufferStart + limit).
+     */
+    private final ByteBuffer buffer;
+
+    private long    bufferStart = 0;
+    private long    position    = 0;
+    private boolean closed      = false;
+
+    /**
+     * Constructor using the default buffer size.
+     *
+     * @param channel The channel to read.
+     * @throws IOException Thrown if the size of the channel could not be
+     * obtained.
+     */
+    public ChannelRandomAccessRead(SeekableByteChannel channel)
+            throws IOException {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to read.
+     * @param bufferSize The size of the read buffer.
+     * @throws IOException Thrown if the size of the channel could not be
+     * obtained.
+     */
+    public ChannelRandomAccessRead(SeekableByteChannel channel, int bufferSize)
+            throws IOException {
+        this.channel = channel;
+        this.length  = channel.size();
+        this.buffer  = ByteBuffer.allocate(Math.max(1, bufferSize));
+        buffer.limit(0);
+    }
+
+    /**
+     * Ensure the buffer holds the byte at the current position.
+     *
+     * @return False if the current position is at or past the end of the
+     * content.
+     * @throws IOException Thrown if the channel could not be read.
+     */
+    private boolean fill() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return false;
+        }
+        if ((position >= bufferStart) &&
+                (position < bufferStart + buffer.limit())) {
+            buffer.position((int)(position - bufferStart));
+            return true;
+        }
+        buffer.clear();
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        bufferStart = position;
+        return buffer.hasRemaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        position++;
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int total = 0;
+        while ((total < len) && fill()) {
+            int count = Math.min(len - total, buffer.remaining());
+            buffer.get(b, offset + total, count);
+            position += count;
+            total    += count;
+        }
+        return (total == 0) ? -1 : total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException {
+        checkClosed();
+        if (newPosition < 0) {
+            throw new IOException("Invalid position [ "
+                    + newPosition
+                    + " ].");
+        }
+        position = newPosition;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int result = read();
+        if (result != -1) {
+            position--;
+        }
+        return result;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(getPosition() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int len) throws IOException {
+        byte[] b     = new byte[len];
+        int    total = 0;
+        while (total < len) {
+            int count = read(b, total, len - total);
+            if (count < 0) {
+                throw new EOFException("Premature end of content.");
+            }
+            total += count;
+        }
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        return peek() == -1;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int)Math.min(Math.max(0, length - position), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Close the buffer and the underlying channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Ensure the reader is open.
+     *
+     * @throws IOException Thrown if the reader is closed.
+     */
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("RandomAccessRead already closed.");
+        }
+    }
+}
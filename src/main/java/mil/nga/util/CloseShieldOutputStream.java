@@ -0,0 +1,38 @@
+package mil.nga.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream that passes writes through to a target stream but only
+ * flushes it when closed.  PDFBox closes the stream it saves to, even when
+ * the save fails, so the target is wrapped to leave the decision to close
+ * (commit) or abort the output with the caller.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CloseShieldOutputStream extends FilterOutputStream {
+
+    /**
+     * Constructor setting the target stream.
+     *
+     * @param target The stream that will not be closed.
+     */
+    public CloseShieldOutputStream(OutputStream target) {
+        super(target);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Flush the target stream without closing it.
+     */
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,918 @@
+package mil.nga.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a reproducible corpus of synthetic PDF files for benchmarks
+ * and load tests, so that performance testing does not depend on real
+ * data sets or network file systems.  All content is derived from a seed,
+ * so the same settings always produce the same files.
+ *
+ * The following characteristics can be controlled:
+ * <li>Page count.</li>
+ * <li>Fonts: standard (not embedded), embedded subset or fully embedded
+ * (LiberationSans, which ships with PDFBox).</li>
+ * <li>Image density: number of JPEG images drawn on each page.</li>
+ * <li>Object streams: PDF 1.5 files whose objects are stored in a
+ * compressed object stream with a cross-reference stream.  PDFBox 2.0
+ * cannot write object streams, so these files are assembled directly and
+ * contain text only (standard font, no images).</li>
+ * <li>File size: files smaller than the target size are padded with an
+ * incompressible embedded file attachment.</li>
+ * <li>Corrupt files: truncated, random bytes, damaged header, damaged
+ * cross-reference offset and empty files.</li>
+ *
+ * The generator can also be run from the command line:
+ * <pre>
+ * java mil.nga.util.CorpusGenerator &lt;output_dir&gt; [key=value ...]
+ * </pre>
+ * with the keys <code>seed</code>, <code>files</code>,
+ * <code>corrupt</code>, <code>pages</code>, <code>font</code>
+ * (standard|subset|full), <code>images</code>,
+ * <code>object_streams</code> (true|false) and <code>size_kb</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CorpusGenerator {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            CorpusGenerator.class);
+
+    /**
+     * TrueType font bundled with PDFBox, used for embedded fonts.
+     */
+    public static final String EMBEDDED_FONT_RESOURCE =
+            "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+    /**
+     * Default seed.
+     */
+    public static final long DEFAULT_SEED = 0x5044464DL;
+
+    /**
+     * Words used to build the page text.
+     */
+    private static final String[] WORDS = {
+        "aeronautical", "chart", "datum", "elevation", "feature",
+        "geodetic", "heading", "imagery", "latitude", "longitude",
+        "magnetic", "navigation", "obstruction", "procedure", "runway",
+        "survey", "terrain", "variation", "waypoint", "zone"
+    };
+
+    /**
+     * Approximate overhead (bytes) of the attachment used for padding.
+     */
+    private static final int PADDING_OVERHEAD = 512;
+
+    /**
+     * Width and height (pixels) of the generated images.
+     */
+    private static final int IMAGE_SIZE = 256;
+
+    /**
+     * Font options.
+     */
+    public enum FontMode {
+        /** Standard 14 font (Helvetica), not embedded. */
+        STANDARD,
+        /** Embedded TrueType font subset. */
+        SUBSET,
+        /** Fully embedded TrueType font. */
+        FULL
+    }
+
+    /**
+     * Types of deliberately corrupt file.
+     */
+    public enum Corruption {
+        /** A valid file cut off part way through. */
+        TRUNCATED,
+        /** Random bytes. */
+        GARBAGE,
+        /** A valid file with a damaged <code>%PDF-</code> header. */
+        BAD_HEADER,
+        /** A valid file with a wrong <code>startxref</code> offset. */
+        BAD_XREF,
+        /** A zero-length file. */
+        EMPTY
+    }
+
+    private long     seed          = DEFAULT_SEED;
+    private int      pageCount     = 10;
+    private int      linesPerPage  = 40;
+    private FontMode fontMode      = FontMode.STANDARD;
+    private int      imagesPerPage = 0;
+    private boolean  objectStreams = false;
+    private long     targetSize    = 0;
+
+    /**
+     * Default constructor.
+     */
+    public CorpusGenerator() { }
+
+    /**
+     * Generate a corpus made up of valid files followed by corrupt files.
+     * Valid files are named <code>valid_NNNN.pdf</code> and corrupt files
+     * <code>corrupt_NNNN_&lt;type&gt;.pdf</code>, cycling through the
+     * corruption types.
+     *
+     * @param dir The output directory (created if necessary).
+     * @param validCount Number of valid files.
+     * @param corruptCount Number of corrupt files.
+     * @return The generated files, in order.
+     * @throws IOException Thrown if the files could not be written.
+     */
+    public List<File> generateCorpus(
+            Path dir,
+            int validCount,
+            int corruptCount) throws IOException {
+
+        Files.createDirectories(dir);
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < validCount; i++) {
+            File file = dir.resolve(
+                    String.format("valid_%04d.pdf", i)).toFile();
+            generate(file, i);
+            files.add(file);
+        }
+        Corruption[] types = Corruption.values();
+        for (int i = 0; i < corruptCount; i++) {
+            Corruption type = types[i % types.length];
+            File file = dir.resolve(String.format(
+                    "corrupt_%04d_%s.pdf",
+                    i,
+                    type.name().toLowerCase(Locale.US))).toFile();
+            generateCorrupt(file, validCount + i, type);
+            files.add(file);
+        }
+        LOGGER.info("Generated [ "
+                + validCount
+                + " ] valid and [ "
+                + corruptCount
+                + " ] corrupt files in [ "
+                + dir.toString()
+                + " ].");
+        return files;
+    }
+
+    /**
+     * Generate a single valid file.  The file is written under a temporary
+     * name and renamed, so an interrupted run never leaves a truncated
+     * file behind.
+     *
+     * @param file The output file.
+     * @param index Index of the file within the corpus.  Files with
+     * different indexes have different content.
+     * @throws IOException Thrown if the file could not be written.
+     */
+    public void generate(File file, int index) throws IOException {
+        write(file, build(newRandom(index)));
+    }
+
+    /**
+     * Generate a single corrupt file.
+     *
+     * @param file The output file.
+     * @param index Index of the file within the corpus.
+     * @param type The type of corruption.
+     * @throws IOException Thrown if the file could not be written.
+     */
+    public void generateCorrupt(File file, int index, Corruption type)
+            throws IOException {
+
+        Random random = newRandom(index);
+        byte[] bytes  = null;
+
+        switch (type) {
+            case EMPTY:
+                bytes = new byte[0];
+                break;
+            case GARBAGE:
+                bytes = new byte[(int)Math.max(4096, targetSize)];
+                random.nextBytes(bytes);
+                break;
+            case TRUNCATED:
+                bytes = build(random);
+                bytes = Arrays.copyOf(bytes, (bytes.length * 3) / 5);
+                break;
+            case BAD_HEADER:
+                bytes = build(random);
+                byte[] junk = "%XDF-0.0".getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(junk, 0, bytes, 0, junk.length);
+                break;
+            case BAD_XREF:
+                bytes = build(random);
+                damageStartXref(bytes);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported corruption type [ " + type + " ].");
+        }
+        write(file, bytes);
+    }
+
+    /**
+     * Build the content of a valid file.
+     *
+     * @param random Source of the content.
+     * @return The file content.
+     */
+    private byte[] build(Random random) throws IOException {
+        List<List<String>> pages = new ArrayList<List<String>>();
+        for (int i = 0; i < pageCount; i++) {
+            List<String> lines = new ArrayList<String>();
+            for (int line = 0; line < linesPerPage; line++) {
+                lines.add(nextLine(random));
+            }
+            pages.add(lines);
+        }
+        if (objectStreams) {
+            return buildObjectStreamPDF(pages, random);
+        }
+        return buildPDF(pages, random);
+    }
+
+    /**
+     * Build a file using PDFBox.
+     *
+     * @param pages The text of each page.
+     * @param random Source of the images and padding.
+     * @return The file content.
+     */
+    private byte[] buildPDF(List<List<String>> pages, Random random)
+            throws IOException {
+
+        try (PDDocument doc = new PDDocument()) {
+
+            // Fix the document ID, which PDFBox otherwise derives from the
+            // current time.
+            byte[] id = new byte[16];
+            random.nextBytes(id);
+            COSArray idArray = new COSArray();
+            idArray.add(new COSString(id));
+            idArray.add(new COSString(id));
+            doc.getDocument().setDocumentID(idArray);
+            doc.getDocument().getTrailer().setItem(COSName.ID, idArray);
+
+            PDFont font = loadFont(doc);
+            for (int i = 0; i < pages.size(); i++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                try (PDPageContentStream cs =
+                        new PDPageContentStream(doc, page)) {
+                    for (int img = 0; img < imagesPerPage; img++) {
+                        PDImageXObject image = JPEGFactory.createFromImage(
+                                doc,
+                                newImage(random),
+                                0.75f);
+                        float size = 144;
+                        float x    = 72 + (img % 3) * (size + 18);
+                        float y    = 72 + ((img / 3) % 3) * (size + 18);
+                        cs.drawImage(image, x, y, size, size);
+                    }
+                    cs.beginText();
+                    cs.setFont(font, 10);
+                    cs.setLeading(14);
+                    cs.newLineAtOffset(72, 720);
+                    cs.showText("Page " + (i + 1) + " of " + pages.size());
+                    for (String line : pages.get(i)) {
+                        cs.newLine();
+                        cs.showText(line);
+                    }
+                    cs.endText();
+                }
+            }
+
+            byte[] bytes = save(doc);
+            long   deficit = targetSize - bytes.length - PADDING_OVERHEAD;
+            if (deficit > 0) {
+                attachPadding(doc, newPadding(random, deficit));
+                bytes = save(doc);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Load the font selected by the font mode.
+     *
+     * @param doc The target document.
+     * @return The font.
+     */
+    private PDFont loadFont(PDDocument doc) throws IOException {
+        if (fontMode == FontMode.STANDARD) {
+            return PDType1Font.HELVETICA;
+        }
+        try (InputStream is = CorpusGenerator.class.getResourceAsStream(
+                EMBEDDED_FONT_RESOURCE)) {
+            if (is == null) {
+                throw new IOException("Unable to locate font resource [ "
+                        + EMBEDDED_FONT_RESOURCE
+                        + " ].");
+            }
+            return PDType0Font.load(doc, is, fontMode == FontMode.SUBSET);
+        }
+    }
+
+    /**
+     * Build an image made up of coloured blocks overlaid with noise,
+     * loosely resembling a scanned chart.
+     *
+     * @param random Source of the image content.
+     * @return The image.
+     */
+    private static BufferedImage newImage(Random random) {
+        BufferedImage image = new BufferedImage(
+                IMAGE_SIZE,
+                IMAGE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            int block = IMAGE_SIZE / 8;
+            for (int x = 0; x < IMAGE_SIZE; x += block) {
+                for (int y = 0; y < IMAGE_SIZE; y += block) {
+                    g.setColor(new Color(random.nextInt(0x1000000)));
+                    g.fillRect(x, y, block, block);
+                }
+            }
+        }
+        finally {
+            g.dispose();
+        }
+        for (int i = 0; i < IMAGE_SIZE * 8; i++) {
+            image.setRGB(
+                    random.nextInt(IMAGE_SIZE),
+                    random.nextInt(IMAGE_SIZE),
+                    random.nextInt(0x1000000));
+        }
+        return image;
+    }
+
+    /**
+     * Attach padding to a document as an embedded file.
+     *
+     * @param doc The target document.
+     * @param padding The padding bytes.
+     */
+    private static void attachPadding(PDDocument doc, byte[] padding)
+            throws IOException {
+        PDEmbeddedFile embedded = new PDEmbeddedFile(
+                doc,
+                new ByteArrayInputStream(padding));
+        embedded.setSize(padding.length);
+        embedded.setSubtype("application/octet-stream");
+
+        PDComplexFileSpecification spec = new PDComplexFileSpecification();
+        spec.setFile("padding.bin");
+        spec.setEmbeddedFile(embedded);
+
+        PDEmbeddedFilesNameTreeNode tree = new PDEmbeddedFilesNameTreeNode();
+        tree.setNames(Collections.singletonMap("padding.bin", spec));
+        PDDocumentNameDictionary names = new PDDocumentNameDictionary(
+                doc.getDocumentCatalog());
+        names.setEmbeddedFiles(tree);
+        doc.getDocumentCatalog().setNames(names);
+    }
+
+    /**
+     * Build a PDF 1.5 file in which every dictionary is stored in a single
+     * compressed object stream and the cross-reference table is replaced
+     * by a cross-reference stream.  Content streams cannot be stored in an
+     * object stream so they remain top-level objects.
+     *
+     * Object numbering: 1 catalog, 2 page tree, 3 font, then a page
+     * dictionary and content stream for each page, optionally the padding
+     * file specification and embedded file, then the object stream and
+     * finally the cross-reference stream.
+     *
+     * @param pages The text of each page.
+     * @param random Source of the padding.
+     * @return The file content.
+     */
+    private byte[] buildObjectStreamPDF(
+            List<List<String>> pages,
+            Random random) throws IOException {
+
+        byte[] bytes   = assembleObjectStreamPDF(pages, null);
+        long   deficit = targetSize - bytes.length - PADDING_OVERHEAD;
+        if (deficit > 0) {
+            bytes = assembleObjectStreamPDF(pages, newPadding(random, deficit));
+        }
+        return bytes;
+    }
+
+    /**
+     * Assemble an object stream PDF.
+     *
+     * @param pages The text of each page.
+     * @param padding Padding to attach (may be null).
+     * @return The file content.
+     */
+    private static byte[] assembleObjectStreamPDF(
+            List<List<String>> pages,
+            byte[] padding) throws IOException {
+
+        int n           = pages.size();
+        int firstPage   = 4;
+        int specObj     = firstPage + (2 * n);
+        int fileObj     = specObj + 1;
+        int objStm      = padding != null ? fileObj + 1 : specObj;
+        int xrefObj     = objStm + 1;
+        int size        = xrefObj + 1;
+
+        // Type 1 entries hold the file offset, type 2 entries the index
+        // within the object stream.
+        long[] offsets = new long[size];
+        int[]  indexes = new int[size];
+        boolean[] compressed = new boolean[size];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeASCII(out, "%PDF-1.5\n");
+        out.write(new byte[] { '%', (byte)0xE2, (byte)0xE3, (byte)0xCF,
+                (byte)0xD3, '\n' });
+
+        // Dictionaries destined for the object stream, in object order.
+        List<Integer> numbers = new ArrayList<Integer>();
+        List<String>  bodies  = new ArrayList<String>();
+
+        StringBuilder catalog = new StringBuilder("<< /Type /Catalog /Pages 2 0 R");
+        if (padding != null) {
+            catalog.append(" /Names << /EmbeddedFiles << /Names [(padding.bin) ")
+                   .append(specObj)
+                   .append(" 0 R] >> >>");
+        }
+        catalog.append(" >>");
+        numbers.add(1);
+        bodies.add(catalog.toString());
+
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            kids.append(firstPage + (2 * i)).append(" 0 R ");
+        }
+        numbers.add(2);
+        bodies.add("<< /Type /Pages /Count " + n + " /Kids [" + kids + "] >>");
+        numbers.add(3);
+        bodies.add("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica "
+                + "/Encoding /WinAnsiEncoding >>");
+
+        for (int i = 0; i < n; i++) {
+            int pageObj    = firstPage + (2 * i);
+            int contentObj = pageObj + 1;
+            numbers.add(pageObj);
+            bodies.add("<< /Type /Page /Parent 2 0 R "
+                    + "/MediaBox [0 0 612 792] "
+                    + "/Resources << /Font << /F1 3 0 R >> >> "
+                    + "/Contents " + contentObj + " 0 R >>");
+
+            StringBuilder text = new StringBuilder();
+            text.append("BT /F1 10 Tf 14 TL 72 720 Td (Page ")
+                .append(i + 1)
+                .append(" of ")
+                .append(n)
+                .append(") Tj");
+            for (String line : pages.get(i)) {
+                text.append(" T* (").append(line).append(") Tj");
+            }
+            text.append(" ET\n");
+            offsets[contentObj] = out.size();
+            writeStream(
+                    out,
+                    contentObj,
+                    "/Filter /FlateDecode",
+                    deflate(text.toString().getBytes(StandardCharsets.US_ASCII)));
+        }
+
+        if (padding != null) {
+            numbers.add(specObj);
+            bodies.add("<< /Type /Filespec /F (padding.bin) "
+                    + "/EF << /F " + fileObj + " 0 R >> >>");
+            offsets[fileObj] = out.size();
+            writeStream(
+                    out,
+                    fileObj,
+                    "/Type /EmbeddedFile /Subtype /application#2Foctet-stream "
+                    + "/Params << /Size " + padding.length + " >>",
+                    padding);
+        }
+
+        // The object stream: a header of object number / offset pairs
+        // followed by the objects themselves.
+        StringBuilder header  = new StringBuilder();
+        StringBuilder objects = new StringBuilder();
+        for (int i = 0; i < numbers.size(); i++) {
+            header.append(numbers.get(i))
+                  .append(' ')
+                  .append(objects.length())
+                  .append(' ');
+            objects.append(bodies.get(i)).append('\n');
+            compressed[numbers.get(i)] = true;
+            indexes[numbers.get(i)]    = i;
+        }
+        String stm = header.toString() + "\n";
+        offsets[objStm] = out.size();
+        writeStream(
+                out,
+                objStm,
+                "/Type /ObjStm /N " + numbers.size()
+                + " /First " + stm.length()
+                + " /Filter /FlateDecode",
+                deflate((stm + objects).getBytes(StandardCharsets.US_ASCII)));
+
+        // The cross-reference stream (W [1 4 2]), left uncompressed.
+        offsets[xrefObj] = out.size();
+        ByteArrayOutputStream xref = new ByteArrayOutputStream();
+        for (int obj = 0; obj < size; obj++) {
+            if (obj == 0) {
+                writeEntry(xref, 0, 0, 0xFFFF);
+            }
+            else if (compressed[obj]) {
+                writeEntry(xref, 2, objStm, indexes[obj]);
+            }
+            else {
+                writeEntry(xref, 1, offsets[obj], 0);
+            }
+        }
+        writeStream(
+                out,
+                xrefObj,
+                "/Type /XRef /Size " + size + " /W [1 4 2] /Root 1 0 R",
+                xref.toByteArray());
+        writeASCII(out, "startxref\n" + offsets[xrefObj] + "\n%%EOF\n");
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a stream object.
+     *
+     * @param out The output.
+     * @param obj The object number.
+     * @param entries Additional stream dictionary entries.
+     * @param data The (already encoded) stream data.
+     */
+    private static void writeStream(
+            ByteArrayOutputStream out,
+            int obj,
+            String entries,
+            byte[] data) throws IOException {
+        writeASCII(out, obj + " 0 obj\n<< " + entries
+                + " /Length " + data.length + " >>\nstream\n");
+        out.write(data);
+        writeASCII(out, "\nendstream\nendobj\n");
+    }
+
+    /**
+     * Write a cross-reference stream entry.
+     *
+     * @param out The output.
+     * @param type The entry type.
+     * @param field2 Second field (4 bytes).
+     * @param field3 Third field (2 bytes).
+     */
+    private static void writeEntry(
+            ByteArrayOutputStream out,
+            int type,
+            long field2,
+            int field3) {
+        out.write(type);
+        out.write((int)(field2 >>> 24) & 0xFF);
+        out.write((int)(field2 >>> 16) & 0xFF);
+        out.write((int)(field2 >>> 8) & 0xFF);
+        out.write((int)field2 & 0xFF);
+        out.write((field3 >>> 8) & 0xFF);
+        out.write(field3 & 0xFF);
+    }
+
+    /**
+     * Write an ASCII string.
+     *
+     * @param out The output.
+     * @param value The string.
+     */
+    private static void writeASCII(ByteArrayOutputStream out, String value)
+            throws IOException {
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Compress data with the Flate algorithm.
+     *
+     * @param data The data.
+     * @return The compressed data.
+     */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out    = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Replace the offset following the last <code>startxref</code> keyword
+     * with an offset that points into the middle of the file.  The number
+     * of digits is preserved.
+     *
+     * @param bytes The file content.
+     */
+    private static void damageStartXref(byte[] bytes) {
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        int    keyword = content.lastIndexOf("startxref");
+        if (keyword < 0) {
+            return;
+        }
+        int start = keyword + "startxref".length();
+        while ((start < bytes.length) && (!Character.isDigit(bytes[start]))) {
+            start++;
+        }
+        int end = start;
+        while ((end < bytes.length) && (Character.isDigit(bytes[end]))) {
+            end++;
+        }
+        if (end > start) {
+            String digits = String.format(
+                    "%0" + (end - start) + "d",
+                    Long.parseLong(content.substring(start, end)) / 2);
+            byte[] value = digits.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(value, 0, bytes, start, value.length);
+        }
+    }
+
+    /**
+     * Generate incompressible padding.
+     *
+     * @param random Source of the padding.
+     * @param length Number of bytes.
+     * @return The padding.
+     */
+    private static byte[] newPadding(Random random, long length) {
+        byte[] padding = new byte[(int)Math.min(length, Integer.MAX_VALUE - 8)];
+        random.nextBytes(padding);
+        return padding;
+    }
+
+    /**
+     * Build a line of pseudo-random text.
+     *
+     * @param random Source of the content.
+     * @return The line of text.
+     */
+    private static String nextLine(Random random) {
+        StringBuilder sb    = new StringBuilder();
+        int           words = 6 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Construct the random number generator for a file.
+     *
+     * @param index Index of the file within the corpus.
+     * @return The random number generator.
+     */
+    private Random newRandom(int index) {
+        return new Random(seed + (31L * index));
+    }
+
+    /**
+     * Save a document to memory.
+     *
+     * @param doc The document.
+     * @return The serialized document.
+     */
+    private static byte[] save(PDDocument doc) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.save(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a file via a temporary file.
+     *
+     * @param file The output file.
+     * @param bytes The file content.
+     */
+    private static void write(File file, byte[] bytes) throws IOException {
+        Path target = file.toPath();
+        Path tmp    = target.resolveSibling(file.getName() + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Getter method for the font mode.
+     * @return The font mode.
+     */
+    public FontMode getFontMode() {
+        return fontMode;
+    }
+
+    /**
+     * Getter method for the number of images drawn on each page.
+     * @return The number of images per page.
+     */
+    public int getImagesPerPage() {
+        return imagesPerPage;
+    }
+
+    /**
+     * Getter method for the number of text lines on each page.
+     * @return The number of lines per page.
+     */
+    public int getLinesPerPage() {
+        return linesPerPage;
+    }
+
+    /**
+     * Getter method for the number of pages in each file.
+     * @return The page count.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Getter method for the seed.
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Getter method for the target file size.
+     * @return The target size in bytes (0 if no padding is added).
+     */
+    public long getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * Getter method for the object stream flag.
+     * @return True if files are written with object streams.
+     */
+    public boolean isObjectStreams() {
+        return objectStreams;
+    }
+
+    /**
+     * Setter method for the font mode.
+     * @param value The font mode.
+     */
+    public void setFontMode(FontMode value) {
+        if (value != null) {
+            fontMode = value;
+        }
+    }
+
+    /**
+     * Setter method for the number of images drawn on each page (at most
+     * nine fit on a page).
+     * @param value The number of images per page.
+     */
+    public void setImagesPerPage(int value) {
+        imagesPerPage = Math.max(0, Math.min(9, value));
+    }
+
+    /**
+     * Setter method for the number of text lines on each page.
+     * @param value The number of lines per page.
+     */
+    public void setLinesPerPage(int value) {
+        linesPerPage = Math.max(0, Math.min(48, value));
+    }
+
+    /**
+     * Setter method for the object stream flag.  Object stream files are
+     * text-only: the font mode and image density are ignored.
+     * @param value True to write files with object streams.
+     */
+    public void setObjectStreams(boolean value) {
+        objectStreams = value;
+    }
+
+    /**
+     * Setter method for the number of pages in each file.
+     * @param value The page count.
+     */
+    public void setPageCount(int value) {
+        pageCount = Math.max(1, value);
+    }
+
+    /**
+     * Setter method for the seed.
+     * @param value The seed.
+     */
+    public void setSeed(long value) {
+        seed = value;
+    }
+
+    /**
+     * Setter method for the target file size.  Files smaller than the
+     * target are padded so that they are approximately the target size.
+     * @param value The target size in bytes (0 to disable padding).
+     */
+    public void setTargetSize(long value) {
+        targetSize = Math.max(0, value);
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args The output directory followed by optional key=value
+     * settings.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.err.println("Usage: java mil.nga.util.CorpusGenerator "
+                    + "<output_dir> [seed=N] [files=N] [corrupt=N] "
+                    + "[pages=N] [font=standard|subset|full] [images=N] "
+                    + "[object_streams=true|false] [size_kb=N]");
+            System.exit(1);
+        }
+
+        Properties props = new Properties();
+        for (int i = 1; i < args.length; i++) {
+            int index = args[i].indexOf('=');
+            if (index > 0) {
+                props.setProperty(
+                        args[i].substring(0, index).trim(),
+                        args[i].substring(index + 1).trim());
+            }
+        }
+
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setSeed(PropertyUtils.getLong(props, "seed", DEFAULT_SEED));
+        generator.setPageCount(PropertyUtils.getInt(props, "pages", 10));
+        generator.setFontMode(FontMode.valueOf(PropertyUtils.getString(
+                props,
+                "font",
+                FontMode.STANDARD.name()).toUpperCase(Locale.US)));
+        generator.setImagesPerPage(PropertyUtils.getInt(props, "images", 0));
+        generator.setObjectStreams(Boolean.parseBoolean(
+                props.getProperty("object_streams", "false")));
+        generator.setTargetSize(
+                PropertyUtils.getLong(props, "size_kb", 0L) * 1024L);
+        generator.generateCorpus(
+                Paths.get(args[0]),
+                PropertyUtils.getInt(props, "files", 10),
+                PropertyUtils.getInt(props, "corrupt", 0));
+    }
+}
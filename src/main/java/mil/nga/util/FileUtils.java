@@ -4,7 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class FileUtils {
@@ -59,24 +66,7 @@ public class FileUtils {
     public static void delete(File file) throws IOException {
         String method = "delete() - ";
         if ((file != null) && (file.exists())) {
-            if (file.isDirectory()) {
-                if (file.list().length == 0) {
-                    file.delete();
-                }
-                else {
-                    String files[] = file.list();
-                    for (String current : files) {
-                        File fileToDelete = new File(file, current);
-                        delete(fileToDelete);
-                        if (file.list().length == 0) {
-                            file.delete();
-                        }
-                    }
-                }
-            }
-            else {
-                file.delete();
-            }
+            delete(file.toPath());
         }
         else {
             throw new IOException(method 
@@ -84,6 +74,58 @@ public class FileUtils {
         }
     }
     
+    /**
+     * Recursively delete the input path in a single walk of the file tree.
+     * Each directory is listed once and removed after its contents.  
+     * Symbolic links are deleted rather than followed.  Files that 
+     * disappear while the tree is being walked (e.g. deleted by another 
+     * thread) are ignored.
+     * 
+     * @param path The file or directory to delete.
+     * @return The number of bytes occupied by the deleted files.
+     * @throws IOException Thrown if any part of the tree could not be 
+     * deleted.
+     */
+    public static long delete(Path path) throws IOException {
+        
+        final AtomicLong bytes = new AtomicLong(0);
+        
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            
+            @Override
+            public FileVisitResult visitFile(
+                    Path file, 
+                    BasicFileAttributes attrs) throws IOException {
+                if (Files.deleteIfExists(file)) {
+                    bytes.addAndGet(attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFileFailed(
+                    Path file, 
+                    IOException exc) throws IOException {
+                if (exc instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(
+                    Path dir, 
+                    IOException exc) throws IOException {
+                if ((exc != null) && (!(exc instanceof NoSuchFileException))) {
+                    throw exc;
+                }
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes.get();
+    }
+    
     /**
      * Check to see if the input file path contains a file extension.
      * 
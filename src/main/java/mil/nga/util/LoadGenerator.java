@@ -0,0 +1,541 @@
+package mil.nga.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.MergeRequest;
+import mil.nga.MergeRequestSerializer;
+import mil.nga.RequestArchiveReader;
+
+/**
+ * Load generation harness for the PDF merge service.  Replays merge
+ * requests against the <code>merge</code> and/or
+ * <code>mergeAndDownload</code> end points from a configurable number of
+ * concurrent clients, optionally at a fixed target rate, and reports
+ * throughput, HDR latency percentiles, errors and bytes downloaded for
+ * each end point.
+ *
+ * Requests are either taken from the directory written by the
+ * <code>RequestArchiveService</code>, or synthesized from a directory of
+ * PDF files (which must be visible to the server under the same path).
+ * The synthetic corpus can be generated with <code>CorpusGenerator</code>.
+ *
+ * When a target rate is supplied, requests are issued on a fixed
+ * schedule and latency is measured from the time each request was due
+ * rather than the time it was actually sent, so that a stalled server is
+ * not hidden by clients that stop sending (coordinated omission).
+ * Without a target rate each client sends its next request as soon as
+ * the previous one completes.
+ *
+ * Usage:
+ * <pre>
+ * java mil.nga.util.LoadGenerator [key=value ...]
+ * </pre>
+ * <li><code>url</code> Base URL of the service
+ * (default http://localhost:8080/PDFMerge/rest).</li>
+ * <li><code>endpoints</code> Comma-separated end points, used in turn
+ * (default merge).</li>
+ * <li><code>clients</code> Number of concurrent clients (default 4).</li>
+ * <li><code>rate</code> Target requests per second across all clients,
+ * 0 for as fast as possible (default 0).</li>
+ * <li><code>duration</code> Length of the run in seconds (default 60).</li>
+ * <li><code>warmup</code> Seconds at the start of the run that are not
+ * recorded (default 0).</li>
+ * <li><code>requests</code> Maximum number of requests, 0 for no limit
+ * (default 0).</li>
+ * <li><code>archive_dir</code> Replay archived requests from this
+ * directory, in the order they were received.</li>
+ * <li><code>corpus_dir</code> Build synthetic requests from the PDF files
+ * in this directory.</li>
+ * <li><code>generate</code> Generate <code>corpus_files</code> files into
+ * <code>corpus_dir</code> first (default false).</li>
+ * <li><code>files_min</code>, <code>files_max</code> Number of files in
+ * each synthetic request (default 2 and 10).</li>
+ * <li><code>pool</code> Number of distinct synthetic requests
+ * (default 100).</li>
+ * <li><code>seed</code> Seed for the synthetic requests.</li>
+ * <li><code>report_interval</code> Seconds between progress reports
+ * (default 10).</li>
+ * <li><code>histogram_dir</code> Write the full latency distribution of
+ * each end point (<code>.hgrm</code>) to this directory.</li>
+ * <li><code>connect_timeout</code>, <code>socket_timeout</code> Timeouts
+ * in seconds (default 10 and 300).</li>
+ *
+ * @author L. Craig Carpenter
+ */
+public class LoadGenerator {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            LoadGenerator.class);
+
+    /**
+     * Default base URL of the service.
+     */
+    public static final String DEFAULT_URL =
+            "http://localhost:8080/PDFMerge/rest";
+
+    /**
+     * Extension of the single-request files written by earlier versions of
+     * the request archive.
+     */
+    private static final String LEGACY_ARCHIVE_EXTENSION = ".json";
+
+    /**
+     * Buffer used to drain response bodies.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String             baseURL;
+    private final List<String>       endpoints;
+    private final int                clients;
+    private final double             rate;
+    private final long               duration;
+    private final long               warmup;
+    private final long               maxRequests;
+    private final long               reportInterval;
+    private final String             histogramDir;
+    private final int                connectTimeout;
+    private final int                socketTimeout;
+    private final List<String>       payloads = new ArrayList<String>();
+    private final Map<String, LoadStatistics> statistics =
+            new LinkedHashMap<String, LoadStatistics>();
+
+    /**
+     * Sequence number of the next request.
+     */
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     *
+     * @param props The settings (see the class description).
+     * @throws IOException Thrown if the requests could not be loaded.
+     */
+    public LoadGenerator(Properties props) throws IOException {
+
+        String url = PropertyUtils.getString(props, "url", DEFAULT_URL);
+        baseURL        = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        clients        = Math.max(1, PropertyUtils.getInt(props, "clients", 4));
+        rate           = Math.max(0.0, PropertyUtils.getDouble(props, "rate", 0.0));
+        duration       = TimeUnit.SECONDS.toNanos(
+                Math.max(1, PropertyUtils.getLong(props, "duration", 60L)));
+        warmup         = TimeUnit.SECONDS.toNanos(
+                Math.max(0, PropertyUtils.getLong(props, "warmup", 0L)));
+        maxRequests    = Math.max(0, PropertyUtils.getLong(props, "requests", 0L));
+        reportInterval = Math.max(1, PropertyUtils.getLong(
+                props, "report_interval", 10L));
+        histogramDir   = props.getProperty("histogram_dir");
+        connectTimeout = (int)TimeUnit.SECONDS.toMillis(
+                PropertyUtils.getLong(props, "connect_timeout", 10L));
+        socketTimeout  = (int)TimeUnit.SECONDS.toMillis(
+                PropertyUtils.getLong(props, "socket_timeout", 300L));
+
+        endpoints = new ArrayList<String>();
+        for (String endpoint : PropertyUtils.getString(
+                props, "endpoints", "merge").split(",")) {
+            String name = endpoint.trim();
+            if (name.startsWith("/")) {
+                name = name.substring(1);
+            }
+            if (!name.isEmpty()) {
+                endpoints.add(name);
+                statistics.put(name, new LoadStatistics(name));
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("No end points specified.");
+        }
+
+        List<MergeRequest> requests = null;
+        String archiveDir = props.getProperty("archive_dir");
+        if ((archiveDir != null) && (!archiveDir.trim().isEmpty())) {
+            requests = loadArchive(Paths.get(archiveDir.trim()));
+        }
+        else {
+            requests = synthesize(props);
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No merge requests available "
+                    + "to replay.  Supply either archive_dir or corpus_dir.");
+        }
+        MergeRequestSerializer serializer = 
+                MergeRequestSerializer.getInstance();
+        for (MergeRequest request : requests) {
+            payloads.add(serializer.serialize(request));
+        }
+    }
+
+    /**
+     * Load the requests saved by the <code>RequestArchiveService</code>.
+     * Single-request files written by earlier versions of the archive are
+     * loaded first (ordered by file name), followed by the content of the
+     * archive segments in the order the requests were received.  Entries 
+     * that cannot be parsed are skipped.
+     *
+     * @param dir The archive directory.
+     * @return The archived requests.
+     * @throws IOException Thrown if the directory could not be read.
+     */
+    public static List<MergeRequest> loadArchive(Path dir) throws IOException {
+
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(
+                        LEGACY_ARCHIVE_EXTENSION)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+
+        MergeRequestSerializer serializer = 
+                MergeRequestSerializer.getInstance();
+        List<MergeRequest>     requests   = new ArrayList<MergeRequest>();
+        for (Path file : files) {
+            try (InputStream in = Files.newInputStream(file)) {
+                MergeRequest request = serializer.deserialize(in);
+                if ((request.getFiles() != null) &&
+                        (!request.getFiles().isEmpty())) {
+                    requests.add(request);
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.warn("Skipping unreadable archived request [ "
+                        + file.toString()
+                        + " ].  Exception message => [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        try (RequestArchiveReader reader = new RequestArchiveReader(dir)) {
+            while (reader.hasNext()) {
+                MergeRequest request = reader.next().getRequest();
+                if ((request.getFiles() != null) &&
+                        (!request.getFiles().isEmpty())) {
+                    requests.add(request);
+                }
+            }
+        }
+        LOGGER.info("Loaded [ "
+                + requests.size()
+                + " ] archived requests from [ "
+                + dir.toString()
+                + " ].");
+        return requests;
+    }
+
+    /**
+     * Build a pool of synthetic requests from the PDF files in the corpus
+     * directory, optionally generating the corpus first.
+     *
+     * @param props The settings.
+     * @return The synthetic requests.
+     * @throws IOException Thrown if the corpus could not be read.
+     */
+    private static List<MergeRequest> synthesize(Properties props)
+            throws IOException {
+
+        List<MergeRequest> requests  = new ArrayList<MergeRequest>();
+        String             corpusDir = props.getProperty("corpus_dir");
+        if ((corpusDir == null) || (corpusDir.trim().isEmpty())) {
+            return requests;
+        }
+        Path dir  = Paths.get(corpusDir.trim());
+        long seed = PropertyUtils.getLong(
+                props, "seed", CorpusGenerator.DEFAULT_SEED);
+
+        if (Boolean.parseBoolean(props.getProperty("generate", "false"))) {
+            CorpusGenerator generator = new CorpusGenerator();
+            generator.setSeed(seed);
+            generator.setPageCount(PropertyUtils.getInt(props, "pages", 10));
+            generator.generateCorpus(
+                    dir,
+                    PropertyUtils.getInt(props, "corpus_files", 50),
+                    0);
+        }
+
+        List<String> files = new ArrayList<String>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(dir, "*.pdf")) {
+            for (Path file : stream) {
+                files.add(file.toAbsolutePath().toString());
+            }
+        }
+        Collections.sort(files);
+        if (files.isEmpty()) {
+            return requests;
+        }
+
+        int    pool = Math.max(1, PropertyUtils.getInt(props, "pool", 100));
+        int    min  = Math.max(1, PropertyUtils.getInt(props, "files_min", 2));
+        int    max  = Math.max(min, PropertyUtils.getInt(props, "files_max", 10));
+        Random random = new Random(seed);
+        for (int i = 0; i < pool; i++) {
+            MergeRequest request = new MergeRequest();
+            int count = min + random.nextInt(max - min + 1);
+            for (int f = 0; f < count; f++) {
+                request.add(files.get(random.nextInt(files.size())));
+            }
+            request.setFilename("load_test_" + i + ".pdf");
+            requests.add(request);
+        }
+        LOGGER.info("Built [ "
+                + requests.size()
+                + " ] synthetic requests from [ "
+                + files.size()
+                + " ] files in [ "
+                + dir.toString()
+                + " ].");
+        return requests;
+    }
+
+    /**
+     * Execute the load test and print the results.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting for
+     * the clients to finish.
+     */
+    public void run() throws InterruptedException, IOException {
+
+        PoolingHttpClientConnectionManager manager =
+                new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(clients);
+        manager.setDefaultMaxPerRoute(clients);
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .build();
+
+        LOGGER.info("Starting load test against [ "
+                + baseURL
+                + " ] end points "
+                + endpoints
+                + " with [ "
+                + clients
+                + " ] clients and a target rate of [ "
+                + (rate > 0 ? rate + " req/s" : "unlimited")
+                + " ].");
+
+        try (final CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(config)
+                .build()) {
+
+            final long start    = System.nanoTime();
+            final long deadline = start + duration;
+
+            ScheduledExecutorService reporter =
+                    Executors.newSingleThreadScheduledExecutor();
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    report();
+                }
+            }, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < clients; i++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        drive(client, start, deadline);
+                    }
+                }, "load-client-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            reporter.shutdownNow();
+
+            long   end      = System.nanoTime();
+            double measured = (end - Math.min(end, start + warmup)) / 1e9;
+            printSummary(measured);
+        }
+    }
+
+    /**
+     * Issue requests from one client until the run is over.
+     *
+     * @param client The shared HTTP client.
+     * @param start Start of the run (nanoTime).
+     * @param deadline End of the run (nanoTime).
+     */
+    private void drive(CloseableHttpClient client, long start, long deadline) {
+
+        long period = rate > 0 ? (long)(1e9 / rate) : 0;
+        while (true) {
+            long index = sequence.getAndIncrement();
+            if ((maxRequests > 0) && (index >= maxRequests)) {
+                return;
+            }
+            long due = System.nanoTime();
+            if (period > 0) {
+                due = start + (index * period);
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+            }
+            if (due >= deadline) {
+                return;
+            }
+            String endpoint = endpoints.get((int)(index % endpoints.size()));
+            String payload  = payloads.get((int)(index % payloads.size()));
+            send(client, endpoint, payload, due, due >= start + warmup);
+        }
+    }
+
+    /**
+     * Send a single request and record the outcome.
+     *
+     * @param client The shared HTTP client.
+     * @param endpoint The end point.
+     * @param payload The JSON merge request.
+     * @param due When the request was due to be sent (nanoTime).
+     * @param record False during the warm up period.
+     */
+    private void send(
+            CloseableHttpClient client,
+            String endpoint,
+            String payload,
+            long due,
+            boolean record) {
+
+        LoadStatistics stats    = statistics.get(endpoint);
+        HttpPost       post     = new HttpPost(baseURL + "/" + endpoint);
+        long           received = 0;
+        String         error    = null;
+
+        post.setEntity(new StringEntity(payload, ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = client.execute(post)) {
+            int status = response.getStatusLine().getStatusCode();
+            received = drain(response.getEntity());
+            if (status != 200) {
+                error = "HTTP " + status;
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            error = e.getClass().getSimpleName();
+        }
+
+        if (record) {
+            long latency = System.nanoTime() - due;
+            if (error == null) {
+                stats.recordSuccess(latency, received);
+            }
+            else {
+                stats.recordError(latency, received, error);
+            }
+        }
+    }
+
+    /**
+     * Read and discard a response body.
+     *
+     * @param entity The response body (may be null).
+     * @return The number of bytes read.
+     */
+    private static long drain(HttpEntity entity) throws IOException {
+        long count = 0;
+        if (entity != null) {
+            try (InputStream is = entity.getContent()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int    read;
+                while ((read = is.read(buffer)) != -1) {
+                    count += read;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Print a progress line for each end point.
+     */
+    private void report() {
+        for (LoadStatistics stats : statistics.values()) {
+            Histogram interval = stats.sample();
+            System.out.println(stats.formatInterval(interval, reportInterval));
+        }
+    }
+
+    /**
+     * Print the results of the run and write the latency distributions.
+     *
+     * @param seconds The measured duration in seconds.
+     */
+    private void printSummary(double seconds) throws IOException {
+        System.out.println();
+        System.out.println(String.format(
+                "Load test complete: %d clients, %.1f s measured.",
+                clients,
+                seconds));
+        for (LoadStatistics stats : statistics.values()) {
+            stats.sample();
+            stats.printSummary(System.out, seconds);
+            if ((histogramDir != null) && (!histogramDir.trim().isEmpty())) {
+                File dir = new File(histogramDir.trim());
+                dir.mkdirs();
+                File file = new File(dir, stats.getName() + ".hgrm");
+                stats.writeDistribution(file);
+                System.out.println("  distribution written to "
+                        + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args Settings in the form key=value.
+     */
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index > 0) {
+                props.setProperty(
+                        arg.substring(0, index).trim(),
+                        arg.substring(index + 1).trim());
+            }
+        }
+        new LoadGenerator(props).run();
+    }
+}
@@ -0,0 +1,234 @@
+package mil.nga.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Statistics collected by the <code>LoadGenerator</code> for a single end
+ * point.  Latencies are recorded in microseconds in an HDR histogram so
+ * that high percentiles are reported accurately.  An interval histogram
+ * is maintained alongside the cumulative histogram for progress reports.
+ *
+ * @author L. Craig Carpenter
+ */
+public class LoadStatistics {
+
+    /**
+     * Highest latency that can be recorded (one hour, in microseconds).
+     */
+    private static final long HIGHEST_TRACKABLE = TimeUnit.HOURS.toMicros(1);
+
+    /**
+     * Number of significant digits retained by the histograms.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * The end point name.
+     */
+    private final String name;
+
+    /**
+     * Recorder used by the client threads.
+     */
+    private final Recorder recorder = new Recorder(
+            HIGHEST_TRACKABLE,
+            SIGNIFICANT_DIGITS);
+
+    /**
+     * Latencies of all requests recorded so far.
+     */
+    private final Histogram cumulative = new Histogram(
+            HIGHEST_TRACKABLE,
+            SIGNIFICANT_DIGITS);
+
+    /**
+     * Reusable interval histogram.
+     */
+    private Histogram interval = null;
+
+    /**
+     * Number of successful requests.
+     */
+    private final AtomicLong successes = new AtomicLong(0);
+
+    /**
+     * Number of response bytes downloaded.
+     */
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    /**
+     * Failed requests keyed by cause (HTTP status or exception type).
+     */
+    private final ConcurrentHashMap<String, AtomicLong> errors =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Constructor.
+     *
+     * @param name The end point name.
+     */
+    public LoadStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record a successful request.
+     *
+     * @param latencyNanos The request latency.
+     * @param responseBytes The number of response bytes downloaded.
+     */
+    public void recordSuccess(long latencyNanos, long responseBytes) {
+        record(latencyNanos);
+        successes.incrementAndGet();
+        bytes.addAndGet(responseBytes);
+    }
+
+    /**
+     * Record a failed request.  Failed requests are included in the
+     * latency histogram.
+     *
+     * @param latencyNanos The request latency.
+     * @param responseBytes The number of response bytes downloaded.
+     * @param cause The HTTP status or exception type.
+     */
+    public void recordError(
+            long latencyNanos,
+            long responseBytes,
+            String cause) {
+        record(latencyNanos);
+        bytes.addAndGet(responseBytes);
+        AtomicLong count = errors.get(cause);
+        if (count == null) {
+            AtomicLong created = new AtomicLong(0);
+            count = errors.putIfAbsent(cause, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latencyNanos The latency.
+     */
+    private void record(long latencyNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE)));
+    }
+
+    /**
+     * Collect the latencies recorded since the previous call and add them
+     * to the cumulative histogram.  Called by a single reporting thread.
+     *
+     * @return The latencies recorded during the interval.
+     */
+    public synchronized Histogram sample() {
+        interval = recorder.getIntervalHistogram(interval);
+        cumulative.add(interval);
+        return interval;
+    }
+
+    /**
+     * Getter method for the end point name.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Format a progress line for an interval.
+     *
+     * @param histogram The interval histogram (see <code>sample()</code>).
+     * @param seconds The interval length in seconds.
+     * @return The progress line.
+     */
+    public String formatInterval(Histogram histogram, double seconds) {
+        return String.format(
+                "%-18s %8.1f req/s  p50=%9.1f ms  p99=%9.1f ms  max=%9.1f ms",
+                name,
+                seconds > 0 ? histogram.getTotalCount() / seconds : 0.0,
+                toMillis(histogram.getValueAtPercentile(50)),
+                toMillis(histogram.getValueAtPercentile(99)),
+                toMillis(histogram.getMaxValue()));
+    }
+
+    /**
+     * Print the summary for the whole run.  <code>sample()</code> must be
+     * called first to collect the final interval.
+     *
+     * @param out The output.
+     * @param seconds The measured duration in seconds.
+     */
+    public synchronized void printSummary(PrintStream out, double seconds) {
+        long total = cumulative.getTotalCount();
+        out.println("== " + name + " ==");
+        out.println(String.format(
+                "  requests=%d  successes=%d  errors=%d",
+                total,
+                successes.get(),
+                total - successes.get()));
+        out.println(String.format(
+                "  throughput=%.2f req/s  downloaded=%s (%s/s)",
+                seconds > 0 ? total / seconds : 0.0,
+                FileUtils.humanReadableByteCount(bytes.get(), false),
+                FileUtils.humanReadableByteCount(
+                        seconds > 0 ? (long)(bytes.get() / seconds) : 0,
+                        false)));
+        if (total > 0) {
+            out.println(String.format(
+                    "  latency ms: min=%.1f p50=%.1f p90=%.1f p99=%.1f "
+                    + "p99.9=%.1f max=%.1f",
+                    toMillis(cumulative.getMinValue()),
+                    toMillis(cumulative.getValueAtPercentile(50)),
+                    toMillis(cumulative.getValueAtPercentile(90)),
+                    toMillis(cumulative.getValueAtPercentile(99)),
+                    toMillis(cumulative.getValueAtPercentile(99.9)),
+                    toMillis(cumulative.getMaxValue())));
+        }
+        Map<String, AtomicLong> sorted = new TreeMap<String, AtomicLong>(errors);
+        for (Map.Entry<String, AtomicLong> entry : sorted.entrySet()) {
+            out.println(String.format(
+                    "  error %-30s %d",
+                    entry.getKey(),
+                    entry.getValue().get()));
+        }
+    }
+
+    /**
+     * Write the full percentile distribution of the cumulative histogram
+     * in the HdrHistogram <code>.hgrm</code> format, which can be plotted
+     * with the HdrHistogram plotter.  Values are reported in milliseconds.
+     *
+     * @param file The output file.
+     * @throws IOException Thrown if the file could not be written.
+     */
+    public synchronized void writeDistribution(File file) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            cumulative.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    /**
+     * Convert a histogram value to milliseconds.
+     *
+     * @param micros The value in microseconds.
+     * @return The value in milliseconds.
+     */
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
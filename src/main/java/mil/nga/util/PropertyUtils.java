@@ -0,0 +1,124 @@
+package mil.nga.util;
+
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simple class containing methods used to read typed values from the 
+ * system properties.  If a property is not supplied, or its value cannot 
+ * be parsed, the client-supplied default value is returned.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class PropertyUtils {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */        
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            PropertyUtils.class);
+    
+    /**
+     * Log the fact that a property value could not be parsed.
+     * 
+     * @param key The property key.
+     * @param value The invalid value.
+     * @param defaultValue The default value that will be used instead.
+     */
+    private static void logInvalid(String key, String value, Object defaultValue) {
+        LOGGER.warn("Invalid value for property [ "
+                + key
+                + " ] => [ "
+                + value
+                + " ].  Using the default value [ "
+                + defaultValue
+                + " ].");
+    }
+    
+    /**
+     * Read an integer-valued property.
+     * 
+     * @param props System properties object.
+     * @param key The property to read.
+     * @param defaultValue The default value.
+     * @return The property value.
+     */
+    public static int getInt(Properties props, String key, int defaultValue) {
+        String value = (props == null) ? null : props.getProperty(key);
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException nfe) {
+                logInvalid(key, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Read a long-valued property.
+     * 
+     * @param props System properties object.
+     * @param key The property to read.
+     * @param defaultValue The default value.
+     * @return The property value.
+     */
+    public static long getLong(Properties props, String key, long defaultValue) {
+        String value = (props == null) ? null : props.getProperty(key);
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                return Long.parseLong(value.trim());
+            }
+            catch (NumberFormatException nfe) {
+                logInvalid(key, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Read a floating point property.
+     * 
+     * @param props System properties object.
+     * @param key The property to read.
+     * @param defaultValue The default value.
+     * @return The property value.
+     */
+    public static double getDouble(
+            Properties props, 
+            String key, 
+            double defaultValue) {
+        String value = (props == null) ? null : props.getProperty(key);
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                return Double.parseDouble(value.trim());
+            }
+            catch (NumberFormatException nfe) {
+                logInvalid(key, value, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Read a String-valued property, trimming any whitespace.
+     * 
+     * @param props System properties object.
+     * @param key The property to read.
+     * @param defaultValue The default value.
+     * @return The property value.
+     */
+    public static String getString(
+            Properties props, 
+            String key, 
+            String defaultValue) {
+        String value = (props == null) ? null : props.getProperty(key);
+        if ((value == null) || (value.trim().isEmpty())) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,326 @@
+package mil.nga.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Collapses concurrent executions of the same unit of work onto a single
+ * execution.  The first caller for a given key becomes the leader and
+ * performs the work; callers arriving while the leader is still working
+ * become followers and receive the leader's result (or failure).  Once
+ * the leader finishes, the key is released so the next caller starts a
+ * fresh execution.  Results are never cached beyond the in-flight period.
+ *
+ * A leader may abandon the work (e.g. because it was cancelled by its own
+ * client), in which case its followers are told to perform the work
+ * themselves rather than sharing a failure that does not apply to them.
+ *
+ * Followers wait for the leader for a bounded time.  If the wait expires
+ * the flight is failed with a <code>TimeoutException</code>: every 
+ * follower receives the failure, the key is released so the next caller 
+ * starts a fresh execution, and the result of the stalled leader is
+ * discarded.
+ *
+ * @author L. Craig Carpenter
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Work currently in flight, keyed by the caller-supplied key.
+     */
+    private final ConcurrentHashMap<K, SettableFuture<V>> inFlight =
+            new ConcurrentHashMap<K, SettableFuture<V>>();
+
+    /**
+     * Number of executions performed by a leader.
+     */
+    private final AtomicLong executions = new AtomicLong(0);
+
+    /**
+     * Number of callers that shared the result of a leader.
+     */
+    private final AtomicLong shared = new AtomicLong(0);
+
+    /**
+     * Number of callers that received a leader's failure.
+     */
+    private final AtomicLong sharedFailures = new AtomicLong(0);
+
+    /**
+     * Number of executions abandoned by the leader.
+     */
+    private final AtomicLong abandoned = new AtomicLong(0);
+
+    /**
+     * Number of executions failed because a follower's wait expired.
+     */
+    private final AtomicLong timeouts = new AtomicLong(0);
+
+    /**
+     * Maximum time (in milliseconds) a follower waits for the leader.
+     */
+    private final long timeout;
+
+    /**
+     * Constructor for flights in which followers wait for the leader 
+     * without a time limit.
+     */
+    public SingleFlight() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param timeout The maximum time (in milliseconds) a follower waits
+     * for the leader.  Zero or less waits without a time limit.
+     */
+    public SingleFlight(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Join the flight for a key, becoming the leader if no flight is in
+     * progress.  A leader must always finish its ticket with
+     * <code>complete()</code>, <code>fail()</code> or
+     * <code>abandon()</code>.
+     *
+     * @param key The key identifying the work.
+     * @return The ticket.
+     */
+    public Ticket begin(K key) {
+        SettableFuture<V> future   = SettableFuture.create();
+        SettableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return new Ticket(key, existing, false);
+        }
+        executions.incrementAndGet();
+        return new Ticket(key, future, true);
+    }
+
+    /**
+     * Perform the work for a key, or share the result of an identical
+     * execution already in flight.  If the leader abandons the work the
+     * caller performs the work itself.
+     *
+     * @param key The key identifying the work.
+     * @param work The work to perform.
+     * @return The result of the work.
+     * @throws Exception The failure of the work (the leader's failure if
+     * the result was shared).
+     */
+    public V execute(K key, Callable<V> work) throws Exception {
+        while (true) {
+            Ticket ticket = begin(key);
+            if (ticket.isLeader()) {
+                try {
+                    V value = work.call();
+                    ticket.complete(value);
+                    return value;
+                }
+                catch (CancellationException ce) {
+                    ticket.abandon();
+                    throw ce;
+                }
+                catch (Exception | Error e) {
+                    ticket.fail(e);
+                    throw e;
+                }
+            }
+            try {
+                return ticket.await();
+            }
+            catch (CancellationException ce) {
+                // The leader abandoned the work, try again.
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of executions abandoned by the leader.
+     * @return The number of abandoned executions.
+     */
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    /**
+     * Getter method for the number of executions failed because a 
+     * follower's wait expired.
+     * @return The number of timed out executions.
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Getter method for the number of executions performed by a leader.
+     * @return The number of executions.
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * Getter method for the number of executions currently in flight.
+     * @return The number of in-flight executions.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Getter method for the number of callers that shared the result of a
+     * leader (i.e. the number of executions saved).
+     * @return The number of shared results.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Getter method for the number of callers that received the failure
+     * of a leader.
+     * @return The number of shared failures.
+     */
+    public long getSharedFailures() {
+        return sharedFailures.get();
+    }
+
+    /**
+     * Handle held by each participant in a flight.
+     */
+    public class Ticket {
+
+        /**
+         * The key identifying the work.
+         */
+        private final K key;
+
+        /**
+         * Future completed by the leader.
+         */
+        private final SettableFuture<V> future;
+
+        /**
+         * Flag indicating the holder is the leader.
+         */
+        private final boolean leader;
+
+        /**
+         * Constructor.
+         *
+         * @param key The key identifying the work.
+         * @param future Future completed by the leader.
+         * @param leader True if the holder is the leader.
+         */
+        private Ticket(K key, SettableFuture<V> future, boolean leader) {
+            this.key    = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+        /**
+         * Determine whether the holder must perform the work.
+         * @return True if the holder is the leader.
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Wait for the leader to finish.  Called by followers only.
+         *
+         * @return The leader's result.
+         * @throws CancellationException Thrown if the leader abandoned the
+         * work (the follower should perform the work itself).
+         * @throws TimeoutException Thrown if the leader did not finish in
+         * time (the flight is failed for all of its followers).
+         * @throws InterruptedException Thrown if the follower was 
+         * interrupted while waiting.
+         * @throws Exception The leader's failure.
+         */
+        public V await() throws Exception {
+            try {
+                V value = (timeout > 0) ? 
+                        future.get(timeout, TimeUnit.MILLISECONDS) : 
+                        future.get();
+                shared.incrementAndGet();
+                return value;
+            }
+            catch (TimeoutException te) {
+                expire();
+                throw te;
+            }
+            catch (ExecutionException ee) {
+                sharedFailures.incrementAndGet();
+                Throwable cause = ee.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception)cause;
+                }
+                throw (Error)cause;
+            }
+        }
+
+        /**
+         * Fail a flight whose leader did not finish within the follower's 
+         * wait.  The key is released and the remaining followers receive
+         * the same failure.
+         */
+        private void expire() {
+            inFlight.remove(key, future);
+            if (future.setException(new TimeoutException("The identical "
+                    + "execution in flight did not finish within [ "
+                    + timeout
+                    + " ] ms."))) {
+                timeouts.incrementAndGet();
+            }
+        }
+
+        /**
+         * Publish the leader's result.
+         * @param value The result.
+         */
+        public void complete(V value) {
+            release();
+            future.set(value);
+        }
+
+        /**
+         * Publish the leader's failure.
+         * @param t The failure.
+         */
+        public void fail(Throwable t) {
+            release();
+            future.setException(t);
+        }
+
+        /**
+         * Abandon the work.  Followers will perform the work themselves.
+         */
+        public void abandon() {
+            release();
+            if (future.cancel(false)) {
+                abandoned.incrementAndGet();
+            }
+        }
+
+        /**
+         * Release the key so that the next caller starts a new flight.
+         * The key is released before the result is published so that a
+         * follower which is told to retry cannot rejoin the same flight.
+         */
+        private void release() {
+            if (leader) {
+                inFlight.remove(key, future);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package mil.nga.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OutputStream that writes everything to a primary stream and a copy to a
+ * secondary stream.  Failures writing the primary stream are thrown to the
+ * caller.  Failures writing the secondary stream are logged and the
+ * secondary stream is abandoned, so the copy never interferes with the
+ * primary output.  Callers should check <code>isCopyComplete()</code>
+ * before using the copy.  Neither stream is closed by this class.
+ *
+ * @author L. Craig Carpenter
+ */
+public class TeeOutputStream extends OutputStream {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TeeOutputStream.class);
+
+    /**
+     * The primary output stream.
+     */
+    private final OutputStream primary;
+
+    /**
+     * The secondary output stream (null once abandoned).
+     */
+    private OutputStream secondary;
+
+    /**
+     * Constructor setting the two target streams.
+     *
+     * @param primary The primary output stream.
+     * @param secondary The stream receiving the copy.
+     */
+    public TeeOutputStream(OutputStream primary, OutputStream secondary) {
+        this.primary   = primary;
+        this.secondary = secondary;
+    }
+
+    /**
+     * Determine whether the secondary stream received all of the output.
+     *
+     * @return False if writing the copy failed.
+     */
+    public boolean isCopyComplete() {
+        return secondary != null;
+    }
+
+    /**
+     * Abandon the secondary stream after a failure.
+     *
+     * @param ioe The failure.
+     */
+    private void abandon(IOException ioe) {
+        LOGGER.warn("Unable to write the copy of the output stream.  The "
+                + "copy will be abandoned.  Exception message => [ "
+                + ioe.getMessage()
+                + " ].");
+        secondary = null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        primary.write(b);
+        if (secondary != null) {
+            try { secondary.write(b); } catch (IOException ioe) { abandon(ioe); }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        primary.write(b, off, len);
+        if (secondary != null) {
+            try { secondary.write(b, off, len); } catch (IOException ioe) { abandon(ioe); }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        primary.flush();
+        if (secondary != null) {
+            try { secondary.flush(); } catch (IOException ioe) { abandon(ioe); }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for the AdmissionController class.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class AdmissionControllerTest {
+
+    @Test
+    public void testBudgetExhausted() {
+        
+        AdmissionController controller = AdmissionController.getInstance();
+        long budget = controller.getStatus().getBudget();
+        
+        // A request larger than the budget is charged the full budget.
+        AdmissionController.Permit first = controller.acquire(
+                Long.MAX_VALUE, 0);
+        assertNotNull(first);
+        assertEquals(budget, controller.getStatus().getInFlightBytes());
+        
+        assertNull(controller.acquire(1, 50));
+        
+        first.close();
+        first.close();
+        assertEquals(0, controller.getStatus().getInFlightBytes());
+        
+        AdmissionController.Permit second = controller.acquire(1, 0);
+        assertNotNull(second);
+        second.close();
+    }
+    
+    @Test
+    public void testWaitForCapacity() throws InterruptedException {
+        
+        AdmissionController controller = AdmissionController.getInstance();
+        final AdmissionController.Permit first = controller.acquire(
+                Long.MAX_VALUE, 0);
+        assertNotNull(first);
+        
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try { Thread.sleep(100); } catch (InterruptedException ie) {}
+                first.close();
+            }
+        });
+        releaser.start();
+        
+        AdmissionController.Permit second = controller.acquire(1, 5000);
+        assertNotNull(second);
+        second.close();
+        releaser.join();
+        assertEquals(0, controller.getStatus().getInFlightRequests());
+    }
+}
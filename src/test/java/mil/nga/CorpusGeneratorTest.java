@@ -0,0 +1,77 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.util.CorpusGenerator;
+
+/**
+ * JUnit tests for the CorpusGenerator class.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CorpusGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReproducible() throws Exception {
+
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setPageCount(3);
+        generator.setImagesPerPage(1);
+        generator.setFontMode(CorpusGenerator.FontMode.SUBSET);
+
+        List<File> first  = generator.generateCorpus(
+                folder.newFolder("first").toPath(), 2, 5);
+        List<File> second = generator.generateCorpus(
+                folder.newFolder("second").toPath(), 2, 5);
+
+        assertEquals(7, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertArrayEquals(
+                    Files.readAllBytes(first.get(i).toPath()),
+                    Files.readAllBytes(second.get(i).toPath()));
+        }
+        try (PDDocument doc = PDDocument.load(first.get(0))) {
+            assertEquals(3, doc.getNumberOfPages());
+        }
+        for (File corrupt : first.subList(2, first.size())) {
+            assertFalse(corrupt.getName(), PDFStructureValidator.getInstance()
+                    .isValidPDF(corrupt.toURI()));
+        }
+    }
+
+    @Test
+    public void testObjectStreams() throws Exception {
+
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setPageCount(4);
+        generator.setObjectStreams(true);
+        generator.setTargetSize(64 * 1024);
+
+        File file = folder.newFile("objstm.pdf");
+        generator.generate(file, 0);
+
+        String content = new String(
+                Files.readAllBytes(file.toPath()),
+                "ISO-8859-1");
+        assertTrue(content.contains("/Type /ObjStm"));
+        assertTrue(content.contains("/Type /XRef"));
+        assertTrue(file.length() >= 60 * 1024);
+        assertTrue(PDFStructureValidator.getInstance().isValidPDF(
+                file.toURI()));
+        try (PDDocument doc = PDDocument.load(file)) {
+            assertEquals(4, doc.getNumberOfPages());
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.exceptions.PDFException;
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the merge pipeline, run against the in-memory storage
+ * backend.  Reads of selected inputs are delayed so that the look-ahead
+ * completes the parse of later inputs first, or so that the merge can be
+ * cancelled part way through.
+ *
+ * @author L. Craig Carpenter
+ */
+public class DocumentPipelineTest {
+
+    private static final String ROOT = "mem:///pipeline";
+
+    /**
+     * Inputs whose reads are delayed, and the order in which reads of
+     * the inputs started returning data.
+     */
+    private final List<URI> slow   =
+            Collections.synchronizedList(new ArrayList<URI>());
+    private final List<URI> opened =
+            Collections.synchronizedList(new ArrayList<URI>());
+
+    /**
+     * Every read channel handed to the parser.
+     */
+    private final List<SeekableByteChannel> channels =
+            Collections.synchronizedList(new ArrayList<SeekableByteChannel>());
+
+    private MemoryStorageBackend storage;
+    private Properties           props;
+    private int                  poolSize;
+
+    @Before
+    public void setUp() throws IOException {
+        // Parses only complete out of order with more than one worker.
+        poolSize = WorkerPool.getInstance().getPoolSize();
+        WorkerPool.getInstance().setPoolSize(4);
+        storage = new MemoryStorageBackend() {
+            @Override
+            public SeekableByteChannel newReadChannel(URI uri)
+                    throws IOException {
+                if (slow.contains(uri)) {
+                    try {
+                        Thread.sleep(300);
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                opened.add(uri);
+                SeekableByteChannel channel = super.newReadChannel(uri);
+                channels.add(channel);
+                return channel;
+            }
+        };
+        StorageFactory.getInstance().register(storage);
+        storage.createDirectories(URI.create(ROOT + "/staging"));
+        props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                ROOT + "/staging");
+    }
+
+    @After
+    public void tearDown() {
+        WorkerPool.getInstance().setPoolSize(poolSize);
+        StorageFactory.getInstance().register(new MemoryStorageBackend());
+    }
+
+    /**
+     * Store single-page inputs whose page width identifies the input.
+     *
+     * @param count The number of inputs.
+     * @return The input URIs.
+     */
+    private List<String> createInputs(int count) throws IOException {
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 1; i <= count; i++) {
+            URI uri = URI.create(ROOT + "/input/file_" + i + ".pdf");
+            try (PDDocument doc = new PDDocument()) {
+                doc.addPage(new PDPage(new PDRectangle(100 * i, 100)));
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                doc.save(baos);
+                storage.put(uri, baos.toByteArray());
+            }
+            inputs.add(uri.toString());
+        }
+        return inputs;
+    }
+
+    @Test
+    public void testPageOrder() throws Exception {
+
+        List<String> inputs = createInputs(4);
+        slow.add(URI.create(inputs.get(0)));
+        props.setProperty(PDFMergeI.LOOKAHEAD_DEPTH_PROPERTY, "3");
+
+        URI output = new PDFFactory(props).merge(inputs, "merged.pdf", null);
+
+        // The first input was read after the inputs parsed ahead of it...
+        assertNotEquals(URI.create(inputs.get(0)), opened.get(0));
+
+        // ...but its page is still first.
+        try (InputStream is = storage.newInputStream(output);
+             PDDocument merged = PDDocument.load(is)) {
+            assertEquals(4, merged.getNumberOfPages());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(
+                        100 * (i + 1),
+                        merged.getPage(i).getMediaBox().getWidth(),
+                        0.01);
+            }
+        }
+    }
+
+    @Test
+    public void testMergeWindowBound() throws Exception {
+
+        List<String> inputs = createInputs(12);
+        slow.add(URI.create(inputs.get(0)));
+        props.setProperty(PDFMergeI.LOOKAHEAD_DEPTH_PROPERTY, "6");
+        props.setProperty(PDFMergeI.MERGE_WINDOW_PROPERTY, "3");
+
+        PDFFactory factory = new PDFFactory(props);
+        URI        output  = factory.merge(inputs, "windowed.pdf", null);
+
+        // The look-ahead never held more inputs open than the window...
+        MergeMetrics metrics = factory.getActiveMetrics();
+        assertEquals(3, metrics.getWindowSize());
+        assertEquals(12, metrics.getMergedCount());
+        assertTrue(metrics.getPeakOpenDocuments() > 0);
+        assertTrue(metrics.getPeakOpenDocuments() <= 3);
+
+        // ...and the peak is reported with the other metrics.
+        assertTrue(metrics.toString().contains(
+                "peakOpen=" + metrics.getPeakOpenDocuments()));
+        try (InputStream is = storage.newInputStream(output);
+             PDDocument merged = PDDocument.load(is)) {
+            assertEquals(12, merged.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testCancelDuringAssembly() throws Exception {
+
+        List<String> inputs = createInputs(8);
+        slow.add(URI.create(inputs.get(4)));
+        props.setProperty(PDFMergeI.LOOKAHEAD_DEPTH_PROPERTY, "2");
+
+        // Cancel once the first inputs have been appended, while the
+        // look-ahead is waiting on the slow input.
+        final PDFFactory factory = new PDFFactory(props);
+        Thread canceller = new Thread() {
+            @Override
+            public void run() {
+                long deadline = System.currentTimeMillis() + 10000L;
+                while (System.currentTimeMillis() < deadline) {
+                    MergeMetrics metrics = factory.getActiveMetrics();
+                    if ((metrics != null) && (metrics.getMergedCount() >= 2)) {
+                        factory.cancel();
+                        return;
+                    }
+                    try {
+                        Thread.sleep(5);
+                    }
+                    catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        };
+        canceller.start();
+        try {
+            factory.merge(inputs, "cancelled.pdf", null);
+            fail("Expected PDFException");
+        }
+        catch (PDFException pe) { }
+        canceller.join();
+
+        // Every document opened before the cancellation was closed.  A
+        // parse still in flight closes its document when it completes.
+        MergeMetrics metrics = factory.getActiveMetrics();
+        assertTrue(factory.isCancelled());
+        assertTrue(metrics.getMergedCount() < 8);
+        assertFalse(channels.isEmpty());
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (((metrics.getOpenDocuments() > 0) || (countOpen() > 0)) &&
+                (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, metrics.getOpenDocuments());
+        assertEquals(0, countOpen());
+    }
+
+    /**
+     * Count the read channels that have not been closed.
+     */
+    private int countOpen() {
+        int count = 0;
+        synchronized (channels) {
+            for (SeekableByteChannel channel : channels) {
+                if (channel.isOpen()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
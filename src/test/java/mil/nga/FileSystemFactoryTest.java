@@ -0,0 +1,266 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.HeadBucketResult;
+import com.upplication.s3fs.AmazonS3Factory;
+import com.upplication.s3fs.S3FileSystem;
+import com.upplication.s3fs.S3FileSystemProvider;
+
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * JUnit tests for the lifecycle of the S3 file system: lazy creation,
+ * backoff after a failure, and rebuilding the client (with the current
+ * credentials) after failed health checks.  The S3 clients are in-memory stand-ins created through the
+ * client factory hook of the S3 file system provider.
+ *
+ * @author L. Craig Carpenter
+ */
+public class FileSystemFactoryTest {
+
+    private static final String ENDPOINT = "s3.lifecycle.test";
+
+    /**
+     * Flags controlling the behavior of the stand-in clients.
+     */
+    private static volatile boolean       available = true;
+    private static volatile boolean       failing   = false;
+    private static final    AtomicInteger created   = new AtomicInteger(0);
+    private static final    AtomicInteger released  = new AtomicInteger(0);
+    private static volatile int           poolSize  = 0;
+    private static volatile String        accessKey = null;
+
+    private Properties        props;
+    private FileSystemFactory factory;
+
+    /**
+     * Client factory used by the S3 file system provider.
+     */
+    public static class LocalS3Factory extends AmazonS3Factory {
+        @Override
+        protected AmazonS3 createAmazonS3(
+                AWSCredentialsProvider credentialsProvider,
+                ClientConfiguration clientConfiguration,
+                RequestMetricCollector requestMetricsCollector) {
+            if (!available) {
+                throw new AmazonClientException("Unable to execute HTTP "
+                        + "request: Connection refused");
+            }
+            created.incrementAndGet();
+            poolSize = clientConfiguration.getMaxConnections();
+            if (credentialsProvider instanceof AWSStaticCredentialsProvider) {
+                accessKey = credentialsProvider
+                        .getCredentials()
+                        .getAWSAccessKeyId();
+            }
+            return new LocalS3() {
+                @Override
+                public HeadBucketResult headBucket(HeadBucketRequest request) {
+                    if (failing) {
+                        throw new AmazonClientException("Unable to execute "
+                                + "HTTP request: Read timed out");
+                    }
+                    return super.headBucket(request);
+                }
+            };
+        }
+    }
+
+    @Before
+    public void setUp() {
+        available = true;
+        failing   = false;
+        created.set(0);
+        released.set(0);
+        accessKey = null;
+
+        props = new Properties();
+        props.setProperty(PDFMergeI.IAM_ROLE_PROPERTY, "role");
+        props.setProperty(PDFMergeI.S3_END_POINT_PROPERTY, ENDPOINT);
+        props.setProperty(PDFMergeI.S3_HEALTH_CHECK_FAILURES_PROPERTY, "2");
+        props.setProperty(PDFMergeI.S3_HEALTH_CHECK_BUCKET_PROPERTY, "bucket");
+        props.setProperty(PDFMergeI.JOB_POOL_SIZE_PROPERTY, "20");
+        factory = new FileSystemFactory(props) {
+            @Override
+            protected Map<String, ?> getS3Environment() {
+                Map<String, Object> env = new HashMap<String, Object>(
+                        super.getS3Environment());
+                env.put(
+                        S3FileSystemProvider.AMAZON_S3_FACTORY_CLASS,
+                        LocalS3Factory.class.getName());
+                return env;
+            }
+            @Override
+            protected void release(AmazonS3 client) {
+                released.incrementAndGet();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        factory.shutdown();
+    }
+
+    @Test
+    public void testLazyInitialization() throws Exception {
+
+        // The first failure is retried only after the backoff delay.
+        available = false;
+        try {
+            factory.getS3FileSystem();
+            fail("Expected IOException");
+        }
+        catch (IOException ioe) { }
+        available = true;
+        try {
+            factory.getS3FileSystem();
+            fail("Expected IOException");
+        }
+        catch (IOException ioe) { }
+        assertEquals(0, created.get());
+        Thread.sleep(FileSystemFactory.INITIAL_RETRY_DELAY_MS + 100);
+
+        // Concurrent callers share a single file system.
+        ExecutorService            executor = Executors.newFixedThreadPool(8);
+        List<Future<S3FileSystem>> futures  =
+                new ArrayList<Future<S3FileSystem>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<S3FileSystem>() {
+                @Override
+                public S3FileSystem call() throws IOException {
+                    return factory.getS3FileSystem();
+                }
+            }));
+        }
+        S3FileSystem fileSystem = futures.get(0).get();
+        for (Future<S3FileSystem> future : futures) {
+            assertSame(fileSystem, future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, created.get());
+        assertEquals(1, factory.getStatus().getFailedInitializations());
+
+        // The connection pool is sized from the merge concurrency.
+        assertEquals(factory.getMaxConnections(), poolSize);
+        assertTrue(poolSize > ClientConfiguration.DEFAULT_MAX_CONNECTIONS);
+    }
+
+    @Test
+    public void testRebuildAfterFailedProbes() throws IOException {
+
+        S3FileSystem original = factory.getS3FileSystem();
+        assertTrue(factory.probe());
+
+        failing = true;
+        assertFalse(factory.probe());
+        assertSame(original, factory.getS3FileSystem());
+        assertFalse(factory.probe());
+
+        // The file system and client were replaced after two failures.
+        S3FileSystem rebuilt = factory.getS3FileSystem();
+        assertNotSame(original, rebuilt);
+        assertNotSame(original.getClient(), rebuilt.getClient());
+        assertEquals(2, created.get());
+        assertEquals(
+                rebuilt,
+                Paths.get(URI.create("s3://" + ENDPOINT + "/bucket/key"))
+                    .getFileSystem());
+
+        failing = false;
+        assertTrue(factory.probe());
+        S3HealthStatus status = factory.getStatus();
+        assertTrue(status.getHealthy());
+        assertEquals(1, status.getReinitializations());
+        assertEquals(2, status.getProbeFailures());
+        assertEquals(0, status.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testRebuildWithRotatedCredentials() throws IOException {
+
+        // The credentials are read when the client is first built...
+        props.remove(PDFMergeI.IAM_ROLE_PROPERTY);
+        props.setProperty(PDFMergeI.ACCESS_KEY_PROPERTY, "old-access");
+        props.setProperty(PDFMergeI.SECRET_KEY_PROPERTY, "old-secret");
+        S3FileSystem original = factory.getS3FileSystem();
+        assertEquals("old-access", accessKey);
+
+        // ...and again when it is rebuilt after the keys are rotated.
+        props.setProperty(PDFMergeI.ACCESS_KEY_PROPERTY, "new-access");
+        props.setProperty(PDFMergeI.SECRET_KEY_PROPERTY, "new-secret");
+        failing = true;
+        assertFalse(factory.probe());
+        assertFalse(factory.probe());
+        assertNotSame(original, factory.getS3FileSystem());
+        assertEquals("new-access", accessKey);
+        assertEquals("new-access", factory.getAccessKey());
+
+        failing = false;
+        assertTrue(factory.probe());
+    }
+
+    @Test
+    public void testRetireWithoutHealthChecks() throws Exception {
+
+        // The health checks were not started, so there is no scheduler.
+        factory.setClientGracePeriod(200);
+        S3FileSystem original = factory.getS3FileSystem();
+        failing = true;
+        assertFalse(factory.probe());
+        assertFalse(factory.probe());
+        assertNotSame(original, factory.getS3FileSystem());
+
+        // The replaced client is kept open for the grace period...
+        assertEquals(0, released.get());
+
+        // ...and shut down once it expires.
+        long deadline = System.currentTimeMillis() + 10000L;
+        while ((released.get() == 0) &&
+                (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, released.get());
+    }
+
+    @Test
+    public void testShutdownReleasesRetiredClients() throws IOException {
+
+        factory.getS3FileSystem();
+        failing = true;
+        assertFalse(factory.probe());
+        assertFalse(factory.probe());
+        factory.getS3FileSystem();
+        assertEquals(0, released.get());
+
+        // Undeploying does not wait for the grace period to expire.
+        factory.shutdown();
+        assertEquals(2, released.get());
+    }
+}
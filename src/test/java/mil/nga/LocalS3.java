@@ -0,0 +1,320 @@
+package mil.nga;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.HeadBucketResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.io.ByteStreams;
+
+/**
+ * In-memory stand-in for S3 used by the unit tests.  Only the operations
+ * used by the application are implemented: HEAD (of objects and buckets),
+ * GET with optional byte ranges and ETag constraints, PUT, multipart 
+ * uploads and pre-signed URLs.
+ * The number of GET requests and the bytes they return are counted, as 
+ * is the highest number of part uploads in progress at the same time.
+ *
+ * @author L. Craig Carpenter
+ */
+public class LocalS3 extends AbstractAmazonS3 {
+
+    /**
+     * Object content keyed by "bucket/key".
+     */
+    private final Map<String, byte[]> objects =
+            new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * Parts of the multipart uploads in progress keyed by upload ID.
+     */
+    private final Map<String, Map<Integer, byte[]>> uploads =
+            new ConcurrentHashMap<String, Map<Integer, byte[]>>();
+
+    private final AtomicLong    getRequests     = new AtomicLong(0);
+    private final AtomicLong    bytesReturned   = new AtomicLong(0);
+    private final AtomicLong    putRequests     = new AtomicLong(0);
+    private final AtomicLong    abortedUploads  = new AtomicLong(0);
+    private final AtomicInteger partsInProgress = new AtomicInteger(0);
+    private final AtomicInteger maxParts        = new AtomicInteger(0);
+
+    /**
+     * Store an object, replacing any previous version.
+     *
+     * @param bucket The bucket.
+     * @param key The key.
+     * @param content The object content.
+     */
+    public void put(String bucket, String key, byte[] content) {
+        objects.put(bucket + "/" + key, content.clone());
+    }
+
+    /**
+     * Obtain the content of an object.
+     *
+     * @param bucket The bucket.
+     * @param key The key.
+     * @return The content, or null if the object does not exist.
+     */
+    public byte[] get(String bucket, String key) {
+        return objects.get(bucket + "/" + key);
+    }
+
+    public long getGetRequests() {
+        return getRequests.get();
+    }
+
+    public long getBytesReturned() {
+        return bytesReturned.get();
+    }
+
+    public long getPutRequests() {
+        return putRequests.get();
+    }
+
+    public long getAbortedUploads() {
+        return abortedUploads.get();
+    }
+
+    public int getMaxConcurrentParts() {
+        return maxParts.get();
+    }
+
+    public int getUploadsInProgress() {
+        return uploads.size();
+    }
+
+    /**
+     * Hook allowing tests to delay or fail part uploads.
+     *
+     * @param partNumber The number of the part being uploaded.
+     */
+    protected void beforeUploadPart(int partNumber) { }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        putRequests.incrementAndGet();
+        objects.put(
+                request.getBucketName() + "/" + request.getKey(),
+                read(request.getInputStream()));
+        return new PutObjectResult();
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(
+            InitiateMultipartUploadRequest request) {
+        String id = UUID.randomUUID().toString();
+        uploads.put(id, new ConcurrentHashMap<Integer, byte[]>());
+        InitiateMultipartUploadResult result =
+                new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(id);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        int inProgress = partsInProgress.incrementAndGet();
+        try {
+            int max = maxParts.get();
+            while ((inProgress > max) &&
+                    (!maxParts.compareAndSet(max, inProgress))) {
+                max = maxParts.get();
+            }
+            beforeUploadPart(request.getPartNumber());
+            Map<Integer, byte[]> parts = uploads.get(request.getUploadId());
+            if (parts == null) {
+                AmazonS3Exception e = new AmazonS3Exception("No such upload");
+                e.setStatusCode(404);
+                throw e;
+            }
+            byte[] content = read(request.getInputStream());
+            parts.put(request.getPartNumber(), content);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag(eTag(content));
+            return result;
+        }
+        finally {
+            partsInProgress.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(
+            CompleteMultipartUploadRequest request) {
+        Map<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int expected = 1;
+        for (PartETag part : request.getPartETags()) {
+            byte[] data = parts.get(part.getPartNumber());
+            if ((part.getPartNumber() != expected++) || (data == null) ||
+                    (!eTag(data).equals(part.getETag()))) {
+                throw new AmazonS3Exception("Invalid part list");
+            }
+            content.write(data, 0, data.length);
+        }
+        objects.put(
+                request.getBucketName() + "/" + request.getKey(),
+                content.toByteArray());
+        return new CompleteMultipartUploadResult();
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        if (uploads.remove(request.getUploadId()) != null) {
+            abortedUploads.incrementAndGet();
+        }
+    }
+
+    @Override
+    public URL generatePresignedUrl(
+            String bucket,
+            String key,
+            Date expiration,
+            HttpMethod method) {
+        try {
+            return new URL("https://localhost/"
+                    + bucket
+                    + "/"
+                    + key
+                    + "?Expires="
+                    + (expiration.getTime() / 1000L)
+                    + "&Signature=local");
+        }
+        catch (MalformedURLException mue) {
+            throw new IllegalArgumentException(mue);
+        }
+    }
+
+    /**
+     * The stand-in has no endpoint.
+     */
+    @Override
+    public void setEndpoint(String endpoint) { }
+
+    @Override
+    public HeadBucketResult headBucket(HeadBucketRequest request) {
+        return new HeadBucketResult();
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucket, String key) {
+        return getObjectMetadata(new GetObjectMetadataRequest(bucket, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        return metadata(find(request.getBucketName(), request.getKey()));
+    }
+
+    @Override
+    public S3Object getObject(String bucket, String key) {
+        return getObject(new GetObjectRequest(bucket, key));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        byte[]       content     = find(request.getBucketName(),
+                                        request.getKey());
+        List<String> constraints = request.getMatchingETagConstraints();
+        if ((constraints != null) && (!constraints.isEmpty()) &&
+                (!constraints.contains(eTag(content)))) {
+            return null;
+        }
+        long[] range = request.getRange();
+        int    start = 0;
+        int    end   = content.length;
+        if (range != null) {
+            start = (int)Math.min(range[0], content.length);
+            end   = (int)Math.min(range[1] + 1, content.length);
+        }
+        byte[] body = Arrays.copyOfRange(content, start, end);
+        getRequests.incrementAndGet();
+        bytesReturned.addAndGet(body.length);
+
+        S3Object object = new S3Object();
+        object.setBucketName(request.getBucketName());
+        object.setKey(request.getKey());
+        object.setObjectMetadata(metadata(content));
+        object.setObjectContent(new S3ObjectInputStream(
+                new ByteArrayInputStream(body), null));
+        return object;
+    }
+
+    private static byte[] read(InputStream in) {
+        try {
+            return ByteStreams.toByteArray(in);
+        }
+        catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * Look up an object, failing with a 404 if it does not exist.
+     */
+    private byte[] find(String bucket, String key) {
+        byte[] content = objects.get(bucket + "/" + key);
+        if (content == null) {
+            AmazonS3Exception e = new AmazonS3Exception("Not Found");
+            e.setStatusCode(404);
+            throw e;
+        }
+        return content;
+    }
+
+    private static ObjectMetadata metadata(byte[] content) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setHeader(Headers.ETAG, eTag(content));
+        return metadata;
+    }
+
+    private static String eTag(byte[] content) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package mil.nga;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+import mil.nga.storage.S3InputCache;
+import mil.nga.storage.S3StorageBackend;
+import mil.nga.storage.StorageMetadata;
+
+/**
+ * S3 storage backend addressing a <code>LocalS3</code> stand-in rather 
+ * than the S3 file system.  URIs take the form 
+ * <code>s3://localhost/bucket/key</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class LocalS3StorageBackend extends S3StorageBackend {
+
+    private final LocalS3      s3;
+    private final S3InputCache inputCache;
+
+    /**
+     * Directories created through the backend.
+     */
+    private final Set<URI> directories = 
+            Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+
+    /**
+     * Constructor.
+     *
+     * @param props The backend settings.
+     * @param s3 The S3 stand-in.
+     * @param inputCache The S3 input cache used for local copies.
+     */
+    public LocalS3StorageBackend(
+            Properties props, 
+            LocalS3 s3, 
+            S3InputCache inputCache) {
+        super(props);
+        this.s3         = s3;
+        this.inputCache = inputCache;
+    }
+
+    @Override
+    protected AmazonS3 getClient(URI uri) {
+        return s3;
+    }
+
+    @Override
+    protected S3InputCache getInputCache() {
+        return inputCache;
+    }
+
+    @Override
+    public StorageMetadata getMetadata(URI uri) throws IOException {
+        byte[] content = s3.get(bucket(uri), key(uri));
+        if (content == null) {
+            throw new NoSuchFileException(uri.toString());
+        }
+        return new StorageMetadata(uri, content.length, 0L, false);
+    }
+
+    @Override
+    public boolean exists(URI uri) {
+        return s3.get(bucket(uri), key(uri)) != null;
+    }
+
+    @Override
+    public void createDirectory(URI uri) throws IOException {
+        if (!directories.add(uri)) {
+            throw new FileAlreadyExistsException(uri.toString());
+        }
+    }
+
+    @Override
+    public void createDirectories(URI uri) {
+        directories.add(uri);
+    }
+
+    private static String bucket(URI uri) {
+        String path = uri.getPath();
+        return path.substring(1, path.indexOf('/', 1));
+    }
+
+    private static String key(URI uri) {
+        String path = uri.getPath();
+        return path.substring(path.indexOf('/', 1) + 1);
+    }
+}
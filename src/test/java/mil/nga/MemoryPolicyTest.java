@@ -0,0 +1,118 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * JUnit tests for the selection of the PDFBox memory settings by the
+ * <code>MemoryPolicy</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MemoryPolicyTest {
+
+    private static final long QUOTA       = 10L * 1024L * 1024L;
+    private static final File SCRATCH_DIR = new File("scratch");
+
+    /**
+     * Build a policy from the supplied property values.
+     */
+    private static MemoryPolicy newPolicy(String policy, String fraction) {
+        Properties props = new Properties();
+        if (policy != null) {
+            props.setProperty(PDFMergeI.MEMORY_POLICY_PROPERTY, policy);
+        }
+        if (fraction != null) {
+            props.setProperty(
+                    PDFMergeI.MEMORY_HEAP_FRACTION_PROPERTY,
+                    fraction);
+        }
+        return new MemoryPolicy(props);
+    }
+
+    /**
+     * PDFBox counts the heap share of a mixed setting towards the storage
+     * limit, so the quota applies to whichever is larger.
+     */
+    private static void assertStorageLimit(MemoryUsageSetting setting) {
+        assertEquals(
+                Math.max(QUOTA, setting.getMaxMainMemoryBytes()),
+                setting.getMaxStorageBytes());
+    }
+
+    @Test
+    public void testConfiguration() {
+
+        MemoryPolicy policy = newPolicy(null, null);
+        assertEquals(MemoryPolicy.POLICY_AUTO, policy.getPolicy());
+        assertEquals(
+                PDFMergeI.DEFAULT_MEMORY_HEAP_FRACTION,
+                policy.getHeapFraction(),
+                0.0);
+
+        policy = newPolicy(" Temp ", "0.5");
+        assertEquals(MemoryPolicy.POLICY_TEMP, policy.getPolicy());
+        assertEquals(0.5, policy.getHeapFraction(), 0.0);
+
+        // Invalid values revert to the defaults.
+        policy = newPolicy("disk", "1.5");
+        assertEquals(MemoryPolicy.POLICY_AUTO, policy.getPolicy());
+        assertEquals(
+                PDFMergeI.DEFAULT_MEMORY_HEAP_FRACTION,
+                policy.getHeapFraction(),
+                0.0);
+    }
+
+    @Test
+    public void testFixedModes() {
+
+        MemoryUsageSetting setting = newPolicy(
+                MemoryPolicy.POLICY_MAIN, null).select(
+                        1, SCRATCH_DIR, QUOTA);
+        assertTrue(setting.useMainMemory());
+        assertFalse(setting.useTempFile());
+
+        setting = newPolicy(MemoryPolicy.POLICY_TEMP, null).select(
+                1, SCRATCH_DIR, QUOTA);
+        assertFalse(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+        assertEquals(QUOTA, setting.getMaxStorageBytes());
+        assertEquals(SCRATCH_DIR, setting.getTempDir());
+
+        setting = newPolicy(MemoryPolicy.POLICY_MIXED, null).select(
+                1, SCRATCH_DIR, QUOTA);
+        assertTrue(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+        assertTrue(setting.isMainMemoryRestricted());
+        assertStorageLimit(setting);
+    }
+
+    @Test
+    public void testAutoMode() {
+
+        MemoryPolicy policy = newPolicy(MemoryPolicy.POLICY_AUTO, null);
+
+        // A request that fits in the share of the heap stays on the heap...
+        MemoryUsageSetting setting = policy.select(1, null, QUOTA);
+        assertTrue(setting.useMainMemory());
+        assertFalse(setting.useTempFile());
+        assertNull(setting.getTempDir());
+
+        // ...while one that does not overflows to the scratch directory.
+        setting = policy.select(Long.MAX_VALUE, SCRATCH_DIR, QUOTA);
+        assertTrue(setting.useTempFile());
+        assertStorageLimit(setting);
+        assertEquals(SCRATCH_DIR, setting.getTempDir());
+        if (setting.useMainMemory()) {
+            assertTrue(setting.getMaxMainMemoryBytes()
+                    <= MemoryPolicy.getHeapHeadroom());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the lifecycle of the jobs executed by the
+ * <code>MergeJobService</code>: submission, status, cancellation while
+ * queued and while running, and the purge of finished jobs.  The service
+ * runs a single job at a time, and reads of a blocking input hold the
+ * running job until they are released.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeJobServiceTest {
+
+    private static final String ROOT = "mem:///jobs";
+
+    /**
+     * Reads of the blocking input signal <code>entered</code> and wait
+     * for <code>released</code>.
+     */
+    private final URI            blocking =
+            URI.create(ROOT + "/input/blocking.pdf");
+    private final CountDownLatch entered  = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private MemoryStorageBackend storage;
+    private MergeJobService      service;
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new MemoryStorageBackend() {
+            @Override
+            public SeekableByteChannel newReadChannel(URI uri)
+                    throws IOException {
+                if (blocking.equals(uri)) {
+                    entered.countDown();
+                    try {
+                        released.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.newReadChannel(uri);
+            }
+        };
+        StorageFactory.getInstance().register(storage);
+        storage.createDirectories(URI.create(ROOT + "/staging"));
+        storage.put(blocking, newPDF());
+        storage.put(URI.create(ROOT + "/input/file_1.pdf"), newPDF());
+
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                ROOT + "/staging");
+        props.setProperty(PDFMergeI.STAGING_DIRECTORY_BASE_PROPERTY, ROOT);
+        props.setProperty(PDFMergeI.BASE_URL_PROPERTY, "https://localhost/");
+        props.setProperty(PDFMergeI.JOB_POOL_SIZE_PROPERTY, "1");
+        props.setProperty(PDFMergeI.JOB_QUEUE_SIZE_PROPERTY, "4");
+        service = new MergeJobService(props);
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+        service.shutdown();
+        StorageFactory.getInstance().register(new MemoryStorageBackend());
+    }
+
+    /**
+     * Build a single-page PDF.
+     */
+    private static byte[] newPDF() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * Build a request for the supplied inputs.
+     */
+    private static MergeRequest newRequest(String... files) {
+        MergeRequest request = new MergeRequest();
+        request.setFilename("merged.pdf");
+        for (String file : files) {
+            request.add(ROOT + "/input/" + file);
+        }
+        return request;
+    }
+
+    /**
+     * Wait for a job to reach a terminal state.
+     */
+    private static void awaitFinished(MergeJob job)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while ((!job.getState().isFinished()) &&
+                (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(20);
+        }
+        assertTrue(job.getState().isFinished());
+    }
+
+    /**
+     * Wait for the running job to return its thread to the executor.
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while ((service.getActiveCount() > 0) &&
+                (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, service.getActiveCount());
+    }
+
+    @Test
+    public void testSubmitAndStatus() throws Exception {
+
+        MergeJob job = service.submit(newRequest("file_1.pdf"));
+        assertSame(job, service.getJob(job.getJobId()));
+        awaitFinished(job);
+
+        MergeJobStatus status = service.getJob(job.getJobId()).getStatus();
+        assertEquals(MergeJob.State.COMPLETE.name(), status.getState());
+        assertEquals(1, status.getInputFiles());
+        assertEquals(1, status.getMergedFiles());
+        assertEquals(100, status.getProgress());
+        assertNotNull(job.getURL());
+        assertTrue(job.getURL().endsWith("/merged.pdf"));
+        assertNull(service.getJob("unknown"));
+    }
+
+    @Test
+    public void testCancelQueued() throws Exception {
+
+        MergeJob running = service.submit(newRequest("blocking.pdf"));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        MergeJob queued = service.submit(newRequest("file_1.pdf"));
+        assertEquals(MergeJob.State.QUEUED, queued.getState());
+        assertEquals(1, service.getQueueDepth());
+
+        // The cancelled job leaves the queue rather than waiting to be
+        // skipped by the executor.
+        assertSame(queued, service.cancel(queued.getJobId()));
+        assertEquals(MergeJob.State.CANCELLED, queued.getState());
+        assertEquals(0, service.getQueueDepth());
+        assertEquals(0, queued.getStartTime());
+
+        released.countDown();
+        awaitFinished(running);
+        assertEquals(MergeJob.State.COMPLETE, running.getState());
+        assertEquals(MergeJob.State.CANCELLED, queued.getState());
+    }
+
+    @Test
+    public void testCancelRunning() throws Exception {
+
+        MergeJob job = service.submit(
+                newRequest("blocking.pdf", "file_1.pdf"));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        assertEquals(MergeJob.State.RUNNING, job.getState());
+
+        assertSame(job, service.cancel(job.getJobId()));
+        assertEquals(MergeJob.State.CANCELLED, job.getState());
+        assertNotNull(job.getMessage());
+
+        // The merge in progress ends without overwriting the state.
+        released.countDown();
+        awaitIdle();
+        assertEquals(MergeJob.State.CANCELLED, job.getState());
+        assertNull(job.getURL());
+
+        // A finished job cannot be cancelled again.
+        assertFalse(job.cancel());
+    }
+
+    @Test
+    public void testRetentionPurge() throws Exception {
+
+        MergeJob job = service.submit(newRequest("file_1.pdf"));
+        awaitFinished(job);
+
+        // Finished jobs are retained for the retention period...
+        service.purgeFinishedJobs(
+                job.getFinishTime() + service.getRetention());
+        assertSame(job, service.getJob(job.getJobId()));
+
+        // ...and discarded after it.
+        service.purgeFinishedJobs(
+                job.getFinishTime() + service.getRetention() + 1);
+        assertNull(service.getJob(job.getJobId()));
+    }
+}
@@ -0,0 +1,129 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the reuse of merged output through the
+ * <code>MergeOutputCache</code>, run against the in-memory storage
+ * backend.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeOutputCacheTest {
+
+    private static final String ROOT = "mem:///outputcache";
+
+    private MemoryStorageBackend storage;
+    private PDFFactory           factory;
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new MemoryStorageBackend();
+        StorageFactory.getInstance().register(storage);
+        storage.createDirectories(URI.create(ROOT + "/staging"));
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                ROOT + "/staging");
+        factory = new PDFFactory(props);
+    }
+
+    @After
+    public void tearDown() {
+        StorageFactory.getInstance().register(new MemoryStorageBackend());
+    }
+
+    /**
+     * Store single-page inputs.
+     *
+     * @param count The number of inputs.
+     * @return The input URIs.
+     */
+    private List<String> createInputs(int count) throws IOException {
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 1; i <= count; i++) {
+            URI uri = URI.create(ROOT + "/input/file_" + i + ".pdf");
+            try (PDDocument doc = new PDDocument()) {
+                doc.addPage(new PDPage());
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                doc.save(baos);
+                storage.put(uri, baos.toByteArray());
+            }
+            inputs.add(uri.toString());
+        }
+        return inputs;
+    }
+
+    @Test
+    public void testSameOutputName() throws Exception {
+
+        assertTrue(MergeOutputCache.getInstance().isEnabled());
+        List<String> inputs = createInputs(2);
+
+        URI first = factory.merge(inputs, "same.pdf");
+        assertEquals(
+                factory.getCacheKey(inputs, "same.pdf"),
+                factory.getCacheKey(inputs, "same"));
+
+        // The same inputs under the same name reuse the earlier output.
+        assertEquals(first, factory.merge(inputs, "same.pdf"));
+    }
+
+    @Test
+    public void testDifferentOutputName() throws Exception {
+
+        List<String> inputs = createInputs(2);
+
+        URI first = factory.merge(inputs, "first.pdf");
+        assertNotEquals(
+                factory.getCacheKey(inputs, "first.pdf"),
+                factory.getCacheKey(inputs, "second.pdf"));
+
+        // The same inputs under another name are not served the output
+        // named for the earlier request.
+        URI second = factory.merge(inputs, "second.pdf");
+        assertNotEquals(first, second);
+        assertTrue(first.getPath().endsWith("/first.pdf"));
+        assertTrue(second.getPath().endsWith("/second.pdf"));
+        assertTrue(storage.exists(second));
+    }
+
+    @Test
+    public void testEvictionKeepsOutput() throws Exception {
+
+        Properties props = new Properties();
+        props.setProperty(PDFMergeI.OUTPUT_CACHE_SIZE_PROPERTY, "1");
+        MergeOutputCache cache = new MergeOutputCache(props);
+
+        URI first  = URI.create(ROOT + "/staging/a/first.pdf");
+        URI second = URI.create(ROOT + "/staging/b/second.pdf");
+        storage.put(first, new byte[800 * 1024]);
+        storage.put(second, new byte[800 * 1024]);
+        cache.put("first", first);
+        cache.put("second", second);
+
+        // The budget evicts entries, but their output files may have just
+        // been handed to clients, so they are left for the reaper.
+        assertTrue(cache.getEvictions() > 0);
+        assertNull(cache.get("first"));
+        assertTrue(storage.exists(first));
+        assertTrue(storage.exists(second));
+    }
+}
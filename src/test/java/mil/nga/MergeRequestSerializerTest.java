@@ -0,0 +1,107 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the <code>MergeRequestSerializer</code> class.  Requests
+ * are round-tripped through the String and streaming methods, and the
+ * streams supplied by the caller must remain open.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeRequestSerializerTest {
+
+    private MergeRequestSerializer serializer;
+    private MergeRequest           request;
+
+    /**
+     * Input stream recording whether it was closed.
+     */
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        private boolean closed = false;
+        TrackingInputStream(byte[] buf) {
+            super(buf);
+        }
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * Reader recording whether it was closed.
+     */
+    private static class TrackingReader extends StringReader {
+        private boolean closed = false;
+        TrackingReader(String s) {
+            super(s);
+        }
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        serializer = MergeRequestSerializer.getInstance();
+        request    = new MergeRequest();
+        request.setFilename("merged.pdf");
+        request.add("s3://bucket/dir/file_1.pdf");
+        request.add("file:///local/dir/file_2.pdf");
+    }
+
+    /**
+     * Compare the content of two requests.
+     */
+    private void assertSameRequest(MergeRequest expected, MergeRequest actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getFilename(), actual.getFilename());
+        assertEquals(expected.getFiles(), actual.getFiles());
+    }
+
+    @Test
+    public void testStringRoundTrip() {
+        assertSameRequest(
+                request,
+                serializer.deserialize(serializer.serialize(request)));
+        assertSameRequest(
+                request,
+                serializer.deserialize(serializer.serializePretty(request)));
+        assertNull(serializer.deserialize("{ not json"));
+        assertNull(serializer.deserialize(""));
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        serializer.serialize(request, baos);
+
+        TrackingInputStream in = new TrackingInputStream(baos.toByteArray());
+        assertSameRequest(request, serializer.deserialize(in));
+        assertFalse(in.closed);
+    }
+
+    @Test
+    public void testReaderRoundTrip() throws IOException {
+
+        StringWriter writer = new StringWriter();
+        serializer.serializePretty(request, writer);
+
+        TrackingReader in = new TrackingReader(writer.toString());
+        assertSameRequest(request, serializer.deserialize(in));
+        assertFalse(in.closed);
+    }
+}
@@ -0,0 +1,164 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the validation of input files by the
+ * <code>PDFFactory</code>, run against the in-memory storage backend.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFFactoryTest {
+
+    private static final String ROOT = "mem:///factory";
+
+    /**
+     * Flag causing reads to fail, and the number of reads attempted.
+     */
+    private volatile boolean    failing = false;
+    private final AtomicInteger reads   = new AtomicInteger(0);
+
+    private MemoryStorageBackend storage;
+    private PDFFactory           factory;
+
+    @Before
+    public void setUp() {
+        storage = new MemoryStorageBackend() {
+            @Override
+            public SeekableByteChannel newReadChannel(URI uri)
+                    throws IOException {
+                reads.incrementAndGet();
+                if (failing) {
+                    throw new SocketException("Connection reset");
+                }
+                return super.newReadChannel(uri);
+            }
+        };
+        StorageFactory.getInstance().register(storage);
+        PDFMetadataCache.getInstance().invalidateAll();
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.VALIDATION_MODE_PROPERTY,
+                PDFMergeI.VALIDATION_MODE_STRICT);
+        factory = new PDFFactory(props);
+    }
+
+    @After
+    public void tearDown() {
+        PDFMetadataCache.getInstance().invalidateAll();
+        StorageFactory.getInstance().register(new MemoryStorageBackend());
+    }
+
+    @Test
+    public void testReadFailureNotCached() throws IOException {
+
+        URI uri = URI.create(ROOT + "/valid.pdf");
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            storage.put(uri, baos.toByteArray());
+        }
+
+        // A file that cannot be read is skipped...
+        failing = true;
+        assertFalse(factory.isValidPDF(uri));
+
+        // ...but is read again, and found valid, once the error clears.
+        failing = false;
+        assertTrue(factory.isValidPDF(uri));
+        int count = reads.get();
+        assertTrue(factory.isValidPDF(uri));
+        assertEquals(count, reads.get());
+    }
+
+    @Test
+    public void testParseFailureCached() throws IOException {
+
+        URI uri = URI.create(ROOT + "/invalid.pdf");
+        storage.put(uri, "not a PDF".getBytes(StandardCharsets.US_ASCII));
+
+        assertFalse(factory.isValidPDF(uri));
+        int count = reads.get();
+        assertFalse(factory.isValidPDF(uri));
+        assertNull(factory.loadPDF(
+                uri,
+                MemoryUsageSetting.setupMainMemoryOnly()));
+        assertEquals(count, reads.get());
+    }
+
+    @Test
+    public void testStructuralFallback() throws IOException {
+
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.VALIDATION_MODE_PROPERTY,
+                PDFMergeI.VALIDATION_MODE_STRUCTURAL);
+        PDFFactory structural = new PDFFactory(props);
+
+        // A wrong (or overflowing) cross-reference offset fails the
+        // structural check, but the parser repairs it...
+        String valid;
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            valid = new String(baos.toByteArray(), StandardCharsets.ISO_8859_1);
+        }
+        URI offset   = URI.create(ROOT + "/offset.pdf");
+        URI overflow = URI.create(ROOT + "/overflow.pdf");
+        storage.put(offset, valid.replaceFirst(
+                        "startxref\\s+\\d+",
+                        "startxref\n10")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        storage.put(overflow, valid.replaceFirst(
+                        "startxref\\s+\\d+",
+                        "startxref\n99999999999999999999999")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        assertFalse(PDFStructureValidator.getInstance().isValidPDF(offset));
+        assertTrue(structural.isValidPDF(offset));
+        assertTrue(structural.isValidPDF(overflow));
+
+        // ...while a file the parser cannot read is still rejected.
+        URI invalid = URI.create(ROOT + "/invalid.pdf");
+        storage.put(invalid, "not a PDF".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(structural.isValidPDF(invalid));
+    }
+
+    @Test
+    public void testOpenDocumentLimit() {
+
+        // Without the windowed merge every input is open until the save...
+        factory.setMergeWindow(0);
+        assertEquals(50, factory.getOpenDocumentLimit(50));
+        assertEquals(1, factory.getOpenDocumentLimit(0));
+
+        // ...otherwise only the window is.
+        factory.setMergeWindow(2);
+        assertEquals(2, factory.getOpenDocumentLimit(50));
+        factory.setMergeWindow(50);
+        assertEquals(
+                factory.getLookaheadDepth() + 1,
+                factory.getOpenDocumentLimit(50));
+    }
+}
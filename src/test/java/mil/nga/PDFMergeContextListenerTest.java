@@ -0,0 +1,89 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+import mil.nga.util.SingleFlight;
+
+/**
+ * JUnit tests for the release of per-request resources by the
+ * <code>PDFMergeContextListener</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFMergeContextListenerTest {
+
+    /**
+     * Construct a stand-in for a container object that answers
+     * <code>getAttribute()</code> with the supplied value and ignores all
+     * other calls.
+     */
+    private static <T> T newStandIn(Class<T> type, final Object attribute) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[] { type },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(
+                            Object proxy,
+                            Method method,
+                            Object[] args) {
+                        if (method.getName().equals("getAttribute")) {
+                            return attribute;
+                        }
+                        return null;
+                    }
+                }));
+    }
+
+    @Test
+    public void testReleaseUnwrittenOutput() {
+
+        AdmissionController controller = AdmissionController.getInstance();
+        SingleFlight<List<String>, URI> flight =
+                new SingleFlight<List<String>, URI>();
+        List<String> key = Arrays.asList("a.pdf", "b.pdf");
+
+        PDFMerge.StreamedMerge resources = new PDFMerge.StreamedMerge(
+                new MergedDocument(
+                        new PDDocument(),
+                        new ArrayList<PDDocument>(),
+                        null,
+                        new MergeMetrics(),
+                        System.currentTimeMillis()),
+                controller.acquire(1, 0),
+                flight.begin(key));
+        assertEquals(1, controller.getStatus().getInFlightRequests());
+        assertEquals(1, flight.getInFlight());
+
+        // The output was never written, so the request completion releases
+        // the permit and abandons the ticket.
+        new PDFMergeContextListener().requestDestroyed(
+                new ServletRequestEvent(
+                        newStandIn(ServletContext.class, null),
+                        newStandIn(ServletRequest.class, resources)));
+        assertTrue(resources.isReleased());
+        assertEquals(0, controller.getStatus().getInFlightRequests());
+        assertEquals(0, flight.getInFlight());
+        assertEquals(1, flight.getAbandoned());
+
+        // Release happens once only.
+        resources.release(URI.create("mem:///staging/merged.pdf"));
+        assertEquals(1, flight.getAbandoned());
+        assertTrue(flight.begin(key).isLeader());
+    }
+}
@@ -0,0 +1,113 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the output streamed to the client by the
+ * <code>PDFMerge</code> resource.  A merge that fails part way through
+ * must not end the response as though the document were complete, so the
+ * failure is thrown to the container with the client stream still open.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PDFMergeTest {
+
+    private static final String ROOT = "mem:///streaming";
+
+    private MemoryStorageBackend storage;
+    private PDFFactory           factory;
+
+    /**
+     * Client stream recording whether it was closed.
+     */
+    private static class TrackingOutputStream extends ByteArrayOutputStream {
+        private boolean closed = false;
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new MemoryStorageBackend();
+        StorageFactory.getInstance().register(storage);
+        storage.createDirectories(URI.create(ROOT + "/staging"));
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                ROOT + "/staging");
+        factory = new PDFFactory(props);
+    }
+
+    @After
+    public void tearDown() {
+        StorageFactory.getInstance().register(new MemoryStorageBackend());
+    }
+
+    /**
+     * Stream a document whose save fails part way through.
+     *
+     * @param key The merged output cache key (may be null).
+     */
+    private void streamFailedSave(String key) throws IOException {
+
+        AdmissionController controller = AdmissionController.getInstance();
+        StreamingOutput entity = new PDFMerge().newStreamingOutput(
+                factory,
+                new MergedDocument(
+                        S3MultipartOutputStreamTest.newFailingDocument(),
+                        new ArrayList<PDDocument>(),
+                        null,
+                        new MergeMetrics(),
+                        System.currentTimeMillis()),
+                key,
+                "merged.pdf",
+                controller.acquire(1, 0),
+                null);
+
+        TrackingOutputStream os = new TrackingOutputStream();
+        try {
+            entity.write(os);
+            fail("Expected IOException");
+        }
+        catch (IOException ioe) { }
+
+        // Part of the document reached the client, but the stream was left
+        // for the container to abort.
+        assertTrue(os.size() > 0);
+        assertFalse(os.closed);
+        assertEquals(0, controller.getStatus().getInFlightRequests());
+    }
+
+    @Test
+    public void testFailedSaveNotTerminated() throws IOException {
+        streamFailedSave(null);
+    }
+
+    @Test
+    public void testFailedSaveWithCopyNotTerminated() throws IOException {
+        streamFailedSave("key");
+
+        // The partial copy was not kept.
+        assertEquals(0, storage.getTotalSize());
+    }
+}
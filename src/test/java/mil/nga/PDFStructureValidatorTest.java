@@ -0,0 +1,138 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the PDFStructureValidator class.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class PDFStructureValidatorTest {
+
+    File validPDF = null;
+    
+    @Before
+    public void init() throws IOException {
+        validPDF = File.createTempFile("valid", ".pdf");
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            doc.save(validPDF);
+        }
+    }
+    
+    @After
+    public void cleanup() {
+        validPDF.delete();
+    }
+    
+    @Test
+    public void testValidPDF() {
+        assertTrue(PDFStructureValidator.getInstance()
+                .isValidPDF(validPDF.toURI()));
+    }
+    
+    @Test
+    public void testMissingHeader() throws IOException {
+        File file = File.createTempFile("noheader", ".pdf");
+        try {
+            byte[] bytes = Files.readAllBytes(validPDF.toPath());
+            bytes[1] = 'X';
+            Files.write(file.toPath(), bytes);
+            assertFalse(PDFStructureValidator.getInstance()
+                    .isValidPDF(file.toURI()));
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testTruncatedPDF() throws IOException {
+        File file = File.createTempFile("truncated", ".pdf");
+        try {
+            byte[] bytes = Files.readAllBytes(validPDF.toPath());
+            Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+            assertFalse(PDFStructureValidator.getInstance()
+                    .isValidPDF(file.toURI()));
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testBadXrefOffset() throws IOException {
+        File file = File.createTempFile("badxref", ".pdf");
+        try {
+            String content = new String(
+                    Files.readAllBytes(validPDF.toPath()), "ISO-8859-1");
+            content = content.replaceFirst(
+                    "startxref\\s+\\d+", 
+                    "startxref\n10");
+            Files.write(file.toPath(), content.getBytes("ISO-8859-1"));
+            assertFalse(PDFStructureValidator.getInstance()
+                    .isValidPDF(file.toURI()));
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testOverflowXrefOffset() throws IOException {
+        File file = File.createTempFile("overflow", ".pdf");
+        try {
+            String content = new String(
+                    Files.readAllBytes(validPDF.toPath()), "ISO-8859-1");
+            content = content.replaceFirst(
+                    "startxref\\s+\\d+", 
+                    "startxref\n99999999999999999999999");
+            Files.write(file.toPath(), content.getBytes("ISO-8859-1"));
+            assertFalse(PDFStructureValidator.getInstance()
+                    .isValidPDF(file.toURI()));
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testInspectMetadata() throws IOException {
+        File file = File.createTempFile("encrypted", ".pdf");
+        try {
+            try (PDDocument doc = new PDDocument()) {
+                doc.addPage(new PDPage());
+                doc.protect(new StandardProtectionPolicy(
+                        "owner", "", new AccessPermission()));
+                doc.save(file);
+            }
+            PDFMetadata plain = new PDFMetadata(validPDF.toURI(), 0, 0);
+            assertTrue(PDFStructureValidator.getInstance()
+                    .inspect(validPDF.toURI(), plain));
+            assertTrue(plain.isValid());
+            assertFalse(plain.isEncrypted());
+            assertNotNull(plain.getVersion());
+            
+            PDFMetadata encrypted = new PDFMetadata(file.toURI(), 0, 0);
+            assertTrue(PDFStructureValidator.getInstance()
+                    .inspect(file.toURI(), encrypted));
+            assertTrue(encrypted.isEncrypted());
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * JUnit tests for the RequestArchiveService and RequestArchiveReader 
+ * classes.
+ *
+ * @author L. Craig Carpenter
+ */
+public class RequestArchiveServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Construct an archive service writing to the temporary folder.
+     */
+    private RequestArchiveService newService(int queueSize) {
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.MERGE_REQUEST_DIRECTORY_PROP,
+                folder.getRoot().toURI().toString());
+        props.setProperty(PDFMergeI.ARCHIVE_BATCH_SIZE_PROPERTY, "7");
+        props.setProperty(
+                PDFMergeI.ARCHIVE_QUEUE_SIZE_PROPERTY,
+                Integer.toString(queueSize));
+        props.setProperty(PDFMergeI.ARCHIVE_SEGMENT_SIZE_PROPERTY, "1");
+        return new RequestArchiveService(props);
+    }
+
+    @Test
+    public void testUniqueIdsFlushedOnShutdown() throws Exception {
+
+        RequestArchiveService service = newService(1000);
+
+        // Requests arriving within the same second must not collide.
+        Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 50; i++) {
+            MergeRequest request = new MergeRequest();
+            request.add("/data/input_" + i + ".pdf");
+            ids.add(service.archiveRequest(request));
+        }
+        assertEquals(50, ids.size());
+
+        service.shutdown();
+        assertNull(service.archiveRequest(new MergeRequest()));
+        assertEquals(50, service.getStatus().getArchived());
+        assertEquals(1, service.getStatus().getDropped());
+        assertEquals(0, service.getStatus().getQueued());
+
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".jsonl.gz"));
+
+        int count = 0;
+        try (RequestArchiveReader reader = 
+                new RequestArchiveReader(folder.getRoot().toPath())) {
+            while (reader.hasNext()) {
+                ArchivedRequest entry = reader.next();
+                assertTrue(ids.contains(entry.getId()));
+                assertEquals(
+                        "/data/input_" + count + ".pdf",
+                        entry.getRequest().getFiles().get(0));
+                count++;
+            }
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void testRotationAndTimeOrder() throws Exception {
+
+        // Two instances sharing the directory, each writing >1MB.
+        RequestArchiveService first  = newService(20000);
+        RequestArchiveService second = newService(20000);
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < 5000; i++) {
+            MergeRequest request = new MergeRequest();
+            request.add("/data/" + padding + "/input_" + i + ".pdf");
+            first.archiveRequest(request);
+            second.archiveRequest(request);
+        }
+        first.shutdown();
+        second.shutdown();
+        assertEquals(0, first.getStatus().getDropped());
+
+        assertTrue(RequestArchiveReader.listSegments(
+                folder.getRoot().toPath()).size() >= 4);
+
+        int  count    = 0;
+        long previous = 0;
+        try (RequestArchiveReader reader = 
+                new RequestArchiveReader(folder.getRoot().toPath())) {
+            while (reader.hasNext()) {
+                ArchivedRequest entry = reader.next();
+                assertTrue(entry.getReceived() >= previous);
+                previous = entry.getReceived();
+                count++;
+            }
+        }
+        assertEquals(10000, count);
+    }
+}
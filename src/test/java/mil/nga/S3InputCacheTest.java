@@ -0,0 +1,240 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.S3InputCache;
+import mil.nga.storage.S3StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.util.FileUtils;
+
+/**
+ * JUnit tests for the S3 input cache, run against an in-memory S3
+ * stand-in.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3InputCacheTest {
+
+    private static final String BUCKET = "bucket";
+    private static final int    KB     = 1024;
+
+    private Path       directory;
+    private Properties props;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("s3_input_cache");
+        props     = new Properties();
+        props.setProperty(
+                PDFMergeI.S3_INPUT_CACHE_DIRECTORY_PROPERTY,
+                directory.toString());
+        props.setProperty(PDFMergeI.S3_INPUT_CACHE_SIZE_PROPERTY, "1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        StorageFactory.getInstance().register(new S3StorageBackend(null));
+        FileUtils.delete(directory.toFile());
+    }
+
+    @Test
+    public void testReadThroughAndEviction() throws IOException {
+
+        props.setProperty(
+                PDFMergeI.S3_INPUT_CACHE_EVICTION_DELAY_PROPERTY,
+                "0");
+        LocalS3      s3    = new LocalS3();
+        S3InputCache cache = new S3InputCache(props);
+        s3.put(BUCKET, "a", new byte[400 * KB]);
+        s3.put(BUCKET, "b", new byte[400 * KB]);
+        s3.put(BUCKET, "c", new byte[400 * KB]);
+
+        Path a = cache.get(s3, BUCKET, "a");
+        assertEquals(400 * KB, Files.size(a));
+        assertEquals(a, cache.get(s3, BUCKET, "a"));
+        assertEquals(1, s3.getGetRequests());
+        assertEquals(1, cache.getHits());
+        assertEquals(400 * KB, cache.getBytesSaved());
+
+        // The least recently used copy is evicted once the budget is
+        // exceeded.
+        Path b = cache.get(s3, BUCKET, "b");
+        cache.get(s3, BUCKET, "a");
+        Path c = cache.get(s3, BUCKET, "c");
+        assertTrue(Files.exists(a));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(c));
+
+        // A new version of an object is downloaded again.
+        s3.put(BUCKET, "a", new byte[10]);
+        Path updated = cache.get(s3, BUCKET, "a");
+        assertNotEquals(a, updated);
+        assertEquals(10, Files.size(updated));
+
+        // Local copies are re-indexed on restart.
+        long requests = s3.getGetRequests();
+        S3InputCache restarted = new S3InputCache(props);
+        assertEquals(updated, restarted.get(s3, BUCKET, "a"));
+        assertEquals(requests, s3.getGetRequests());
+        assertEquals(1, restarted.getHits());
+
+        // Objects larger than the budget are not cached.
+        s3.put(BUCKET, "large", new byte[2 * KB * KB]);
+        assertNull(cache.get(s3, BUCKET, "large"));
+    }
+
+    @Test
+    public void testSingleDownload() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final LocalS3        s3      = new LocalS3() {
+            @Override
+            public S3Object getObject(GetObjectRequest request) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getObject(request);
+            }
+        };
+        final S3InputCache cache = new S3InputCache(props);
+        s3.put(BUCKET, "shared", new byte[100 * KB]);
+
+        ExecutorService    executor = Executors.newFixedThreadPool(8);
+        List<Future<Path>> futures  = new ArrayList<Future<Path>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<Path>() {
+                @Override
+                public Path call() throws IOException {
+                    return cache.get(s3, BUCKET, "shared");
+                }
+            }));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        Path path = futures.get(0).get();
+        for (Future<Path> future : futures) {
+            assertEquals(path, future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, s3.getGetRequests());
+        assertEquals(1, cache.getMisses());
+        assertEquals(7, cache.getHits());
+    }
+
+    @Test
+    public void testLoadThroughCache() throws IOException {
+
+        LocalS3      s3    = new LocalS3();
+        S3InputCache cache = new S3InputCache(props);
+        StorageFactory.getInstance().register(
+                new LocalS3StorageBackend(props, s3, cache));
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            s3.put(BUCKET, "input.pdf", baos.toByteArray());
+        }
+
+        URI        uri     = URI.create(
+                "s3://localhost/" + BUCKET + "/input.pdf");
+        PDFFactory factory = new PDFFactory(new Properties());
+        for (int i = 0; i < 3; i++) {
+            try (PDDocument pdf = factory.loadPDF(
+                    uri,
+                    MemoryUsageSetting.setupMainMemoryOnly())) {
+                assertEquals(1, pdf.getNumberOfPages());
+            }
+        }
+        assertEquals(1, s3.getGetRequests());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, directory.toFile().list().length);
+    }
+
+    @Test
+    public void testDeferredDelete() throws IOException {
+
+        LocalS3      s3    = new LocalS3();
+        S3InputCache cache = new S3InputCache(props);
+        s3.put(BUCKET, "a", new byte[400 * KB]);
+        s3.put(BUCKET, "b", new byte[400 * KB]);
+        s3.put(BUCKET, "c", new byte[400 * KB]);
+
+        // A copy obtained just before it is evicted can still be opened.
+        Path a = cache.get(s3, BUCKET, "a");
+        cache.get(s3, BUCKET, "b");
+        cache.get(s3, BUCKET, "c");
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(Files.exists(a));
+
+        // Downloading the object again cancels the pending deletion.
+        assertEquals(a, cache.get(s3, BUCKET, "a"));
+        assertTrue(Files.exists(a));
+    }
+
+    @Test
+    public void testLoadAfterCopyRemoved() throws IOException {
+
+        final LocalS3      s3    = new LocalS3();
+        final S3InputCache cache = new S3InputCache(props);
+        final boolean[]    first = { true };
+        StorageFactory.getInstance().register(
+                new LocalS3StorageBackend(props, s3, cache) {
+                    @Override
+                    public Path getLocalCopy(URI uri) throws IOException {
+                        Path p = super.getLocalCopy(uri);
+                        if (first[0]) {
+                            // Removed between the lookup and the open.
+                            first[0] = false;
+                            Files.delete(p);
+                        }
+                        return p;
+                    }
+                });
+        try (PDDocument doc = new PDDocument()) {
+            doc.addPage(new PDPage());
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            s3.put(BUCKET, "input.pdf", baos.toByteArray());
+        }
+
+        URI        uri     = URI.create(
+                "s3://localhost/" + BUCKET + "/input.pdf");
+        PDFFactory factory = new PDFFactory(new Properties());
+        try (PDDocument pdf = factory.loadPDF(
+                uri,
+                MemoryUsageSetting.setupMainMemoryOnly())) {
+            assertNotNull(pdf);
+            assertEquals(1, pdf.getNumberOfPages());
+        }
+        assertEquals(2, s3.getGetRequests());
+    }
+}
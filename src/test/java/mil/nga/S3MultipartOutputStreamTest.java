@@ -0,0 +1,291 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import mil.nga.exceptions.PDFException;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.S3InputCache;
+import mil.nga.storage.S3MultipartOutputStream;
+import mil.nga.storage.S3StorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the parallel multipart upload of output to S3, run
+ * against an in-memory S3 stand-in.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3MultipartOutputStreamTest {
+
+    private static final String BUCKET = "bucket";
+    private static final int    KB     = 1024;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        StorageFactory.getInstance().register(new S3StorageBackend(null));
+    }
+
+    @Test
+    public void testParallelParts() throws IOException {
+
+        LocalS3 s3 = new LocalS3() {
+            @Override
+            protected void beforeUploadPart(int partNumber) {
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        byte[] content = new byte[10 * KB + 512];
+        new Random(7).nextBytes(content);
+
+        S3MultipartOutputStream os = new S3MultipartOutputStream(
+                s3, BUCKET, "output.pdf", KB, 3, executor);
+        for (int offset = 0; offset < content.length; offset += 700) {
+            os.write(
+                    content,
+                    offset,
+                    Math.min(700, content.length - offset));
+        }
+        os.close();
+
+        assertArrayEquals(content, s3.get(BUCKET, "output.pdf"));
+        assertEquals(11, os.getPartCount());
+        assertEquals(0, s3.getPutRequests());
+        assertEquals(0, s3.getUploadsInProgress());
+
+        // Parts upload in parallel, but never more than the buffer limit.
+        assertTrue(s3.getMaxConcurrentParts() > 1);
+        assertTrue(s3.getMaxConcurrentParts() <= 3);
+    }
+
+    @Test
+    public void testSmallObject() throws IOException {
+
+        LocalS3 s3 = new LocalS3();
+        try (OutputStream os = new S3MultipartOutputStream(
+                s3, BUCKET, "small.pdf", KB, 3, executor)) {
+            os.write(new byte[] { 1, 2, 3 });
+        }
+        assertArrayEquals(new byte[] { 1, 2, 3 }, s3.get(BUCKET, "small.pdf"));
+        assertEquals(1, s3.getPutRequests());
+    }
+
+    @Test
+    public void testFailedPart() {
+
+        LocalS3 s3 = new LocalS3() {
+            @Override
+            protected void beforeUploadPart(int partNumber) {
+                if (partNumber == 2) {
+                    throw new AmazonS3Exception("Internal Error");
+                }
+            }
+        };
+        // The failure surfaces from a later write or from close().
+        OutputStream os = new S3MultipartOutputStream(
+                s3, BUCKET, "failed.pdf", KB, 2, executor);
+        try {
+            os.write(new byte[8 * KB]);
+            os.close();
+            fail("Expected IOException");
+        }
+        catch (IOException ioe) { }
+        assertNull(s3.get(BUCKET, "failed.pdf"));
+        assertEquals(1, s3.getAbortedUploads());
+        assertEquals(0, s3.getUploadsInProgress());
+    }
+
+    @Test
+    public void testMergeToS3Staging() throws Exception {
+
+        LocalS3    s3    = new LocalS3();
+        Properties props = new Properties();
+        props.setProperty(PDFMergeI.S3_INPUT_CACHE_SIZE_PROPERTY, "0");
+        StorageFactory.getInstance().register(new LocalS3StorageBackend(
+                props, s3, new S3InputCache(props)));
+
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 1; i <= 2; i++) {
+            try (PDDocument doc = new PDDocument()) {
+                doc.addPage(new PDPage());
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                doc.save(baos);
+                s3.put(BUCKET, "input/" + i + ".pdf", baos.toByteArray());
+            }
+            inputs.add("s3://localhost/" + BUCKET + "/input/" + i + ".pdf");
+        }
+
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                "s3://localhost/" + BUCKET + "/staging");
+        props.setProperty(PDFMergeI.BASE_URL_PROPERTY, "https://localhost/");
+        URI output = new PDFFactory(props).merge(inputs, "merged.pdf", null);
+        assertEquals("s3", output.getScheme());
+
+        String key = output.getPath().substring(BUCKET.length() + 2);
+        try (PDDocument merged = PDDocument.load(
+                new ByteArrayInputStream(s3.get(BUCKET, key)))) {
+            assertEquals(2, merged.getNumberOfPages());
+        }
+
+        // Output in S3 is returned as a pre-signed URL.
+        String url = new UrlGenerator(props).toURL(output);
+        assertTrue(url.startsWith("https://localhost/" + BUCKET + "/" + key));
+        assertTrue(url.contains("Signature="));
+
+        props.setProperty(PDFMergeI.SIGNED_URL_TTL_PROPERTY, "0");
+        assertFalse(new UrlGenerator(props).toURL(output).contains(
+                "Signature="));
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+
+        LocalS3 s3 = new LocalS3();
+
+        // Nothing is stored, whether or not the multipart upload started.
+        S3MultipartOutputStream os = new S3MultipartOutputStream(
+                s3, BUCKET, "aborted.pdf", KB, 3, executor);
+        os.write(new byte[3 * KB + 10]);
+        os.abort();
+        os.close();
+        assertNull(s3.get(BUCKET, "aborted.pdf"));
+        assertEquals(1, s3.getAbortedUploads());
+        assertEquals(0, s3.getUploadsInProgress());
+
+        os = new S3MultipartOutputStream(
+                s3, BUCKET, "aborted.pdf", KB, 3, executor);
+        os.write(new byte[10]);
+        os.abort();
+        os.close();
+        assertNull(s3.get(BUCKET, "aborted.pdf"));
+        assertEquals(0, s3.getPutRequests());
+    }
+
+    @Test
+    public void testFailedMergeNotCommitted() throws Exception {
+
+        // S3 staging area.
+        LocalS3    s3    = new LocalS3();
+        Properties props = new Properties();
+        props.setProperty(PDFMergeI.S3_INPUT_CACHE_SIZE_PROPERTY, "0");
+        props.setProperty(PDFMergeI.S3_UPLOAD_PART_SIZE_PROPERTY, "5");
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                "s3://localhost/" + BUCKET + "/staging");
+        StorageFactory.getInstance().register(new LocalS3StorageBackend(
+                props, s3, new S3InputCache(props)));
+        mergeWithFailedSave(props);
+
+        // PDFBox closes the stream it saves to when the save fails, which
+        // must not complete the upload of the parts already sent.
+        assertEquals(1, s3.getAbortedUploads());
+        assertEquals(0, s3.getPutRequests());
+        assertEquals(0, s3.getUploadsInProgress());
+
+        // Local staging area.
+        MemoryStorageBackend storage = new MemoryStorageBackend();
+        URI                  staging = URI.create("mem:///staging");
+        StorageFactory.getInstance().register(storage);
+        storage.createDirectories(staging);
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                staging.toString());
+        mergeWithFailedSave(props);
+        assertEquals(0, storage.getTotalSize());
+    }
+
+    /**
+     * Build a document that PDFBox fails to save part way through: a page
+     * larger than one upload part is followed by a page whose content 
+     * cannot be read.
+     *
+     * @return The document.
+     */
+    static PDDocument newFailingDocument() throws IOException {
+        PDDocument doc    = new PDDocument();
+        byte[]     filler = new byte[6 * KB * KB];
+        new Random(1).nextBytes(filler);
+        PDPage page = new PDPage();
+        page.setContents(new PDStream(doc, new ByteArrayInputStream(filler)));
+        doc.addPage(page);
+
+        COSStream broken = new COSStream() {
+            @Override
+            public InputStream createRawInputStream() throws IOException {
+                throw new IOException("Save failed");
+            }
+        };
+        page = new PDPage();
+        page.getCOSObject().setItem(COSName.CONTENTS, broken);
+        doc.addPage(page);
+        return doc;
+    }
+
+    /**
+     * Run a merge whose output fails part way through being written.
+     *
+     * @param props The merge settings.
+     */
+    private void mergeWithFailedSave(Properties props) {
+        PDFFactory factory = new PDFFactory(props) {
+            @Override
+            public MergedDocument assemble(List<String> inputFiles) {
+                try {
+                    return new MergedDocument(
+                            newFailingDocument(),
+                            new ArrayList<PDDocument>(),
+                            null,
+                            new MergeMetrics(),
+                            System.currentTimeMillis());
+                }
+                catch (IOException ioe) {
+                    throw new IllegalStateException(ioe);
+                }
+            }
+        };
+        try {
+            factory.merge(new ArrayList<String>(), "merged.pdf", null);
+            fail("Expected PDFException");
+        }
+        catch (PDFException pe) { }
+    }
+}
@@ -0,0 +1,182 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.S3InputCache;
+import mil.nga.storage.S3RangeChannel;
+import mil.nga.storage.S3StorageBackend;
+import mil.nga.storage.StorageFactory;
+
+/**
+ * JUnit tests for the ranged S3 reader, run against an in-memory S3
+ * stand-in.
+ *
+ * @author L. Craig Carpenter
+ */
+public class S3RangeChannelTest {
+
+    private static final String BUCKET = "bucket";
+    private static final int    KB     = 1024;
+
+    private LocalS3 s3;
+
+    @Before
+    public void setUp() {
+        s3 = new LocalS3();
+        Properties props = new Properties();
+        props.setProperty(PDFMergeI.S3_BLOCK_SIZE_PROPERTY, "16");
+        props.setProperty(PDFMergeI.S3_INPUT_CACHE_SIZE_PROPERTY, "0");
+        StorageFactory.getInstance().register(new LocalS3StorageBackend(
+                props, s3, new S3InputCache(props)));
+    }
+
+    @After
+    public void tearDown() {
+        StorageFactory.getInstance().register(new S3StorageBackend(null));
+    }
+
+    @Test
+    public void testRangeReads() throws IOException {
+
+        byte[] content = new byte[KB * KB];
+        new Random(42).nextBytes(content);
+        s3.put(BUCKET, "data.bin", content);
+
+        try (S3RangeChannel channel = new S3RangeChannel(
+                s3, BUCKET, "data.bin", 64 * KB, 4, 2)) {
+
+            // A read at the end of the object fetches only the last block.
+            ByteBuffer tail = ByteBuffer.allocate(100);
+            channel.position(content.length - 100);
+            assertEquals(100, channel.read(tail));
+            assertArrayEquals(
+                    Arrays.copyOfRange(content, content.length - 100,
+                            content.length),
+                    tail.array());
+            assertEquals(1, channel.getRangeRequests());
+            assertEquals(64 * KB, channel.getBytesFetched());
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+
+            // Re-reading a cached block does not issue a request.
+            channel.position(content.length - 200);
+            channel.read(ByteBuffer.allocate(50));
+            assertEquals(1, channel.getRangeRequests());
+
+            // Sequential reads are coalesced with read-ahead.
+            channel.position(0);
+            ByteBuffer head = ByteBuffer.allocate(4 * 64 * KB);
+            while (head.hasRemaining()) {
+                channel.read(head);
+            }
+            assertArrayEquals(
+                    Arrays.copyOfRange(content, 0, 4 * 64 * KB),
+                    head.array());
+            assertEquals(3, channel.getRangeRequests());
+
+            // A new version of the object is detected.
+            s3.put(BUCKET, "data.bin", new byte[10]);
+            channel.position(8 * 64 * KB);
+            try {
+                channel.read(ByteBuffer.allocate(1));
+                fail("Expected IOException");
+            }
+            catch (IOException ioe) { }
+        }
+
+        try {
+            new S3RangeChannel(s3, BUCKET, "missing.bin", 64 * KB, 4, 2);
+            fail("Expected NoSuchFileException");
+        }
+        catch (NoSuchFileException nsfe) { }
+    }
+
+    @Test
+    public void testLoadAndMergeFromS3() throws Exception {
+
+        List<String> inputs = new ArrayList<String>();
+        long         size   = 0;
+        for (int i = 1; i <= 2; i++) {
+            byte[] pdf = generate(i + 1);
+            s3.put(BUCKET, "input/file_" + i + ".pdf", pdf);
+            inputs.add("s3://localhost/" + BUCKET + "/input/file_" + i + ".pdf");
+            size += pdf.length;
+        }
+        inputs.add("s3://localhost/" + BUCKET + "/input/missing.pdf");
+
+        MemoryStorageBackend staging = (MemoryStorageBackend)
+                StorageFactory.get(URI.create("mem:///s3/staging"));
+        staging.createDirectories(URI.create("mem:///s3/staging"));
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                "mem:///s3/staging");
+        props.setProperty(
+                PDFMergeI.VALIDATION_MODE_PROPERTY,
+                PDFMergeI.VALIDATION_MODE_STRUCTURAL);
+        PDFFactory factory = new PDFFactory(props);
+
+        // Structural validation reads the header, trailer and 
+        // cross-reference data only, so most of each object is never 
+        // fetched.
+        assertEquals(
+                Arrays.asList(true, true, false),
+                factory.validate(inputs));
+        assertTrue(s3.getBytesReturned() < size / 4);
+
+        // The merge parses each document from ranged reads.
+        URI output = factory.merge(inputs, "merged.pdf", null);
+        try (InputStream is = staging.newInputStream(output);
+             PDDocument merged = PDDocument.load(is)) {
+            assertEquals(5, merged.getNumberOfPages());
+        }
+        staging.clear();
+    }
+
+    /**
+     * Generate a PDF whose pages carry large, uncompressed content streams.
+     */
+    private static byte[] generate(int pages) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(
+                        doc, page, AppendMode.OVERWRITE, false)) {
+                    for (int line = 0; line < 10000; line++) {
+                        content.beginText();
+                        content.setFont(PDType1Font.HELVETICA, 8);
+                        content.newLineAtOffset(20, 20 + (line % 90) * 8);
+                        content.showText("Page " + i + " line " + line);
+                        content.endText();
+                    }
+                }
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.util.FileUtils;
+
+/**
+ * JUnit tests for the per-request directories and quota managed by the
+ * <code>ScratchSpace</code>.
+ *
+ * @author L. Craig Carpenter
+ */
+public class ScratchSpaceTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("scratch_test").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.delete(root);
+    }
+
+    /**
+     * Build a scratch space rooted in the test directory.
+     */
+    private ScratchSpace newScratchSpace(String quotaMB) {
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.SCRATCH_DIRECTORY_PROPERTY,
+                root.toURI().toString());
+        if (quotaMB != null) {
+            props.setProperty(PDFMergeI.SCRATCH_QUOTA_PROPERTY, quotaMB);
+        }
+        return new ScratchSpace(props);
+    }
+
+    @Test
+    public void testQuota() {
+
+        assertEquals(
+                10L * 1024L * 1024L,
+                newScratchSpace("10").getQuota());
+
+        // Missing or invalid values revert to the default quota.
+        long defaultQuota = PDFMergeI.DEFAULT_SCRATCH_QUOTA_MB * 1024L * 1024L;
+        assertEquals(defaultQuota, newScratchSpace(null).getQuota());
+        assertEquals(defaultQuota, newScratchSpace("lots").getQuota());
+    }
+
+    @Test
+    public void testAllocateAndRelease() throws IOException {
+
+        ScratchSpace scratch = newScratchSpace(null);
+        assertEquals(
+                root.getCanonicalFile(),
+                scratch.getScratchDirectory().toFile().getCanonicalFile());
+
+        // Each request gets its own directory...
+        File first  = scratch.allocate();
+        File second = scratch.allocate();
+        assertNotEquals(first, second);
+        assertEquals(
+                root.getCanonicalFile(),
+                first.getParentFile().getCanonicalFile());
+        assertTrue(first.isDirectory());
+
+        // ...which is removed, along with anything PDFBox left in it.
+        Files.write(new File(first, "buffer.tmp").toPath(), new byte[16]);
+        scratch.release(first);
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+        scratch.release(null);
+    }
+
+    @Test
+    public void testStaleAllocationsRemoved() throws IOException {
+
+        File stale = newScratchSpace(null).allocate();
+        File other = new File(root, "other");
+        assertTrue(other.mkdir());
+
+        // A new instance removes the directories left by the previous one.
+        newScratchSpace(null);
+        assertFalse(stale.exists());
+        assertTrue(other.exists());
+    }
+}
@@ -0,0 +1,154 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import mil.nga.exceptions.PDFException;
+import mil.nga.util.SingleFlight;
+
+/**
+ * JUnit tests for the SingleFlight class.
+ *
+ * @author L. Craig Carpenter
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testSharedResult() throws Exception {
+
+        SingleFlight<String, String> flights = new SingleFlight<String, String>();
+        SingleFlight<String, String>.Ticket leader = flights.begin("key");
+        assertTrue(leader.isLeader());
+
+        final SingleFlight<String, String>.Ticket follower = flights.begin("key");
+        assertFalse(follower.isLeader());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> result = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return follower.await();
+                }
+            });
+            leader.complete("output");
+            assertEquals("output", result.get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, flights.getShared());
+
+        // The key is released once the leader finishes.
+        assertTrue(flights.begin("key").isLeader());
+    }
+
+    @Test
+    public void testSharedFailure() throws Exception {
+
+        SingleFlight<String, String> flights = new SingleFlight<String, String>();
+        SingleFlight<String, String>.Ticket leader   = flights.begin("key");
+        SingleFlight<String, String>.Ticket follower = flights.begin("key");
+
+        leader.fail(new PDFException("No valid input files."));
+        try {
+            follower.await();
+            fail("Expected the leader's failure.");
+        }
+        catch (PDFException pe) {
+            assertEquals("No valid input files.", pe.getMessage());
+        }
+        assertEquals(1, flights.getSharedFailures());
+
+        // A failure does not prevent later attempts.
+        assertEquals("output", flights.execute("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "output";
+            }
+        }));
+        assertEquals(0, flights.getInFlight());
+    }
+
+    @Test
+    public void testAbandoned() throws Exception {
+
+        SingleFlight<String, String> flights = new SingleFlight<String, String>();
+        SingleFlight<String, String>.Ticket leader   = flights.begin("key");
+        SingleFlight<String, String>.Ticket follower = flights.begin("key");
+
+        leader.abandon();
+        try {
+            follower.await();
+            fail("Expected the follower to be told to retry.");
+        }
+        catch (CancellationException ce) {
+            // expected
+        }
+        assertEquals(1, flights.getAbandoned());
+        assertEquals(0, flights.getSharedFailures());
+        assertTrue(flights.begin("key").isLeader());
+    }
+
+    @Test
+    public void testFollowerTimeout() throws Exception {
+
+        SingleFlight<String, String> flights =
+                new SingleFlight<String, String>(100);
+        SingleFlight<String, String>.Ticket leader = flights.begin("key");
+        SingleFlight<String, String>.Ticket first  = flights.begin("key");
+        SingleFlight<String, String>.Ticket second = flights.begin("key");
+
+        // The leader never finishes, so the flight times out for all of
+        // its followers.
+        try {
+            first.await();
+            fail("Expected TimeoutException");
+        }
+        catch (TimeoutException te) { }
+        try {
+            second.await();
+            fail("Expected TimeoutException");
+        }
+        catch (TimeoutException te) { }
+        assertEquals(1, flights.getTimeouts());
+        assertEquals(0, flights.getInFlight());
+
+        // The next caller starts a new flight, which the stalled leader
+        // cannot finish.
+        SingleFlight<String, String>.Ticket next = flights.begin("key");
+        assertTrue(next.isLeader());
+        leader.complete("stale");
+        assertEquals(1, flights.getInFlight());
+        next.complete("output");
+        assertEquals(0, flights.getInFlight());
+    }
+
+    @Test
+    public void testFollowerInterrupted() throws Exception {
+
+        SingleFlight<String, String> flights = new SingleFlight<String, String>();
+        flights.begin("key");
+        SingleFlight<String, String>.Ticket follower = flights.begin("key");
+
+        Thread.currentThread().interrupt();
+        try {
+            follower.await();
+            fail("Expected InterruptedException");
+        }
+        catch (InterruptedException ie) { }
+        finally {
+            Thread.interrupted();
+        }
+        assertEquals(0, flights.getShared());
+    }
+}
@@ -0,0 +1,95 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.interfaces.PDFMergeI;
+
+/**
+ * JUnit tests for the StagingReaper class.
+ *
+ * @author L. Craig Carpenter
+ */
+public class StagingReaperTest {
+
+    private static final int FILE_SIZE = 600 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Create a staging directory containing a single file, last modified
+     * the given number of minutes ago.
+     */
+    private Path stage(Path dir, long minutesAgo) throws Exception {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("output.pdf");
+        Files.write(file, new byte[FILE_SIZE]);
+        FileTime time = FileTime.fromMillis(System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(minutesAgo));
+        Files.setLastModifiedTime(file, time);
+        Files.setLastModifiedTime(dir, time);
+        return dir;
+    }
+
+    @Test
+    public void testTtlAndBudget() throws Exception {
+
+        File staging = folder.getRoot();
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                staging.toURI().toString());
+        props.setProperty(PDFMergeI.STAGING_TTL_PROPERTY, "1440");
+        props.setProperty(PDFMergeI.STAGING_BUDGET_PROPERTY, "1");
+
+        // A directory created before the switch to the sharded layout.
+        Properties flat = new Properties();
+        flat.putAll(props);
+        flat.setProperty(
+                PDFMergeI.STAGING_LAYOUT_PROPERTY,
+                PDFMergeI.STAGING_LAYOUT_FLAT);
+        Path expired = stage(Paths.get(
+                new FileGenerator(flat).getOutputDirectory()), 4320);
+        assertEquals(staging.toPath(), expired.getParent());
+
+        FileGenerator generator = new FileGenerator(props);
+        Path oldest  = stage(Paths.get(generator.getOutputDirectory()), 180);
+        Path older   = stage(Paths.get(generator.getOutputDirectory()), 120);
+        Path recent  = stage(Paths.get(generator.getOutputDirectory()), 1);
+        assertEquals(staging.toPath(), 
+                recent.getParent().getParent().getParent());
+        Path foreign = stage(staging.toPath().resolve("other"), 4320);
+
+        StagingReaper reaper = new StagingReaper(props);
+        assertEquals(3L * FILE_SIZE, reaper.reap());
+
+        // The directory modified a minute ago is retained despite the
+        // budget, and directories created by other processes are ignored.
+        assertFalse(Files.exists(expired));
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(foreign));
+
+        StagingStatus status = reaper.getStatus();
+        assertEquals(1, status.getRuns());
+        assertEquals(3, status.getReclaimedDirectories());
+        assertEquals(3L * FILE_SIZE, status.getReclaimedBytes());
+        assertEquals(1, status.getStagedDirectories());
+        assertEquals(FILE_SIZE, status.getStagedBytes());
+        assertEquals(0, status.getFailures());
+        reaper.shutdown();
+    }
+}
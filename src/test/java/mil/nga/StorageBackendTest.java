@@ -0,0 +1,133 @@
+package mil.nga;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import mil.nga.interfaces.PDFMergeI;
+import mil.nga.storage.MemoryStorageBackend;
+import mil.nga.storage.StorageBackend;
+import mil.nga.storage.StorageFactory;
+import mil.nga.storage.StorageMetadata;
+
+/**
+ * JUnit tests for the storage backends.
+ *
+ * @author L. Craig Carpenter
+ */
+public class StorageBackendTest {
+
+    @Test
+    public void testMemoryBackend() throws IOException {
+
+        URI            dir     = URI.create("mem:///unit/dir");
+        URI            file    = StorageFactory.resolve(dir, "a.txt");
+        StorageBackend storage = StorageFactory.get(file);
+        assertTrue(storage instanceof MemoryStorageBackend);
+
+        // The parent must exist, and content is published on close.
+        try {
+            storage.newOutputStream(file);
+            fail("Expected NoSuchFileException");
+        }
+        catch (NoSuchFileException nsfe) { }
+        storage.createDirectories(dir);
+        OutputStream os = storage.newOutputStream(file);
+        os.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(storage.exists(file));
+        os.close();
+        assertTrue(storage.exists(file));
+
+        try (InputStream is = storage.newInputStream(file, 3, 4)) {
+            assertEquals("3456", new String(
+                    ByteStreams.toByteArray(is),
+                    StandardCharsets.US_ASCII));
+        }
+        try (SeekableByteChannel channel = storage.newReadChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(3);
+            channel.position(8);
+            assertEquals(2, channel.read(buffer));
+            assertEquals(-1, channel.read(buffer));
+            assertEquals(10, channel.size());
+        }
+
+        // Missing objects are omitted from a batched lookup.
+        URI missing = StorageFactory.resolve(dir, "missing.txt");
+        Map<URI, StorageMetadata> metadata = StorageFactory.getInstance()
+                .getMetadata(Arrays.asList(file, missing, null));
+        assertEquals(1, metadata.size());
+        assertEquals(10, metadata.get(file).getSize());
+
+        URI renamed = StorageFactory.resolve(dir, "b.txt");
+        storage.move(file, renamed);
+        assertFalse(storage.exists(file));
+        assertEquals(Arrays.asList(renamed), storage.list(dir));
+        try {
+            storage.delete(dir);
+            fail("Expected DirectoryNotEmptyException");
+        }
+        catch (DirectoryNotEmptyException dnee) { }
+        assertTrue(storage.delete(renamed));
+        assertTrue(storage.delete(dir));
+        assertFalse(storage.exists(dir));
+    }
+
+    @Test
+    public void testMergeInMemory() throws Exception {
+
+        MemoryStorageBackend storage = (MemoryStorageBackend)
+                StorageFactory.get(URI.create("mem:///merge"));
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 1; i <= 3; i++) {
+            URI uri = URI.create("mem:///merge/input/file_" + i + ".pdf");
+            try (PDDocument doc = new PDDocument()) {
+                for (int page = 0; page < i; page++) {
+                    doc.addPage(new PDPage());
+                }
+                storage.createDirectories(StorageFactory.getParent(uri));
+                try (OutputStream os = storage.newOutputStream(uri)) {
+                    doc.save(os);
+                }
+            }
+            inputs.add(uri.toString());
+        }
+        inputs.add("mem:///merge/input/missing.pdf");
+
+        Properties props = new Properties();
+        props.setProperty(
+                PDFMergeI.STAGING_DIRECTORY_PROPERTY,
+                "mem:///merge/staging");
+        storage.createDirectories(URI.create("mem:///merge/staging"));
+        PDFFactory factory = new PDFFactory(props);
+
+        assertEquals(
+                Arrays.asList(true, true, true, false),
+                factory.validate(inputs));
+
+        URI output = factory.merge(inputs, "merged.pdf", null);
+        assertEquals("mem", output.getScheme());
+        try (InputStream is = storage.newInputStream(output);
+             PDDocument merged = PDDocument.load(is)) {
+            assertEquals(6, merged.getNumberOfPages());
+        }
+    }
+}
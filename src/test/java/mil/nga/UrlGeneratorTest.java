@@ -49,4 +49,13 @@ public class UrlGeneratorTest implements PDFMergeI {
         String URL = generator.toURL(uri);
         assertEquals(URL, "https://localhost/staging_directory/abcdefghijkl/merged.pdf");
     }
+    
+    @Test
+    public void testURLGenerationSharded() {
+        String uriString = "file:///tmp/staging_directory/3f/a0/nga_tmp_0A1B/merged.pdf";
+        URI uri = URIUtils.getInstance().getURI(uriString);
+        UrlGenerator generator = new UrlGenerator(testProperties);
+        String URL = generator.toURL(uri);
+        assertEquals(URL, "https://localhost/staging_directory/3f/a0/nga_tmp_0A1B/merged.pdf");
+    }
 }